@@ -0,0 +1,39 @@
+package com.blogging.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+ // Entry point of benchmarks.jar.
+ // Accepts the usual JMH command line, but always attaches the GC (allocation) profiler,
+ // quiets application logging and writes JSON results, so every run reports
+ // time/op together with gc.alloc.rate.norm (bytes/op).
+
+public class BenchmarkRunner {
+    private static final String LOGBACK_CONFIG = "-Dlogback.configurationFile=logback-benchmark.xml";
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(cmdOptions)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend(LOGBACK_CONFIG);
+
+        if (!cmdOptions.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT_FILE);
+        }
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
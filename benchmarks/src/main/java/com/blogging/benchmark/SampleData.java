@@ -0,0 +1,53 @@
+package com.blogging.benchmark;
+
+import com.blogging.model.Post;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+ // Deterministic in-memory fixtures shared by the benchmarks.
+
+public final class SampleData {
+    private static final String[] WORDS = {
+        "java", "database", "index", "query", "cache", "latency", "postgres", "design",
+        "review", "tutorial", "performance", "thread", "pool", "stream", "record", "layout"
+    };
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private SampleData() {
+    }
+
+    public static Post post(int postId, Random random) {
+        Post post = new Post(postId, 1 + random.nextInt(1000), title(random), sentence(random, 60),
+                EPOCH.plusMinutes(random.nextInt(1_000_000)), EPOCH.plusMinutes(random.nextInt(1_000_000)),
+                random.nextInt(100_000));
+        post.setAuthorName("author_" + post.getUserId());
+        return post;
+    }
+
+    public static List<Post> posts(int count, long seed) {
+        Random random = new Random(seed);
+        List<Post> posts = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            posts.add(post(i, random));
+        }
+        return posts;
+    }
+
+    public static String title(Random random) {
+        return sentence(random, 4 + random.nextInt(6));
+    }
+
+    public static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        return sb.toString();
+    }
+}
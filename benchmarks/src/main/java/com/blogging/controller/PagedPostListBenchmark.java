@@ -0,0 +1,69 @@
+package com.blogging.controller;
+
+import com.blogging.benchmark.SampleData;
+import com.blogging.model.Post;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // Scrolling through the post table: PagedPostList reads of every row of 100k posts, with
+ // windows loaded synchronously from memory, against the row numbering the table used
+ // before (indexOf of the row's item in the list, for each visible row).
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PagedPostListBenchmark {
+    private static final int VISIBLE_ROWS = 30;
+
+    @Param({"100000"})
+    private int posts;
+
+    private List<Post> all;
+    private ObservableList<Post> loaded;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        all = new ArrayList<>(posts);
+        for (int postId = posts; postId >= 1; postId--) {
+            all.add(SampleData.post(postId, random));
+        }
+        loaded = FXCollections.observableArrayList(all);
+    }
+
+    @Benchmark
+    public int scrollPagedList() {
+        PagedPostList list = new PagedPostList(
+                (offset, limit, after) -> all.subList(offset, Math.min(offset + limit, all.size())),
+                posts, Runnable::run, Runnable::run);
+        int found = 0;
+        for (int i = 0; i < list.size(); i++) {
+            Post post = list.get(i);
+            if (post == null) {
+                post = list.get(i);
+            }
+            found += post.getPostId() & 1;
+        }
+        return found + list.loadedRows();
+    }
+
+    // One screen of row numbers at the end of a fully loaded list, as computed by indexOf
+    @Benchmark
+    public int rowNumbersByIndexOf() {
+        int sum = 0;
+        for (int row = posts - VISIBLE_ROWS; row < posts; row++) {
+            sum += loaded.indexOf(loaded.get(row)) + 1;
+        }
+        return sum;
+    }
+}
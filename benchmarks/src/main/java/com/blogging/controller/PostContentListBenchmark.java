@@ -0,0 +1,69 @@
+package com.blogging.controller;
+
+import com.blogging.model.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // Opening the text of a long post: PostContentList from the preview chunk the post view
+ // loads, which should cost the same for any length, against splitting the whole text, and
+ // reading the whole post chunk by chunk as the reader scrolls to the end.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostContentListBenchmark {
+
+    @Param({"100000", "5000000"})
+    private int chars;
+
+    private String content;
+    private Post preview;
+    private Post full;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(chars);
+        while (text.length() < chars) {
+            int words = 5 + random.nextInt(80);
+            for (int i = 0; i < words; i++) {
+                text.append("word").append(random.nextInt(1000)).append(' ');
+            }
+            text.append(random.nextInt(4) == 0 ? "\n\n" : "\n");
+        }
+        content = text.substring(0, chars);
+        preview = new Post(1, 1, "Long post", content.substring(0, PostContentList.CHUNK_CHARS), null, null, 0);
+        preview.setContentPartial(true);
+        full = new Post(1, 1, "Long post", content, null, null, 0);
+    }
+
+    @Benchmark
+    public int openPreview() {
+        return new PostContentList(preview, this::chunk, Runnable::run, Runnable::run).size();
+    }
+
+    @Benchmark
+    public int openWholeText() {
+        return new PostContentList(full, this::chunk, Runnable::run, Runnable::run).size();
+    }
+
+    @Benchmark
+    public int scrollToEnd() {
+        PostContentList list = new PostContentList(preview, this::chunk, Runnable::run, Runnable::run);
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i);
+        }
+        return list.size();
+    }
+
+    // The text is ASCII, so code point offsets are char offsets
+    private String chunk(int offset, int length) {
+        return offset >= content.length() ? "" : content.substring(offset, Math.min(content.length(), offset + length));
+    }
+}
@@ -0,0 +1,56 @@
+package com.blogging.dao;
+
+import com.blogging.model.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+ // PostDAO.mapResultSetToPost over a single in-memory row.
+ // The row is served by a dynamic proxy, so the numbers include a small constant
+ // reflection cost per column on top of the mapping itself.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostRowMappingBenchmark {
+    private PostDAO postDAO;
+    private ResultSet row;
+
+    @Setup
+    public void setUp() {
+        postDAO = new PostDAO();
+
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("post_id", 1234);
+        columns.put("user_id", 56);
+        columns.put("title", "Understanding PostgreSQL index-only scans");
+        columns.put("content", "An index-only scan answers a query from the index alone. ".repeat(40));
+        columns.put("created_at", Timestamp.valueOf("2024-03-01 10:15:00"));
+        columns.put("updated_at", Timestamp.valueOf("2024-03-02 08:00:00"));
+        columns.put("view_count", 981);
+        columns.put("author_name", "database_admin");
+
+        row = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object value = columns.get((String) args[0]);
+                    if (method.getName().equals("getInt")) {
+                        return value == null ? 0 : value;
+                    }
+                    return value;
+                });
+    }
+
+    @Benchmark
+    public Post mapRow() throws Exception {
+        return postDAO.mapResultSetToPost(row);
+    }
+}
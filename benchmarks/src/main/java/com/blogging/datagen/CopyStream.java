@@ -0,0 +1,125 @@
+package com.blogging.datagen;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+
+ // Streams rows into a single COPY ... FROM STDIN (text format).
+ // Rows are encoded into a reusable buffer and shipped in ~256 KB chunks,
+ // so memory stays flat no matter how many rows a producer writes.
+
+final class CopyStream implements AutoCloseable {
+    private static final int FLUSH_THRESHOLD = 256 * 1024;
+
+    private final CopyIn copyIn;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 64 * 1024);
+    private boolean firstField = true;
+    private long rows;
+    private boolean finished;
+
+    CopyStream(CopyManager copyManager, String copySql) throws SQLException {
+        this.copyIn = copyManager.copyIn(copySql);
+    }
+
+    CopyStream field(long value) {
+        separator();
+        buffer.append(value);
+        return this;
+    }
+
+    CopyStream field(LocalDateTime value) {
+        separator();
+        buffer.append(value);
+        return this;
+    }
+
+    CopyStream field(CharSequence value) {
+        separator();
+        appendEscaped(value, 0, value.length());
+        return this;
+    }
+
+
+     // Hands out the raw buffer so large text can be generated in place;
+     // call endRawField() afterwards to escape what was appended.
+
+    int beginRawField() {
+        separator();
+        return buffer.length();
+    }
+
+    StringBuilder buffer() {
+        return buffer;
+    }
+
+    void endRawField(int start) {
+        int end = buffer.length();
+        boolean clean = true;
+        for (int i = start; i < end && clean; i++) {
+            clean = !needsEscape(buffer.charAt(i));
+        }
+        if (!clean) {
+            String raw = buffer.substring(start, end);
+            buffer.setLength(start);
+            appendEscaped(raw, 0, raw.length());
+        }
+    }
+
+    void endRow() throws SQLException {
+        buffer.append('\n');
+        firstField = true;
+        rows++;
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    long finish() throws SQLException {
+        flush();
+        finished = true;
+        copyIn.endCopy();
+        return rows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (!finished && copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (buffer.length() == 0) return;
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private void separator() {
+        if (!firstField) {
+            buffer.append('\t');
+        }
+        firstField = false;
+    }
+
+    private void appendEscaped(CharSequence value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': buffer.append("\\\\"); break;
+                case '\t': buffer.append("\\t"); break;
+                case '\n': buffer.append("\\n"); break;
+                case '\r': buffer.append("\\r"); break;
+                default: buffer.append(c);
+            }
+        }
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '\\' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
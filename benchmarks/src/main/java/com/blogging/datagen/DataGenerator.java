@@ -0,0 +1,335 @@
+package com.blogging.datagen;
+
+import com.blogging.config.DatabaseConfig;
+import com.blogging.security.Pbkdf2PasswordHasher;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+ // Synthetic data generator for production-scale benchmarks and query-plan checks.
+ // Bulk-loads users, tags, posts, post_tags, comments, comment_likes and reviews through
+ // PostgreSQL COPY, with every table split across parallel producer threads.
+ //
+ // Usage (connection settings come from database.properties or -Ddb.url/-Ddb.username/-Ddb.password):
+ //   java -cp benchmarks.jar com.blogging.datagen.DataGenerator --users=1000000 --posts=10000000 --truncate
+ //
+ // Every row is generated from (seed, table, row id) only, so the same options always
+ // produce the same data regardless of --threads. All users get the password "password123".
+
+public class DataGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(DataGenerator.class);
+
+    static final String DEFAULT_PASSWORD = "password123";
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    private static final int USERS = 1;
+    private static final int TAGS = 2;
+    private static final int POSTS = 3;
+    private static final int POST_TAGS = 4;
+    private static final int COMMENTS = 5;
+    private static final int COMMENT_LIKES = 6;
+    private static final int REVIEWS = 7;
+
+    private static final int MAX_TAGS_PER_POST = 16;
+    private static final int MAX_LIKES_PER_COMMENT = 200;
+    private static final int MAX_REVIEWS_PER_POST = 50;
+
+    private final GeneratorConfig config;
+    private final TextGenerator text = new TextGenerator();
+    private final ZipfSampler authorSampler;
+    private final ZipfSampler viewSampler;
+    private final ZipfSampler postPopularity;
+    private final ZipfSampler tagPopularity;
+    private final long postPermutation;
+    private final long spanSeconds;
+    private final long totalComments;
+    private final String passwordHash;
+
+    public DataGenerator(GeneratorConfig config) {
+        this.config = config;
+        this.authorSampler = new ZipfSampler(config.users, 0.8);
+        this.viewSampler = new ZipfSampler(config.maxViews, config.viewsExponent);
+        this.postPopularity = new ZipfSampler(config.posts, config.popularityExponent);
+        this.tagPopularity = new ZipfSampler(config.tags, 1.0);
+        this.postPermutation = coprimeMultiplier(config.posts);
+        this.spanSeconds = config.days * 86_400L;
+        this.totalComments = Math.round(config.posts * config.commentsPerPost);
+        // One hash (with one salt) for every user: hashing per user would dominate the run
+        this.passwordHash = new Pbkdf2PasswordHasher().hash(DEFAULT_PASSWORD);
+    }
+
+    public static void main(String[] args) throws Exception {
+        GeneratorConfig config = GeneratorConfig.parse(args);
+        logger.info("Generating data: {}", config);
+        new DataGenerator(config).run();
+    }
+
+    public void run() throws SQLException, InterruptedException {
+        long started = System.nanoTime();
+        if (config.truncate) {
+            execute("TRUNCATE users, posts, comments, comment_likes, tags, post_tags, reviews RESTART IDENTITY CASCADE");
+        }
+
+        load("users", config.users,
+                "COPY users (user_id, username, email, password_hash, role, created_at) FROM STDIN", this::writeUsers);
+        load("tags", config.tags, "COPY tags (tag_id, tag_name) FROM STDIN", this::writeTags);
+        load("posts", config.posts,
+                "COPY posts (post_id, user_id, title, content, created_at, updated_at, view_count) FROM STDIN",
+                this::writePosts);
+        load("post_tags", config.posts, "COPY post_tags (post_id, tag_id) FROM STDIN", this::writePostTags);
+        // The comment counter trigger would serialize the parallel COPY streams on popular
+        // posts' counter rows; the counts are rebuilt in one pass instead
+        execute("ALTER TABLE comments DISABLE TRIGGER trg_comments_count");
+        try {
+            load("comments", totalComments,
+                    "COPY comments (comment_id, post_id, user_id, content, created_at) FROM STDIN", this::writeComments);
+            execute("INSERT INTO post_comment_counts (post_id, comment_count) "
+                    + "SELECT post_id, COUNT(*) FROM comments WHERE status <> 'SPAM' GROUP BY post_id "
+                    + "ON CONFLICT (post_id) DO UPDATE SET comment_count = EXCLUDED.comment_count");
+        } finally {
+            execute("ALTER TABLE comments ENABLE TRIGGER trg_comments_count");
+        }
+        load("comment_likes", totalComments,
+                "COPY comment_likes (user_id, comment_id) FROM STDIN", this::writeCommentLikes);
+        load("reviews", config.posts,
+                "COPY reviews (post_id, user_id, rating, review_text, created_at) FROM STDIN", this::writeReviews);
+
+        for (String[] serial : new String[][]{
+                {"users", "user_id"}, {"tags", "tag_id"}, {"posts", "post_id"},
+                {"comments", "comment_id"}, {"reviews", "review_id"}}) {
+            execute(String.format("SELECT setval(pg_get_serial_sequence('%1$s', '%2$s'), "
+                    + "(SELECT COALESCE(MAX(%2$s), 1) FROM %1$s))", serial[0], serial[1]));
+        }
+        execute("ANALYZE");
+
+        logger.info("Data generation finished in {}s", (System.nanoTime() - started) / 1_000_000_000L);
+    }
+
+    private void writeUsers(CopyStream out, RowRandom random, long userId) throws SQLException {
+        out.field(userId)
+           .field("user" + userId)
+           .field("user" + userId + "@example.com")
+           .field(passwordHash)
+           .field(userId == 1 ? "ADMIN" : "USER")
+           .field(timeOf(userId, config.users));
+        out.endRow();
+    }
+
+    private void writeTags(CopyStream out, RowRandom random, long tagId) throws SQLException {
+        out.field(tagId).field("tag" + tagId);
+        out.endRow();
+    }
+
+    private void writePosts(CopyStream out, RowRandom random, long postId) throws SQLException {
+        LocalDateTime createdAt = timeOf(postId, config.posts);
+        out.field(postId).field(authorSampler.sample(random));
+
+        int titleStart = out.beginRawField();
+        text.appendTitle(out.buffer(), random);
+        out.endRawField(titleStart);
+
+        // Long-tailed body length: median ~1.5 KB, a few posts in the hundreds of KB
+        int contentStart = out.beginRawField();
+        text.appendContent(out.buffer(), random, random.logNormal(1500, 1.0, 20, 500_000));
+        out.endRawField(contentStart);
+
+        LocalDateTime updatedAt = random.chance(0.2)
+                ? createdAt.plusSeconds(random.nextInt(30 * 86_400)) : createdAt;
+        out.field(createdAt).field(updatedAt).field(viewSampler.sample(random) - 1);
+        out.endRow();
+    }
+
+    private void writePostTags(CopyStream out, RowRandom random, long postId) throws SQLException {
+        int count = Math.min(Math.min(random.poisson(config.tagsPerPost), MAX_TAGS_PER_POST), config.tags);
+        int[] chosen = new int[count];
+        int found = 0;
+        for (int attempt = 0; found < count && attempt < count * 8; attempt++) {
+            int tagId = tagPopularity.sample(random);
+            if (!contains(chosen, found, tagId)) {
+                chosen[found++] = tagId;
+                out.field(postId).field(tagId);
+                out.endRow();
+            }
+        }
+    }
+
+    private void writeComments(CopyStream out, RowRandom random, long commentId) throws SQLException {
+        long postId = popularPost(random);
+        out.field(commentId).field(postId).field(1 + random.nextInt(config.users));
+
+        int contentStart = out.beginRawField();
+        StringBuilder buffer = out.buffer();
+        int target = random.logNormal(120, 0.8, 1, 1000);
+        text.appendContent(buffer, random, target);
+        if (buffer.length() - contentStart > 1000) {
+            buffer.setLength(contentStart + 1000);
+        }
+        out.endRawField(contentStart);
+
+        out.field(after(timeOf(postId, config.posts), random));
+        out.endRow();
+    }
+
+    private void writeCommentLikes(CopyStream out, RowRandom random, long commentId) throws SQLException {
+        int count = Math.min(Math.min(random.poisson(config.likesPerComment), MAX_LIKES_PER_COMMENT), config.users);
+        int firstUser = random.nextInt(config.users);
+        for (int i = 0; i < count; i++) {
+            out.field(1 + (firstUser + i) % config.users).field(commentId);
+            out.endRow();
+        }
+    }
+
+    private void writeReviews(CopyStream out, RowRandom random, long postId) throws SQLException {
+        int count = Math.min(Math.min(random.poisson(config.reviewsPerPost), MAX_REVIEWS_PER_POST), config.users);
+        int firstUser = random.nextInt(config.users);
+        LocalDateTime postCreated = timeOf(postId, config.posts);
+        for (int i = 0; i < count; i++) {
+            out.field(postId)
+               .field(1 + (firstUser + i) % config.users)
+               .field(rating(random));
+            int textStart = out.beginRawField();
+            text.appendSentence(out.buffer(), random);
+            out.endRawField(textStart);
+            out.field(after(postCreated, random));
+            out.endRow();
+        }
+    }
+
+
+     // Runs one COPY per producer thread, each over a contiguous slice of row ids.
+
+    private void load(String table, long rows, String copySql, RowWriter writer)
+            throws SQLException, InterruptedException {
+        if (rows == 0) return;
+        long started = System.nanoTime();
+        int shards = (int) Math.min(config.threads, rows);
+        ExecutorService executor = Executors.newFixedThreadPool(shards);
+        List<Future<Long>> futures = new ArrayList<>();
+        int salt = tableSalt(table);
+
+        for (int shard = 0; shard < shards; shard++) {
+            long from = 1 + rows * shard / shards;
+            long to = rows * (shard + 1) / shards;
+            futures.add(executor.submit(() -> {
+                RowRandom random = new RowRandom();
+                try (Connection conn = connect();
+                     CopyStream out = new CopyStream(conn.unwrap(PGConnection.class).getCopyAPI(), copySql)) {
+                    for (long id = from; id <= to; id++) {
+                        random.reseed(config.seed, salt, id);
+                        writer.write(out, random, id);
+                    }
+                    return out.finish();
+                }
+            }));
+        }
+        executor.shutdown();
+
+        long written = 0;
+        try {
+            for (Future<Long> future : futures) {
+                written += future.get();
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            throw new IllegalStateException("Failed to load " + table, cause);
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        logger.info("Loaded {} rows into {} in {}s ({} rows/s)", written, table,
+                String.format("%.1f", seconds), Math.round(written / Math.max(seconds, 1e-3)));
+    }
+
+    private long popularPost(RowRandom random) {
+        long rank = postPopularity.sample(random);
+        return (rank - 1) * postPermutation % config.posts + 1;
+    }
+
+    private LocalDateTime timeOf(long id, long count) {
+        return START.plusSeconds((long) ((id - 1) * (double) spanSeconds / count));
+    }
+
+    private LocalDateTime after(LocalDateTime time, RowRandom random) {
+        return time.plusSeconds(random.logNormal(6 * 3600, 1.5, 1, 90 * 86_400));
+    }
+
+    private static int rating(RowRandom random) {
+        double r = random.nextDouble();
+        if (r < 0.40) return 5;
+        if (r < 0.70) return 4;
+        if (r < 0.85) return 3;
+        if (r < 0.93) return 2;
+        return 1;
+    }
+
+    private static int tableSalt(String table) {
+        switch (table) {
+            case "users": return USERS;
+            case "tags": return TAGS;
+            case "posts": return POSTS;
+            case "post_tags": return POST_TAGS;
+            case "comments": return COMMENTS;
+            case "comment_likes": return COMMENT_LIKES;
+            default: return REVIEWS;
+        }
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+
+     // Multiplier coprime to n, so rank -> (rank * m mod n) is a permutation that
+     // scatters popular posts over the whole id range instead of the oldest ids.
+
+    private static long coprimeMultiplier(long n) {
+        long m = 2_654_435_761L % n;
+        while (m < 1 || gcd(m, n) != 1) {
+            m = m + 1 >= n ? 1 : m + 1;
+        }
+        return m;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    static Connection connect() throws SQLException {
+        return DriverManager.getConnection(DatabaseConfig.getUrl(), DatabaseConfig.getUsername(),
+                DatabaseConfig.getPassword());
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(CopyStream out, RowRandom random, long id) throws SQLException;
+    }
+}
@@ -0,0 +1,79 @@
+package com.blogging.datagen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+ // Command line options of the data generator (--name=value).
+
+final class GeneratorConfig {
+    final int users;
+    final int posts;
+    final int tags;
+    final double tagsPerPost;
+    final double commentsPerPost;
+    final double likesPerComment;
+    final double reviewsPerPost;
+    final int maxViews;
+    final double viewsExponent;
+    final double popularityExponent;
+    final int days;
+    final long seed;
+    final int threads;
+    final boolean truncate;
+
+    private GeneratorConfig(Map<String, String> options) {
+        users = intOption(options, "users", 10_000);
+        posts = intOption(options, "posts", 100_000);
+        tags = intOption(options, "tags", 500);
+        tagsPerPost = doubleOption(options, "tags-per-post", 3.0);
+        commentsPerPost = doubleOption(options, "comments-per-post", 5.0);
+        likesPerComment = doubleOption(options, "likes-per-comment", 1.5);
+        reviewsPerPost = doubleOption(options, "reviews-per-post", 0.8);
+        maxViews = intOption(options, "max-views", 1_000_000);
+        viewsExponent = doubleOption(options, "views-exponent", 1.1);
+        popularityExponent = doubleOption(options, "popularity-exponent", 0.9);
+        days = intOption(options, "days", 730);
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+        truncate = Boolean.parseBoolean(options.getOrDefault("truncate", "false"));
+
+        if (users < 1 || posts < 1 || tags < 1 || threads < 1 || days < 1) {
+            throw new IllegalArgumentException("users, posts, tags, threads and days must be positive");
+        }
+    }
+
+    static GeneratorConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return new GeneratorConfig(options);
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value.replace("_", ""));
+    }
+
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("users=%d posts=%d tags=%d tagsPerPost=%.2f commentsPerPost=%.2f likesPerComment=%.2f "
+                + "reviewsPerPost=%.2f maxViews=%d days=%d seed=%d threads=%d truncate=%s",
+                users, posts, tags, tagsPerPost, commentsPerPost, likesPerComment,
+                reviewsPerPost, maxViews, days, seed, threads, truncate);
+    }
+}
@@ -0,0 +1,74 @@
+package com.blogging.datagen;
+
+
+ // SplitMix64 generator that is re-seeded for every generated row.
+ // Seeding from (seed, table, row id) makes each row independent of which
+ // producer thread writes it, so a run is reproducible for any thread count.
+
+final class RowRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+    private double spareGaussian = Double.NaN;
+
+    void reseed(long seed, int table, long rowId) {
+        state = seed ^ (table * GOLDEN_GAMMA) ^ (rowId * 0xC2B2AE3D27D4EB4FL);
+        spareGaussian = Double.NaN;
+        nextLong();
+    }
+
+    long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    int nextInt(int bound) {
+        return (int) ((nextLong() >>> 33) % bound);
+    }
+
+    boolean chance(double probability) {
+        return nextDouble() < probability;
+    }
+
+    double nextGaussian() {
+        if (!Double.isNaN(spareGaussian)) {
+            double value = spareGaussian;
+            spareGaussian = Double.NaN;
+            return value;
+        }
+        double u1 = Math.max(nextDouble(), Double.MIN_VALUE);
+        double u2 = nextDouble();
+        double radius = Math.sqrt(-2.0 * Math.log(u1));
+        spareGaussian = radius * Math.sin(2 * Math.PI * u2);
+        return radius * Math.cos(2 * Math.PI * u2);
+    }
+
+
+     // Log-normal sample with the given median, clamped to [min, max].
+
+    int logNormal(double median, double sigma, int min, int max) {
+        double value = median * Math.exp(sigma * nextGaussian());
+        return (int) Math.max(min, Math.min(max, value));
+    }
+
+
+     // Poisson sample (Knuth); fine for the small means used by the generator.
+
+    int poisson(double mean) {
+        if (mean <= 0) return 0;
+        double limit = Math.exp(-mean);
+        double product = nextDouble();
+        int count = 0;
+        while (product > limit) {
+            count++;
+            product *= nextDouble();
+        }
+        return count;
+    }
+}
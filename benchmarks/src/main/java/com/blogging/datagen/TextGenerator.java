@@ -0,0 +1,70 @@
+package com.blogging.datagen;
+
+
+ // Builds titles, post bodies and comments from a fixed vocabulary.
+ // Word choice is Zipf-distributed, like natural language, so full-text and
+ // LIKE searches see realistic term frequencies.
+
+final class TextGenerator {
+    private static final String[] VOCABULARY = (
+        "the of and to in is for that with on as this it be are by from at or an we can "
+        + "database index query postgres java performance cache latency throughput design "
+        + "table column join schema transaction lock thread pool connection server client "
+        + "scaling replica partition shard vacuum planner statistics memory disk network "
+        + "benchmark profile allocation garbage collector heap stack compiler runtime "
+        + "service controller model view layout scene render event listener stream record "
+        + "tutorial guide review opinion lesson mistake pattern practice example project "
+        + "build test deploy release monitor metric alert trace log error failure recovery "
+        + "security password hash token session user admin role permission audit policy "
+        + "search ranking relevance tag comment post author reader feed timeline follow "
+        + "simple fast slow large small better worse modern legacy robust careful practical"
+    ).split(" ");
+
+    private final ZipfSampler words = new ZipfSampler(VOCABULARY.length, 1.07);
+
+    void appendTitle(StringBuilder sb, RowRandom random) {
+        int count = 3 + random.nextInt(8);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            appendWord(sb, random, i == 0);
+        }
+    }
+
+
+     // Appends paragraphs of sentences until roughly targetLength characters.
+
+    void appendContent(StringBuilder sb, RowRandom random, int targetLength) {
+        int start = sb.length();
+        int sentencesInParagraph = 0;
+        while (sb.length() - start < targetLength) {
+            if (sentencesInParagraph > 0) {
+                if (random.chance(0.2)) {
+                    sb.append("\n\n");
+                    sentencesInParagraph = 0;
+                } else {
+                    sb.append(' ');
+                }
+            }
+            appendSentence(sb, random);
+            sentencesInParagraph++;
+        }
+    }
+
+    void appendSentence(StringBuilder sb, RowRandom random) {
+        int count = 5 + random.nextInt(14);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            appendWord(sb, random, i == 0);
+        }
+        sb.append('.');
+    }
+
+    private void appendWord(StringBuilder sb, RowRandom random, boolean capitalize) {
+        String word = VOCABULARY[words.sample(random) - 1];
+        if (capitalize) {
+            sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        } else {
+            sb.append(word);
+        }
+    }
+}
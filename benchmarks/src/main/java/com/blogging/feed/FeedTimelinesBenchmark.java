@@ -0,0 +1,77 @@
+package com.blogging.feed;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // FeedTimelines reads and fan-out on full in-memory timelines, without a database. A page
+ // read should cost about the same at any depth of the feed, and grow only with the number
+ // of popular (fan-out on read) authors the user follows.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedTimelinesBenchmark {
+    private static final int USERS = 5000;
+    private static final int PAGE = 20;
+
+    @Param({"0", "5"})
+    private int popularFollowed;
+
+    private FeedTimelines timelines;
+    private int[] followers;
+    private int nextPostId;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        timelines = new FeedTimelines(null, null, null, Integer.MAX_VALUE, USERS);
+        // Popular authors are users 1..popularFollowed; every user follows all of them
+        int[] followees = new int[popularFollowed];
+        for (int i = 0; i < popularFollowed; i++) {
+            int authorId = i + 1;
+            followees[i] = authorId;
+            timelines.installPopularAuthor(authorId, newestFirst(random, 1_000_000, FeedTimelines.CAPACITY));
+        }
+        for (int userId = 1; userId <= USERS; userId++) {
+            timelines.install(userId, newestFirst(random, 1_000_000, FeedTimelines.CAPACITY), followees);
+        }
+        followers = new int[1000];
+        for (int i = 0; i < followers.length; i++) {
+            followers[i] = 1 + random.nextInt(USERS);
+        }
+        nextPostId = 1_000_000;
+    }
+
+    @Benchmark
+    public int[] firstPage() throws Exception {
+        return timelines.page(1 + random.nextInt(USERS), Integer.MAX_VALUE, PAGE);
+    }
+
+    @Benchmark
+    public int[] deepPage() throws Exception {
+        return timelines.page(1 + random.nextInt(USERS), 500_000, PAGE);
+    }
+
+    @Benchmark
+    public void fanOutToThousandFollowers() {
+        timelines.pushToFollowers(USERS + 1, ++nextPostId, followers);
+    }
+
+    // Distinct ids below max, newest first
+    private static int[] newestFirst(Random random, int max, int count) {
+        int[] ids = new int[count];
+        int id = max;
+        for (int i = 0; i < count; i++) {
+            id -= 1 + random.nextInt(2 * max / count - 1);
+            ids[i] = id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,224 @@
+package com.blogging.loadtest;
+
+import com.blogging.service.CommentService;
+import com.blogging.service.PostService;
+import com.blogging.service.ReviewService;
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+ // Headless load generator over the service layer.
+ //
+ // Open model (--rate > 0): requests are scheduled at fixed intervals and latency is measured
+ // from the *intended* start time, so time spent queued behind a slow request counts against
+ // the system (no coordinated omission). Closed model (--rate=0): --threads clients issue
+ // requests back to back, which shows peak throughput but hides queueing.
+ //
+ //   java -cp benchmarks.jar com.blogging.loadtest.LoadTest --rate=500 --threads=64 --duration=120
+ //   java -cp benchmarks.jar com.blogging.loadtest.LoadTest --virtual-threads --rate=2000
+ //
+ // Ids are drawn from the current tables; DataGenerator users (user<N>/password123) can log in.
+
+public class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final LoadTestConfig config;
+    private final PostService postService = new PostService();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final AtomicLong maxActiveConnections = new AtomicLong();
+    private final AtomicLong maxWaitingThreads = new AtomicLong();
+    private Workload workload;
+    private volatile long measureFromNanos;
+
+    public LoadTest(LoadTestConfig config) {
+        this.config = config;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        logger.info("Starting load test: {}", config);
+        try {
+            new LoadTest(config).run();
+        } finally {
+            DatabaseConnection.close();
+        }
+    }
+
+    public void run() throws SQLException, InterruptedException {
+        int[] maxIds = loadMaxIds();
+        workload = new Workload(config, postService, new CommentService(), new ReviewService(),
+                maxIds[0], maxIds[1], maxIds[2]);
+
+        ExecutorService executor = createExecutor();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(this::samplePool, 0, 100, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        measureFromNanos = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        long end = measureFromNanos + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        SplittableRandom random = new SplittableRandom(config.seed);
+
+        if (config.openModel()) {
+            dispatchOpenModel(executor, random, start, end);
+        } else {
+            for (int i = 0; i < config.threads; i++) {
+                SplittableRandom workerRandom = random.split();
+                executor.execute(() -> {
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        runOperation(workload.next(workerRandom), now, workerRandom);
+                    }
+                });
+            }
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+            logger.warn("Requests still running 60s after the end of the test, abandoning them");
+            executor.shutdownNow();
+        }
+        sampler.shutdownNow();
+
+        printReport((System.nanoTime() - measureFromNanos) / 1e9);
+    }
+
+    private void dispatchOpenModel(ExecutorService executor, SplittableRandom random, long start, long end) {
+        long intervalNanos = (long) (1e9 / config.rate);
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) break;
+            long delay;
+            while ((delay = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Operation operation = workload.next(random);
+            SplittableRandom taskRandom = random.split();
+            executor.execute(() -> runOperation(operation, intended, taskRandom));
+        }
+    }
+
+    private void runOperation(Operation operation, long intendedStart, SplittableRandom random) {
+        OperationStats operationStats = stats.get(operation);
+        long actualStart = System.nanoTime();
+        try {
+            boolean accepted = workload.execute(operation, random);
+            if (!accepted && intendedStart >= measureFromNanos) {
+                operationStats.rejected.incrementAndGet();
+            }
+        } catch (Exception e) {
+            if (intendedStart >= measureFromNanos) {
+                operationStats.errors.computeIfAbsent(e.getClass().getSimpleName(), k -> new AtomicLong())
+                        .incrementAndGet();
+            }
+            logger.debug("{} failed", operation, e);
+        }
+        long finished = System.nanoTime();
+        if (intendedStart >= measureFromNanos) {
+            operationStats.responseTime.recordNanos(finished - intendedStart);
+            operationStats.serviceTime.recordNanos(finished - actualStart);
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        if (config.virtualThreads) {
+            try {
+                // Java 21+; looked up reflectively because the project targets Java 11
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual threads are not available on this JVM, using {} platform threads", config.threads);
+            }
+        }
+        return Executors.newFixedThreadPool(config.threads);
+    }
+
+    private void samplePool() {
+        Map<String, Object> pool = DatabaseConnection.getPoolStats();
+        maxActiveConnections.accumulateAndGet(((Number) pool.getOrDefault("activeConnections", 0)).longValue(), Math::max);
+        maxWaitingThreads.accumulateAndGet(((Number) pool.getOrDefault("threadsAwaitingConnection", 0)).longValue(), Math::max);
+    }
+
+    private int[] loadMaxIds() throws SQLException {
+        String sql = "SELECT (SELECT COALESCE(MAX(user_id), 0) FROM users), " +
+                    "(SELECT COALESCE(MAX(post_id), 0) FROM posts), " +
+                    "(SELECT COALESCE(MAX(comment_id), 0) FROM comments)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3)};
+        }
+    }
+
+    private void printReport(double seconds) {
+        System.out.printf("%nMeasured %.1fs (%s)%n", seconds, config);
+        System.out.println("Response time is measured from the intended start (includes queueing); "
+                + "service time from the actual start. Latencies in ms.");
+        System.out.printf("%-14s %9s %9s %8s %8s | %8s %8s %8s %8s %9s | %8s %8s%n",
+                "operation", "count", "ops/s", "rejected", "errors",
+                "p50", "p90", "p99", "p99.9", "max", "svc p50", "svc p99");
+
+        long totalCount = 0;
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            long count = s.responseTime.count();
+            if (count == 0) continue;
+            totalCount += count;
+            long errors = s.errors.values().stream().mapToLong(AtomicLong::get).sum();
+            StringBuilder row = new StringBuilder(String.format("%-14s %9d %9.1f %8d %8d |",
+                    entry.getKey(), count, count / seconds, s.rejected.get(), errors));
+            for (double p : PERCENTILES) {
+                row.append(String.format(" %8.2f", s.responseTime.percentileMicros(p) / 1000.0));
+            }
+            row.append(String.format(" %9.2f | %8.2f %8.2f", s.responseTime.maxMicros() / 1000.0,
+                    s.serviceTime.percentileMicros(50) / 1000.0, s.serviceTime.percentileMicros(99) / 1000.0));
+            System.out.println(row);
+            s.errors.forEach((type, n) -> System.out.printf("    %-40s %d%n", type, n.get()));
+        }
+        System.out.printf("Total throughput: %.1f ops/s%n", totalCount / seconds);
+
+        Map<String, Object> pool = DatabaseConnection.getPoolStats();
+        System.out.printf("Connection pool: max size %s, peak active %d, peak threads waiting %d%n",
+                pool.get("maximumPoolSize"), maxActiveConnections.get(), maxWaitingThreads.get());
+        if (maxWaitingThreads.get() > 0) {
+            System.out.println("  -> threads queued for connections: the pool is saturated at this load");
+        }
+
+        // PostService counts hits and misses without synchronization; lost updates show up here
+        Map<String, Object> cache = postService.getCacheStats();
+        long counted = ((Number) cache.get("cacheHits")).longValue() + ((Number) cache.get("cacheMisses")).longValue();
+        long calls = workload.getPostCalls();
+        System.out.printf("PostService cache: size %s, hit rate %s, getPost calls %d, counted hits+misses %d%n",
+                cache.get("cacheSize"), cache.get("hitRate"), calls, counted);
+        if (counted != calls) {
+            System.out.printf("  -> %d cache counter updates lost: PostService cache is not thread-safe%n",
+                    calls - counted);
+        }
+    }
+
+    private static final class OperationStats {
+        final LatencyHistogram responseTime = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final AtomicLong rejected = new AtomicLong();
+        final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    }
+}
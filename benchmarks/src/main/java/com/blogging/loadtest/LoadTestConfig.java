@@ -0,0 +1,87 @@
+package com.blogging.loadtest;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+
+ // Command line options of the load test (--name=value).
+
+final class LoadTestConfig {
+    private static final String DEFAULT_MIX =
+            "login:5,getPosts:30,getPost:40,searchPosts:10,createComment:8,likeComment:5,createReview:2";
+
+    final int threads;
+    final boolean virtualThreads;
+    final double rate;
+    final int durationSeconds;
+    final int warmupSeconds;
+    final long seed;
+    final String usernamePattern;
+    final String password;
+    final Map<Operation, Integer> mix;
+
+    private LoadTestConfig(Map<String, String> options) {
+        threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        virtualThreads = Boolean.parseBoolean(options.getOrDefault("virtual-threads", "false"));
+        rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        usernamePattern = options.getOrDefault("username-pattern", "user%d");
+        password = options.getOrDefault("password", "password123");
+        mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+
+        if (threads < 1 || durationSeconds < 1 || rate < 0) {
+            throw new IllegalArgumentException("threads and duration must be positive, rate must not be negative");
+        }
+    }
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return new LoadTestConfig(options);
+    }
+
+
+     // True for the open model: requests arrive at a fixed rate whether or not earlier ones finished.
+
+    boolean openModel() {
+        return rate > 0;
+    }
+
+    private static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                mix.put(Operation.fromName(parts[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Operation mix is empty");
+        }
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("threads=%d virtualThreads=%s rate=%s duration=%ds warmup=%ds seed=%d mix=%s",
+                threads, virtualThreads, openModel() ? rate + "/s" : "closed-loop",
+                durationSeconds, warmupSeconds, seed, mix);
+    }
+}
@@ -0,0 +1,38 @@
+package com.blogging.loadtest;
+
+
+ // Service-layer operations the load test can issue.
+
+enum Operation {
+    LOGIN("login"),
+    GET_POSTS("getPosts"),
+    GET_POST("getPost"),
+    SEARCH_POSTS("searchPosts"),
+    CREATE_COMMENT("createComment"),
+    LIKE_COMMENT("likeComment"),
+    CREATE_REVIEW("createReview");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    static Operation fromName(String name) {
+        for (Operation operation : values()) {
+            if (operation.label.equalsIgnoreCase(name) || operation.name().equalsIgnoreCase(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,193 @@
+package com.blogging.loadtest;
+
+import com.blogging.trace.TraceReader;
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+ // Replays a DAO trace recorded with db.trace.file against the configured database and
+ // compares replayed latencies with the recorded ones, per DAO method.
+ //
+ //   java -Ddb.url=jdbc:postgresql://localhost:5432/blogging_copy \
+ //        -cp benchmarks.jar com.blogging.loadtest.TraceReplay --trace=prod.trace --speed=2
+ //
+ // Statements are issued at their recorded offsets divided by --speed (--speed=0 replays as fast
+ // as --threads allow). Latency is measured from the scheduled time, like the open-model load test.
+ // Writes are replayed too unless --read-only is given, so point it at a disposable copy.
+
+public class TraceReplay {
+    private static final Logger logger = LoggerFactory.getLogger(TraceReplay.class);
+
+    private final Path traceFile;
+    private final double speed;
+    private final int threads;
+    private final boolean readOnly;
+    private final Map<String, MethodStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public TraceReplay(Path traceFile, double speed, int threads, boolean readOnly) {
+        if (speed < 0 || threads < 1) {
+            throw new IllegalArgumentException("speed must not be negative and threads must be positive");
+        }
+        this.traceFile = traceFile;
+        this.speed = speed;
+        this.threads = threads;
+        this.readOnly = readOnly;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String trace = null;
+        double speed = 1.0;
+        int threads = 16;
+        boolean readOnly = false;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "true" : arg.substring(eq + 1);
+            switch (name) {
+                case "--trace": trace = value; break;
+                case "--speed": speed = Double.parseDouble(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--read-only": readOnly = Boolean.parseBoolean(value); break;
+                default: throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+        }
+        if (trace == null) {
+            throw new IllegalArgumentException("--trace=<file> is required");
+        }
+        try {
+            new TraceReplay(Paths.get(trace), speed, threads, readOnly).run();
+        } finally {
+            DatabaseConnection.close();
+        }
+    }
+
+    public void run() throws IOException, InterruptedException {
+        logger.info("Replaying {} (speed={}, threads={}, readOnly={})", traceFile,
+                speed == 0 ? "max" : speed, threads, readOnly);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // Bounds the backlog when replaying as fast as possible, so the trace is streamed, not loaded
+        Semaphore inFlight = new Semaphore(threads * 4);
+        long start = System.nanoTime();
+
+        try (TraceReader reader = new TraceReader(traceFile)) {
+            TraceReader.Execution execution;
+            while ((execution = reader.next()) != null) {
+                if (readOnly && !isQuery(execution.getSql())) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                long due = speed == 0 ? System.nanoTime()
+                        : start + (long) (execution.getStartMicros() * 1_000 / speed);
+                long delay;
+                while ((delay = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                inFlight.acquire();
+                TraceReader.Execution task = execution;
+                executor.execute(() -> {
+                    try {
+                        replay(task, due);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+            logger.warn("Statements still running 60s after the end of the trace, abandoning them");
+            executor.shutdownNow();
+        }
+        printReport((System.nanoTime() - start) / 1e9);
+    }
+
+    private void replay(TraceReader.Execution execution, long due) {
+        MethodStats methodStats = stats.computeIfAbsent(execution.getMethod(), k -> new MethodStats());
+        methodStats.recorded.recordNanos(execution.getLatencyMicros() * 1_000);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(execution.getSql())) {
+            bind(conn, stmt, execution.getParams());
+            if (stmt.execute()) {
+                try (ResultSet rs = stmt.getResultSet()) {
+                    int columns = rs.getMetaData().getColumnCount();
+                    while (rs.next()) {
+                        for (int i = 1; i <= columns; i++) {
+                            rs.getObject(i);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            methodStats.errors.incrementAndGet();
+            logger.debug("Replay of {} failed", execution.getMethod(), e);
+        }
+        methodStats.replayed.recordNanos(System.nanoTime() - due);
+    }
+
+    private static void bind(Connection conn, PreparedStatement stmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object value = params[i];
+            if (value == null) {
+                stmt.setNull(i + 1, Types.NULL);
+            } else if (value instanceof Timestamp) {
+                stmt.setTimestamp(i + 1, (Timestamp) value);
+            } else if (value instanceof int[]) {
+                Integer[] elements = Arrays.stream((int[]) value).boxed().toArray(Integer[]::new);
+                stmt.setArray(i + 1, conn.createArrayOf("integer", elements));
+            } else {
+                stmt.setObject(i + 1, value);
+            }
+        }
+    }
+
+    private static boolean isQuery(String sql) {
+        String head = sql.stripLeading().toUpperCase();
+        return head.startsWith("SELECT") || head.startsWith("WITH");
+    }
+
+    private void printReport(double seconds) {
+        System.out.printf("%nReplayed %s in %.1fs (speed %s), %d writes skipped. Latencies in ms.%n",
+                traceFile, seconds, speed == 0 ? "max" : speed, skipped.get());
+        System.out.printf("%-36s %9s %7s | %9s %9s | %9s %9s %9s%n",
+                "DAO method", "count", "errors", "rec p50", "rec p99", "rep p50", "rep p99", "p99 diff");
+        for (Map.Entry<String, MethodStats> entry : new TreeMap<>(stats).entrySet()) {
+            MethodStats s = entry.getValue();
+            double recordedP99 = s.recorded.percentileMicros(99) / 1000.0;
+            double replayedP99 = s.replayed.percentileMicros(99) / 1000.0;
+            System.out.printf("%-36s %9d %7d | %9.2f %9.2f | %9.2f %9.2f %+8.0f%%%n",
+                    entry.getKey(), s.replayed.count(), s.errors.get(),
+                    s.recorded.percentileMicros(50) / 1000.0, recordedP99,
+                    s.replayed.percentileMicros(50) / 1000.0, replayedP99,
+                    recordedP99 > 0 ? (replayedP99 / recordedP99 - 1) * 100 : 0.0);
+        }
+    }
+
+    private static final class MethodStats {
+        final LatencyHistogram recorded = new LatencyHistogram();
+        final LatencyHistogram replayed = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+    }
+}
@@ -0,0 +1,130 @@
+package com.blogging.loadtest;
+
+import com.blogging.model.Comment;
+import com.blogging.model.Review;
+import com.blogging.service.CommentService;
+import com.blogging.service.PostService;
+import com.blogging.service.ReviewService;
+import com.blogging.service.UserService;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+ // Picks operations according to the configured mix and runs them against shared service instances,
+ // the same way every controller in a running client shares one PostService.
+
+final class Workload {
+    private static final String[] KEYWORDS = {"database", "java", "performance", "index", "cache", "thread", "review"};
+    private static final int PAGE_SIZE = 10;
+
+    private final LoadTestConfig config;
+    private final PostService postService;
+    private final CommentService commentService;
+    private final ReviewService reviewService;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+    private final int maxUserId;
+    private final int maxPostId;
+    private final int maxCommentId;
+    private final AtomicLong getPostCalls = new AtomicLong();
+
+    Workload(LoadTestConfig config, PostService postService, CommentService commentService,
+             ReviewService reviewService, int maxUserId, int maxPostId, int maxCommentId) {
+        this.config = config;
+        this.postService = postService;
+        this.commentService = commentService;
+        this.reviewService = reviewService;
+        this.maxUserId = Math.max(1, maxUserId);
+        this.maxPostId = Math.max(1, maxPostId);
+        this.maxCommentId = Math.max(1, maxCommentId);
+
+        operations = new Operation[config.mix.size()];
+        cumulativeWeights = new int[config.mix.size()];
+        int i = 0;
+        int sum = 0;
+        for (Map.Entry<Operation, Integer> entry : config.mix.entrySet()) {
+            sum += entry.getValue();
+            operations[i] = entry.getKey();
+            cumulativeWeights[i] = sum;
+            i++;
+        }
+        totalWeight = sum;
+    }
+
+    Operation next(SplittableRandom random) {
+        int pick = random.nextInt(totalWeight);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+
+     // Runs one operation; business-rule rejections (IllegalArgumentException) are not failures.
+
+    boolean execute(Operation operation, SplittableRandom random) throws SQLException {
+        try {
+            switch (operation) {
+                case LOGIN:
+                    // One UserService per simulated client session, as each desktop client has its own
+                    new UserService().login(String.format(config.usernamePattern, userId(random)), config.password);
+                    break;
+                case GET_POSTS:
+                    postService.getPosts(1 + skewed(random, 50), PAGE_SIZE);
+                    break;
+                case GET_POST:
+                    getPostCalls.incrementAndGet();
+                    postService.getPost(hotPostId(random));
+                    break;
+                case SEARCH_POSTS:
+                    postService.searchPosts(KEYWORDS[random.nextInt(KEYWORDS.length)]);
+                    break;
+                case CREATE_COMMENT:
+                    commentService.createComment(new Comment(hotPostId(random), userId(random),
+                            "Load test comment " + random.nextInt(1_000_000)));
+                    break;
+                case LIKE_COMMENT:
+                    commentService.likeComment(userId(random), 1 + random.nextInt(maxCommentId));
+                    break;
+                case CREATE_REVIEW:
+                    reviewService.createReview(new Review(hotPostId(random), userId(random),
+                            1 + random.nextInt(5), "Load test review"));
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled operation " + operation);
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    long getPostCalls() {
+        return getPostCalls.get();
+    }
+
+    private int userId(SplittableRandom random) {
+        return 1 + random.nextInt(maxUserId);
+    }
+
+
+     // Most reads hit a small hot set, so the PostService cache sees realistic reuse.
+
+    private int hotPostId(SplittableRandom random) {
+        if (random.nextInt(100) < 80) {
+            return 1 + random.nextInt(Math.min(maxPostId, 1000));
+        }
+        return 1 + random.nextInt(maxPostId);
+    }
+
+    private static int skewed(SplittableRandom random, int bound) {
+        double u = random.nextDouble();
+        return (int) (bound * u * u * u);
+    }
+}
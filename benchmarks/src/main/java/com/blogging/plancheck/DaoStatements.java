@@ -0,0 +1,270 @@
+package com.blogging.plancheck;
+
+import com.blogging.dao.CommentDAO;
+import com.blogging.dao.DashboardDAO;
+import com.blogging.dao.FeedDAO;
+import com.blogging.dao.FollowDAO;
+import com.blogging.dao.PostDAO;
+import com.blogging.dao.PostSignatureDAO;
+import com.blogging.dao.ReviewDAO;
+import com.blogging.dao.SpamRuleDAO;
+import com.blogging.dao.TagDAO;
+import com.blogging.dao.UserDAO;
+import com.blogging.dao.UserPurgeDAO;
+import com.blogging.model.Comment;
+import com.blogging.model.Post;
+import com.blogging.model.Review;
+import com.blogging.model.SpamRule;
+import com.blogging.model.Tag;
+import com.blogging.model.User;
+import com.blogging.model.UserSummary;
+import com.blogging.util.QueryCanceller;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+ // Registry of DAO calls checked by PlanCheck. Every public DAO method that issues SQL
+ // should be listed here; new DAO methods are not covered until they are registered.
+ //
+ // Arguments are chosen to hit the expensive end of the data: the post with the most
+ // comments, the user with the most posts, the most used tag.
+
+final class DaoStatements {
+
+    private DaoStatements() {
+    }
+
+    static List<DaoCall> all(SampleIds ids) {
+        PostDAO postDAO = new PostDAO();
+        UserDAO userDAO = new UserDAO();
+        UserPurgeDAO userPurgeDAO = new UserPurgeDAO();
+        CommentDAO commentDAO = new CommentDAO();
+        PostSignatureDAO postSignatureDAO = new PostSignatureDAO();
+        ReviewDAO reviewDAO = new ReviewDAO();
+        SpamRuleDAO spamRuleDAO = new SpamRuleDAO();
+        TagDAO tagDAO = new TagDAO();
+        FollowDAO followDAO = new FollowDAO();
+        FeedDAO feedDAO = new FeedDAO();
+        DashboardDAO dashboardDAO = new DashboardDAO();
+        LocalDateTime now = LocalDateTime.now();
+        List<DaoCall> calls = new ArrayList<>();
+
+        calls.add(new DaoCall("PostDAO.create", () -> postDAO.create(new Post(ids.userId, "Plan check", "Plan check body"))));
+        calls.add(new DaoCall("PostDAO.findById", () -> postDAO.findById(ids.postId)));
+        calls.add(new DaoCall("PostDAO.findPreviewById", () -> postDAO.findPreviewById(ids.postId, 64 * 1024)));
+        calls.add(new DaoCall("PostDAO.findContentChunk", () -> postDAO.findContentChunk(ids.postId, 64 * 1024, 64 * 1024)));
+        calls.add(new DaoCall("PostDAO.findByUser", () -> postDAO.findByUser(ids.userId)));
+        calls.add(new DaoCall("PostDAO.search", () -> postDAO.search("database")));
+        calls.add(new DaoCall("PostDAO.search.limited", () -> postDAO.search("database", 100, new QueryCanceller())));
+        calls.add(new DaoCall("PostDAO.findByTag", () -> postDAO.findByTag(ids.tagId)));
+        calls.add(new DaoCall("PostDAO.findAll", () -> postDAO.findAll(20, 0)));
+        calls.add(new DaoCall("PostDAO.findAll.deepPage", () -> postDAO.findAll(20, 10_000)));
+        calls.add(new DaoCall("PostDAO.findAllAfter", () -> postDAO.findAllAfter(postDAO.findById(ids.postId), 100)));
+        calls.add(new DaoCall("PostDAO.update", () -> postDAO.update(
+                new Post(ids.postId, ids.userId, "Plan check", "Plan check body", now, now, 0))));
+        calls.add(new DaoCall("PostDAO.delete", () -> postDAO.delete(ids.postId)));
+        calls.add(new DaoCall("PostDAO.incrementViewCount", () -> postDAO.incrementViewCount(ids.postId)));
+        calls.add(new DaoCall("PostDAO.getTotalCount", postDAO::getTotalCount));
+        calls.add(new DaoCall("PostDAO.getMostViewed", () -> postDAO.getMostViewed(10)));
+        calls.add(new DaoCall("PostDAO.forEachText", () -> postDAO.forEachText((postId, title, content) -> { })));
+        calls.add(new DaoCall("PostDAO.findByIds", () -> postDAO.findByIds(new int[]{ids.postId, ids.postId - 1, ids.postId + 1})));
+        calls.add(new DaoCall("PostDAO.findRecentIdsByUser", () -> postDAO.findRecentIdsByUser(ids.userId, 500)));
+
+        calls.add(new DaoCall("UserDAO.create", () -> userDAO.create(new User(null, "plancheck_" + System.nanoTime(),
+                "plancheck_" + System.nanoTime() + "@example.com", "x", now))));
+        calls.add(new DaoCall("UserDAO.findById", () -> userDAO.findById(ids.userId)));
+        calls.add(new DaoCall("UserDAO.findByUsername", () -> userDAO.findByUsername(ids.username)));
+        calls.add(new DaoCall("UserDAO.findByEmail", () -> userDAO.findByEmail(ids.email)));
+        calls.add(new DaoCall("UserDAO.findAll", userDAO::findAll));
+        calls.add(new DaoCall("UserDAO.update", () -> userDAO.update(
+                new User(ids.userId, ids.username, ids.email, "x", now))));
+        calls.add(new DaoCall("UserDAO.updatePasswordHash", () -> userDAO.updatePasswordHash(ids.userId, "x", "x")));
+        calls.add(new DaoCall("UserDAO.delete", () -> userDAO.delete(ids.userId)));
+        calls.add(new DaoCall("UserDAO.usernameExists", () -> userDAO.usernameExists(ids.username)));
+        calls.add(new DaoCall("UserDAO.emailExists", () -> userDAO.emailExists(ids.email)));
+        calls.add(new DaoCall("UserDAO.getTotalCount", userDAO::getTotalCount));
+        calls.add(new DaoCall("UserDAO.forEachIdentity", () -> userDAO.forEachIdentity((username, email) -> { })));
+        calls.add(new DaoCall("UserDAO.findSummaries", () -> userDAO.findSummaries(
+                null, null, UserSummary.SortOrder.NEWEST, null, 51)));
+        calls.add(new DaoCall("UserDAO.findSummaries.prefix", () -> userDAO.findSummaries(
+                "a", null, UserSummary.SortOrder.USERNAME, null, 51)));
+        calls.add(new DaoCall("UserDAO.findSummaries.deepPage", () -> {
+            UserSummary after = new UserSummary(ids.userId, ids.username, ids.email, "USER", now.minusDays(30));
+            userDAO.findSummaries(null, "USER", UserSummary.SortOrder.EMAIL, after, 51);
+        }));
+        calls.add(new DaoCall("UserDAO.updateRoles", () -> userDAO.updateRoles(new int[]{ids.userId, ids.userId + 1}, "USER")));
+
+        calls.add(new DaoCall("UserPurgeDAO.markForPurge", () -> userPurgeDAO.markForPurge(new int[]{ids.userId})));
+        calls.add(new DaoCall("UserPurgeDAO.findPending", userPurgeDAO::findPending));
+        for (UserPurgeDAO.Step step : UserPurgeDAO.Step.values()) {
+            calls.add(new DaoCall("UserPurgeDAO.deleteChunk." + step, () -> userPurgeDAO.deleteChunk(step, ids.userId, 500)));
+        }
+        calls.add(new DaoCall("UserPurgeDAO.deletePosts", () -> userPurgeDAO.deletePosts(ids.userId, 500)));
+        calls.add(new DaoCall("UserPurgeDAO.deleteUser", () -> userPurgeDAO.deleteUser(ids.userId)));
+
+        calls.add(new DaoCall("CommentDAO.create", () -> commentDAO.create(new Comment(ids.postId, ids.userId, "Plan check"))));
+        calls.add(new DaoCall("CommentDAO.findById", () -> commentDAO.findById(ids.commentId)));
+        calls.add(new DaoCall("CommentDAO.findByPost", () -> commentDAO.findByPost(ids.postId)));
+        calls.add(new DaoCall("CommentDAO.findThreads", () -> commentDAO.findThreads(ids.postId, "", 20, 10, ids.userId)));
+        calls.add(new DaoCall("CommentDAO.findSubtree", () -> {
+            Comment comment = commentDAO.findById(ids.commentId);
+            commentDAO.findSubtree(comment.getPostId(), comment.getPath(), comment.getPath(), 200, ids.userId);
+        }));
+        calls.add(new DaoCall("CommentDAO.findByUser", () -> commentDAO.findByUser(ids.userId)));
+        calls.add(new DaoCall("CommentDAO.update", () -> commentDAO.update(
+                new Comment(ids.commentId, ids.postId, ids.userId, "Plan check", now))));
+        calls.add(new DaoCall("CommentDAO.delete", () -> commentDAO.delete(ids.commentId)));
+        calls.add(new DaoCall("CommentDAO.getCommentCountByPost", () -> commentDAO.getCommentCountByPost(ids.postId)));
+        calls.add(new DaoCall("CommentDAO.likeComment", () -> commentDAO.likeComment(ids.userId, ids.commentId)));
+        calls.add(new DaoCall("CommentDAO.unlikeComment", () -> commentDAO.unlikeComment(ids.userId, ids.commentId)));
+        calls.add(new DaoCall("CommentDAO.hasUserLiked", () -> commentDAO.hasUserLiked(ids.userId, ids.commentId)));
+        calls.add(new DaoCall("CommentDAO.findPending", () -> commentDAO.findPending(256)));
+        calls.add(new DaoCall("CommentDAO.updateModeration", () -> {
+            Comment comment = new Comment(ids.commentId, ids.postId, ids.userId, "Plan check", now);
+            comment.setStatus(Comment.STATUS_APPROVED);
+            comment.setSpamScore(0.1);
+            commentDAO.updateModeration(Collections.singletonList(comment));
+        }));
+        calls.add(new DaoCall("CommentDAO.findCreatedSince", () -> commentDAO.findCreatedSince(now.minusHours(6), 100_000)));
+        calls.add(new DaoCall("CommentDAO.updateStatus", () -> commentDAO.updateStatus(ids.commentId, Comment.STATUS_SPAM)));
+
+        calls.add(new DaoCall("PostSignatureDAO.upsert", () -> postSignatureDAO.upsert(
+                Collections.singletonMap(ids.postId, new byte[400]))));
+        calls.add(new DaoCall("PostSignatureDAO.forEach", () -> postSignatureDAO.forEach((postId, signature) -> { })));
+        calls.add(new DaoCall("PostSignatureDAO.findUnsigned", () -> postSignatureDAO.findUnsigned(0, 500)));
+        calls.add(new DaoCall("PostSignatureDAO.delete", () -> postSignatureDAO.delete(ids.postId)));
+        calls.add(new DaoCall("PostSignatureDAO.deleteAll", postSignatureDAO::deleteAll));
+
+        calls.add(new DaoCall("SpamRuleDAO.create", () -> spamRuleDAO.create(new SpamRule("plancheck", true))));
+        calls.add(new DaoCall("SpamRuleDAO.findEnabled", spamRuleDAO::findEnabled));
+        calls.add(new DaoCall("SpamRuleDAO.setEnabled", () -> spamRuleDAO.setEnabled(1, false)));
+        calls.add(new DaoCall("SpamRuleDAO.delete", () -> spamRuleDAO.delete(1)));
+        calls.add(new DaoCall("SpamRuleDAO.getVersion", spamRuleDAO::getVersion));
+
+        calls.add(new DaoCall("ReviewDAO.create", () -> reviewDAO.create(new Review(ids.postId, ids.userId, 5, "Plan check"))));
+        calls.add(new DaoCall("ReviewDAO.findById", () -> reviewDAO.findById(ids.reviewId)));
+        calls.add(new DaoCall("ReviewDAO.findByPost", () -> reviewDAO.findByPost(ids.postId)));
+        calls.add(new DaoCall("ReviewDAO.findByUser", () -> reviewDAO.findByUser(ids.userId)));
+        calls.add(new DaoCall("ReviewDAO.update", () -> reviewDAO.update(
+                new Review(ids.reviewId, ids.postId, ids.userId, 4, "Plan check", now))));
+        calls.add(new DaoCall("ReviewDAO.delete", () -> reviewDAO.delete(ids.reviewId)));
+        calls.add(new DaoCall("ReviewDAO.getAverageRating", () -> reviewDAO.getAverageRating(ids.postId)));
+        calls.add(new DaoCall("ReviewDAO.getReviewCountByPost", () -> reviewDAO.getReviewCountByPost(ids.postId)));
+        calls.add(new DaoCall("ReviewDAO.hasUserReviewedPost", () -> reviewDAO.hasUserReviewedPost(ids.userId, ids.postId)));
+
+        calls.add(new DaoCall("TagDAO.create", () -> tagDAO.create(new Tag("plancheck_" + System.nanoTime()))));
+        calls.add(new DaoCall("TagDAO.findById", () -> tagDAO.findById(ids.tagId)));
+        calls.add(new DaoCall("TagDAO.findByName", () -> tagDAO.findByName(ids.tagName)));
+        calls.add(new DaoCall("TagDAO.findAll", tagDAO::findAll));
+        calls.add(new DaoCall("TagDAO.findTagsByPost", () -> tagDAO.findTagsByPost(ids.postId)));
+        calls.add(new DaoCall("TagDAO.addTagToPost", () -> tagDAO.addTagToPost(ids.postId, ids.tagId)));
+        calls.add(new DaoCall("TagDAO.removeTagFromPost", () -> tagDAO.removeTagFromPost(ids.postId, ids.tagId)));
+        calls.add(new DaoCall("TagDAO.delete", () -> tagDAO.delete(ids.tagId)));
+        calls.add(new DaoCall("TagDAO.getPopularTags", () -> tagDAO.getPopularTags(10)));
+        calls.add(new DaoCall("TagDAO.forEachPostTag", () -> tagDAO.forEachPostTag((postId, tagId) -> { })));
+
+        calls.add(new DaoCall("FollowDAO.follow", () -> followDAO.follow(ids.userId, ids.authorId)));
+        calls.add(new DaoCall("FollowDAO.isFollowing", () -> followDAO.isFollowing(ids.userId, ids.authorId)));
+        calls.add(new DaoCall("FollowDAO.countFollowers", () -> followDAO.countFollowers(ids.authorId)));
+        calls.add(new DaoCall("FollowDAO.findFolloweeIds", () -> followDAO.findFolloweeIds(ids.userId)));
+        calls.add(new DaoCall("FollowDAO.findAuthorsWithFollowers", () -> followDAO.findAuthorsWithFollowers(5000)));
+        calls.add(new DaoCall("FollowDAO.unfollow", () -> followDAO.unfollow(ids.userId, ids.authorId)));
+
+        calls.add(new DaoCall("FeedDAO.fanOut", () -> feedDAO.fanOut(ids.authorId, ids.postId)));
+        calls.add(new DaoCall("FeedDAO.findPostIds", () -> feedDAO.findPostIds(ids.userId, 501)));
+        calls.add(new DaoCall("FeedDAO.addAuthorPosts", () -> feedDAO.addAuthorPosts(ids.userId, ids.authorId, 500)));
+        calls.add(new DaoCall("FeedDAO.removeAuthorPosts", () -> feedDAO.removeAuthorPosts(ids.userId, ids.authorId)));
+        calls.add(new DaoCall("FeedDAO.trim", () -> feedDAO.trim(ids.userId, ids.postId)));
+
+        calls.add(new DaoCall("DashboardDAO.loadCounts", dashboardDAO::loadCounts));
+        return calls;
+    }
+
+
+     // One registered DAO call.
+
+    static final class DaoCall {
+        final String name;
+        final SqlAction action;
+
+        DaoCall(String name, SqlAction action) {
+            this.name = name;
+            this.action = action;
+        }
+    }
+
+    @FunctionalInterface
+    interface SqlAction {
+        void run() throws SQLException;
+    }
+
+
+     // Representative ids looked up from the current data before the check runs.
+
+    static final class SampleIds {
+        final int userId;
+        final String username;
+        final String email;
+        final int postId;
+        final int commentId;
+        final int reviewId;
+        final int tagId;
+        final String tagName;
+        final int authorId;
+
+        private SampleIds(int userId, String username, String email, int postId, int commentId,
+                          int reviewId, int tagId, String tagName, int authorId) {
+            this.userId = userId;
+            this.username = username;
+            this.email = email;
+            this.postId = postId;
+            this.commentId = commentId;
+            this.reviewId = reviewId;
+            this.tagId = tagId;
+            this.tagName = tagName;
+            this.authorId = authorId;
+        }
+
+        static SampleIds load(Connection conn) throws SQLException {
+            int userId = queryInt(conn, "SELECT user_id FROM posts GROUP BY user_id ORDER BY COUNT(*) DESC LIMIT 1");
+            int postId = queryInt(conn, "SELECT post_id FROM comments GROUP BY post_id ORDER BY COUNT(*) DESC LIMIT 1");
+            int tagId = queryInt(conn, "SELECT tag_id FROM post_tags GROUP BY tag_id ORDER BY COUNT(*) DESC LIMIT 1");
+            int commentId = queryInt(conn, "SELECT MIN(comment_id) FROM comments WHERE post_id = " + postId);
+            int reviewId = queryInt(conn, "SELECT MIN(review_id) FROM reviews");
+            String username = queryString(conn, "SELECT username FROM users WHERE user_id = " + userId);
+            String email = queryString(conn, "SELECT email FROM users WHERE user_id = " + userId);
+            String tagName = queryString(conn, "SELECT tag_name FROM tags WHERE tag_id = " + tagId);
+            // The most followed author, or any other user when nobody follows anyone yet
+            int authorId = queryInt(conn, "SELECT COALESCE((SELECT followee_id FROM follows WHERE followee_id <> " + userId +
+                    " GROUP BY followee_id ORDER BY COUNT(*) DESC LIMIT 1), (SELECT MIN(user_id) FROM users WHERE user_id <> " + userId + "))");
+            return new SampleIds(userId, username, email, postId, commentId, reviewId, tagId, tagName, authorId);
+        }
+
+        private static int queryInt(Connection conn, String sql) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+
+        private static String queryString(Connection conn, String sql) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                return rs.next() ? rs.getString(1) : "";
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("user=%d (%s), post=%d, comment=%d, review=%d, tag=%d (%s), author=%d",
+                    userId, username, postId, commentId, reviewId, tagId, tagName, authorId);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.blogging.plancheck;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+ // Connection decorator that EXPLAINs statements instead of running them.
+ //
+ // DAO code sees a normal connection, but every execute* call is replaced by
+ // EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) with the same bound parameters, inside a transaction
+ // that is always rolled back, and the DAO gets an empty result back. Transaction control issued
+ // by the DAO (setAutoCommit/commit/rollback) is ignored so nothing it does can be committed.
+
+final class ExplainingConnection {
+    private final long statementTimeoutMillis;
+    private final List<CapturedPlan> plans = new ArrayList<>();
+    private String currentCall;
+
+    ExplainingConnection(long statementTimeoutMillis) {
+        this.statementTimeoutMillis = statementTimeoutMillis;
+    }
+
+
+     // Start collecting plans for the named DAO call.
+
+    void begin(String call) {
+        currentCall = call;
+        plans.clear();
+    }
+
+    List<CapturedPlan> plans() {
+        return new ArrayList<>(plans);
+    }
+
+    Connection wrap(Connection real) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return preparedStatement(real, (Connection) proxy, (String) args[0]);
+                        case "createStatement":
+                            return statement(real, (Connection) proxy);
+                        case "setAutoCommit":
+                        case "commit":
+                        case "rollback":
+                        case "setSavepoint":
+                        case "releaseSavepoint":
+                            return null;
+                        case "getAutoCommit":
+                            return true;
+                        default:
+                            return invoke(real, method, args);
+                    }
+                });
+    }
+
+    private PreparedStatement preparedStatement(Connection real, Connection owner, String sql) {
+        Map<Integer, Object[]> binds = new TreeMap<>();
+        Map<Integer, Method> bindMethods = new TreeMap<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        binds.put((Integer) args[0], args);
+                        bindMethods.put((Integer) args[0], method);
+                        return null;
+                    }
+                    switch (name) {
+                        case "clearParameters":
+                            binds.clear();
+                            bindMethods.clear();
+                            return null;
+                        case "executeQuery":
+                            explain(real, sql, bindMethods, binds);
+                            return emptyResultSet();
+                        case "getResultSet":
+                        case "getGeneratedKeys":
+                            return emptyResultSet();
+                        case "executeUpdate":
+                        case "execute":
+                            explain(real, sql, bindMethods, binds);
+                            return defaultValue(method.getReturnType());
+                        case "addBatch":
+                            // One plan per statement is enough: every batch entry gets the same plan shape
+                            if (plans.stream().noneMatch(plan -> plan.sql.equals(sql))) {
+                                explain(real, sql, bindMethods, binds);
+                            }
+                            return null;
+                        case "executeBatch":
+                            return new int[0];
+                        case "getConnection":
+                            return owner;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private Statement statement(Connection real, Connection owner) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("execute") && args != null && args.length >= 1 && args[0] instanceof String) {
+                        explain(real, (String) args[0], new TreeMap<>(), new TreeMap<>());
+                        return name.equals("executeQuery") ? emptyResultSet() : defaultValue(method.getReturnType());
+                    }
+                    if (name.equals("getConnection")) return owner;
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private void explain(Connection real, String sql, Map<Integer, Method> bindMethods, Map<Integer, Object[]> binds)
+            throws SQLException {
+        real.setAutoCommit(false);
+        try {
+            try (Statement stmt = real.createStatement()) {
+                stmt.execute("SET LOCAL statement_timeout = " + statementTimeoutMillis);
+            }
+            try (PreparedStatement stmt = real.prepareStatement("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + sql)) {
+                for (Map.Entry<Integer, Method> bind : bindMethods.entrySet()) {
+                    invoke(stmt, bind.getValue(), binds.get(bind.getKey()));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    plans.add(new CapturedPlan(currentCall, plans.size() + 1, sql, rs.getString(1)));
+                }
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException("Failed to explain " + sql, e);
+        } finally {
+            real.rollback();
+            real.setAutoCommit(true);
+        }
+    }
+
+    private static ResultSet emptyResultSet() {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> defaultValue(method.getReturnType()));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0.0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return null;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+
+     // EXPLAIN output for one statement issued by a DAO call.
+
+    static final class CapturedPlan {
+        final String call;
+        final int index;
+        final String sql;
+        final String json;
+
+        CapturedPlan(String call, int index, String sql, String json) {
+            this.call = call;
+            this.index = index;
+            this.sql = sql;
+            this.json = json;
+        }
+
+        String key() {
+            return call + "." + index;
+        }
+    }
+}
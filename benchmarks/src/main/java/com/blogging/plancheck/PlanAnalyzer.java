@@ -0,0 +1,137 @@
+package com.blogging.plancheck;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+
+ // Reduces EXPLAIN (ANALYZE, FORMAT JSON) output to what the regression check compares:
+ // planner cost, a compact plan shape and a set of findings.
+ //
+ //   SEQ_SCAN(table)      sequential scan of a table with at least largeTableRows rows
+ //   SORT_SPILL           sort that spilled to disk (external merge)
+ //   HASH_SPILL           hash table split into several batches (work_mem too small)
+ //   NESTED_LOOP(table)   inner side of a nested loop executed at least nestedLoopLimit times
+ //   SUBPLAN_LOOP(table)  correlated subquery executed at least nestedLoopLimit times
+ //
+ // Finding keys carry no row counts so they stay stable across data sizes;
+ // the numbers go into the details printed with the report.
+
+final class PlanAnalyzer {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, Long> tableRows;
+    private final long largeTableRows;
+    private final long nestedLoopLimit;
+
+    PlanAnalyzer(Map<String, Long> tableRows, long largeTableRows, long nestedLoopLimit) {
+        this.tableRows = tableRows;
+        this.largeTableRows = largeTableRows;
+        this.nestedLoopLimit = nestedLoopLimit;
+    }
+
+    PlanSummary analyze(String json) throws IOException {
+        JsonNode root = MAPPER.readTree(json).get(0);
+        JsonNode plan = root.get("Plan");
+        PlanSummary summary = new PlanSummary(plan.path("Total Cost").asDouble(),
+                root.path("Execution Time").asDouble());
+        StringBuilder shape = new StringBuilder();
+        visit(plan, summary, shape);
+        summary.shape = shape.toString();
+        return summary;
+    }
+
+    private void visit(JsonNode node, PlanSummary summary, StringBuilder shape) {
+        String type = node.path("Node Type").asText();
+        String relation = node.path("Relation Name").asText(null);
+        long loops = node.path("Actual Loops").asLong(1);
+
+        shape.append(type);
+        if (relation != null) {
+            shape.append('[').append(relation).append(']');
+        }
+
+        if (type.equals("Seq Scan") && relation != null
+                && tableRows.getOrDefault(relation, 0L) >= largeTableRows) {
+            summary.add("SEQ_SCAN(" + relation + ")",
+                    String.format("sequential scan of %s (~%d rows)", relation, tableRows.get(relation)));
+        }
+        if ("Disk".equals(node.path("Sort Space Type").asText(null))) {
+            summary.add("SORT_SPILL", String.format("%s spilled %d kB to disk",
+                    node.path("Sort Method").asText("sort"), node.path("Sort Space Used").asLong()));
+        }
+        if (node.path("Hash Batches").asLong(1) > 1) {
+            summary.add("HASH_SPILL", String.format("hash split into %d batches", node.path("Hash Batches").asLong()));
+        }
+        if ("SubPlan".equals(node.path("Parent Relationship").asText(null)) && loops >= nestedLoopLimit) {
+            String table = firstRelation(node);
+            summary.add("SUBPLAN_LOOP(" + table + ")",
+                    String.format("correlated subquery on %s executed %d times", table, loops));
+        }
+
+        JsonNode children = node.path("Plans");
+        if (type.equals("Nested Loop")) {
+            for (JsonNode child : children) {
+                long innerLoops = child.path("Actual Loops").asLong(1);
+                if ("Inner".equals(child.path("Parent Relationship").asText(null)) && innerLoops >= nestedLoopLimit) {
+                    String table = firstRelation(child);
+                    summary.add("NESTED_LOOP(" + table + ")", String.format(
+                            "nested loop probes %s %d times (%d rows)", table, innerLoops,
+                            innerLoops * child.path("Actual Rows").asLong()));
+                }
+            }
+        }
+
+        if (children.size() > 0) {
+            shape.append('(');
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) shape.append(", ");
+                visit(children.get(i), summary, shape);
+            }
+            shape.append(')');
+        }
+    }
+
+    private static String firstRelation(JsonNode node) {
+        String relation = node.path("Relation Name").asText(null);
+        if (relation != null) return relation;
+        for (JsonNode child : node.path("Plans")) {
+            String found = firstRelation(child);
+            if (!found.equals("?")) return found;
+        }
+        return "?";
+    }
+
+
+     // Result of analyzing one plan.
+
+    static final class PlanSummary {
+        final double totalCost;
+        final double executionMillis;
+        final SortedSet<String> findings = new TreeSet<>();
+        final List<String> details = new ArrayList<>();
+        String shape;
+
+        PlanSummary(double totalCost, double executionMillis) {
+            this.totalCost = totalCost;
+            this.executionMillis = executionMillis;
+        }
+
+        PlanSummary(double totalCost, String shape, SortedSet<String> findings) {
+            this(totalCost, 0);
+            this.shape = shape;
+            this.findings.addAll(findings);
+        }
+
+        private void add(String finding, String detail) {
+            findings.add(finding);
+            details.add(detail);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.blogging.plancheck;
+
+import com.blogging.plancheck.PlanAnalyzer.PlanSummary;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+ // Checked-in plan baseline: per statement (DAO call + statement number) the planner cost,
+ // plan shape and accepted findings, stored as sorted properties so diffs stay readable.
+ //
+ //   PostDAO.search.1.cost=48211.7
+ //   PostDAO.search.1.findings=SEQ_SCAN(posts)
+ //   PostDAO.search.1.shape=Sort(Hash Join(Seq Scan[posts], Hash(Seq Scan[users])))
+
+final class PlanBaseline {
+
+    private PlanBaseline() {
+    }
+
+    static Map<String, PlanSummary> load(Path file) throws IOException {
+        Map<String, PlanSummary> baseline = new TreeMap<>();
+        if (!Files.exists(file)) return baseline;
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(".cost")) continue;
+            String key = name.substring(0, name.length() - ".cost".length());
+            SortedSet<String> findings = new TreeSet<>();
+            String findingList = properties.getProperty(key + ".findings", "");
+            if (!findingList.isBlank()) {
+                findings.addAll(Arrays.asList(findingList.split(",")));
+            }
+            baseline.put(key, new PlanSummary(Double.parseDouble(properties.getProperty(name)),
+                    properties.getProperty(key + ".shape", ""), findings));
+        }
+        return baseline;
+    }
+
+    static void save(Path file, Map<String, PlanSummary> plans) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# Query-plan baseline for PlanCheck. Regenerate with --update-baseline\n");
+            writer.write("# against data from DataGenerator, and review the diff before committing.\n");
+            for (Map.Entry<String, PlanSummary> entry : new TreeMap<>(plans).entrySet()) {
+                PlanSummary plan = entry.getValue();
+                writer.write(String.format(Locale.ROOT, "%s.cost=%.1f\n", entry.getKey(), plan.totalCost));
+                writer.write(entry.getKey() + ".findings=" + String.join(",", plan.findings) + "\n");
+                writer.write(entry.getKey() + ".shape=" + plan.shape + "\n");
+            }
+        }
+    }
+}
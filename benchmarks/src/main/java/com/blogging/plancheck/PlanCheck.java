@@ -0,0 +1,208 @@
+package com.blogging.plancheck;
+
+import com.blogging.plancheck.DaoStatements.DaoCall;
+import com.blogging.plancheck.DaoStatements.SampleIds;
+import com.blogging.plancheck.ExplainingConnection.CapturedPlan;
+import com.blogging.plancheck.PlanAnalyzer.PlanSummary;
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+
+ // Query-plan regression check for every registered DAO statement.
+ //
+ // Runs each DAO call in DaoStatements with every statement replaced by
+ // EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) in a rolled-back transaction, flags sequential scans
+ // of large tables, sorts and hashes spilling to disk, and nested loops / correlated subqueries
+ // that run their inner side many times, then compares the result with plan-baseline.properties.
+ //
+ //   java -Ddb.url=jdbc:postgresql://localhost:5432/blogging_bench \
+ //        -cp benchmarks.jar com.blogging.plancheck.PlanCheck [--update-baseline] [--strict]
+ //
+ // Exits with status 1 when a statement gains a finding that is not in the baseline, its planner
+ // cost grows by more than --cost-tolerance, or it cannot be explained at all. A statement with
+ // no baseline entry has nothing accepted, so any finding on it fails the run; with --strict it
+ // fails even without findings, so that CI catches DAO statements nobody has baselined. Meant to
+ // run in CI against data from DataGenerator.
+
+public class PlanCheck {
+    private static final Logger logger = LoggerFactory.getLogger(PlanCheck.class);
+
+    private final Path baselineFile;
+    private final boolean updateBaseline;
+    private final boolean strict;
+    private final long largeTableRows;
+    private final long nestedLoopLimit;
+    private final double costTolerance;
+    private final long statementTimeoutMillis;
+    private final Pattern only;
+
+    private PlanCheck(Map<String, String> options) {
+        baselineFile = Paths.get(options.getOrDefault("baseline", "plan-baseline.properties"));
+        updateBaseline = Boolean.parseBoolean(options.getOrDefault("update-baseline", "false"));
+        strict = Boolean.parseBoolean(options.getOrDefault("strict", "false"));
+        largeTableRows = Long.parseLong(options.getOrDefault("large-table-rows", "100000"));
+        nestedLoopLimit = Long.parseLong(options.getOrDefault("nested-loop-limit", "10000"));
+        costTolerance = Double.parseDouble(options.getOrDefault("cost-tolerance", "2.0"));
+        statementTimeoutMillis = Long.parseLong(options.getOrDefault("statement-timeout", "120000"));
+        only = Pattern.compile(options.getOrDefault("only", ".*"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        boolean passed;
+        try {
+            passed = new PlanCheck(options).run();
+        } finally {
+            DatabaseConnection.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws SQLException, IOException {
+        Map<String, Long> tableRows;
+        SampleIds ids;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            tableRows = loadTableRows(conn);
+            ids = SampleIds.load(conn);
+        }
+        logger.info("Table sizes: {}", tableRows);
+        logger.info("Sample arguments: {}", ids);
+
+        PlanAnalyzer analyzer = new PlanAnalyzer(tableRows, largeTableRows, nestedLoopLimit);
+        ExplainingConnection explainer = new ExplainingConnection(statementTimeoutMillis);
+        Map<String, PlanSummary> current = new TreeMap<>();
+        Map<String, String> sql = new HashMap<>();
+        Map<String, String> errors = new TreeMap<>();
+
+        DatabaseConnection.setConnectionDecorator(explainer::wrap);
+        try {
+            for (DaoCall call : DaoStatements.all(ids)) {
+                if (!only.matcher(call.name).find()) continue;
+                explainer.begin(call.name);
+                try {
+                    call.action.run();
+                } catch (SQLException e) {
+                    errors.put(call.name, e.getMessage());
+                }
+                for (CapturedPlan plan : explainer.plans()) {
+                    current.put(plan.key(), analyzer.analyze(plan.json));
+                    sql.put(plan.key(), plan.sql);
+                }
+            }
+        } finally {
+            DatabaseConnection.setConnectionDecorator(null);
+        }
+
+        Map<String, PlanSummary> baseline = PlanBaseline.load(baselineFile);
+        boolean passed = report(current, baseline, sql, errors);
+
+        if (updateBaseline) {
+            Map<String, PlanSummary> merged = new TreeMap<>(baseline);
+            merged.keySet().removeIf(key -> only.matcher(key).find());
+            merged.putAll(current);
+            PlanBaseline.save(baselineFile, merged);
+            System.out.printf("Baseline written to %s (%d statements)%n", baselineFile, merged.size());
+            return errors.isEmpty();
+        }
+        return passed;
+    }
+
+    private boolean report(Map<String, PlanSummary> current, Map<String, PlanSummary> baseline,
+                           Map<String, String> sql, Map<String, String> errors) {
+        int regressions = 0;
+        int unbaselined = 0;
+        for (Map.Entry<String, PlanSummary> entry : current.entrySet()) {
+            String key = entry.getKey();
+            PlanSummary plan = entry.getValue();
+            PlanSummary expected = baseline.get(key);
+
+            String status;
+            SortedSet<String> added = new TreeSet<>(plan.findings);
+            SortedSet<String> resolved = new TreeSet<>();
+            if (expected == null) {
+                // Nothing accepted yet: every finding is new
+                unbaselined++;
+                if (!added.isEmpty() || strict) {
+                    status = "NEW-FAIL";
+                    regressions++;
+                } else {
+                    status = "NEW";
+                }
+            } else {
+                added.removeAll(expected.findings);
+                resolved.addAll(expected.findings);
+                resolved.removeAll(plan.findings);
+                boolean costRegressed = plan.totalCost > expected.totalCost * costTolerance;
+                if (!added.isEmpty() || costRegressed) {
+                    status = "REGRESSED";
+                    regressions++;
+                } else if (!plan.shape.equals(expected.shape)) {
+                    status = "CHANGED";
+                } else if (!resolved.isEmpty()) {
+                    status = "IMPROVED";
+                } else {
+                    status = "OK";
+                }
+            }
+
+            System.out.printf("%-10s %-40s cost %12.1f%s  %8.2f ms  %s%n", status, key, plan.totalCost,
+                    expected == null ? "" : String.format(" (baseline %.1f)", expected.totalCost),
+                    plan.executionMillis, plan.findings.isEmpty() ? "" : plan.findings);
+            if (!status.equals("OK")) {
+                System.out.println("           " + sql.get(key));
+                System.out.println("           plan: " + plan.shape);
+                if (expected != null && !plan.shape.equals(expected.shape)) {
+                    System.out.println("           was:  " + expected.shape);
+                }
+                plan.details.forEach(detail -> System.out.println("           - " + detail));
+                if (!added.isEmpty()) System.out.println("           new findings: " + added);
+                if (!resolved.isEmpty()) System.out.println("           resolved: " + resolved);
+            }
+        }
+        errors.forEach((call, message) -> System.out.printf("%-10s %-40s %s%n", "ERROR", call, message));
+
+        System.out.printf("%n%d statements checked, %d failed, %d without baseline, %d calls failed%n",
+                current.size(), regressions, unbaselined, errors.size());
+        if (unbaselined > 0) {
+            System.out.println("Run with --update-baseline to accept new statements and plan changes, "
+                    + "after reviewing their findings.");
+        }
+        return regressions == 0 && errors.isEmpty();
+    }
+
+    private static Map<String, Long> loadTableRows(Connection conn) throws SQLException {
+        String sql = "SELECT c.relname, GREATEST(c.reltuples, 0)::bigint " +
+                    "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                    "WHERE c.relkind = 'r' AND n.nspname = current_schema()";
+        Map<String, Long> rows = new TreeMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rows.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,63 @@
+package com.blogging.security;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+ // PBKDF2 hashing and verification at a few iteration counts, which is what a signup and a
+ // login cost in CPU. Pick -Dpassword.pbkdf2.iterations from these: the setup also prints
+ // the count that would take TARGET_MILLIS per login on this machine (-Dtarget-ms, default
+ // 250), and the login rate PasswordHashing's threads can sustain at the measured count.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordHashingBenchmark {
+    private static final long TARGET_MILLIS = Long.getLong("target-ms", 250);
+    private static final String PASSWORD = "password123";
+
+    @Param({"100000", "310000", "600000"})
+    private int iterations;
+
+    private Pbkdf2PasswordHasher hasher;
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        hasher = new Pbkdf2PasswordHasher(iterations);
+        stored = hasher.hash(PASSWORD);
+
+        // A rough calibration, after a second of warm-up: the cost is linear in the count
+        long warmUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (System.nanoTime() < warmUntil) {
+            hasher.verify(PASSWORD, stored);
+        }
+        int rounds = 0;
+        long started = System.nanoTime();
+        long elapsed;
+        do {
+            hasher.verify(PASSWORD, stored);
+            rounds++;
+            elapsed = System.nanoTime() - started;
+        } while (elapsed < TimeUnit.SECONDS.toNanos(1));
+        double millis = elapsed / 1e6 / rounds;
+        System.out.printf("%n%d iterations: %.1f ms per login, %.0f logins/s on %d hashing threads; "
+                        + "about %d iterations for %d ms%n",
+                iterations, millis, PasswordHashing.THREADS * 1000 / millis, PasswordHashing.THREADS,
+                Math.round(iterations * TARGET_MILLIS / millis), TARGET_MILLIS);
+    }
+
+    @Benchmark
+    public String hash() {
+        return hasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return hasher.verify(PASSWORD, stored);
+    }
+}
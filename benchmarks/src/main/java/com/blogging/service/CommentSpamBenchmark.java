@@ -0,0 +1,77 @@
+package com.blogging.service;
+
+import com.blogging.dao.CommentDAO;
+import com.blogging.model.SpamRule;
+import com.blogging.spam.SpamFilter;
+import com.blogging.spam.SpamMatcher;
+import com.blogging.spam.SpamRules;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // CommentService.isSpam on clean and spam comments of typical and maximum length,
+ // with the bundled rules and with thousands of generated rules. Match time should
+ // depend on the comment length only, not on the number of rules.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentSpamBenchmark {
+    private static final String SENTENCE = "Great write-up, the section on indexing answered my question. ";
+
+    @Param({"short", "max"})
+    private String length;
+
+    @Param({"0", "5000"})
+    private int extraRules;
+
+    private CommentService commentService;
+    private String cleanComment;
+    private String spamComment;
+
+    @Setup
+    public void setUp() {
+        List<SpamRule> rules = SpamRules.defaults();
+        Random random = new Random(42);
+        for (int i = 0; i < extraRules; i++) {
+            rules.add(new SpamRule(randomWord(random) + (random.nextBoolean() ? " " + randomWord(random) : ""),
+                    random.nextInt(4) != 0));
+        }
+        commentService = new CommentService(new CommentDAO(), new SpamFilter(SpamMatcher.compile(rules)), null, null);
+
+        int target = "short".equals(length) ? 80 : 1000;
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < target) {
+            sb.append(SENTENCE);
+        }
+        cleanComment = sb.substring(0, target);
+        // Keyword at the very end so the whole text is scanned before the match
+        spamComment = cleanComment.substring(0, target - 10) + " Buy NOW!";
+    }
+
+    @Benchmark
+    public boolean cleanComment() {
+        return commentService.isSpam(cleanComment);
+    }
+
+    @Benchmark
+    public boolean spamComment() {
+        return commentService.isSpam(spamComment);
+    }
+
+    // Random lower-case words with a 'q' so they never occur in the sample comments
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder("q");
+        int letters = 3 + random.nextInt(8);
+        for (int i = 0; i < letters; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.blogging.service;
+
+import com.blogging.benchmark.SampleData;
+import com.blogging.dao.CommentDAO;
+import com.blogging.dao.FollowDAO;
+import com.blogging.dao.PostDAO;
+import com.blogging.model.Comment;
+import com.blogging.model.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+ // Opening a post through PostDetailLoader against running the same service calls one
+ // after the other, on in-memory DAOs where every query takes ROUND_TRIP_MILLIS. The
+ // parallel load should take about as long as its longest chain (the post, then the
+ // follow state), the sequential one as long as all five queries.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostDetailLoaderBenchmark {
+    private static final int ROUND_TRIP_MILLIS = 2;
+
+    private PostService postService;
+    private CommentService commentService;
+    private FeedService feedService;
+    private PostDetailLoader loader;
+    private Post post;
+    // A reader who is not the author, so that the follow state is loaded
+    private int userId;
+
+    @Setup
+    public void setUp() {
+        post = SampleData.posts(1, 42).get(0);
+        userId = post.getUserId() + 1;
+        postService = new PostService(new SlowPostDAO(post), null);
+        commentService = new CommentService(new SlowCommentDAO(), null, null, null);
+        feedService = new FeedService(new SlowFollowDAO(), null, null);
+        loader = new PostDetailLoader(postService, commentService, feedService, Runnable::run);
+    }
+
+    @Benchmark
+    public Post parallel() throws Exception {
+        postService.clearCache();
+        CountDownLatch done = new CountDownLatch(3);
+        Post[] loaded = new Post[1];
+        loader.load(post.getPostId(), userId, true, 64 * 1024, 20, 10, new PostDetailLoader.Listener() {
+            @Override
+            public void onPost(Post value) {
+                loaded[0] = value;
+                done.countDown();
+            }
+
+            @Override
+            public void onComments(int commentCount, List<Comment> threads) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFollowing(boolean following) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailed(Throwable error) {
+                throw new IllegalStateException(error);
+            }
+        });
+        done.await();
+        return loaded[0];
+    }
+
+    @Benchmark
+    public Post sequential() throws Exception {
+        postService.clearCache();
+        Post loaded = postService.getPostPreview(post.getPostId(), 64 * 1024);
+        loaded.setViewCount(postService.incrementViewCount(post.getPostId()));
+        commentService.getCommentCount(post.getPostId());
+        commentService.getThreads(post.getPostId(), userId, null, 20, 10);
+        feedService.isFollowing(userId, loaded.getUserId());
+        return loaded;
+    }
+
+    private static void roundTrip() {
+        try {
+            Thread.sleep(ROUND_TRIP_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class SlowPostDAO extends PostDAO {
+        private final Post post;
+
+        SlowPostDAO(Post post) {
+            this.post = post;
+        }
+
+        @Override
+        public Post findPreviewById(int postId, int previewChars) {
+            roundTrip();
+            return post;
+        }
+
+        @Override
+        public int incrementViewCount(int postId) {
+            roundTrip();
+            return post.getViewCount() + 1;
+        }
+    }
+
+    static class SlowCommentDAO extends CommentDAO {
+        @Override
+        public int getCommentCountByPost(int postId) {
+            roundTrip();
+            return 0;
+        }
+
+        @Override
+        public List<Comment> findThreads(int postId, String afterRootPath, int threads, int rowsPerThread,
+                                         int currentUserId) {
+            roundTrip();
+            return new ArrayList<>();
+        }
+    }
+
+    static class SlowFollowDAO extends FollowDAO {
+        @Override
+        public boolean isFollowing(int followerId, int followeeId) {
+            roundTrip();
+            return false;
+        }
+    }
+}
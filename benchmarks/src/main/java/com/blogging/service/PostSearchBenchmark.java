@@ -0,0 +1,122 @@
+package com.blogging.service;
+
+import com.blogging.benchmark.SampleData;
+import com.blogging.dao.PostDAO;
+import com.blogging.model.Post;
+import com.blogging.util.QueryCanceller;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+ // PostSearch on an in-memory DAO that scans 5000 posts per search. typeQuery submits every
+ // prefix of a query as fast as a user types and counts the typed queries and the searches
+ // that reached the DAO. refineCached answers a longer query from the cached result of a
+ // shorter one; databaseSearch runs the same query with an empty cache.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostSearchBenchmark {
+    private static final String QUERY = "latency layout pool";
+    private static final String LONGER_QUERY = "latency layout pool java";
+    private static final long DEBOUNCE_MILLIS = 1;
+
+    private PostSearch search;
+    private final BlockingQueue<List<Post>> results = new LinkedBlockingQueue<>();
+    private final PostSearch.Listener listener = new PostSearch.Listener() {
+        @Override
+        public void onResults(String query, List<Post> posts) {
+            results.add(posts);
+        }
+
+        @Override
+        public void onError(String query, SQLException e) {
+            results.add(new ArrayList<>());
+        }
+    };
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Searches {
+        public long queries;
+        public long searches;
+    }
+
+    @Setup
+    public void setUp() {
+        search = new PostSearch(new InMemoryPostDAO(SampleData.posts(5000, 42)), DEBOUNCE_MILLIS);
+    }
+
+    // Every benchmark starts with only the shorter query cached
+    @Setup(Level.Invocation)
+    public void cacheQuery() throws Exception {
+        clearCache();
+        search.searchNow(QUERY, listener);
+        results.take();
+    }
+
+    @Benchmark
+    public List<Post> typeQuery(Searches counter) throws Exception {
+        clearCache();
+        long before = search.getDatabaseSearches();
+        for (int length = 1; length <= QUERY.length(); length++) {
+            search.submit(QUERY.substring(0, length), listener);
+        }
+        List<Post> posts = results.take();
+        counter.queries++;
+        counter.searches += search.getDatabaseSearches() - before;
+        return posts;
+    }
+
+    @Benchmark
+    public List<Post> refineCached() throws Exception {
+        search.searchNow(LONGER_QUERY, listener);
+        return results.take();
+    }
+
+    @Benchmark
+    public List<Post> databaseSearch() throws Exception {
+        clearCache();
+        search.searchNow(LONGER_QUERY, listener);
+        return results.take();
+    }
+
+    private void clearCache() {
+        PostChangeBus.getInstance().publish(PostChange.deleted(0));
+    }
+
+
+     // Scans the posts like LOWER(...) LIKE '%query%', newest (highest id) first.
+
+    static class InMemoryPostDAO extends PostDAO {
+        private final List<Post> posts;
+
+        InMemoryPostDAO(List<Post> posts) {
+            this.posts = posts;
+        }
+
+        @Override
+        public List<Post> search(String keyword, int limit, QueryCanceller canceller) {
+            String query = keyword.toLowerCase(Locale.ROOT);
+            List<Post> found = new ArrayList<>();
+            for (int i = posts.size() - 1; i >= 0 && found.size() < limit; i--) {
+                Post post = posts.get(i);
+                if (post.getTitle().toLowerCase(Locale.ROOT).contains(query)
+                        || post.getContent().toLowerCase(Locale.ROOT).contains(query)) {
+                    found.add(post);
+                }
+            }
+            return found;
+        }
+    }
+}
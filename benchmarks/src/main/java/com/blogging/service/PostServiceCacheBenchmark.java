@@ -0,0 +1,66 @@
+package com.blogging.service;
+
+import com.blogging.benchmark.SampleData;
+import com.blogging.dao.PostDAO;
+import com.blogging.dao.TagDAO;
+import com.blogging.model.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // PostService.getPost cache hit and miss paths.
+ // The DAO is replaced by an in-memory stub so only the service overhead is measured.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostServiceCacheBenchmark {
+    private static final int HOT_POST_ID = 42;
+
+    private PostService postService;
+
+    @Setup
+    public void setUp() throws Exception {
+        postService = new PostService(new InMemoryPostDAO(), new TagDAO());
+        postService.getPost(HOT_POST_ID); // warm the cache entry
+    }
+
+    @Benchmark
+    public Post cacheHit() throws Exception {
+        return postService.getPost(HOT_POST_ID);
+    }
+
+    @Benchmark
+    public Post cacheMiss() throws Exception {
+        postService.clearCache();
+        return postService.getPost(HOT_POST_ID);
+    }
+
+    @Benchmark
+    public Post incrementViewCountThenHit() throws Exception {
+        postService.incrementViewCount(HOT_POST_ID);
+        return postService.getPost(HOT_POST_ID);
+    }
+
+
+     // Returns a fresh post for every lookup, as a JDBC round trip would.
+
+    static class InMemoryPostDAO extends PostDAO {
+        private final Random random = new Random(7);
+
+        @Override
+        public Post findById(int postId) {
+            return SampleData.post(postId, random);
+        }
+
+        @Override
+        public int incrementViewCount(int postId) {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.blogging.service;
+
+import com.blogging.benchmark.SampleData;
+import com.blogging.dao.TagDAO;
+import com.blogging.model.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+ // Hand-rolled PostService.quickSort against List.sort (TimSort) and Arrays.parallelSort,
+ // all using the same PostService.compare ordering.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostSortBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    @Param({"date", "views", "title"})
+    private String sortBy;
+
+    private PostService postService;
+    private List<Post> posts;
+    private Comparator<Post> comparator;
+
+    @Setup
+    public void setUp() {
+        // The sorts never reach a DAO; the public constructor would start the index loaders
+        postService = new PostService(new PostServiceCacheBenchmark.InMemoryPostDAO(), new TagDAO());
+        posts = SampleData.posts(size, 2024L);
+        comparator = (p1, p2) -> postService.compare(p1, p2, sortBy);
+    }
+
+    @Benchmark
+    public List<Post> quickSort() {
+        List<Post> copy = new ArrayList<>(posts);
+        postService.quickSort(copy, 0, copy.size() - 1, sortBy);
+        return copy;
+    }
+
+    @Benchmark
+    public List<Post> listSort() {
+        List<Post> copy = new ArrayList<>(posts);
+        copy.sort(comparator);
+        return copy;
+    }
+
+    @Benchmark
+    public Post[] parallelSort() {
+        Post[] copy = posts.toArray(new Post[0]);
+        Arrays.parallelSort(copy, comparator);
+        return copy;
+    }
+}
@@ -0,0 +1,69 @@
+package com.blogging.service;
+
+import com.blogging.dao.UserDAO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+ // UserAvailability checks on filters loaded with 100k and 1M users, without a database.
+ // A free name should be answered from memory in well under a microsecond; the setup also
+ // prints the share of free names that would still need a query (the false positive rate).
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserAvailabilityBenchmark {
+    private static final int PROBES = 100_000;
+
+    @Param({"100000", "1000000"})
+    private int users;
+
+    private UserAvailability availability;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        UserDAO userDAO = new UserDAO() {
+            @Override
+            public int getTotalCount() {
+                return users;
+            }
+
+            @Override
+            public void forEachIdentity(IdentityConsumer consumer) {
+                for (int i = 0; i < users; i++) {
+                    consumer.accept("user_" + i, "user_" + i + "@example.com");
+                }
+            }
+        };
+        availability = new UserAvailability(userDAO, UserAvailability.MIN_CAPACITY);
+        availability.load();
+
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (availability.mightBeTakenUsername("free_" + i)) {
+                falsePositives++;
+            }
+        }
+        System.out.printf("%n%d users: %.2f%% of free usernames need a query%n", users, 100.0 * falsePositives / PROBES);
+    }
+
+    @Benchmark
+    public boolean freeUsername() {
+        return availability.mightBeTakenUsername("free_" + (next++ % PROBES));
+    }
+
+    @Benchmark
+    public boolean takenUsername() {
+        return availability.mightBeTakenUsername("user_" + (next++ % users));
+    }
+
+    @Benchmark
+    public boolean freeEmail() {
+        return availability.mightBeTakenEmail("free_" + (next++ % PROBES) + "@example.com");
+    }
+}
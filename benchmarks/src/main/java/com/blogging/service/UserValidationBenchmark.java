@@ -0,0 +1,53 @@
+package com.blogging.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+
+ // UserService input validation, including the regex checks run on every registration and update.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserValidationBenchmark {
+    private UserService userService;
+
+    private final String username = "database_admin_2024";
+    private final String email = "database.admin+blog@example.com";
+    private final String password = "correct horse battery staple";
+    private final String invalidUsername = "not a valid name!";
+
+    @Setup
+    public void setUp() {
+        userService = new UserService();
+    }
+
+    @Benchmark
+    public void validateUsername() {
+        userService.validateUsername(username);
+    }
+
+    @Benchmark
+    public void validateEmail() {
+        userService.validateEmail(email);
+    }
+
+    @Benchmark
+    public void validatePassword() {
+        userService.validatePassword(password);
+    }
+
+    @Benchmark
+    public void rejectInvalidUsername(Blackhole blackhole) {
+        try {
+            userService.validateUsername(invalidUsername);
+        } catch (IllegalArgumentException e) {
+            blackhole.consume(e);
+        }
+    }
+}
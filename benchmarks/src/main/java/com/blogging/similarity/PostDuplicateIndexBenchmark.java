@@ -0,0 +1,71 @@
+package com.blogging.similarity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // PostDuplicateIndex lookups on corpora of increasing size, plus MinHash.signature on a
+ // 2 KB post. Lookup time should barely move with the corpus size: a query only reads
+ // BANDS buckets and scores the candidates found there.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostDuplicateIndexBenchmark {
+
+    @Param({"10000", "100000"})
+    private int posts;
+
+    private PostDuplicateIndex index;
+    private String newPost;
+    private int[] newSignature;
+    private int[] duplicateSignature;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new PostDuplicateIndex(null);
+        String copied = null;
+        for (int postId = 1; postId <= posts; postId++) {
+            String content = post(random, 300);
+            index.put(postId, MinHash.signature(content));
+            if (postId == posts / 2) {
+                copied = content;
+            }
+        }
+        newPost = post(random, 300);
+        newSignature = MinHash.signature(newPost);
+        // An existing post with its last fifth rewritten
+        duplicateSignature = MinHash.signature(copied.substring(0, copied.length() * 4 / 5) + post(random, 60));
+    }
+
+    @Benchmark
+    public Object findSimilarNew() {
+        return index.findSimilar(newSignature, 0.5, 0);
+    }
+
+    @Benchmark
+    public Object findSimilarDuplicate() {
+        return index.findSimilar(duplicateSignature, 0.5, 0);
+    }
+
+    @Benchmark
+    public int[] signature() {
+        return MinHash.signature(newPost);
+    }
+
+    // Words from a 5000-word vocabulary, about 7 characters each
+    private static String post(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append("w").append(random.nextInt(5000));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.blogging.similarity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+ // Related-posts lookups and incremental updates on a synthetic corpus with topical
+ // vocabularies and tags. A lookup reads a precomputed list; an edit rescores the post
+ // against the candidates that share its strongest terms or tags, not the whole corpus.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelatedPostsBenchmark {
+    private static final int TOPICS = 200;
+
+    @Param({"10000", "50000"})
+    private int posts;
+
+    private RelatedCorpus corpus;
+    private Random random;
+    private int nextEdit;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        corpus = new RelatedCorpus();
+        for (int postId = 1; postId <= posts; postId++) {
+            int topic = random.nextInt(TOPICS);
+            corpus.loadPost(postId, title(random, topic), post(random, topic, 200));
+            corpus.loadTag(postId, topic);
+            corpus.loadTag(postId, TOPICS + random.nextInt(50));
+        }
+        corpus.finishLoading();
+        corpus.computeAllNeighbours(ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public Object related() {
+        return corpus.related(1 + random.nextInt(posts), 5);
+    }
+
+    @Benchmark
+    public void upsert() {
+        int postId = 1 + (nextEdit++ % posts);
+        int topic = random.nextInt(TOPICS);
+        corpus.upsert(postId, title(random, topic), post(random, topic, 200), new int[]{topic});
+    }
+
+    private static String title(Random random, int topic) {
+        return "t" + topic + "x" + random.nextInt(20) + " t" + topic + "x" + random.nextInt(20);
+    }
+
+    // Half the words from the topic's 100-word vocabulary, half from a shared 20000-word one
+    private static String post(Random random, int topic, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            if (random.nextBoolean()) {
+                sb.append('t').append(topic).append('x').append(random.nextInt(100));
+            } else {
+                sb.append("word").append(random.nextInt(20000));
+            }
+        }
+        return sb.toString();
+    }
+}
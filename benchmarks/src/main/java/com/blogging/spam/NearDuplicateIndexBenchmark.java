@@ -0,0 +1,58 @@
+package com.blogging.spam;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // NearDuplicateIndex lookups and inserts with the default 100k-comment window filled with
+ // random fingerprints, plus SimHash.fingerprint on a typical comment. A lookup only walks the
+ // entries sharing an 8-bit band with the query, a few thousand comparisons at most.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearDuplicateIndexBenchmark {
+    private static final String COMMENT = "Great write-up, the section on indexing answered my question about "
+            + "partial indexes and why the planner ignored the one I created last week.";
+
+    private NearDuplicateIndex index;
+    private long[] queries;
+    private long now;
+    private long nextInsert;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new NearDuplicateIndex(100_000, 6, TimeUnit.HOURS);
+        now = System.currentTimeMillis();
+        for (int i = 0; i < 100_000; i++) {
+            index.add(random.nextLong(), i, now);
+        }
+        queries = new long[1024];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextLong();
+        }
+        nextInsert = random.nextLong();
+    }
+
+    @Benchmark
+    public int countNear() {
+        return index.countNear(queries[cursor++ & (queries.length - 1)], now, 3);
+    }
+
+    @Benchmark
+    public void add() {
+        index.add(nextInsert++, 0, now);
+    }
+
+    @Benchmark
+    public long fingerprint() {
+        return SimHash.fingerprint(COMMENT);
+    }
+}
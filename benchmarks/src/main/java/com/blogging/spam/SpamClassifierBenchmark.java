@@ -0,0 +1,69 @@
+package com.blogging.spam;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+ // SpamClassifier scoring and incremental training on a model trained with a few thousand
+ // generated comments. Scoring runs once per new comment on the moderation thread; training
+ // runs once per moderator decision.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpamClassifierBenchmark {
+    private static final String[] HAM_WORDS = {"index", "query", "post", "great", "thanks", "question",
+            "section", "database", "article", "helpful", "example", "performance", "writing", "agree"};
+    private static final String[] SPAM_WORDS = {"buy", "cheap", "free", "money", "click", "offer",
+            "winner", "casino", "pills", "discount", "limited", "now", "deal", "cash"};
+
+    @Param({"short", "max"})
+    private String length;
+
+    private SpamClassifier classifier;
+    private String hamComment;
+    private String spamComment;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        classifier = new SpamClassifier();
+        for (int i = 0; i < 2000; i++) {
+            classifier.train(comment(random, HAM_WORDS, 30), false);
+            classifier.train(comment(random, SPAM_WORDS, 30), true);
+        }
+        int words = "short".equals(length) ? 12 : 150;
+        hamComment = comment(random, HAM_WORDS, words);
+        spamComment = comment(random, SPAM_WORDS, words);
+    }
+
+    @Benchmark
+    public double scoreHam() {
+        return classifier.spamProbability(hamComment);
+    }
+
+    @Benchmark
+    public double scoreSpam() {
+        return classifier.spamProbability(spamComment);
+    }
+
+    @Benchmark
+    public void train() {
+        classifier.train(hamComment, false);
+    }
+
+    // Mostly words of one class, some shared filler
+    private static String comment(Random random, String[] words, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(random.nextInt(4) == 0 ? "the" + random.nextInt(50) : words[random.nextInt(words.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -26,9 +26,21 @@ CREATE TABLE users (
 -- Index on username for fast lookup
 CREATE INDEX idx_users_username ON users(username);
 
+-- Usernames are unique ignoring case; the index serves login and signup lookups by
+-- LOWER(username) = LOWER(?)
+CREATE UNIQUE INDEX uq_users_username_lower ON users (LOWER(username));
+
 -- Index on email for fast lookup
 CREATE INDEX idx_users_email ON users(email);
 
+-- Indexes for user management: case-insensitive prefix search and keyset paging by
+-- username or email. COLLATE "C" lets LIKE 'prefix%' use them in any database locale.
+CREATE INDEX idx_users_username_lower ON users ((LOWER(username) COLLATE "C"), user_id);
+CREATE INDEX idx_users_email_lower ON users ((LOWER(email) COLLATE "C"), user_id);
+
+-- Index matching the newest-first user list, for keyset paging
+CREATE INDEX idx_users_created_id ON users(created_at DESC, user_id DESC);
+
 
 -- Table: posts
 -- Description: Stores blog post content
@@ -57,6 +69,9 @@ CREATE INDEX idx_posts_title ON posts(title);
 -- Index on created_at for sorting by date
 CREATE INDEX idx_posts_created_at ON posts(created_at DESC);
 
+-- Index matching the post list order, for keyset paging through all posts
+CREATE INDEX idx_posts_created_id ON posts(created_at DESC, post_id DESC);
+
 -- Index on view_count for popular posts queries
 CREATE INDEX idx_posts_view_count ON posts(view_count DESC);
 
@@ -73,11 +88,24 @@ CREATE TABLE comments (
     user_id INTEGER NOT NULL,
     content TEXT NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    status VARCHAR(20) DEFAULT 'APPROVED',
+    spam_score DOUBLE PRECISION,
+    -- Status set by a moderator (and learned by the spam classifier), not automatically
+    moderated BOOLEAN NOT NULL DEFAULT FALSE,
+    parent_id INTEGER,
+    -- Materialized thread path, set by trg_comments_path: ancestor ids and the comment's own,
+    -- zero-padded to ten digits, each followed by '/'. Byte order (COLLATE "C") keeps a
+    -- thread's comments contiguous, depth-first, so a subtree is one index range
+    path TEXT COLLATE "C" NOT NULL,
+    reply_count INTEGER NOT NULL DEFAULT 0,
     CONSTRAINT fk_comments_post FOREIGN KEY (post_id) 
         REFERENCES posts(post_id) ON DELETE CASCADE,
+    CONSTRAINT fk_comments_parent FOREIGN KEY (parent_id)
+        REFERENCES comments(comment_id) ON DELETE CASCADE,
     CONSTRAINT fk_comments_user FOREIGN KEY (user_id) 
         REFERENCES users(user_id) ON DELETE CASCADE,
-    CONSTRAINT chk_comment_length CHECK (LENGTH(content) >= 1)
+    CONSTRAINT chk_comment_length CHECK (LENGTH(content) >= 1),
+    CONSTRAINT chk_comment_status CHECK (status IN ('PENDING', 'APPROVED', 'SPAM'))
 );
 
 -- Index on post_id for fast retrieval of comments for a post
@@ -89,6 +117,29 @@ CREATE INDEX idx_comments_user ON comments(user_id);
 -- Index on created_at for sorting comments by date
 CREATE INDEX idx_comments_created_at ON comments(created_at DESC);
 
+-- Partial index for the moderation backlog (comments not yet classified)
+CREATE INDEX idx_comments_pending ON comments(comment_id) WHERE status = 'PENDING';
+
+-- Index on the thread path: a thread or any subtree of a post is one range scan
+CREATE INDEX idx_comments_post_path ON comments(post_id, path);
+
+-- Partial index over top-level comments, for paging through the threads of a post
+CREATE INDEX idx_comments_post_roots ON comments(post_id, path) WHERE parent_id IS NULL;
+
+-- Index on parent_id for the cascade when a comment with replies is deleted
+CREATE INDEX idx_comments_parent ON comments(parent_id);
+
+-- Table: post_comment_counts
+-- Description: Number of comments (other than spam) on each post, maintained by
+-- trg_comments_count so that a post's comment count is read without counting its comments
+
+CREATE TABLE post_comment_counts (
+    post_id INTEGER PRIMARY KEY,
+    comment_count INTEGER NOT NULL DEFAULT 0,
+    CONSTRAINT fk_post_comment_counts_post FOREIGN KEY (post_id)
+        REFERENCES posts(post_id) ON DELETE CASCADE
+);
+
 -- Table: comment_likes
 -- Description: Stores likes on comments
 
@@ -167,6 +218,75 @@ CREATE INDEX idx_reviews_user ON reviews(user_id);
 -- Index on rating for filtering by rating
 CREATE INDEX idx_reviews_rating ON reviews(rating);
 
+
+-- Table: spam_rules
+-- Description: Comment spam rules, hot-reloaded by the application (see SpamFilter)
+
+CREATE TABLE spam_rules (
+    rule_id SERIAL PRIMARY KEY,
+    pattern VARCHAR(200) NOT NULL,
+    whole_word BOOLEAN NOT NULL DEFAULT TRUE,
+    enabled BOOLEAN NOT NULL DEFAULT TRUE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT chk_spam_rule_pattern CHECK (LENGTH(TRIM(pattern)) >= 1)
+);
+
+-- Table: post_signatures
+-- Description: MinHash signatures of post content for duplicate detection (see PostDuplicateIndex)
+
+CREATE TABLE post_signatures (
+    post_id INTEGER PRIMARY KEY,
+    signature BYTEA NOT NULL,
+    computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_post_signatures_post FOREIGN KEY (post_id)
+        REFERENCES posts(post_id) ON DELETE CASCADE
+);
+
+-- Table: follows
+-- Description: Users following authors, for the personalised feed
+
+CREATE TABLE follows (
+    follower_id INTEGER NOT NULL,
+    followee_id INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (follower_id, followee_id),
+    CONSTRAINT fk_follows_follower FOREIGN KEY (follower_id)
+        REFERENCES users(user_id) ON DELETE CASCADE,
+    CONSTRAINT fk_follows_followee FOREIGN KEY (followee_id)
+        REFERENCES users(user_id) ON DELETE CASCADE,
+    CONSTRAINT chk_follows_not_self CHECK (follower_id <> followee_id)
+);
+
+-- Index on followee_id for fan-out to an author's followers
+CREATE INDEX idx_follows_followee ON follows(followee_id);
+
+-- Table: feed_entries
+-- Description: Per-user feed timelines written on post creation (see FeedTimelines)
+
+CREATE TABLE feed_entries (
+    user_id INTEGER NOT NULL,
+    post_id INTEGER NOT NULL,
+    PRIMARY KEY (user_id, post_id),
+    CONSTRAINT fk_feed_entries_user FOREIGN KEY (user_id)
+        REFERENCES users(user_id) ON DELETE CASCADE,
+    CONSTRAINT fk_feed_entries_post FOREIGN KEY (post_id)
+        REFERENCES posts(post_id) ON DELETE CASCADE
+);
+
+-- Index on post_id for deleting a post from every feed
+CREATE INDEX idx_feed_entries_post ON feed_entries(post_id);
+
+-- Table: user_purges
+-- Description: Users queued for deletion, deleted a chunk at a time in the background
+-- (see UserPurgeJob). Queued users cannot log in and are left out of user management
+
+CREATE TABLE user_purges (
+    user_id INTEGER PRIMARY KEY,
+    requested_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_user_purges_user FOREIGN KEY (user_id)
+        REFERENCES users(user_id) ON DELETE CASCADE
+);
+
 -- Views for Common Queries
 -- ============================================
 
@@ -216,6 +336,89 @@ BEFORE UPDATE ON posts
 FOR EACH ROW
 EXECUTE FUNCTION update_updated_at_column();
 
+-- Trigger to bump updated_at on spam rules edited in place, which SpamFilter reloads on
+CREATE TRIGGER trg_spam_rules_updated_at
+BEFORE UPDATE ON spam_rules
+FOR EACH ROW
+EXECUTE FUNCTION update_updated_at_column();
+
+-- Function to keep post_comment_counts in step with the comments that are not spam
+CREATE OR REPLACE FUNCTION maintain_post_comment_count()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        IF OLD.status <> 'SPAM' THEN
+            UPDATE post_comment_counts SET comment_count = comment_count - 1
+            WHERE post_id = OLD.post_id;
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        IF NEW.status <> 'SPAM' THEN
+            INSERT INTO post_comment_counts (post_id, comment_count) VALUES (NEW.post_id, 1)
+            ON CONFLICT (post_id) DO UPDATE
+                SET comment_count = post_comment_counts.comment_count + 1;
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Trigger to count comments as they are written, moderated and deleted
+CREATE TRIGGER trg_comments_count
+AFTER INSERT OR DELETE OR UPDATE OF status, post_id ON comments
+FOR EACH ROW
+EXECUTE FUNCTION maintain_post_comment_count();
+
+-- Function to set the thread path of a new comment from its parent's
+CREATE OR REPLACE FUNCTION set_comment_path()
+RETURNS TRIGGER AS $$
+DECLARE
+    parent_path TEXT;
+BEGIN
+    IF NEW.parent_id IS NULL THEN
+        parent_path := '';
+    ELSE
+        SELECT path INTO parent_path FROM comments
+        WHERE comment_id = NEW.parent_id AND post_id = NEW.post_id;
+        IF parent_path IS NULL THEN
+            RAISE EXCEPTION 'Comment % is not a comment on post %', NEW.parent_id, NEW.post_id;
+        END IF;
+    END IF;
+    NEW.path := parent_path || lpad(NEW.comment_id::text, 10, '0') || '/';
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Trigger to place new comments in their thread
+CREATE TRIGGER trg_comments_path
+BEFORE INSERT ON comments
+FOR EACH ROW
+EXECUTE FUNCTION set_comment_path();
+
+-- Function to keep reply_count in step with the direct replies that are not spam
+CREATE OR REPLACE FUNCTION maintain_reply_count()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        IF OLD.parent_id IS NOT NULL AND OLD.status <> 'SPAM' THEN
+            UPDATE comments SET reply_count = reply_count - 1 WHERE comment_id = OLD.parent_id;
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        IF NEW.parent_id IS NOT NULL AND NEW.status <> 'SPAM' THEN
+            UPDATE comments SET reply_count = reply_count + 1 WHERE comment_id = NEW.parent_id;
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Trigger to count replies as they are written, moderated and deleted
+CREATE TRIGGER trg_comments_reply_count
+AFTER INSERT OR DELETE OR UPDATE OF status ON comments
+FOR EACH ROW
+EXECUTE FUNCTION maintain_reply_count();
+
 -- Summary of Database Objects
 
 
@@ -1,5 +1,10 @@
 package com.blogging;
 
+import com.blogging.controller.ViewRegistry;
+import com.blogging.security.PasswordHashing;
+import com.blogging.service.DashboardSnapshotService;
+import com.blogging.service.UserAvailability;
+import com.blogging.service.UserPurgeJob;
 import com.blogging.util.DatabaseConnection;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -33,9 +38,28 @@ public class BloggingPlatformApp extends Application {
             }
             // Manual Migration: Ensure 'role' column exists
             ensureRoleColumnExists();
+            ensureUsernameIndexExists();
+            ensureSpamRulesTableExists();
+            ensureCommentModerationColumnsExist();
+            ensurePostSignaturesTableExists();
+            ensureFeedTablesExist();
+            ensurePostListIndexExists();
+            ensureCommentCountsExist();
+            ensureCommentThreadsExist();
+            ensureUserListIndexesExist();
+            ensureUserPurgesTableExists();
             
             logger.info("Database connection successful");
             
+            // Parse the post screens while the user logs in
+            ViewRegistry.getInstance().preload(ViewRegistry.POST_LIST, ViewRegistry.POST_DETAIL, ViewRegistry.POST_FORM);
+            // Have the dashboard totals ready by the time it is shown
+            DashboardSnapshotService.getInstance().start();
+            // Finish deleting users queued before the last exit
+            UserPurgeJob.getInstance().start();
+            // Let signup tell free usernames and emails without a query
+            UserAvailability.getInstance().start();
+            
             // Load login view
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/LoginView.fxml"));
             Parent root = loader.load();
@@ -64,6 +88,11 @@ public class BloggingPlatformApp extends Application {
     public void stop() {
         // Clean up resources
         com.blogging.util.HibernateUtil.shutdown();
+        com.blogging.spam.ModerationQueue.shutdown();
+        DashboardSnapshotService.shutdown();
+        UserPurgeJob.shutdown();
+        UserAvailability.shutdown();
+        PasswordHashing.shutdown();
         DatabaseConnection.close();
         logger.info("Application stopped");
     }
@@ -113,6 +142,267 @@ public class BloggingPlatformApp extends Application {
         }
     }
 
+    // Manual Migration: case-insensitive unique index on usernames, used by every login and
+    // signup check. Fails (and is retried on the next start) while usernames differing only
+    // in case exist.
+    private void ensureUsernameIndexExists() {
+        try (java.sql.Connection conn = DatabaseConnection.getConnection();
+             java.sql.Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS uq_users_username_lower ON users (LOWER(username))");
+        } catch (Exception e) {
+            logger.error("Database migration failed: could not create uq_users_username_lower: " + e.getMessage());
+        }
+    }
+
+    // Manual Migration: comment moderation. status and spam_score are set by the spam
+    // checks and the moderation queue, moderated marks statuses set by a moderator, so that a
+    // repeated or reversed decision does not train the spam classifier twice.
+    private void ensureCommentModerationColumnsExist() {
+        migrate("add the comment moderation columns",
+                "ALTER TABLE comments ADD COLUMN IF NOT EXISTS status VARCHAR(20) DEFAULT 'APPROVED'",
+                "ALTER TABLE comments ADD COLUMN IF NOT EXISTS spam_score DOUBLE PRECISION",
+                "ALTER TABLE comments ADD COLUMN IF NOT EXISTS moderated BOOLEAN NOT NULL DEFAULT FALSE",
+                "DO $$ BEGIN " +
+                        "ALTER TABLE comments ADD CONSTRAINT chk_comment_status " +
+                        "CHECK (status IN ('PENDING', 'APPROVED', 'SPAM')); " +
+                        "EXCEPTION WHEN duplicate_object THEN NULL; END $$",
+                "CREATE INDEX IF NOT EXISTS idx_comments_pending ON comments(comment_id) WHERE status = 'PENDING'");
+    }
+
+    // Manual Migration: the spam rules SpamFilter hot-reloads. Hibernate may already have
+    // created the table from SpamRule, without the defaults rules inserted by hand rely on;
+    // the trigger bumps updated_at on rules edited in place, which SpamFilter polls.
+    private void ensureSpamRulesTableExists() {
+        migrate("create spam_rules and its updated_at trigger",
+                "CREATE TABLE IF NOT EXISTS spam_rules (" +
+                        "rule_id SERIAL PRIMARY KEY, " +
+                        "pattern VARCHAR(200) NOT NULL, " +
+                        "whole_word BOOLEAN NOT NULL DEFAULT TRUE, " +
+                        "enabled BOOLEAN NOT NULL DEFAULT TRUE, " +
+                        "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "CONSTRAINT chk_spam_rule_pattern CHECK (LENGTH(TRIM(pattern)) >= 1))",
+                "ALTER TABLE spam_rules ALTER COLUMN whole_word SET DEFAULT TRUE, " +
+                        "ALTER COLUMN enabled SET DEFAULT TRUE, " +
+                        "ALTER COLUMN updated_at SET DEFAULT CURRENT_TIMESTAMP",
+                "DROP TRIGGER IF EXISTS trg_spam_rules_updated_at ON spam_rules",
+                "CREATE TRIGGER trg_spam_rules_updated_at BEFORE UPDATE ON spam_rules " +
+                        "FOR EACH ROW EXECUTE FUNCTION update_updated_at_column()");
+    }
+
+    // Manual Migration: the stored MinHash signatures of PostDuplicateIndex. Hibernate may
+    // already have created the table from PostSignature, without the cascade to posts.
+    private void ensurePostSignaturesTableExists() {
+        migrate("create post_signatures",
+                "CREATE TABLE IF NOT EXISTS post_signatures (" +
+                        "post_id INTEGER PRIMARY KEY, " +
+                        "signature BYTEA NOT NULL, " +
+                        "computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "CONSTRAINT fk_post_signatures_post FOREIGN KEY (post_id) " +
+                        "REFERENCES posts(post_id) ON DELETE CASCADE)");
+        if (!exists("SELECT 1 FROM pg_constraint WHERE conname = 'fk_post_signatures_post'")) {
+            migrate("add the cascade from posts to post_signatures",
+                    "DELETE FROM post_signatures s WHERE NOT EXISTS (SELECT 1 FROM posts p WHERE p.post_id = s.post_id)",
+                    "ALTER TABLE post_signatures ADD CONSTRAINT fk_post_signatures_post FOREIGN KEY (post_id) " +
+                            "REFERENCES posts(post_id) ON DELETE CASCADE");
+        }
+    }
+
+    // True when the query returns a row; false when it returns none or fails
+    private boolean exists(String query) {
+        try (java.sql.Connection conn = DatabaseConnection.getConnection();
+             java.sql.Statement stmt = conn.createStatement();
+             java.sql.ResultSet rs = stmt.executeQuery(query)) {
+            return rs.next();
+        } catch (Exception e) {
+            logger.error("Database migration check failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Manual Migration: followed authors and the feed timelines fanned out to followers.
+    private void ensureFeedTablesExist() {
+        migrate("create follows and feed_entries",
+                "CREATE TABLE IF NOT EXISTS follows (" +
+                        "follower_id INTEGER NOT NULL, " +
+                        "followee_id INTEGER NOT NULL, " +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "PRIMARY KEY (follower_id, followee_id), " +
+                        "CONSTRAINT fk_follows_follower FOREIGN KEY (follower_id) " +
+                        "REFERENCES users(user_id) ON DELETE CASCADE, " +
+                        "CONSTRAINT fk_follows_followee FOREIGN KEY (followee_id) " +
+                        "REFERENCES users(user_id) ON DELETE CASCADE, " +
+                        "CONSTRAINT chk_follows_not_self CHECK (follower_id <> followee_id))",
+                "CREATE INDEX IF NOT EXISTS idx_follows_followee ON follows(followee_id)",
+                "CREATE TABLE IF NOT EXISTS feed_entries (" +
+                        "user_id INTEGER NOT NULL, " +
+                        "post_id INTEGER NOT NULL, " +
+                        "PRIMARY KEY (user_id, post_id), " +
+                        "CONSTRAINT fk_feed_entries_user FOREIGN KEY (user_id) " +
+                        "REFERENCES users(user_id) ON DELETE CASCADE, " +
+                        "CONSTRAINT fk_feed_entries_post FOREIGN KEY (post_id) " +
+                        "REFERENCES posts(post_id) ON DELETE CASCADE)",
+                "CREATE INDEX IF NOT EXISTS idx_feed_entries_post ON feed_entries(post_id)");
+    }
+
+    // Manual Migration: index matching the post list order, for keyset paging through all
+    // posts.
+    private void ensurePostListIndexExists() {
+        migrate("create idx_posts_created_id",
+                "CREATE INDEX IF NOT EXISTS idx_posts_created_id ON posts(created_at DESC, post_id DESC)");
+    }
+
+    // Manual Migration: per-post comment counts kept by trg_comments_count. The trigger is
+    // created before the counts are seeded, in one transaction: it locks out comment writes
+    // until the seed commits, so no comment is counted twice or missed.
+    private void ensureCommentCountsExist() {
+        if (exists("SELECT 1 FROM pg_trigger WHERE tgname = 'trg_comments_count'")) {
+            return;
+        }
+        migrate("create post_comment_counts",
+                "CREATE TABLE IF NOT EXISTS post_comment_counts (" +
+                        "post_id INTEGER PRIMARY KEY, " +
+                        "comment_count INTEGER NOT NULL DEFAULT 0, " +
+                        "CONSTRAINT fk_post_comment_counts_post FOREIGN KEY (post_id) " +
+                        "REFERENCES posts(post_id) ON DELETE CASCADE)",
+                "CREATE OR REPLACE FUNCTION maintain_post_comment_count() RETURNS TRIGGER AS $$ " +
+                        "BEGIN " +
+                        "IF TG_OP IN ('DELETE', 'UPDATE') THEN " +
+                        "IF OLD.status <> 'SPAM' THEN " +
+                        "UPDATE post_comment_counts SET comment_count = comment_count - 1 " +
+                        "WHERE post_id = OLD.post_id; " +
+                        "END IF; " +
+                        "END IF; " +
+                        "IF TG_OP IN ('INSERT', 'UPDATE') THEN " +
+                        "IF NEW.status <> 'SPAM' THEN " +
+                        "INSERT INTO post_comment_counts (post_id, comment_count) VALUES (NEW.post_id, 1) " +
+                        "ON CONFLICT (post_id) DO UPDATE " +
+                        "SET comment_count = post_comment_counts.comment_count + 1; " +
+                        "END IF; " +
+                        "END IF; " +
+                        "RETURN NULL; " +
+                        "END; $$ LANGUAGE plpgsql",
+                "DROP TRIGGER IF EXISTS trg_comments_count ON comments",
+                "CREATE TRIGGER trg_comments_count " +
+                        "AFTER INSERT OR DELETE OR UPDATE OF status, post_id ON comments " +
+                        "FOR EACH ROW EXECUTE FUNCTION maintain_post_comment_count()",
+                "INSERT INTO post_comment_counts (post_id, comment_count) " +
+                        "SELECT post_id, COUNT(*) FROM comments WHERE status <> 'SPAM' GROUP BY post_id " +
+                        "ON CONFLICT DO NOTHING");
+    }
+
+    // Manual Migration: comment threads. Runs until trg_comments_path exists. Columns
+    // Hibernate may have added from Comment are completed, existing comments get their thread
+    // path and reply count, and the triggers and indexes are created, in one transaction.
+    private void ensureCommentThreadsExist() {
+        if (exists("SELECT 1 FROM pg_trigger WHERE tgname = 'trg_comments_path'")) {
+            return;
+        }
+        migrate("add comment threads",
+                "ALTER TABLE comments ADD COLUMN IF NOT EXISTS parent_id INTEGER",
+                "ALTER TABLE comments ADD COLUMN IF NOT EXISTS path TEXT COLLATE \"C\"",
+                "ALTER TABLE comments ADD COLUMN IF NOT EXISTS reply_count INTEGER NOT NULL DEFAULT 0",
+                "DO $$ BEGIN " +
+                        "ALTER TABLE comments ADD CONSTRAINT fk_comments_parent FOREIGN KEY (parent_id) " +
+                        "REFERENCES comments(comment_id) ON DELETE CASCADE; " +
+                        "EXCEPTION WHEN duplicate_object THEN NULL; END $$",
+                // Existing comments are flat unless replies were written before this ran
+                "WITH RECURSIVE thread AS (" +
+                        "SELECT comment_id, lpad(comment_id::text, 10, '0') || '/' AS path " +
+                        "FROM comments WHERE parent_id IS NULL " +
+                        "UNION ALL " +
+                        "SELECT c.comment_id, t.path || lpad(c.comment_id::text, 10, '0') || '/' " +
+                        "FROM comments c JOIN thread t ON c.parent_id = t.comment_id) " +
+                        "UPDATE comments c SET path = t.path FROM thread t " +
+                        "WHERE c.comment_id = t.comment_id AND c.path IS NULL",
+                "UPDATE comments p SET reply_count = r.replies FROM (" +
+                        "SELECT parent_id, COUNT(*) AS replies FROM comments " +
+                        "WHERE parent_id IS NOT NULL AND status <> 'SPAM' GROUP BY parent_id) r " +
+                        "WHERE p.comment_id = r.parent_id",
+                "UPDATE comments SET reply_count = 0 WHERE reply_count IS NULL",
+                "ALTER TABLE comments ALTER COLUMN path SET NOT NULL, " +
+                        "ALTER COLUMN reply_count SET DEFAULT 0, " +
+                        "ALTER COLUMN reply_count SET NOT NULL",
+                "CREATE OR REPLACE FUNCTION set_comment_path() RETURNS TRIGGER AS $$ " +
+                        "DECLARE parent_path TEXT; " +
+                        "BEGIN " +
+                        "IF NEW.parent_id IS NULL THEN " +
+                        "parent_path := ''; " +
+                        "ELSE " +
+                        "SELECT path INTO parent_path FROM comments " +
+                        "WHERE comment_id = NEW.parent_id AND post_id = NEW.post_id; " +
+                        "IF parent_path IS NULL THEN " +
+                        "RAISE EXCEPTION 'Comment % is not a comment on post %', NEW.parent_id, NEW.post_id; " +
+                        "END IF; " +
+                        "END IF; " +
+                        "NEW.path := parent_path || lpad(NEW.comment_id::text, 10, '0') || '/'; " +
+                        "RETURN NEW; " +
+                        "END; $$ LANGUAGE plpgsql",
+                "CREATE TRIGGER trg_comments_path BEFORE INSERT ON comments " +
+                        "FOR EACH ROW EXECUTE FUNCTION set_comment_path()",
+                "CREATE OR REPLACE FUNCTION maintain_reply_count() RETURNS TRIGGER AS $$ " +
+                        "BEGIN " +
+                        "IF TG_OP IN ('DELETE', 'UPDATE') THEN " +
+                        "IF OLD.parent_id IS NOT NULL AND OLD.status <> 'SPAM' THEN " +
+                        "UPDATE comments SET reply_count = reply_count - 1 WHERE comment_id = OLD.parent_id; " +
+                        "END IF; " +
+                        "END IF; " +
+                        "IF TG_OP IN ('INSERT', 'UPDATE') THEN " +
+                        "IF NEW.parent_id IS NOT NULL AND NEW.status <> 'SPAM' THEN " +
+                        "UPDATE comments SET reply_count = reply_count + 1 WHERE comment_id = NEW.parent_id; " +
+                        "END IF; " +
+                        "END IF; " +
+                        "RETURN NULL; " +
+                        "END; $$ LANGUAGE plpgsql",
+                "DROP TRIGGER IF EXISTS trg_comments_reply_count ON comments",
+                "CREATE TRIGGER trg_comments_reply_count " +
+                        "AFTER INSERT OR DELETE OR UPDATE OF status ON comments " +
+                        "FOR EACH ROW EXECUTE FUNCTION maintain_reply_count()",
+                "CREATE INDEX IF NOT EXISTS idx_comments_post_path ON comments(post_id, path)",
+                "CREATE INDEX IF NOT EXISTS idx_comments_post_roots ON comments(post_id, path) WHERE parent_id IS NULL",
+                "CREATE INDEX IF NOT EXISTS idx_comments_parent ON comments(parent_id)");
+    }
+
+    // Manual Migration: indexes for user management's prefix search and keyset paging.
+    private void ensureUserListIndexesExist() {
+        migrate("create the user management indexes",
+                "CREATE INDEX IF NOT EXISTS idx_users_username_lower ON users ((LOWER(username) COLLATE \"C\"), user_id)",
+                "CREATE INDEX IF NOT EXISTS idx_users_email_lower ON users ((LOWER(email) COLLATE \"C\"), user_id)",
+                "CREATE INDEX IF NOT EXISTS idx_users_created_id ON users(created_at DESC, user_id DESC)");
+    }
+
+    // Manual Migration: users queued for deletion, which findByUsername and the user list
+    // leave out, so every login depends on it.
+    private void ensureUserPurgesTableExists() {
+        migrate("create user_purges",
+                "CREATE TABLE IF NOT EXISTS user_purges (" +
+                        "user_id INTEGER PRIMARY KEY, " +
+                        "requested_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "CONSTRAINT fk_user_purges_user FOREIGN KEY (user_id) " +
+                        "REFERENCES users(user_id) ON DELETE CASCADE)");
+    }
+
+    // Runs the statements of one migration in a transaction, so that a migration that fails
+    // leaves nothing behind and is retried whole on the next start. Each statement must be
+    // safe to run again (IF NOT EXISTS).
+    private void migrate(String what, String... statements) {
+        try (java.sql.Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+                conn.commit();
+            } catch (java.sql.SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (Exception e) {
+            logger.error("Database migration failed: could not " + what + ": " + e.getMessage());
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
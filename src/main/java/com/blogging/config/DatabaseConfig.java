@@ -37,26 +37,42 @@ public class DatabaseConfig {
     }
 
     public static String getUrl() {
-        return properties.getProperty("db.url");
+        return get("db.url", null);
     }
 
     public static String getUsername() {
-        return properties.getProperty("db.username");
+        return get("db.username", null);
     }
 
     public static String getPassword() {
-        return properties.getProperty("db.password");
+        return get("db.password", null);
     }
 
     public static String getDriver() {
-        return properties.getProperty("db.driver");
+        return get("db.driver", null);
     }
 
     public static int getPoolSize() {
-        return Integer.parseInt(properties.getProperty("db.pool.size", "10"));
+        return Integer.parseInt(get("db.pool.size", "10"));
     }
 
     public static long getPoolTimeout() {
-        return Long.parseLong(properties.getProperty("db.pool.timeout", "30000"));
+        return Long.parseLong(get("db.pool.timeout", "30000"));
+    }
+
+
+     // File to record DAO statements to (see TraceRecorder), or null when tracing is off.
+
+    public static String getTraceFile() {
+        String file = get("db.trace.file", null);
+        return file == null || file.isBlank() ? null : file;
+    }
+
+
+     // System properties (-Ddb.url=...) take precedence over the properties file,
+     // so tools such as the data generator can target another database.
+
+    private static String get(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue));
     }
 }
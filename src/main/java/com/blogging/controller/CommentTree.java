@@ -0,0 +1,173 @@
+package com.blogging.controller;
+
+import com.blogging.model.Comment;
+import javafx.scene.control.TreeItem;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+ // The loaded part of a post's discussion as TreeItems under a hidden root.
+ //
+ // Rows arrive in path order (see Comment.getPath) and are hung under their parent's item,
+ // or under the nearest loaded ancestor when the parent is not shown (marked as spam). A
+ // comment whose replies are not all loaded gets a MoreReplies placeholder as its last
+ // child: expanding a collapsed comment or clicking the placeholder loads the rest of its
+ // subtree, at every depth, with one query.
+ //
+ // The loaded rows of every thread are a prefix of the thread in path order, because
+ // threads are read from their start and subtrees are continued from their last loaded
+ // row. New comments are only added where that stays true.
+
+final class CommentTree {
+    private final TreeItem<Comment> root;
+    private final Map<String, TreeItem<Comment>> byPath = new HashMap<>();
+
+    CommentTree(TreeItem<Comment> root) {
+        this.root = root;
+    }
+
+    void clear() {
+        root.getChildren().clear();
+        byPath.clear();
+    }
+
+
+     // Add rows in path order. Rows already shown are skipped.
+
+    void add(List<Comment> rows) {
+        for (Comment comment : rows) {
+            if (byPath.containsKey(comment.getPath())) continue;
+            TreeItem<Comment> parent = loadedAncestor(comment);
+            TreeItem<Comment> item = new TreeItem<>(comment);
+            byPath.put(comment.getPath(), item);
+            appendChild(parent, item);
+            updatePlaceholder(item);
+            if (parent != root) {
+                updatePlaceholder(parent);
+            }
+        }
+    }
+
+
+     // Show a comment just posted, if it belongs at the end of what is loaded. Returns
+     // whether it was added.
+
+    boolean addPosted(Comment comment, boolean allThreadsLoaded) {
+        TreeItem<Comment> parent = comment.getParentId() == null ? root : byPath.get(comment.getParentPath());
+        if (parent == null) return false;
+        if (parent != root) {
+            parent.getValue().setReplyCount(parent.getValue().getReplyCount() + 1);
+            // Replies not loaded yet come first: the new one is shown when they are loaded
+            if (unloadedReplies(parent) > 1) {
+                updatePlaceholder(parent);
+                return false;
+            }
+        } else if (!allThreadsLoaded) {
+            return false;
+        }
+        add(List.of(comment));
+        return true;
+    }
+
+    void remove(TreeItem<Comment> item) {
+        TreeItem<Comment> parent = item.getParent();
+        removeSubtree(item);
+        if (parent != null) {
+            parent.getChildren().remove(item);
+            if (parent != root) {
+                Comment comment = parent.getValue();
+                comment.setReplyCount(Math.max(0, comment.getReplyCount() - 1));
+                updatePlaceholder(parent);
+            }
+        }
+    }
+
+    TreeItem<Comment> itemOf(Comment comment) {
+        return byPath.get(comment.getPath());
+    }
+
+
+     // The top-level comment shown last, the cursor for the next page of threads.
+
+    Comment lastRoot() {
+        List<TreeItem<Comment>> threads = root.getChildren();
+        return threads.isEmpty() ? null : threads.get(threads.size() - 1).getValue();
+    }
+
+
+     // Path of the last loaded comment in the subtree of the item, the cursor for loading
+     // the rest of it.
+
+    String lastLoadedPath(TreeItem<Comment> item) {
+        TreeItem<Comment> last = item;
+        while (true) {
+            List<TreeItem<Comment>> children = last.getChildren();
+            int index = children.size() - 1;
+            if (index >= 0 && children.get(index) instanceof MoreReplies) index--;
+            if (index < 0) return last.getValue().getPath();
+            last = children.get(index);
+        }
+    }
+
+    int unloadedReplies(TreeItem<Comment> item) {
+        int loaded = 0;
+        for (TreeItem<Comment> child : item.getChildren()) {
+            if (!(child instanceof MoreReplies)) loaded++;
+        }
+        return item.getValue().getReplyCount() - loaded;
+    }
+
+    boolean hasOnlyPlaceholder(TreeItem<Comment> item) {
+        List<TreeItem<Comment>> children = item.getChildren();
+        return children.size() == 1 && children.get(0) instanceof MoreReplies;
+    }
+
+    private TreeItem<Comment> loadedAncestor(Comment comment) {
+        String path = comment.getParentPath();
+        while (path != null) {
+            TreeItem<Comment> item = byPath.get(path);
+            if (item != null) return item;
+            path = path.length() > Comment.PATH_SEGMENT_LENGTH
+                    ? path.substring(0, path.length() - Comment.PATH_SEGMENT_LENGTH) : null;
+        }
+        return root;
+    }
+
+    // Children stay in path order with the placeholder last
+    private void appendChild(TreeItem<Comment> parent, TreeItem<Comment> item) {
+        List<TreeItem<Comment>> children = parent.getChildren();
+        int index = children.size();
+        if (index > 0 && children.get(index - 1) instanceof MoreReplies) index--;
+        children.add(index, item);
+    }
+
+    // Collapsed while none of its replies are loaded, so that expanding it loads them
+    private void updatePlaceholder(TreeItem<Comment> item) {
+        List<TreeItem<Comment>> children = item.getChildren();
+        boolean hasPlaceholder = !children.isEmpty() && children.get(children.size() - 1) instanceof MoreReplies;
+        int unloaded = unloadedReplies(item);
+        if (unloaded > 0 && !hasPlaceholder) {
+            children.add(new MoreReplies());
+        } else if (unloaded <= 0 && hasPlaceholder) {
+            children.remove(children.size() - 1);
+        }
+        item.setExpanded(!children.isEmpty() && !hasOnlyPlaceholder(item));
+    }
+
+    private void removeSubtree(TreeItem<Comment> item) {
+        if (item.getValue() != null) {
+            byPath.remove(item.getValue().getPath());
+        }
+        for (TreeItem<Comment> child : item.getChildren()) {
+            removeSubtree(child);
+        }
+    }
+
+
+     // Placeholder row standing for the replies of its parent that are not loaded yet.
+
+    static final class MoreReplies extends TreeItem<Comment> {
+    }
+}
@@ -1,62 +1,101 @@
 package com.blogging.controller;
 
-import com.blogging.dao.PostDAO;
+import com.blogging.service.DashboardSnapshot;
+import com.blogging.service.DashboardSnapshotService;
 import com.blogging.service.PostService;
 import com.blogging.service.UserService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.sql.SQLException;
-import java.util.Map;
+import java.time.format.DateTimeFormatter;
 
 
  // Controller for dashboard view.
+ // Shows the latest DashboardSnapshot right away and the ones pushed after it.
  
 public class DashboardController {
-    private static final Logger logger = LoggerFactory.getLogger(DashboardController.class);
+    private static final DateTimeFormatter UPDATED_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
 
     @FXML private Label totalPostsLabel;
     @FXML private Label totalUsersLabel;
+    @FXML private Label totalCommentsLabel;
+    @FXML private Label totalReviewsLabel;
+    @FXML private Label todayLabel;
     @FXML private Label cacheHitsLabel;
     @FXML private Label cacheMissesLabel;
     @FXML private Label hitRateLabel;
     @FXML private Label welcomeMessageLabel;
+    @FXML private Label updatedLabel;
 
-    private PostService postService;
     private UserService userService;
+    private final DashboardSnapshotService snapshots = DashboardSnapshotService.getInstance();
+    // Held here because the service only keeps a weak reference
+    private final DashboardSnapshotService.Listener snapshotListener = this::onSnapshot;
+    // The snapshot on screen; only the labels whose value changed are updated
+    private DashboardSnapshot shown;
+
+    @FXML
+    public void initialize() {
+        snapshots.subscribe(snapshotListener);
+    }
 
     public void setServices(PostService postService, UserService userService) {
-        this.postService = postService;
         this.userService = userService;
+        snapshots.watchCache(postService);
     }
 
     public void loadDashboardData() {
-        try {
-            // Load post count
-            int totalPosts = postService.getTotalPostCount();
-            totalPostsLabel.setText(String.valueOf(totalPosts));
-
-            // Load user count
-            int totalUsers = userService.getAllUsers().size();
-            totalUsersLabel.setText(String.valueOf(totalUsers));
-
-            // Load cache statistics
-            Map<String, Object> cacheStats = postService.getCacheStats();
-            cacheHitsLabel.setText(String.valueOf(cacheStats.get("cacheHits")));
-            cacheMissesLabel.setText(String.valueOf(cacheStats.get("cacheMisses")));
-            hitRateLabel.setText(String.valueOf(cacheStats.get("hitRate")));
-
-            // Welcome message
-            if (userService.isLoggedIn()) {
-                welcomeMessageLabel.setText("Welcome back, " + userService.getCurrentUser().getUsername() + "!");
-            } else {
-                welcomeMessageLabel.setText("Welcome to Smart Blogging Platform!");
-            }
-
-        } catch (SQLException e) {
-            logger.error("Failed to load dashboard data", e);
+        DashboardSnapshot snapshot = snapshots.getSnapshot();
+        if (snapshot != null) {
+            show(snapshot);
+        } else {
+            // Not read yet: shown when it arrives
+            updatedLabel.setText("Loading statistics...");
+            snapshots.refreshNow();
+        }
+
+        // Welcome message
+        if (userService.isLoggedIn()) {
+            welcomeMessageLabel.setText("Welcome back, " + userService.getCurrentUser().getUsername() + "!");
+        } else {
+            welcomeMessageLabel.setText("Welcome to Smart Blogging Platform!");
+        }
+    }
+
+    private void onSnapshot(DashboardSnapshot snapshot) {
+        if (Platform.isFxApplicationThread()) {
+            show(snapshot);
+        } else {
+            Platform.runLater(() -> show(snapshot));
+        }
+    }
+
+    private void show(DashboardSnapshot snapshot) {
+        DashboardSnapshot previous = shown;
+        shown = snapshot;
+        if (previous == null || previous.getPosts() != snapshot.getPosts()) {
+            totalPostsLabel.setText(String.valueOf(snapshot.getPosts()));
+        }
+        if (previous == null || previous.getUsers() != snapshot.getUsers()) {
+            totalUsersLabel.setText(String.valueOf(snapshot.getUsers()));
+        }
+        if (previous == null || previous.getComments() != snapshot.getComments()) {
+            totalCommentsLabel.setText(String.valueOf(snapshot.getComments()));
+        }
+        if (previous == null || previous.getReviews() != snapshot.getReviews()) {
+            totalReviewsLabel.setText(String.valueOf(snapshot.getReviews()));
+        }
+        if (previous == null || previous.getPostsToday() != snapshot.getPostsToday()
+                || previous.getCommentsToday() != snapshot.getCommentsToday()) {
+            todayLabel.setText(String.format("%d posts, %d comments", snapshot.getPostsToday(), snapshot.getCommentsToday()));
+        }
+        if (previous == null || previous.getCacheHits() != snapshot.getCacheHits()
+                || previous.getCacheMisses() != snapshot.getCacheMisses()) {
+            cacheHitsLabel.setText(String.valueOf(snapshot.getCacheHits()));
+            cacheMissesLabel.setText(String.valueOf(snapshot.getCacheMisses()));
+            hitRateLabel.setText(snapshot.getHitRate());
         }
+        updatedLabel.setText("Updated at " + snapshot.getTakenAt().format(UPDATED_FORMAT));
     }
 }
@@ -1,6 +1,7 @@
 package com.blogging.controller;
 
 import com.blogging.service.UserService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -11,12 +12,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
- // Controller for the login page.
+ // Controller for the login page. Logging in verifies a slow password hash, so it runs
+ // on a background thread with the button disabled.
  
 public class LoginController {
     private static final Logger logger = LoggerFactory.getLogger(LoginController.class);
+    private static final ExecutorService LOGIN = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "login");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @FXML private TextField usernameField;
     @FXML private PasswordField passwordField;
@@ -41,17 +50,30 @@ public class LoginController {
             return;
         }
 
-        try {
-            userService.login(username, password);
-            logger.info("Login successful for user: {}", username);
-            
-            // Navigate to main application
-            loadMainApplication();
-            
-        } catch (Exception e) {
-            logger.error("Login failed", e);
-            showError("Invalid username or password");
-        }
+        loginButton.setDisable(true);
+        errorLabel.setVisible(false);
+        LOGIN.execute(() -> {
+            try {
+                userService.login(username, password);
+                logger.info("Login successful for user: {}", username);
+
+                // Navigate to main application
+                Platform.runLater(this::loadMainApplication);
+
+            } catch (IllegalStateException e) {
+                // The hashing pool is saturated: say so rather than blame the password
+                logger.warn("Login refused: {}", e.getMessage());
+                Platform.runLater(() -> loginFailed(e.getMessage()));
+            } catch (Exception e) {
+                logger.error("Login failed", e);
+                Platform.runLater(() -> loginFailed("Invalid username or password"));
+            }
+        });
+    }
+
+    private void loginFailed(String message) {
+        loginButton.setDisable(false);
+        showError(message);
     }
 
     @FXML
@@ -2,18 +2,22 @@ package com.blogging.controller;
 
 import com.blogging.model.Post;
 import com.blogging.model.User;
+import com.blogging.service.FeedService;
+import com.blogging.security.PasswordHashing;
 import com.blogging.service.PostService;
+import com.blogging.service.UserPurgeJob;
 import com.blogging.service.UserService;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +26,8 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
  // Main controller for the blogging platform.
@@ -29,6 +35,12 @@ import java.util.Optional;
  
 public class MainController {
     private static final Logger logger = LoggerFactory.getLogger(MainController.class);
+    // Logins from the dialog, which verify a slow password hash
+    private static final ExecutorService LOGIN = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "main-login");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @FXML private BorderPane mainBorderPane;
     @FXML private Label welcomeLabel;
@@ -37,15 +49,21 @@ public class MainController {
     @FXML private Button dashboardButton;
     @FXML private Button postsButton;
     @FXML private Button myPostsButton;
+    @FXML private Button feedButton;
     @FXML private Button createPostButton;
     @FXML private Button cacheStatsButton;
     @FXML private Button manageUsersButton; // New Admin Button
     
     private UserService userService;
     private final PostService postService;
+    private final ViewRegistry views = ViewRegistry.getInstance();
+    // The post list shown in the center, handed back to the registry when replaced
+    private ViewRegistry.View<PostListController> postListView;
 
     public MainController() {
         this.postService = new PostService();
+        // Users deleted from user management take their posts out of this service's caches
+        UserPurgeJob.getInstance().watchPosts(postService);
     }
 
     public void setUserService(UserService userService) {
@@ -61,21 +79,32 @@ public class MainController {
 
     @FXML
     private void handleLogin() {
-        try {
-            // Create login dialog
-            Dialog<User> dialog = createLoginDialog();
-            Optional<User> result = dialog.showAndWait();
-            
-            result.ifPresent(user -> {
-                updateUIForLoginState();
-                showInfo("Login Successful", "Welcome, " + user.getUsername() + "!");
-                loadDashboard();
-            });
-            
-        } catch (Exception e) {
-            logger.error("Login error", e);
-            showError("Login Error", e.getMessage());
-        }
+        // Create login dialog
+        Dialog<Pair<String, String>> dialog = createLoginDialog();
+        Optional<Pair<String, String>> result = dialog.showAndWait();
+        if (!result.isPresent()) return;
+
+        // Verifying the password hash takes a while: log in off the FX thread
+        String username = result.get().getKey();
+        String password = result.get().getValue();
+        loginButton.setDisable(true);
+        LOGIN.execute(() -> {
+            try {
+                userService.login(username, password);
+                Platform.runLater(() -> {
+                    loginButton.setDisable(false);
+                    updateUIForLoginState();
+                    showInfo("Login Successful", "Welcome, " + userService.getCurrentUser().getUsername() + "!");
+                    loadDashboard();
+                });
+            } catch (SQLException | RuntimeException e) {
+                logger.error("Login error", e);
+                Platform.runLater(() -> {
+                    loginButton.setDisable(false);
+                    showError("Login Failed", e.getMessage());
+                });
+            }
+        });
     }
 
     @FXML
@@ -105,6 +134,15 @@ public class MainController {
         loadMyPosts();
     }
 
+    @FXML
+    private void handleFeed() {
+        if (!userService.isLoggedIn()) {
+            showError("Not Logged In", "Please log in to see your feed.");
+            return;
+        }
+        loadFeed();
+    }
+
     @FXML
     private void handleCreatePost() {
         if (!userService.isLoggedIn()) {
@@ -121,7 +159,7 @@ public class MainController {
 
     @FXML
     private void handleManageUsers() {
-        if (userService.isLoggedIn() && "ADMIN".equalsIgnoreCase(userService.getCurrentUser().getRole())) {
+        if (userService.isAdmin()) {
             loadUserManagement();
         } else {
             showError("Access Denied", "You must be an admin to access this page.");
@@ -140,6 +178,7 @@ public class MainController {
             controller.setServices(postService, userService);
             controller.loadDashboardData();
             
+            releasePostList();
             mainBorderPane.setCenter(dashboard);
             
         } catch (IOException e) {
@@ -153,15 +192,9 @@ public class MainController {
      */
     private void loadPostList() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/PostListView.fxml"));
-            Parent postList = loader.load();
-            
-            PostListController controller = loader.getController();
-            controller.setServices(postService, userService);
+            PostListController controller = showPostList();
             controller.loadPosts();
             
-            mainBorderPane.setCenter(postList);
-            
         } catch (IOException e) {
             logger.error("Failed to load post list", e);
             showError("Error", "Failed to load posts: " + e.getMessage());
@@ -174,43 +207,68 @@ public class MainController {
     private void loadMyPosts() {
         try {
             User currentUser = userService.getCurrentUser();
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/PostListView.fxml"));
-            Parent postList = loader.load();
-            
-            PostListController controller = loader.getController();
-            controller.setServices(postService, userService);
+            PostListController controller = showPostList();
             controller.loadUserPosts(currentUser.getUserId());
             
-            mainBorderPane.setCenter(postList);
-            
         } catch (IOException e) {
             logger.error("Failed to load user posts", e);
             showError("Error", "Failed to load your posts: " + e.getMessage());
         }
     }
 
+    /**
+     * Load the feed of posts from followed authors.
+     */
+    private void loadFeed() {
+        try {
+            PostListController controller = showPostList();
+            controller.loadFeed(new FeedService());
+            
+        } catch (IOException e) {
+            logger.error("Failed to load feed", e);
+            showError("Error", "Failed to load your feed: " + e.getMessage());
+        }
+    }
+
+    // The post list view in the center, reset from whatever it showed before
+    private PostListController showPostList() throws IOException {
+        releasePostList();
+        postListView = views.acquire(ViewRegistry.POST_LIST);
+        PostListController controller = postListView.getController();
+        controller.setServices(postService, userService);
+        mainBorderPane.setCenter(postListView.getRoot());
+        return controller;
+    }
+
+    private void releasePostList() {
+        if (postListView != null) {
+            views.release(postListView);
+            postListView = null;
+        }
+    }
+
     /**
      * Show create post dialog.
      */
     private void showCreatePostDialog() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/PostFormView.fxml"));
-            Parent form = loader.load();
-            
-            PostFormController controller = loader.getController();
+            ViewRegistry.View<PostFormController> form = views.acquire(ViewRegistry.POST_FORM);
+            PostFormController controller = form.getController();
             controller.setServices(postService, userService);
             
             Stage dialogStage = new Stage();
             dialogStage.setTitle("Create New Post");
             dialogStage.initModality(Modality.WINDOW_MODAL);
             dialogStage.initOwner(mainBorderPane.getScene().getWindow());
-            dialogStage.setScene(new Scene(form));
+            dialogStage.setScene(form.getScene());
             
             controller.setDialogStage(dialogStage);
             dialogStage.showAndWait();
             
+            boolean created = controller.isPostCreated();
+            views.release(form);
             // Refresh post list if post was created
-            if (controller.isPostCreated()) {
+            if (created) {
                 loadPostList();
             }
             
@@ -223,8 +281,8 @@ public class MainController {
     /**
      * Create login dialog.
      */
-    private Dialog<User> createLoginDialog() {
-        Dialog<User> dialog = new Dialog<>();
+    private Dialog<Pair<String, String>> createLoginDialog() {
+        Dialog<Pair<String, String>> dialog = new Dialog<>();
         dialog.setTitle("Login");
         dialog.setHeaderText("Enter your credentials");
 
@@ -248,13 +306,7 @@ public class MainController {
 
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == loginButtonType) {
-                try {
-                    userService.login(usernameField.getText(), passwordField.getText());
-                    return userService.getCurrentUser();
-                } catch (SQLException | IllegalArgumentException e) {
-                    showError("Login Failed", e.getMessage());
-                    return null;
-                }
+                return new Pair<>(usernameField.getText(), passwordField.getText());
             }
             return null;
         });
@@ -267,16 +319,33 @@ public class MainController {
      */
     private void showCacheStatistics() {
         Map<String, Object> stats = postService.getCacheStats();
+        Map<String, Object> viewStats = views.getStats();
+        Map<String, Object> hashStats = PasswordHashing.getInstance().getStats();
         
         String message = String.format(
             "Cache Size: %d posts\n" +
             "Cache Hits: %d\n" +
             "Cache Misses: %d\n" +
-            "Hit Rate: %s",
+            "Hit Rate: %s\n\n" +
+            "Views Loaded: %d\n" +
+            "Views Reused: %d\n\n" +
+            "Password Hashes: %d (%d refused)\n" +
+            "Hashing Threads: %d, Queued: %d of %d\n" +
+            "Avg Hash: %.1f ms, Avg Wait: %.1f ms (max %.1f ms)",
             stats.get("cacheSize"),
             stats.get("cacheHits"),
             stats.get("cacheMisses"),
-            stats.get("hitRate")
+            stats.get("hitRate"),
+            viewStats.get("loads"),
+            viewStats.get("reuses"),
+            hashStats.get("completed"),
+            hashStats.get("rejected"),
+            hashStats.get("threads"),
+            hashStats.get("queued"),
+            hashStats.get("queueCapacity"),
+            hashStats.get("avgHashMillis"),
+            hashStats.get("avgWaitMillis"),
+            hashStats.get("maxWaitMillis")
         );
         
         showInfo("Cache Statistics", message);
@@ -295,10 +364,11 @@ public class MainController {
         logoutButton.setManaged(isLoggedIn);
         
         myPostsButton.setDisable(!isLoggedIn);
+        feedButton.setDisable(!isLoggedIn);
         createPostButton.setDisable(!isLoggedIn);
         
         // Handle Admin Button
-        if (isLoggedIn && "ADMIN".equalsIgnoreCase(userService.getCurrentUser().getRole())) {
+        if (isLoggedIn && userService.isAdmin()) {
             if (manageUsersButton != null) {
                 manageUsersButton.setVisible(true);
                 manageUsersButton.setManaged(true);
@@ -368,6 +438,7 @@ public class MainController {
             UserManagementController controller = loader.getController();
             controller.setUserService(userService);
             
+            releasePostList();
             mainBorderPane.setCenter(view);
             
         } catch (IOException e) {
@@ -0,0 +1,232 @@
+package com.blogging.controller;
+
+import com.blogging.model.Post;
+import com.blogging.service.PostChange;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+ // Lazily loaded list of all posts, newest first, for a virtualized TableView.
+ //
+ // The list reports the full post count but only holds windows of WINDOW_SIZE rows. A row
+ // that is not loaded yet reads as null (an empty table row) and schedules its window on the
+ // loader executor; when the window arrives on the FX thread the list fires a replace change
+ // for those rows, and the table redraws them. The window after (or before) the one being
+ // read is prefetched in the scroll direction, and once more than MAX_WINDOWS are held the
+ // window farthest from the reader is dropped, so memory stays bounded however far the
+ // user scrolls.
+ //
+ // A window that directly follows a loaded one is fetched with a keyset query from that
+ // window's last row; a jump (dragging the scroll bar) falls back to LIMIT/OFFSET.
+ //
+ // All methods must be called on the FX thread.
+
+public class PagedPostList extends ObservableListBase<Post> {
+    private static final Logger logger = LoggerFactory.getLogger(PagedPostList.class);
+    static final int WINDOW_SIZE = 100;
+    static final int MAX_WINDOWS = 8;
+    // One loader thread for every list: windows are read one after the other, nearest first
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "post-list-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final WindowLoader loader;
+    private final Executor background;
+    private final Executor fxThread;
+    private final Map<Integer, List<Post>> windows = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private int size;
+    // Read by the loader thread to skip windows the reader has scrolled away from
+    private volatile int lastWindow;
+    private boolean scrollingDown = true;
+    // Results of loads started before the last refresh are dropped
+    private int generation;
+
+    public PagedPostList(WindowLoader loader, int size) {
+        this(loader, size, LOADER, Platform::runLater);
+    }
+
+    PagedPostList(WindowLoader loader, int size, Executor background, Executor fxThread) {
+        this.loader = loader;
+        this.size = size;
+        this.background = background;
+        this.fxThread = fxThread;
+    }
+
+    @Override
+    public Post get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of 0.." + size);
+        }
+        int window = index / WINDOW_SIZE;
+        if (window != lastWindow) {
+            scrollingDown = window > lastWindow;
+            lastWindow = window;
+        }
+        List<Post> rows = windows.get(window);
+        if (rows == null) {
+            request(window);
+            return null;
+        }
+        request(scrollingDown ? window + 1 : window - 1);
+        int offset = index - window * WINDOW_SIZE;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+     // Drop every loaded row and start over with a new post count, keeping the reader's
+     // position: the rows on screen are loaded again as the table redraws them.
+
+    public void refresh(int newSize) {
+        generation++;
+        windows.clear();
+        loading.clear();
+        int oldSize = size;
+        size = newSize;
+        beginChange();
+        nextReplace(0, newSize, Collections.nCopies(oldSize, null));
+        endChange();
+    }
+
+     // Patch the list for a post change. Edits and views update the loaded row in place. A new
+     // or deleted post shifts the rows after it, so those windows are dropped and reloaded.
+
+    public void apply(PostChange change) {
+        switch (change.getType()) {
+            case CREATED:
+                generation++;
+                windows.clear();
+                loading.clear();
+                size++;
+                beginChange();
+                nextAdd(0, 1);
+                endChange();
+                break;
+            case DELETED:
+                int index = positionOf(change.getPostId());
+                if (index < 0) {
+                    // Not loaded: its position is unknown, start over
+                    refresh(size - 1);
+                    return;
+                }
+                Post removed = windows.get(index / WINDOW_SIZE).get(index % WINDOW_SIZE);
+                generation++;
+                loading.clear();
+                windows.keySet().removeIf(window -> window >= index / WINDOW_SIZE);
+                size--;
+                beginChange();
+                nextRemove(index, removed);
+                endChange();
+                break;
+            default:
+                int row = positionOf(change.getPostId());
+                if (row < 0) return;
+                Post post = windows.get(row / WINDOW_SIZE).get(row % WINDOW_SIZE);
+                PostRows.patch(post, change);
+                beginChange();
+                nextSet(row, post);
+                endChange();
+        }
+    }
+
+    // Position of a loaded post, or -1
+    private int positionOf(int postId) {
+        for (Map.Entry<Integer, List<Post>> entry : windows.entrySet()) {
+            List<Post> rows = entry.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i).getPostId() == postId) {
+                    return entry.getKey() * WINDOW_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    int loadedRows() {
+        int rows = 0;
+        for (List<Post> window : windows.values()) {
+            rows += window.size();
+        }
+        return rows;
+    }
+
+    private void request(int window) {
+        if (window < 0 || window * WINDOW_SIZE >= size) return;
+        if (windows.containsKey(window) || !loading.add(window)) return;
+
+        int offset = window * WINDOW_SIZE;
+        int limit = Math.min(WINDOW_SIZE, size - offset);
+        List<Post> previous = windows.get(window - 1);
+        Post after = previous != null && previous.size() == WINDOW_SIZE ? previous.get(WINDOW_SIZE - 1) : null;
+        int requested = generation;
+        background.execute(() -> {
+            if (Math.abs(window - lastWindow) > MAX_WINDOWS / 2) {
+                fxThread.execute(() -> {
+                    if (requested == generation) loading.remove(window);
+                });
+                return;
+            }
+            try {
+                List<Post> rows = loader.load(offset, limit, after);
+                fxThread.execute(() -> loaded(requested, window, rows));
+            } catch (SQLException e) {
+                logger.error("Failed to load posts {}..{}", offset, offset + limit, e);
+                fxThread.execute(() -> {
+                    if (requested == generation) loading.remove(window);
+                });
+            }
+        });
+    }
+
+    private void loaded(int requested, int window, List<Post> rows) {
+        if (requested != generation) return;
+        loading.remove(window);
+        windows.put(window, rows);
+        evictFarthest();
+        if (!windows.containsKey(window)) return;
+
+        int from = window * WINDOW_SIZE;
+        int to = Math.min(from + rows.size(), size);
+        if (to > from) {
+            beginChange();
+            nextReplace(from, to, Collections.nCopies(to - from, null));
+            endChange();
+        }
+    }
+
+    private void evictFarthest() {
+        while (windows.size() > MAX_WINDOWS) {
+            int farthest = -1;
+            for (int window : windows.keySet()) {
+                if (farthest < 0 || Math.abs(window - lastWindow) > Math.abs(farthest - lastWindow)) {
+                    farthest = window;
+                }
+            }
+            windows.remove(farthest);
+        }
+    }
+
+
+     // Loads the rows offset..offset+limit of the list. after is the row just before offset
+     // when it is loaded, for a keyset query, and null otherwise.
+
+    @FunctionalInterface
+    public interface WindowLoader {
+        List<Post> load(int offset, int limit, Post after) throws SQLException;
+    }
+}
@@ -0,0 +1,194 @@
+package com.blogging.controller;
+
+import com.blogging.model.Post;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+ // The text of a post as a list of paragraphs for a virtualized ListView, which lays out
+ // only the paragraphs on screen however long the post is.
+ //
+ // Every line of the content is a paragraph; lines longer than MAX_PARAGRAPH_CHARS (logs,
+ // minified text) are split into pieces at a space where possible. A post opened with only
+ // the start of its content (Post.isContentPartial) reads the rest in chunks of CHUNK_CHARS
+ // characters on the loader thread as the reader scrolls within PREFETCH_PARAGRAPHS of the
+ // end, and appends the new paragraphs on the FX thread. Offsets count code points, as
+ // PostgreSQL does.
+ //
+ // All methods must be called on the FX thread.
+
+public class PostContentList extends ObservableListBase<String> {
+    private static final Logger logger = LoggerFactory.getLogger(PostContentList.class);
+    static final int CHUNK_CHARS = 64 * 1024;
+    static final int MAX_PARAGRAPH_CHARS = 2000;
+    static final int PREFETCH_PARAGRAPHS = 50;
+    // One loader thread for every post view: chunks are read one after the other
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "post-content-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int postId;
+    private final LocalDateTime version;
+    private final ChunkLoader loader;
+    private final Executor background;
+    private final Executor fxThread;
+    private final List<String> paragraphs = new ArrayList<>();
+    // The last line read so far, until its line break (or the end) is read
+    private final StringBuilder pending = new StringBuilder();
+    private int loadedChars;
+    private boolean complete;
+    private boolean loading;
+
+    public PostContentList(Post post, ChunkLoader loader) {
+        this(post, loader, LOADER, Platform::runLater);
+    }
+
+    PostContentList(Post post, ChunkLoader loader, Executor background, Executor fxThread) {
+        this.postId = post.getPostId();
+        this.version = post.getUpdatedAt();
+        this.loader = loader;
+        this.background = background;
+        this.fxThread = fxThread;
+        String content = post.getContent() == null ? "" : post.getContent();
+        append(content, !post.isContentPartial());
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= paragraphs.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of 0.." + paragraphs.size());
+        }
+        if (!complete && index >= paragraphs.size() - PREFETCH_PARAGRAPHS) {
+            requestNext();
+        }
+        return paragraphs.get(index);
+    }
+
+    @Override
+    public int size() {
+        return paragraphs.size();
+    }
+
+
+     // Whether this is the text of the post as it is now, so that the view can keep it (and
+     // its scroll position) when the same post is loaded again.
+
+    public boolean shows(Post post) {
+        return post.getPostId() == postId && Objects.equals(post.getUpdatedAt(), version);
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    private void requestNext() {
+        if (loading || complete) return;
+
+        loading = true;
+        int offset = loadedChars;
+        background.execute(() -> {
+            try {
+                String chunk = loader.load(offset, CHUNK_CHARS);
+                fxThread.execute(() -> loaded(chunk));
+            } catch (SQLException e) {
+                logger.error("Failed to load content of post {} from {}", postId, offset, e);
+                fxThread.execute(this::failed);
+            }
+        });
+    }
+
+    private void loaded(String chunk) {
+        loading = false;
+        String text = chunk == null ? "" : chunk;
+        boolean end = text.codePointCount(0, text.length()) < CHUNK_CHARS;
+        int from = paragraphs.size();
+        append(text, end);
+        if (paragraphs.size() > from) {
+            beginChange();
+            nextAdd(from, paragraphs.size());
+            endChange();
+        } else {
+            // The chunk only continued the last line: nothing new for the view to ask for
+            requestNext();
+        }
+    }
+
+    private void failed() {
+        loading = false;
+        complete = true;
+        int from = paragraphs.size();
+        if (pending.length() > 0) {
+            addLine(pending, 0, pending.length());
+            pending.setLength(0);
+        }
+        paragraphs.add("[The rest of the post could not be loaded]");
+        beginChange();
+        nextAdd(from, paragraphs.size());
+        endChange();
+    }
+
+    private void append(String text, boolean end) {
+        loadedChars += text.codePointCount(0, text.length());
+        pending.append(text);
+        int start = 0;
+        for (int i = 0; i < pending.length(); i++) {
+            if (pending.charAt(i) == '\n') {
+                addLine(pending, start, i);
+                start = i + 1;
+            }
+        }
+        pending.delete(0, start);
+        // A long line is shown in pieces as it arrives rather than held back
+        while (pending.length() > MAX_PARAGRAPH_CHARS) {
+            int cut = breakBefore(pending, 0, MAX_PARAGRAPH_CHARS);
+            paragraphs.add(pending.substring(0, cut));
+            pending.delete(0, cut);
+        }
+        if (end) {
+            if (pending.length() > 0 || paragraphs.isEmpty()) {
+                addLine(pending, 0, pending.length());
+            }
+            pending.setLength(0);
+            complete = true;
+        }
+    }
+
+    private void addLine(CharSequence text, int start, int end) {
+        if (end > start && text.charAt(end - 1) == '\r') end--;
+        do {
+            int cut = end - start > MAX_PARAGRAPH_CHARS ? breakBefore(text, start, start + MAX_PARAGRAPH_CHARS) : end;
+            paragraphs.add(text.subSequence(start, cut).toString());
+            start = cut;
+        } while (start < end);
+    }
+
+    // Where to split a long line before limit: after the last space in its second half,
+    // otherwise at the limit, keeping surrogate pairs together
+    private static int breakBefore(CharSequence text, int start, int limit) {
+        for (int i = limit; i > start + (limit - start) / 2; i--) {
+            if (text.charAt(i - 1) == ' ') return i;
+        }
+        return Character.isHighSurrogate(text.charAt(limit - 1)) ? limit - 1 : limit;
+    }
+
+
+     // Reads characters offset..offset+length of the post's content; shorter at the end.
+
+    @FunctionalInterface
+    public interface ChunkLoader {
+        String load(int offset, int length) throws SQLException;
+    }
+}
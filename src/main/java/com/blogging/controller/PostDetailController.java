@@ -2,14 +2,14 @@ package com.blogging.controller;
 
 import com.blogging.model.Comment;
 import com.blogging.model.Post;
-import com.blogging.model.User;
 import com.blogging.service.CommentService;
+import com.blogging.service.FeedService;
+import com.blogging.service.PostDetailLoader;
 import com.blogging.service.PostService;
 import com.blogging.service.UserService;
+import com.blogging.similarity.RelatedPostsIndex;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
@@ -24,40 +24,138 @@ import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
-public class PostDetailController {
+public class PostDetailController implements ViewRegistry.Reusable {
     private static final Logger logger = LoggerFactory.getLogger(PostDetailController.class);
+    private static final int RELATED_POSTS_SHOWN = 5;
+    // Threads are loaded a page at a time with the first rows of each; replies beyond
+    // those are loaded per subtree on demand
+    private static final int THREADS_PAGE_SIZE = 20;
+    private static final int ROWS_PER_THREAD = 10;
+    private static final int REPLIES_PAGE_SIZE = 200;
+    // The next threads are loaded when a row this close to the end of the tree is shown
+    private static final int COMMENTS_PREFETCH = 10;
 
     @FXML private Label titleLabel;
     @FXML private Label metadataLabel;
-    @FXML private TextArea contentArea; // Use TextArea for read-only content or Text
-    @FXML private ListView<Comment> commentsListView;
+    @FXML private ListView<String> contentView;
+    @FXML private Label commentsHeaderLabel;
+    @FXML private TreeView<Comment> commentsTreeView;
     @FXML private TextArea newCommentArea;
     @FXML private Button postCommentButton;
     @FXML private Label commentStatusLabel;
     @FXML private Button editPostButton;
+    @FXML private Button followButton;
+    @FXML private Label relatedPostsLabel;
+    @FXML private VBox relatedPostsBox;
 
     private Post currentPost;
+    // Paragraphs of the post text shown in contentView
+    private PostContentList postContent;
+    private int currentPostId;
+    private PostDetailLoader detailLoader;
+    private PostDetailLoader.Load pendingLoad;
     private PostService postService;
     private UserService userService;
     private CommentService commentService;
+    private final FeedService feedService;
+    private CommentTree commentTree;
+    private boolean moreThreads;
+    private boolean loadingComments;
+    private int commentCount;
+    // Comment the next comment posted replies to, null for a new thread
+    private Comment replyTo;
 
     public PostDetailController() {
         this.commentService = new CommentService();
+        this.feedService = new FeedService();
     }
 
     public void setServices(PostService postService, UserService userService) {
         this.postService = postService;
         this.userService = userService;
+        this.detailLoader = new PostDetailLoader(postService, commentService, feedService, Platform::runLater);
         updateUIState();
     }
 
-    public void setPost(Post post) {
-        this.currentPost = post;
-        loadPostData();
-        loadComments();
+
+     // Show the title and details of a post right away (a row of the post list), then load
+     // the fresh post, its comments and the follow state in the background. The text is
+     // shown from the loaded preview, never from the row, which may hold all of a very long
+     // post or none of it. countView records a view.
+
+    public void openPost(Post post, boolean countView) {
+        currentPost = post;
+        postContent = null;
+        contentView.setItems(null);
+        loadPostData(false);
+        openPost(post.getPostId(), countView);
+    }
+
+    public void openPost(int postId, boolean countView) {
+        if (pendingLoad != null) {
+            pendingLoad.cancel();
+        }
+        currentPostId = postId;
+        commentTree.clear();
+        moreThreads = false;
+        replyTo = null;
+        commentsHeaderLabel.setText("Comments");
+        commentStatusLabel.setText("");
+        followButton.setVisible(false);
+        followButton.setManaged(false);
+
+        pendingLoad = detailLoader.load(postId, currentUserId(), countView, PostContentList.CHUNK_CHARS,
+                THREADS_PAGE_SIZE, ROWS_PER_THREAD, new PostDetailLoader.Listener() {
+                    @Override
+                    public void onPost(Post post) {
+                        currentPost = post;
+                        loadPostData(true);
+                    }
+
+                    @Override
+                    public void onComments(int count, List<Comment> threads) {
+                        commentCount = count;
+                        updateCommentsHeader();
+                        commentTree.add(threads);
+                        moreThreads = countThreads(threads) == THREADS_PAGE_SIZE;
+                    }
+
+                    @Override
+                    public void onFollowing(boolean following) {
+                        showFollowState(following);
+                    }
+
+                    @Override
+                    public void onFailed(Throwable error) {
+                        commentStatusLabel.setText("Could not load the post: " + error.getMessage());
+                    }
+                });
+    }
+
+    // Drops the shown post and its comments; a pending load is cancelled
+    @Override
+    public void reset() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel();
+            pendingLoad = null;
+        }
+        currentPost = null;
+        currentPostId = 0;
+        commentTree.clear();
+        moreThreads = false;
+        replyTo = null;
+        commentCount = 0;
+        titleLabel.setText("");
+        metadataLabel.setText("");
+        postContent = null;
+        contentView.setItems(null);
+        newCommentArea.clear();
+        commentsHeaderLabel.setText("Comments");
+        commentStatusLabel.setText("");
+        relatedPostsBox.getChildren().clear();
     }
 
-    private void loadPostData() {
+    private void loadPostData(boolean withContent) {
         if (currentPost == null) return;
         
         titleLabel.setText(currentPost.getTitle());
@@ -71,13 +169,46 @@ public class PostDetailController {
             currentPost.getAuthorName(), dateStr, currentPost.getViewCount()));
             
         updateEditButtonVisibility();
-        contentArea.setText(currentPost.getContent());
+        if (withContent) {
+            showContent();
+        }
+        loadRelatedPosts();
+    }
+
+    // The same version of the post keeps its text and scroll position, so text already read
+    // in chunks is not replaced when the post is loaded again
+    private void showContent() {
+        if (postContent != null && postContent.shows(currentPost)) return;
+        int postId = currentPost.getPostId();
+        postContent = new PostContentList(currentPost,
+                (offset, length) -> postService.getContentChunk(postId, offset, length));
+        contentView.setItems(postContent);
+        contentView.scrollTo(0);
+    }
+
+    private void loadRelatedPosts() {
+        relatedPostsBox.getChildren().clear();
+        List<RelatedPostsIndex.Related> related = postService == null
+                ? List.of() : postService.getRelatedPosts(currentPost.getPostId(), RELATED_POSTS_SHOWN);
+        for (RelatedPostsIndex.Related post : related) {
+            Hyperlink link = new Hyperlink(post.getTitle());
+            link.setOnAction(e -> openRelatedPost(post.getPostId()));
+            relatedPostsBox.getChildren().add(link);
+        }
+        boolean any = !related.isEmpty();
+        relatedPostsLabel.setVisible(any);
+        relatedPostsLabel.setManaged(any);
+        relatedPostsBox.setVisible(any);
+        relatedPostsBox.setManaged(any);
+    }
+
+    private void openRelatedPost(int postId) {
+        openPost(postId, true);
     }
 
     private void updateEditButtonVisibility() {
         if (userService != null && userService.isLoggedIn() && currentPost != null) {
-            User user = userService.getCurrentUser();
-            boolean canEdit = user.getUserId() == currentPost.getUserId() || "ADMIN".equalsIgnoreCase(user.getRole());
+            boolean canEdit = userService.canModify(currentPost.getUserId());
             editPostButton.setVisible(canEdit);
             editPostButton.setManaged(canEdit);
         } else {
@@ -86,70 +217,182 @@ public class PostDetailController {
         }
     }
 
+    private void updateFollowButton() {
+        boolean canFollow = userService != null && userService.isLoggedIn()
+                && userService.getCurrentUser().getUserId() != currentPost.getUserId();
+        followButton.setVisible(canFollow);
+        followButton.setManaged(canFollow);
+        if (!canFollow) return;
+        try {
+            showFollowState(feedService.isFollowing(userService.getCurrentUser().getUserId(), currentPost.getUserId()));
+        } catch (SQLException e) {
+            logger.error("Failed to load follow state", e);
+            followButton.setVisible(false);
+            followButton.setManaged(false);
+        }
+    }
+
+    private void showFollowState(boolean following) {
+        followButton.setText(following ? "Unfollow " + currentPost.getAuthorName() : "Follow " + currentPost.getAuthorName());
+        followButton.setUserData(following);
+        followButton.setVisible(true);
+        followButton.setManaged(true);
+    }
+
+    @FXML
+    private void handleFollow() {
+        int userId = userService.getCurrentUser().getUserId();
+        try {
+            if (Boolean.TRUE.equals(followButton.getUserData())) {
+                feedService.unfollow(userId, currentPost.getUserId());
+            } else {
+                feedService.follow(userId, currentPost.getUserId());
+            }
+            updateFollowButton();
+        } catch (SQLException | IllegalArgumentException e) {
+            logger.error("Failed to update follow", e);
+            commentStatusLabel.setText("Could not update follow: " + e.getMessage());
+        }
+    }
+
     @FXML
     private void handleEditPost() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/PostFormView.fxml"));
-            Parent root = loader.load();
-            PostFormController controller = loader.getController();
+            // The view may only hold the start of a long post; the form edits all of it
+            Post post = currentPost.isContentPartial() ? postService.getPost(currentPost.getPostId()) : currentPost;
+            if (post == null) return;
+            ViewRegistry.View<PostFormController> form = ViewRegistry.getInstance().acquire(ViewRegistry.POST_FORM);
+            PostFormController controller = form.getController();
             controller.setServices(postService, userService);
-            controller.setPost(currentPost);
+            controller.setPost(post);
             
             Stage stage = new Stage();
             stage.setTitle("Edit Post");
-            stage.setScene(new Scene(root));
+            stage.setScene(form.getScene());
             stage.initModality(Modality.APPLICATION_MODAL);
             controller.setDialogStage(stage);
             stage.showAndWait();
             
-            if (controller.isPostCreated()) {
-                // Refresh data
-                currentPost = postService.getPost(currentPost.getPostId());
-                setPost(currentPost);
+            boolean saved = controller.isPostCreated();
+            ViewRegistry.getInstance().release(form);
+            if (saved) {
+                // Refresh data, the edited text included
+                postContent = null;
+                openPost(post, false);
             }
         } catch (IOException | SQLException e) {
             logger.error("Failed to open edit form", e);
         }
     }        
 
-    private void loadComments() { 
-        if (currentPost == null) return;
-        
+    private void loadMoreThreads() {
+        if (!moreThreads || loadingComments) return;
+
+        loadingComments = true;
         try {
-            List<Comment> comments;
-            if (userService != null && userService.isLoggedIn()) {
-                comments = commentService.getCommentsByPost(currentPost.getPostId(), userService.getCurrentUser().getUserId());
-            } else {
-                comments = commentService.getCommentsByPost(currentPost.getPostId());
-            }
-            
-            commentsListView.getItems().setAll(comments);
-            
+            List<Comment> rows = commentService.getThreads(currentPostId, currentUserId(),
+                    commentTree.lastRoot(), THREADS_PAGE_SIZE, ROWS_PER_THREAD);
+            moreThreads = countThreads(rows) == THREADS_PAGE_SIZE;
+            commentTree.add(rows);
         } catch (SQLException e) {
             logger.error("Failed to load comments", e);
             commentStatusLabel.setText("Error loading comments");
+            moreThreads = false;
+        } finally {
+            loadingComments = false;
+        }
+    }
+
+    // The rest of a comment's replies, at every depth, in one query
+    private void loadReplies(TreeItem<Comment> item) {
+        if (loadingComments) return;
+
+        loadingComments = true;
+        try {
+            commentTree.add(commentService.getReplies(item.getValue(), currentUserId(),
+                    commentTree.lastLoadedPath(item), REPLIES_PAGE_SIZE));
+            item.setExpanded(true);
+        } catch (SQLException e) {
+            logger.error("Failed to load replies", e);
+            commentStatusLabel.setText("Error loading replies");
+        } finally {
+            loadingComments = false;
         }
     }
 
+    private static long countThreads(List<Comment> rows) {
+        return rows.stream().filter(comment -> comment.getParentId() == null).count();
+    }
+
+    private int currentUserId() {
+        return userService != null && userService.isLoggedIn() ? userService.getCurrentUser().getUserId() : 0;
+    }
+
+    private void updateCommentsHeader() {
+        commentsHeaderLabel.setText(commentCount > 0 ? "Comments (" + commentCount + ")" : "Comments");
+    }
+
     @FXML
     public void initialize() {
-        contentArea.setEditable(false);
-        contentArea.setWrapText(true);
+        setupContentView();
         
-        setupCommentsList();
-        commentsListView.setFixedCellSize(70);
+        TreeItem<Comment> root = new TreeItem<>();
+        root.setExpanded(true);
+        // Expanding a comment whose replies are not loaded yet loads them
+        root.addEventHandler(TreeItem.<Comment>branchExpandedEvent(), event -> {
+            TreeItem<Comment> item = event.getTreeItem();
+            if (item != root && commentTree.hasOnlyPlaceholder(item)) {
+                Platform.runLater(() -> loadReplies(item));
+            }
+        });
+        commentsTreeView.setRoot(root);
+        commentsTreeView.setShowRoot(false);
+        commentTree = new CommentTree(root);
+        setupCommentsTree();
+        commentsTreeView.setFixedCellSize(70);
+    }
+
+    // Paragraphs wrap to the width of the view; only those on screen are laid out
+    private void setupContentView() {
+        contentView.setFocusTraversable(false);
+        contentView.setCellFactory(view -> new ListCell<String>() {
+            {
+                setWrapText(true);
+                prefWidthProperty().bind(view.widthProperty().subtract(20));
+            }
+
+            @Override
+            protected void updateItem(String paragraph, boolean empty) {
+                super.updateItem(paragraph, empty);
+                // A blank line keeps the height of a line of text
+                setText(empty || paragraph == null ? null : paragraph.isEmpty() ? " " : paragraph);
+            }
+        });
     }
 
-    private void setupCommentsList() {
-        commentsListView.setCellFactory(new Callback<ListView<Comment>, ListCell<Comment>>() {
+    private void setupCommentsTree() {
+        commentsTreeView.setCellFactory(new Callback<TreeView<Comment>, TreeCell<Comment>>() {
             @Override
-            public ListCell<Comment> call(ListView<Comment> param) {
-                return new ListCell<Comment>() {
+            public TreeCell<Comment> call(TreeView<Comment> param) {
+                return new TreeCell<Comment>() {
                     @Override
                     protected void updateItem(Comment comment, boolean empty) {
                         super.updateItem(comment, empty);
                         
-                        if (empty || comment == null) {
+                        // Scrolling near the end loads the next threads, after the current layout pass
+                        if (!empty && moreThreads && getIndex() >= getTreeView().getExpandedItemCount() - COMMENTS_PREFETCH) {
+                            Platform.runLater(PostDetailController.this::loadMoreThreads);
+                        }
+                        
+                        TreeItem<Comment> treeItem = getTreeItem();
+                        if (!empty && treeItem instanceof CommentTree.MoreReplies) {
+                            TreeItem<Comment> parent = treeItem.getParent();
+                            int unloaded = commentTree.unloadedReplies(parent);
+                            Hyperlink more = new Hyperlink(unloaded == 1 ? "Show 1 more reply" : "Show " + unloaded + " more replies");
+                            more.setOnAction(e -> loadReplies(parent));
+                            setText(null);
+                            setGraphic(more);
+                        } else if (empty || comment == null) {
                             setText(null);
                             setGraphic(null);
                         } else {
@@ -167,6 +410,11 @@ public class PostDetailController {
                             date.setStyle("-fx-text-fill: #888; -fx-font-size: 0.9em;");
                             
                             header.getChildren().addAll(author, date);
+                            if (comment.isPending()) {
+                                Label pending = new Label("(pending review)");
+                                pending.setStyle("-fx-text-fill: #888; -fx-font-style: italic; -fx-font-size: 0.9em;");
+                                header.getChildren().add(pending);
+                            }
                             
                             Label content = new Label(comment.getContent());
                             content.setWrapText(true);
@@ -181,7 +429,18 @@ public class PostDetailController {
                             
                             likeBtn.setOnAction(e -> handleLike(comment));
                             
-                            actions.getChildren().add(likeBtn);
+                            Button replyBtn = new Button(comment.equals(replyTo) ? "Cancel reply" : "Reply");
+                            replyBtn.setOnAction(e -> handleReply(comment));
+                            
+                            actions.getChildren().addAll(likeBtn, replyBtn);
+                            
+                            if (isAdmin()) {
+                                Button spamBtn = new Button("Spam");
+                                spamBtn.setOnAction(e -> handleModerate(comment, true));
+                                Button hamBtn = new Button("Not spam");
+                                hamBtn.setOnAction(e -> handleModerate(comment, false));
+                                actions.getChildren().addAll(spamBtn, hamBtn);
+                            }
                             
                             container.getChildren().addAll(header, content, actions);
                             setGraphic(container);
@@ -206,22 +465,59 @@ public class PostDetailController {
                 if (success) {
                     comment.setLikesCount(comment.getLikesCount() - 1);
                     comment.setLikedByCurrentUser(false);
-                    loadComments(); // Refresh from DB
                 }
             } else {
                 success = commentService.likeComment(userId, comment.getCommentId());
                 if (success) {
                     comment.setLikesCount(comment.getLikesCount() + 1);
                     comment.setLikedByCurrentUser(true);
-                    loadComments(); // Refresh from DB
                 }
             }
-            commentsListView.refresh(); // Update UI
+            commentsTreeView.refresh(); // Update UI
         } catch (SQLException e) {
             logger.error("Like failed", e);
         }
     }
 
+    // Reply toggles: the next comment posted answers this one
+    private void handleReply(Comment comment) {
+        if (userService == null || !userService.isLoggedIn()) {
+            commentStatusLabel.setText("Login to reply");
+            return;
+        }
+        replyTo = comment.equals(replyTo) ? null : comment;
+        commentStatusLabel.setText(replyTo == null ? "" : "Replying to " + replyTo.getUsername());
+        if (replyTo != null) {
+            newCommentArea.requestFocus();
+        }
+        commentsTreeView.refresh();
+    }
+
+    private boolean isAdmin() {
+        return userService != null && userService.isAdmin();
+    }
+
+    // Moderator decisions hide spam and train the spam classifier
+    private void handleModerate(Comment comment, boolean spam) {
+        try {
+            if (commentService.moderateComment(comment, spam)) {
+                commentStatusLabel.setText(spam ? "Comment marked as spam" : "Comment approved");
+                // Patch the loaded rows: reloading would lose the scroll position
+                TreeItem<Comment> item = commentTree.itemOf(comment);
+                if (spam && item != null) {
+                    commentTree.remove(item);
+                    commentCount--;
+                    updateCommentsHeader();
+                } else {
+                    commentsTreeView.refresh();
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Moderation failed", e);
+            commentStatusLabel.setText("Moderation failed: " + e.getMessage());
+        }
+    }
+
     @FXML
     private void handlePostComment() {
         if (userService == null || !userService.isLoggedIn()) {
@@ -232,12 +528,21 @@ public class PostDetailController {
         String content = newCommentArea.getText().trim();
         if (content.isEmpty()) return;
         
-        Comment comment = new Comment(currentPost.getPostId(), userService.getCurrentUser().getUserId(), content);
+        Comment comment = new Comment(currentPostId, userService.getCurrentUser().getUserId(), content);
+        if (replyTo != null) {
+            comment.setParentId(replyTo.getCommentId());
+        }
         
         try {
-            commentService.createComment(comment);
+            Comment created = commentService.createComment(comment);
+            created.setUsername(userService.getCurrentUser().getUsername());
             newCommentArea.clear();
-            loadComments();
+            replyTo = null;
+            // Shown where it belongs if that part of the discussion is loaded
+            commentTree.addPosted(created, !moreThreads);
+            commentsTreeView.refresh();
+            commentCount++;
+            updateCommentsHeader();
             commentStatusLabel.setText("Comment posted!");
         } catch (Exception e) {
             logger.error("Failed to post comment", e);
@@ -4,6 +4,7 @@ package com.blogging.controller;
 import com.blogging.model.Post;
 import com.blogging.service.PostService;
 import com.blogging.service.UserService;
+import com.blogging.similarity.PostDuplicateIndex;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
@@ -13,12 +14,13 @@ import org.slf4j.LoggerFactory;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Controller for post creation/editing form.
  */
-public class PostFormController {
+public class PostFormController implements ViewRegistry.Reusable {
     private static final Logger logger = LoggerFactory.getLogger(PostFormController.class);
 
     @FXML private TextField titleField;
@@ -57,6 +59,18 @@ public class PostFormController {
         }
     }
 
+    // Back to an empty create form for the next dialog
+    @Override
+    public void reset() {
+        postToEdit = null;
+        postCreated = false;
+        dialogStage = null;
+        titleField.clear();
+        contentArea.clear();
+        tagsField.clear();
+        saveButton.setText("Save Post");
+    }
+
     @FXML
     private void handleSave() {
         if (!validateInput()) {
@@ -73,6 +87,10 @@ public class PostFormController {
                 .filter(s -> !s.isEmpty())
                 .collect(Collectors.toList());
 
+            if (!confirmIfDuplicate(content)) {
+                return;
+            }
+
             if (postToEdit == null) {
                 // Create new
                 Post post = new Post(
@@ -100,6 +118,27 @@ public class PostFormController {
         }
     }
 
+    // Warn when the content heavily overlaps an existing post; true to go ahead with the save
+    private boolean confirmIfDuplicate(String content) throws SQLException {
+        int ownId = postToEdit == null ? 0 : postToEdit.getPostId();
+        List<PostDuplicateIndex.Match> duplicates = postService.findDuplicates(content, ownId);
+        if (duplicates.isEmpty()) {
+            return true;
+        }
+        PostDuplicateIndex.Match best = duplicates.get(0);
+        Post existing = postService.getPost(best.getPostId());
+        String title = existing != null ? "\"" + existing.getTitle() + "\"" : "post #" + best.getPostId();
+
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Possible Duplicate");
+        alert.setHeaderText(null);
+        alert.setContentText(String.format("This post overlaps about %.0f%% with %s%s. Save anyway?",
+                best.getSimilarity() * 100, title,
+                duplicates.size() > 1 ? " and " + (duplicates.size() - 1) + " other post(s)" : ""));
+        Optional<ButtonType> result = alert.showAndWait();
+        return result.isPresent() && result.get() == ButtonType.OK;
+    }
+
     @FXML
     private void handleCancel() {
         dialogStage.close();
@@ -1,9 +1,13 @@
 package com.blogging.controller;
 
 import com.blogging.model.Post;
-import com.blogging.model.User;
+import com.blogging.service.FeedService;
+import com.blogging.service.PostChange;
+import com.blogging.service.PostChangeBus;
+import com.blogging.service.PostSearch;
 import com.blogging.service.PostService;
 import com.blogging.service.UserService;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -12,20 +16,19 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
 import javafx.stage.Modality;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 
 
  //Controller for post list view.
  
-public class PostListController {
+public class PostListController implements ViewRegistry.Reusable {
     private static final Logger logger = LoggerFactory.getLogger(PostListController.class);
 
     @FXML private TableView<Post> postTable;
@@ -47,18 +50,68 @@ public class PostListController {
 
     private PostService postService;
     private UserService userService;
+    // Held here because the bus only keeps a weak reference
+    private final PostChangeBus.Listener postChangeListener = this::onPostChanged;
     private final ObservableList<Post> postList = FXCollections.observableArrayList();
     
-    // Pagination
-    private int currentPage = 1;
+    // All posts are shown in one lazily loaded, scrollable list
+    private PagedPostList pagedPosts;
     private static final int POSTS_PER_PAGE = 10;
     private int totalPosts = 0;
 
+    // Feed mode pages by post id: the cursor of the current page and of the pages before it
+    private FeedService feedService;
+    private int feedBefore = Integer.MAX_VALUE;
+    private final Deque<Integer> feedCursors = new ArrayDeque<>();
+
+    // Search runs as the user types; the table shows its results until the field is cleared
+    private final PostSearch postSearch = PostSearch.getInstance();
+    private final PostSearch.Listener searchListener = new SearchResults();
+    private boolean showingSearch;
+
     @FXML
     public void initialize() {
         setupTableColumns();
         setupSortComboBox();
         setupButtons();
+        setupSearch();
+        PostChangeBus.getInstance().subscribe(postChangeListener);
+    }
+
+    // Patch the rows of the shown list instead of reloading it
+    private void onPostChanged(PostChange change) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> onPostChanged(change));
+            return;
+        }
+        if (postTable.getItems() == pagedPosts) {
+            pagedPosts.apply(change);
+            if (change.getType() == PostChange.Type.CREATED || change.getType() == PostChange.Type.DELETED) {
+                totalPosts = pagedPosts.size();
+                statusLabel.setText(String.format("%d posts", totalPosts));
+            }
+        } else {
+            PostRows.apply(postList, change);
+        }
+    }
+
+    // Called when the list is navigated away from. The paged list is kept and refreshed
+    // by the next loadPosts.
+    @Override
+    public void reset() {
+        postSearch.cancel();
+        showingSearch = false;
+        searchField.clear();
+        feedService = null;
+        feedCursors.clear();
+        feedBefore = Integer.MAX_VALUE;
+        postList.clear();
+        postTable.setItems(postList);
+        postTable.getSelectionModel().clearSelection();
+        postTable.scrollTo(0);
+        sortComboBox.setValue("Date");
+        setPagingVisible(false);
+        statusLabel.setText("");
     }
 
     public void setServices(PostService postService, UserService userService) {
@@ -68,10 +121,13 @@ public class PostListController {
     }
 
     private void setupTableColumns() {
-        // Fix ID to be sequential 1, 2, 3 based on row index
-        idColumn.setCellValueFactory(cellData -> {
-            int index = postTable.getItems().indexOf(cellData.getValue());
-            return new javafx.beans.property.SimpleObjectProperty<>(index < 0 ? 1 : index + 1);
+        // Row numbers come from the row index, not from a lookup in the item list
+        idColumn.setCellFactory(column -> new TableCell<Post, Integer>() {
+            @Override
+            protected void updateItem(Integer item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? null : String.valueOf(getIndex() + 1));
+            }
         });
             
         titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
@@ -79,6 +135,10 @@ public class PostListController {
         viewsColumn.setCellValueFactory(new PropertyValueFactory<>("viewCount"));
         
         dateColumn.setCellValueFactory(cellData -> {
+            if (cellData.getValue() == null) {
+                // Row of the paged list that is still loading
+                return new javafx.beans.property.SimpleStringProperty("");
+            }
             java.time.LocalDateTime createdAt = cellData.getValue().getCreatedAt();
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
             if (createdAt != null) {
@@ -126,11 +186,8 @@ public class PostListController {
         boolean canEdit = false;
         
         if (selectedPost != null) {
-            User currentUser = userService.getCurrentUser();
             // Can edit if author OR Admin
-            if (currentUser.getUserId() == selectedPost.getUserId() || "ADMIN".equalsIgnoreCase(currentUser.getRole())) {
-                canEdit = true;
-            }
+            canEdit = userService.canModify(selectedPost.getUserId());
         }
         
         if (editButton != null) {
@@ -149,33 +206,63 @@ public class PostListController {
     }
 
     public void loadPosts() {
+        showingSearch = false;
         try {
             totalPosts = postService.getTotalPostCount();
-            List<Post> posts = postService.getPosts(currentPage, POSTS_PER_PAGE);
-            postList.setAll(posts);
-            
-            updatePaginationControls();
-            statusLabel.setText(String.format("Showing page %d of %d (%d total posts)", 
-                currentPage, getTotalPages(), totalPosts));
+            if (pagedPosts == null) {
+                pagedPosts = new PagedPostList(postService::getPostsWindow, totalPosts);
+            } else {
+                pagedPosts.refresh(totalPosts);
+            }
+            feedService = null;
+            postTable.setItems(pagedPosts);
+            setPagingVisible(false);
+            statusLabel.setText(String.format("%d posts", totalPosts));
         } catch (SQLException e) {
             logger.error("Failed to load posts", e);
             showError("Error", "Failed to load posts: " + e.getMessage());
         }
     }
 
+    public void loadFeed(FeedService feedService) {
+        this.feedService = feedService;
+        feedCursors.clear();
+        feedBefore = Integer.MAX_VALUE;
+        loadFeedPage();
+    }
+
+    private void loadFeedPage() {
+        try {
+            List<Post> posts = feedService.getFeed(userService.getCurrentUser().getUserId(), feedBefore, POSTS_PER_PAGE);
+            showList(posts);
+
+            setPagingVisible(true);
+            prevPageButton.setDisable(feedCursors.isEmpty());
+            nextPageButton.setDisable(posts.size() < POSTS_PER_PAGE);
+            pageLabel.setText(String.format("Page %d", feedCursors.size() + 1));
+            statusLabel.setText(posts.isEmpty() && feedCursors.isEmpty()
+                    ? "No posts yet from the authors you follow" : "Posts from the authors you follow");
+        } catch (SQLException e) {
+            logger.error("Failed to load feed", e);
+            showError("Error", "Failed to load your feed: " + e.getMessage());
+        }
+    }
+
+    // Page buttons are only used by the feed; the post list scrolls
     @FXML
     private void handlePreviousPage() {
-        if (currentPage > 1) {
-            currentPage--;
-            loadPosts();
+        if (feedService != null && !feedCursors.isEmpty()) {
+            feedBefore = feedCursors.pop();
+            loadFeedPage();
         }
     }
 
     @FXML
     private void handleNextPage() {
-        if (currentPage < getTotalPages()) {
-            currentPage++;
-            loadPosts();
+        if (feedService != null && !postList.isEmpty()) {
+            feedCursors.push(feedBefore);
+            feedBefore = postList.get(postList.size() - 1).getPostId();
+            loadFeedPage();
         }
     }
     
@@ -205,7 +292,6 @@ public class PostListController {
             if (alert.showAndWait().get() == ButtonType.OK) {
                 try {
                     postService.deletePost(selectedPost.getPostId());
-                    loadPosts();
                     statusLabel.setText("Post deleted successfully.");
                 } catch (SQLException e) {
                     logger.error("Failed to delete post", e);
@@ -217,10 +303,13 @@ public class PostListController {
     
     private void openPostForm(Post post) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/PostFormView.fxml"));
-            Parent form = loader.load();
-            
-            PostFormController controller = loader.getController();
+            // List rows hold no content; the form edits all of it
+            if (post != null && post.isContentPartial()) {
+                post = postService.getPost(post.getPostId());
+                if (post == null) return;
+            }
+            ViewRegistry.View<PostFormController> form = ViewRegistry.getInstance().acquire(ViewRegistry.POST_FORM);
+            PostFormController controller = form.getController();
             controller.setServices(postService, userService);
             controller.setPost(post);
             
@@ -228,33 +317,34 @@ public class PostListController {
             dialogStage.setTitle(post == null ? "Create New Post" : "Edit Post");
             dialogStage.initModality(Modality.WINDOW_MODAL);
             dialogStage.initOwner(postTable.getScene().getWindow());
-            dialogStage.setScene(new Scene(form));
+            dialogStage.setScene(form.getScene());
             
             controller.setDialogStage(dialogStage);
             dialogStage.showAndWait();
             
+            // The table itself is patched through the post change listener
             if (controller.isPostCreated()) {
-                loadPosts(); // Refresh list
                 statusLabel.setText(post == null ? "Post created." : "Post updated.");
             }
+            ViewRegistry.getInstance().release(form);
             
-        } catch (IOException e) {
+        } catch (IOException | SQLException e) {
              logger.error("Failed to open post form", e);
              showError("Error", "Failed to open form: " + e.getMessage());
         }
     }
 
-    private int getTotalPages() {
-        int pages = (int) Math.ceil((double) totalPosts / POSTS_PER_PAGE);
-        return pages == 0 ? 1 : pages;
+    private void setPagingVisible(boolean visible) {
+        for (Control control : new Control[]{prevPageButton, pageLabel, nextPageButton}) {
+            control.setVisible(visible);
+            control.setManaged(visible);
+        }
     }
 
-    private void updatePaginationControls() {
-        if (prevPageButton != null && nextPageButton != null && pageLabel != null) {
-            prevPageButton.setDisable(currentPage <= 1);
-            nextPageButton.setDisable(currentPage >= getTotalPages());
-            pageLabel.setText(String.format("Page %d of %d", currentPage, getTotalPages()));
-        }
+    // Search, sort and the other fixed lists replace the paged list in the table
+    private void showList(List<Post> posts) {
+        postList.setAll(posts);
+        postTable.setItems(postList);
     }
 
     public void loadUserPosts(int userId) {
@@ -262,7 +352,7 @@ public class PostListController {
             List<Post> posts = postService.getPosts(1, 100).stream()
                 .filter(p -> p.getUserId() == userId)
                 .collect(java.util.stream.Collectors.toList());
-            postList.setAll(posts);
+            showList(posts);
             statusLabel.setText("Loaded " + posts.size() + " of your posts");
             updateButtonState();
         } catch (SQLException e) {
@@ -271,28 +361,41 @@ public class PostListController {
         }
     }
 
+    private void setupSearch() {
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            String query = PostSearch.normalize(newText);
+            if (query.isEmpty()) {
+                postSearch.cancel();
+                if (showingSearch) {
+                    loadPosts();
+                }
+            } else if (query.length() >= PostSearch.MIN_QUERY_LENGTH) {
+                statusLabel.setText("Searching...");
+                postSearch.submit(query, searchListener);
+            }
+        });
+    }
+
+    // Enter or the Search button skips the debounce
     @FXML
     private void handleSearch() {
-        String keyword = searchField.getText().trim();
-        if (keyword.isEmpty()) {
+        String query = PostSearch.normalize(searchField.getText());
+        if (query.isEmpty()) {
             loadPosts();
             return;
         }
-
-        try {
-            List<Post> results = postService.searchPosts(keyword);
-            postList.setAll(results);
-            statusLabel.setText("Found " + results.size() + " posts matching '" + keyword + "'");
-        } catch (SQLException e) {
-            logger.error("Search failed", e);
-            showError("Error", "Search failed: " + e.getMessage());
-        }
+        statusLabel.setText("Searching...");
+        postSearch.searchNow(query, searchListener);
     }
 
     @FXML
     private void handleClearSearch() {
+        boolean searching = showingSearch;
+        // Clearing the field returns to all posts when search results are shown
         searchField.clear();
-        handleRefresh();
+        if (!searching) {
+            handleRefresh();
+        }
     }
 
     @FXML
@@ -300,7 +403,7 @@ public class PostListController {
         String sortBy = sortComboBox.getValue();
         try {
             List<Post> sorted = postService.getSortedPosts(100, sortBy);
-            postList.setAll(sorted);
+            showList(sorted);
             statusLabel.setText("Sorted by " + sortBy);
         } catch (SQLException e) {
             logger.error("Sort failed", e);
@@ -310,33 +413,55 @@ public class PostListController {
 
     @FXML
     private void handleRefresh() {
+        if (feedService != null) {
+            loadFeedPage();
+            return;
+        }
         loadPosts();
     }
 
+    // Shows search results on the FX thread, unless the field has changed since
+    private class SearchResults implements PostSearch.Listener {
+        @Override
+        public void onResults(String query, List<Post> results) {
+            Platform.runLater(() -> {
+                if (!query.equals(PostSearch.normalize(searchField.getText()))) return;
+                feedService = null;
+                setPagingVisible(false);
+                showList(results);
+                showingSearch = true;
+                statusLabel.setText("Found " + results.size() + " posts matching '" + query + "'");
+            });
+        }
+
+        @Override
+        public void onError(String query, SQLException e) {
+            Platform.runLater(() -> {
+                if (!query.equals(PostSearch.normalize(searchField.getText()))) return;
+                statusLabel.setText("Search failed");
+                showError("Error", "Search failed: " + e.getMessage());
+            });
+        }
+    }
+
     private void viewPostDetails(Post post) {
         try {
-            postService.incrementViewCount(post.getPostId());
-            handleRefresh(); // Update view count in list
-            
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/PostDetailView.fxml"));
-            Parent root = loader.load();
+            ViewRegistry.View<PostDetailController> detail = ViewRegistry.getInstance().acquire(ViewRegistry.POST_DETAIL);
             
-            PostDetailController controller = loader.getController();
+            PostDetailController controller = detail.getController();
             controller.setServices(postService, userService);
-            // Fetch fresh post to trigger cache logic and update correct view count
-            Post freshPost = postService.getPost(post.getPostId());
-            controller.setPost(freshPost);
+            // Shows the row at once; the fresh post, its comments and the view count update
+            // (which reaches the list through the post change listener) load in parallel
+            controller.openPost(post, true);
             
             Stage stage = new Stage();
             stage.setTitle(post.getTitle());
-            stage.setScene(new Scene(root));
+            stage.setScene(detail.getScene());
             stage.initModality(Modality.APPLICATION_MODAL); 
             stage.showAndWait();
-
-            // Refresh the specific item in the list or the whole list to show new view count
-            handleRefresh(); 
+            ViewRegistry.getInstance().release(detail);
             
-        } catch (IOException | SQLException e) {
+        } catch (IOException e) {
              logger.error("Failed to view post", e);
              showError("Error", "Failed to load post details");
         }
@@ -0,0 +1,51 @@
+package com.blogging.controller;
+
+import com.blogging.model.Post;
+import com.blogging.service.PostChange;
+import javafx.collections.ObservableList;
+
+
+ // Applies PostChange events to the Post rows shown in tables and lists.
+
+final class PostRows {
+
+    private PostRows() {
+    }
+
+
+     // Copy the changed fields into a row that shows the post.
+
+    static void patch(Post row, PostChange change) {
+        if (change.getType() == PostChange.Type.VIEWED) {
+            row.setViewCount(change.getViewCount());
+        } else if (change.getType() == PostChange.Type.UPDATED) {
+            Post post = change.getPost();
+            row.setTitle(post.getTitle());
+            // List rows hold no content (Post.isContentPartial) and keep holding none
+            if (!row.isContentPartial()) {
+                row.setContent(post.getContent());
+            }
+            if (post.getUpdatedAt() != null) {
+                row.setUpdatedAt(post.getUpdatedAt());
+            }
+        }
+    }
+
+
+     // Patch a fixed list of posts: the changed row is updated or removed with a single-row
+     // change, so only that row is redrawn. New posts are not added to fixed lists.
+
+    static void apply(ObservableList<Post> rows, PostChange change) {
+        for (int i = 0; i < rows.size(); i++) {
+            Post row = rows.get(i);
+            if (row.getPostId() != change.getPostId()) continue;
+            if (change.getType() == PostChange.Type.DELETED) {
+                rows.remove(i);
+            } else {
+                patch(row, change);
+                rows.set(i, row);
+            }
+            return;
+        }
+    }
+}
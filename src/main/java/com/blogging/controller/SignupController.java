@@ -2,22 +2,38 @@
 package com.blogging.controller;
 
 import com.blogging.service.UserService;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.value.ObservableValue;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
- * Controller for the signup page.
+ // Controller for the signup page. Whether the username and email are free is shown as
+ // they are typed, checked on a background thread once typing pauses; most free names are
+ // answered from memory (UserService.isUsernameAvailable).
  
 public class SignupController {
     private static final Logger logger = LoggerFactory.getLogger(SignupController.class);
+    private static final Duration CHECK_DELAY = Duration.millis(300);
+    // Availability checks and registrations of every signup page, one after the other
+    private static final ExecutorService CHECKER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "signup-availability");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @FXML private TextField usernameField;
     @FXML private TextField emailField;
@@ -27,13 +43,84 @@ public class SignupController {
     @FXML private Hyperlink loginLink;
     @FXML private Label errorLabel;
     @FXML private Label successLabel;
+    @FXML private Label usernameStatusLabel;
+    @FXML private Label emailStatusLabel;
 
     private final UserService userService = new UserService();
+    private final PauseTransition usernameCheck = new PauseTransition(CHECK_DELAY);
+    private final PauseTransition emailCheck = new PauseTransition(CHECK_DELAY);
 
     @FXML
     public void initialize() {
         errorLabel.setVisible(false);
         successLabel.setVisible(false);
+
+        usernameCheck.setOnFinished(e -> checkUsername());
+        emailCheck.setOnFinished(e -> checkEmail());
+        usernameField.textProperty().addListener((obs, oldText, newText) -> usernameCheck.playFromStart());
+        emailField.textProperty().addListener((obs, oldText, newText) -> emailCheck.playFromStart());
+    }
+
+    private void checkUsername() {
+        String username = usernameField.getText().trim();
+        if (username.isEmpty()) {
+            showAvailability(usernameStatusLabel, null, false);
+            return;
+        }
+        try {
+            userService.validateUsername(username);
+        } catch (IllegalArgumentException e) {
+            showAvailability(usernameStatusLabel, e.getMessage(), false);
+            return;
+        }
+        CHECKER.execute(() -> {
+            try {
+                boolean available = userService.isUsernameAvailable(username);
+                Platform.runLater(() -> showIfCurrent(usernameField.textProperty(), username, usernameStatusLabel,
+                        available ? "Username is available" : "Username is taken", available));
+            } catch (SQLException e) {
+                logger.error("Failed to check username availability", e);
+            }
+        });
+    }
+
+    private void checkEmail() {
+        String email = emailField.getText().trim();
+        if (email.isEmpty()) {
+            showAvailability(emailStatusLabel, null, false);
+            return;
+        }
+        try {
+            userService.validateEmail(email);
+        } catch (IllegalArgumentException e) {
+            showAvailability(emailStatusLabel, e.getMessage(), false);
+            return;
+        }
+        CHECKER.execute(() -> {
+            try {
+                boolean available = userService.isEmailAvailable(email);
+                Platform.runLater(() -> showIfCurrent(emailField.textProperty(), email, emailStatusLabel,
+                        available ? "Email is available" : "An account already uses this email", available));
+            } catch (SQLException e) {
+                logger.error("Failed to check email availability", e);
+            }
+        });
+    }
+
+    // Answers for text that has been edited since are dropped
+    private void showIfCurrent(ObservableValue<String> text, String checked, Label label, String message,
+                               boolean available) {
+        if (checked.equals(text.getValue().trim())) {
+            showAvailability(label, message, available);
+        }
+    }
+
+    private void showAvailability(Label label, String message, boolean available) {
+        label.setText(message == null ? "" : message);
+        label.getStyleClass().removeAll("available", "taken");
+        if (message != null) {
+            label.getStyleClass().add(available ? "available" : "taken");
+        }
     }
 
     @FXML
@@ -54,26 +141,28 @@ public class SignupController {
             return;
         }
 
-        try {
-            userService.registerUser(username, email, password);
-            logger.info("User registered successfully: {}", username);
-            
-            showSuccess("Account created successfully! Redirecting to login...");
-            
-            // Wait a moment then redirect to login
-            new Thread(() -> {
-                try {
-                    Thread.sleep(2000);
-                    javafx.application.Platform.runLater(this::handleLoginLink);
-                } catch (InterruptedException e) {
-                    logger.error("Sleep interrupted", e);
-                }
-            }).start();
-            
-        } catch (Exception e) {
-            logger.error("Signup failed", e);
-            showError(e.getMessage());
-        }
+        // Hashing the password takes a while: register off the FX thread
+        signupButton.setDisable(true);
+        CHECKER.execute(() -> {
+            try {
+                userService.registerUser(username, email, password);
+                logger.info("User registered successfully: {}", username);
+                Platform.runLater(() -> {
+                    showSuccess("Account created successfully! Redirecting to login...");
+
+                    // Wait a moment then redirect to login
+                    PauseTransition redirect = new PauseTransition(Duration.seconds(2));
+                    redirect.setOnFinished(event -> handleLoginLink());
+                    redirect.play();
+                });
+            } catch (Exception e) {
+                logger.error("Signup failed", e);
+                Platform.runLater(() -> {
+                    signupButton.setDisable(false);
+                    showError(e.getMessage());
+                });
+            }
+        });
     }
 
     @FXML
@@ -1,42 +1,85 @@
-
 package com.blogging.controller;
 
-import com.blogging.model.User;
+import com.blogging.model.UserSummary;
+import com.blogging.service.UserPurgeJob;
 import com.blogging.service.UserService;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
+
+ // Controller for the admin user list. Users are searched, sorted and paged in the
+ // database a page at a time (see UserService.getUserPage); only that page is held here.
+ // Deletes and role changes apply to every selected user at once; deleted users are purged
+ // in the background (UserPurgeJob), with its progress shown next to the buttons.
+
 public class UserManagementController {
     private static final Logger logger = LoggerFactory.getLogger(UserManagementController.class);
+    private static final int USERS_PER_PAGE = 50;
+    private static final Duration SEARCH_DELAY = Duration.millis(300);
 
-    @FXML private TableView<User> userTable;
-    @FXML private TableColumn<User, Integer> idColumn;
-    @FXML private TableColumn<User, String> usernameColumn;
-    @FXML private TableColumn<User, String> emailColumn;
-    @FXML private TableColumn<User, String> roleColumn;
-    @FXML private TableColumn<User, String> dateColumn;
+    @FXML private TableView<UserSummary> userTable;
+    @FXML private TableColumn<UserSummary, Integer> idColumn;
+    @FXML private TableColumn<UserSummary, String> usernameColumn;
+    @FXML private TableColumn<UserSummary, String> emailColumn;
+    @FXML private TableColumn<UserSummary, String> roleColumn;
+    @FXML private TableColumn<UserSummary, String> dateColumn;
+    @FXML private TextField searchField;
+    @FXML private ComboBox<String> roleComboBox;
+    @FXML private ComboBox<String> sortComboBox;
+    @FXML private Button prevPageButton;
+    @FXML private Button nextPageButton;
+    @FXML private Label pageLabel;
     @FXML private Label statusLabel;
+    @FXML private Label purgeLabel;
 
     private UserService userService;
-    private final ObservableList<User> userList = FXCollections.observableArrayList();
+    private final ObservableList<UserSummary> userList = FXCollections.observableArrayList();
+    // Keyset cursors: the last row before the current page (null on the first page) and
+    // those of the pages before it
+    private UserSummary pageAfter;
+    private final List<UserSummary> previousPages = new ArrayList<>();
+    // Typing in the search field reloads once the user pauses
+    private final PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+    // Held here because the job only keeps a weak reference
+    private final UserPurgeJob.Listener purgeListener = this::showPurgeProgress;
 
     public void setUserService(UserService userService) {
         this.userService = userService;
-        loadUsers();
+        loadFirstPage();
     }
 
     @FXML
     public void initialize() {
         setupTableColumns();
+        roleComboBox.setItems(FXCollections.observableArrayList("All roles", "Users", "Admins"));
+        roleComboBox.setValue("All roles");
+        roleComboBox.setOnAction(e -> loadFirstPage());
+        sortComboBox.setItems(FXCollections.observableArrayList("Newest", "Username", "Email"));
+        sortComboBox.setValue("Newest");
+        sortComboBox.setOnAction(e -> loadFirstPage());
+        searchDelay.setOnFinished(e -> loadFirstPage());
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+        searchField.setOnAction(e -> {
+            searchDelay.stop();
+            loadFirstPage();
+        });
+        userTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        UserPurgeJob purgeJob = UserPurgeJob.getInstance();
+        purgeJob.subscribe(purgeListener);
+        showPurgeProgress(purgeJob.getProgress());
     }
 
     private void setupTableColumns() {
@@ -55,74 +98,169 @@ public class UserManagementController {
             }
         });
 
+        // Sorting a page in the table would misorder the pages; the sort box sorts in the database
+        for (TableColumn<UserSummary, ?> column : userTable.getColumns()) {
+            column.setSortable(false);
+        }
         userTable.setItems(userList);
     }
 
-    private void loadUsers() {
+    private void loadFirstPage() {
+        pageAfter = null;
+        previousPages.clear();
+        loadPage();
+    }
+
+    private void loadPage() {
         if (userService == null) return;
         try {
-            List<User> users = userService.getAllUsers();
-            userList.setAll(users);
-            statusLabel.setText("Total users: " + users.size());
+            // One row more than shown tells whether there is a next page
+            List<UserSummary> users = userService.getUserPage(searchField.getText(), selectedRole(), selectedOrder(),
+                    pageAfter, USERS_PER_PAGE + 1);
+            boolean hasNext = users.size() > USERS_PER_PAGE;
+            userList.setAll(hasNext ? users.subList(0, USERS_PER_PAGE) : users);
+
+            prevPageButton.setDisable(previousPages.isEmpty());
+            nextPageButton.setDisable(!hasNext);
+            pageLabel.setText(String.format("Page %d", previousPages.size() + 1));
+            int first = previousPages.size() * USERS_PER_PAGE;
+            statusLabel.setText(userList.isEmpty() ? "No users found"
+                    : String.format("Users %d-%d", first + 1, first + userList.size()));
         } catch (SQLException e) {
             logger.error("Failed to load users", e);
             showError("Error", "Failed to load users: " + e.getMessage());
         }
     }
 
+    private String selectedRole() {
+        switch (roleComboBox.getValue()) {
+            case "Users":
+                return "USER";
+            case "Admins":
+                return "ADMIN";
+            default:
+                return null;
+        }
+    }
+
+    private UserSummary.SortOrder selectedOrder() {
+        switch (sortComboBox.getValue()) {
+            case "Username":
+                return UserSummary.SortOrder.USERNAME;
+            case "Email":
+                return UserSummary.SortOrder.EMAIL;
+            default:
+                return UserSummary.SortOrder.NEWEST;
+        }
+    }
+
     @FXML
-    private void handleDeleteUser() {
-        User selectedUser = userTable.getSelectionModel().getSelectedItem();
-        if (selectedUser == null) {
-            showError("No Selection", "Please select a user to delete.");
+    private void handlePreviousPage() {
+        if (!previousPages.isEmpty()) {
+            pageAfter = previousPages.remove(previousPages.size() - 1);
+            loadPage();
+        }
+    }
+
+    @FXML
+    private void handleNextPage() {
+        if (!userList.isEmpty()) {
+            previousPages.add(pageAfter);
+            pageAfter = userList.get(userList.size() - 1);
+            loadPage();
+        }
+    }
+
+    @FXML
+    private void handleDeleteUsers() {
+        List<UserSummary> selected = new ArrayList<>(userTable.getSelectionModel().getSelectedItems());
+        if (selected.isEmpty()) {
+            showError("No Selection", "Please select the users to delete.");
             return;
         }
 
-        if (userService.getCurrentUser().getUserId() == selectedUser.getUserId()) {
+        int currentUserId = userService.getCurrentUser().getUserId();
+        if (selected.stream().anyMatch(user -> user.getUserId() == currentUserId)) {
             showError("Action Denied", "You cannot delete your own account here.");
             return;
         }
 
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
-        alert.setTitle("Delete User");
-        alert.setHeaderText("Delete user " + selectedUser.getUsername() + "?");
-        alert.setContentText("This action cannot be undone.");
+        alert.setTitle("Delete Users");
+        alert.setHeaderText(selected.size() == 1 ? "Delete user " + selected.get(0).getUsername() + "?"
+                : "Delete " + selected.size() + " users?");
+        alert.setContentText("Their posts, comments and reviews are deleted in the background. " +
+                "This action cannot be undone.");
 
         if (alert.showAndWait().get() == ButtonType.OK) {
             try {
-                userService.deleteUser(selectedUser.getUserId());
-                loadUsers();
-                statusLabel.setText("User deleted.");
+                int queued = userService.deleteUsers(userIds(selected));
+                loadPage();
+                statusLabel.setText(String.format("%d users queued for deletion.", queued));
             } catch (SQLException e) {
-                logger.error("Failed to delete user", e);
-                showError("Error", "Failed to delete user: " + e.getMessage());
+                logger.error("Failed to delete users", e);
+                showError("Error", "Failed to delete users: " + e.getMessage());
             }
         }
     }
 
     @FXML
     private void handleMakeAdmin() {
-        User selectedUser = userTable.getSelectionModel().getSelectedItem();
-        if (selectedUser == null) {
-            showError("No Selection", "Please select a user.");
+        changeRole("ADMIN", "Admin");
+    }
+
+    @FXML
+    private void handleMakeUser() {
+        changeRole("USER", "User");
+    }
+
+    private void changeRole(String role, String roleName) {
+        List<UserSummary> selected = new ArrayList<>(userTable.getSelectionModel().getSelectedItems());
+        if (selected.isEmpty()) {
+            showError("No Selection", "Please select the users to change.");
+            return;
+        }
+
+        int currentUserId = userService.getCurrentUser().getUserId();
+        if ("USER".equals(role) && selected.stream().anyMatch(user -> user.getUserId() == currentUserId)) {
+            showError("Action Denied", "You cannot remove your own admin role here.");
             return;
         }
 
         try {
-            // Toggle role or set to Admin. For now, set to ADMIN.
-            selectedUser.setRole("ADMIN");
-            userService.updateUser(selectedUser);
-            loadUsers(); // Refresh to show change
-            statusLabel.setText(selectedUser.getUsername() + " is now an Admin.");
+            userService.setRoles(userIds(selected), role);
+            loadPage(); // Refresh to show change
+            statusLabel.setText(selected.size() == 1 ? selected.get(0).getUsername() + " is now " + roleName + "."
+                    : String.format("%d users are now %ss.", selected.size(), roleName));
         } catch (SQLException e) {
-            logger.error("Failed to update user role", e);
-            showError("Error", "Failed to update role: " + e.getMessage());
+            logger.error("Failed to update user roles", e);
+            showError("Error", "Failed to update roles: " + e.getMessage());
+        }
+    }
+
+    private static int[] userIds(List<UserSummary> users) {
+        return users.stream().mapToInt(UserSummary::getUserId).toArray();
+    }
+
+    private void showPurgeProgress(UserPurgeJob.Progress progress) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> showPurgeProgress(progress));
+            return;
+        }
+        if (progress == null) {
+            purgeLabel.setText("");
+        } else if (progress.isFinished()) {
+            purgeLabel.setText(String.format("Deleted %d of %d users (%d rows)%s", progress.getUsersDone(),
+                    progress.getUsersTotal(), progress.getRowsDeleted(), progress.isFailed() ? ", stopped by an error" : ""));
+        } else {
+            purgeLabel.setText(String.format("Deleting users %d/%d, %d rows: %s", progress.getUsersDone(),
+                    progress.getUsersTotal(), progress.getRowsDeleted(), progress.getActivity()));
         }
     }
 
     @FXML
     private void handleRefresh() {
-        loadUsers();
+        loadPage();
     }
 
     private void showError(String title, String message) {
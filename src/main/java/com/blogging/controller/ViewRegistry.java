@@ -0,0 +1,169 @@
+package com.blogging.controller;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+ // Parsed FXML views kept for reuse, so that opening a post or the post form does not parse
+ // the FXML, build the scene graph and resolve its CSS again each time.
+ //
+ // A screen takes a view with acquire and hands it back with release once it is closed or
+ // replaced. Released views are reset (see Reusable) and kept, up to MAX_IDLE per FXML file;
+ // acquire only loads the FXML when none is idle. Dialog views keep their Scene, which can
+ // be shown again on a new Stage once the previous one is hidden.
+ //
+ // preload parses views on a background thread at startup. Building nodes off the FX
+ // thread is allowed while they are not part of a showing scene; the views are handed to
+ // the idle pool on the FX thread. acquire and release must be called on the FX thread.
+
+public class ViewRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ViewRegistry.class);
+    public static final String POST_LIST = "/fxml/PostListView.fxml";
+    public static final String POST_DETAIL = "/fxml/PostDetailView.fxml";
+    public static final String POST_FORM = "/fxml/PostFormView.fxml";
+    static final int MAX_IDLE = 2;
+
+    private static volatile ViewRegistry instance;
+
+    private final ExecutorService preloader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "view-preload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Deque<View<?>>> idle = new HashMap<>();
+    private int loads;
+    private int reuses;
+
+    private ViewRegistry() {
+    }
+
+    public static ViewRegistry getInstance() {
+        if (instance == null) {
+            synchronized (ViewRegistry.class) {
+                if (instance == null) {
+                    instance = new ViewRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+
+
+     // Parse one view of each FXML file in the background.
+
+    public void preload(String... fxmls) {
+        for (String fxml : fxmls) {
+            preloader.execute(() -> {
+                try {
+                    View<?> view = load(fxml);
+                    Platform.runLater(() -> keep(view));
+                } catch (IOException | RuntimeException e) {
+                    // acquire loads it on demand instead
+                    logger.warn("Failed to preload {}", fxml, e);
+                }
+            });
+        }
+    }
+
+
+     // An idle view of the FXML file, or a newly loaded one.
+
+    @SuppressWarnings("unchecked")
+    public <C> View<C> acquire(String fxml) throws IOException {
+        Deque<View<?>> views = idle.get(fxml);
+        if (views != null && !views.isEmpty()) {
+            reuses++;
+            return (View<C>) views.pop();
+        }
+        loads++;
+        return (View<C>) load(fxml);
+    }
+
+
+     // Hand a view back once it is no longer shown. Its controller is reset first.
+
+    public void release(View<?> view) {
+        if (view.controller instanceof Reusable) {
+            ((Reusable) view.controller).reset();
+        }
+        keep(view);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("loads", loads);
+        stats.put("reuses", reuses);
+        int idleViews = 0;
+        for (Deque<View<?>> views : idle.values()) {
+            idleViews += views.size();
+        }
+        stats.put("idle", idleViews);
+        return stats;
+    }
+
+    private void keep(View<?> view) {
+        Deque<View<?>> views = idle.computeIfAbsent(view.fxml, key -> new ArrayDeque<>());
+        if (views.size() < MAX_IDLE && !views.contains(view)) {
+            views.push(view);
+        }
+    }
+
+    private View<?> load(String fxml) throws IOException {
+        long start = System.nanoTime();
+        FXMLLoader loader = new FXMLLoader(ViewRegistry.class.getResource(fxml));
+        Parent root = loader.load();
+        logger.debug("Loaded {} in {} ms", fxml, (System.nanoTime() - start) / 1_000_000);
+        return new View<>(fxml, root, loader.getController());
+    }
+
+
+     // A parsed view: its root node, its controller and, once shown in a window, its scene.
+
+    public static final class View<C> {
+        private final String fxml;
+        private final Parent root;
+        private final C controller;
+        private Scene scene;
+
+        private View(String fxml, Parent root, C controller) {
+            this.fxml = fxml;
+            this.root = root;
+            this.controller = controller;
+        }
+
+        public Parent getRoot() {
+            return root;
+        }
+
+        public C getController() {
+            return controller;
+        }
+
+        public Scene getScene() {
+            if (scene == null) {
+                scene = new Scene(root);
+            }
+            return scene;
+        }
+    }
+
+
+     // A controller that can be shown again. reset clears what the last screen left in it
+     // (loaded data, typed text, pending work) so that it looks freshly loaded.
+
+    public interface Reusable {
+        void reset();
+    }
+}
@@ -6,15 +6,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public class CommentDAO {
     private static final Logger logger = LoggerFactory.getLogger(CommentDAO.class);
+    // Columns of a comment row in a thread: its like count, and whether the user bound to the
+    // placeholder liked it
+    private static final String THREAD_COLUMNS = "c.*, u.username, p.title AS post_title, " +
+            "(SELECT COUNT(*) FROM comment_likes cl WHERE cl.comment_id = c.comment_id) as like_count, " +
+            "EXISTS (SELECT 1 FROM comment_likes cl WHERE cl.comment_id = c.comment_id AND cl.user_id = ?) as liked ";
 
     public Comment create(Comment comment) throws SQLException {
-        String sql = "INSERT INTO comments (post_id, user_id, content) VALUES (?, ?, ?) " +
-                    "RETURNING comment_id, created_at";
+        String sql = "INSERT INTO comments (post_id, user_id, content, status, parent_id) VALUES (?, ?, ?, ?, ?) " +
+                    "RETURNING comment_id, created_at, path";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -22,10 +28,17 @@ public class CommentDAO {
             stmt.setInt(1, comment.getPostId());
             stmt.setInt(2, comment.getUserId());
             stmt.setString(3, comment.getContent());
+            stmt.setString(4, comment.getStatus());
+            if (comment.getParentId() != null) {
+                stmt.setInt(5, comment.getParentId());
+            } else {
+                stmt.setNull(5, Types.INTEGER);
+            }
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     comment.setCommentId(rs.getInt("comment_id"));
+                    comment.setPath(rs.getString("path"));
                     Timestamp ts = rs.getTimestamp("created_at");
                     if (ts != null) {
                         comment.setCreatedAt(ts.toLocalDateTime());
@@ -65,7 +78,7 @@ public class CommentDAO {
                     "FROM comments c " +
                     "JOIN users u ON c.user_id = u.user_id " +
                     "JOIN posts p ON c.post_id = p.post_id " +
-                    "WHERE c.post_id = ? " +
+                    "WHERE c.post_id = ? AND c.status <> 'SPAM' " +
                     "ORDER BY c.created_at ASC";
         
         List<Comment> comments = new ArrayList<>();
@@ -87,6 +100,90 @@ public class CommentDAO {
     }
 
 
+     // A page of the threads on a post: the first `threads` top-level comments after
+     // afterRootPath ("" for the first page), each with the first rowsPerThread comments of
+     // its thread (the top-level comment included), in path order. One query: the roots come
+     // from idx_comments_post_roots and each thread is a range scan on idx_comments_post_path.
+     // likedByCurrentUser is filled in for currentUserId (0 when nobody is logged in).
+
+    public List<Comment> findThreads(int postId, String afterRootPath, int threads, int rowsPerThread,
+                                     int currentUserId) throws SQLException {
+        String sql = "WITH roots AS (" +
+                    "SELECT path FROM comments " +
+                    "WHERE post_id = ? AND parent_id IS NULL AND status <> 'SPAM' AND path > ? " +
+                    "ORDER BY path LIMIT ?) " +
+                    "SELECT " + THREAD_COLUMNS +
+                    "FROM roots r " +
+                    "CROSS JOIN LATERAL (" +
+                    "SELECT t.* FROM comments t " +
+                    "WHERE t.post_id = ? AND t.path >= r.path AND t.path < left(r.path, -1) || '0' " +
+                    "AND t.status <> 'SPAM' " +
+                    "ORDER BY t.path LIMIT ?) c " +
+                    "JOIN users u ON c.user_id = u.user_id " +
+                    "JOIN posts p ON c.post_id = p.post_id " +
+                    "ORDER BY c.path";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, postId);
+            stmt.setString(2, afterRootPath);
+            stmt.setInt(3, threads);
+            stmt.setInt(4, currentUserId);
+            stmt.setInt(5, postId);
+            stmt.setInt(6, rowsPerThread);
+
+            return readThreadRows(stmt);
+        }
+    }
+
+
+     // The replies below a comment at any depth, in path order, starting after afterPath
+     // (the comment's own path for the first rows). One range scan on idx_comments_post_path.
+
+    public List<Comment> findSubtree(int postId, String rootPath, String afterPath, int limit,
+                                     int currentUserId) throws SQLException {
+        String sql = "SELECT " + THREAD_COLUMNS +
+                    "FROM comments c " +
+                    "JOIN users u ON c.user_id = u.user_id " +
+                    "JOIN posts p ON c.post_id = p.post_id " +
+                    "WHERE c.post_id = ? AND c.path > ? AND c.path < ? AND c.status <> 'SPAM' " +
+                    "ORDER BY c.path " +
+                    "LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, currentUserId);
+            stmt.setInt(2, postId);
+            stmt.setString(3, afterPath);
+            stmt.setString(4, subtreeEnd(rootPath));
+            stmt.setInt(5, limit);
+
+            return readThreadRows(stmt);
+        }
+    }
+
+    private List<Comment> readThreadRows(PreparedStatement stmt) throws SQLException {
+        List<Comment> comments = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Comment comment = mapResultSetToComment(rs);
+                comment.setLikesCount(rs.getInt("like_count"));
+                comment.setLikedByCurrentUser(rs.getBoolean("liked"));
+                comments.add(comment);
+            }
+        }
+        return comments;
+    }
+
+    // Smallest path after every path in the subtree: the trailing '/' of the root's path
+    // raised to '0', which sorts after '/' and before any digit that could follow the root
+    static String subtreeEnd(String rootPath) {
+        return rootPath.substring(0, rootPath.length() - 1) + '0';
+    }
+
+
      // Find all comments by a specific user.
 
     public List<Comment> findByUser(int userId) throws SQLException {
@@ -94,7 +191,7 @@ public class CommentDAO {
                     "FROM comments c " +
                     "JOIN users u ON c.user_id = u.user_id " +
                     "JOIN posts p ON c.post_id = p.post_id " +
-                    "WHERE c.user_id = ? " +
+                    "WHERE c.user_id = ? AND c.status <> 'SPAM' " +
                     "ORDER BY c.created_at DESC";
         
         List<Comment> comments = new ArrayList<>();
@@ -114,10 +211,12 @@ public class CommentDAO {
     }
 
 
-     // Update an existing comment.
+     // Update the text of an existing comment. The new text has not been classified: the
+     // comment is PENDING again, and a moderator decision on it is learned afresh.
 
     public boolean update(Comment comment) throws SQLException {
-        String sql = "UPDATE comments SET content = ? WHERE comment_id = ?";
+        String sql = "UPDATE comments SET content = ?, status = 'PENDING', spam_score = NULL, moderated = FALSE " +
+                    "WHERE comment_id = ?";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -149,10 +248,11 @@ public class CommentDAO {
     }
 
 
-     // Get comment count for a post.
+     // Get comment count for a post (comments that are not spam).
+     // Read from post_comment_counts, which a trigger on comments keeps up to date.
 
     public int getCommentCountByPost(int postId) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM comments WHERE post_id = ?";
+        String sql = "SELECT comment_count FROM post_comment_counts WHERE post_id = ?";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -169,6 +269,117 @@ public class CommentDAO {
     }
 
 
+     // Find comments still waiting for moderation, oldest first.
+     // Only id and content are loaded: this feeds the classifier, not the UI.
+
+    public List<Comment> findPending(int limit) throws SQLException {
+        String sql = "SELECT comment_id, content FROM comments WHERE status = 'PENDING' " +
+                    "ORDER BY comment_id LIMIT ?";
+        List<Comment> comments = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Comment comment = new Comment();
+                    comment.setCommentId(rs.getInt("comment_id"));
+                    comment.setContent(rs.getString("content"));
+                    comment.setStatus(Comment.STATUS_PENDING);
+                    comments.add(comment);
+                }
+            }
+        }
+        return comments;
+    }
+
+
+     // Find the newest comments created at or after the given time, newest first.
+     // Only id, content and created_at are loaded, for the near-duplicate index.
+
+    public List<Comment> findCreatedSince(LocalDateTime since, int limit) throws SQLException {
+        String sql = "SELECT comment_id, content, created_at FROM comments WHERE created_at >= ? " +
+                    "ORDER BY created_at DESC LIMIT ?";
+        List<Comment> comments = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(since));
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Comment comment = new Comment();
+                    comment.setCommentId(rs.getInt("comment_id"));
+                    comment.setContent(rs.getString("content"));
+                    comment.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                    comments.add(comment);
+                }
+            }
+        }
+        return comments;
+    }
+
+
+     // Store classifier decisions for a batch of comments in one round trip.
+     // Comments a moderator has already decided on (no longer PENDING) are left alone.
+
+    public int updateModeration(List<Comment> comments) throws SQLException {
+        String sql = "UPDATE comments SET status = ?, spam_score = ? WHERE comment_id = ? AND status = 'PENDING'";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (Comment comment : comments) {
+                stmt.setString(1, comment.getStatus());
+                if (comment.getSpamScore() != null) {
+                    stmt.setDouble(2, comment.getSpamScore());
+                } else {
+                    stmt.setNull(2, Types.DOUBLE);
+                }
+                stmt.setInt(3, comment.getCommentId());
+                stmt.addBatch();
+            }
+            int updated = 0;
+            for (int count : stmt.executeBatch()) {
+                updated += Math.max(count, 0);
+            }
+            return updated;
+        }
+    }
+
+
+     // Set the moderation status of a comment (moderator decision). Returns the moderator
+     // decision it replaces, read in the same statement: SPAM or APPROVED, or PENDING when
+     // no moderator had decided (an automatic status is not a decision). null if there is
+     // no such comment.
+
+    public String updateStatus(int commentId, String status) throws SQLException {
+        String sql = "UPDATE comments c SET status = ?, moderated = TRUE " +
+                    "FROM (SELECT comment_id, status, moderated FROM comments WHERE comment_id = ? FOR UPDATE) old " +
+                    "WHERE c.comment_id = old.comment_id " +
+                    "RETURNING CASE WHEN old.moderated THEN old.status ELSE 'PENDING' END";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, status);
+            stmt.setInt(2, commentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    logger.info("Set comment ID {} to {}", commentId, status);
+                    return rs.getString(1);
+                }
+            }
+        }
+        return null;
+    }
+
+
      // Like a comment.
 
     public boolean likeComment(int userId, int commentId) throws SQLException {
@@ -231,6 +442,13 @@ public class CommentDAO {
         if (ts != null) {
             comment.setCreatedAt(ts.toLocalDateTime());
         }
+        comment.setStatus(rs.getString("status"));
+        double spamScore = rs.getDouble("spam_score");
+        comment.setSpamScore(rs.wasNull() ? null : spamScore);
+        int parentId = rs.getInt("parent_id");
+        comment.setParentId(rs.wasNull() ? null : parentId);
+        comment.setPath(rs.getString("path"));
+        comment.setReplyCount(rs.getInt("reply_count"));
         comment.setUsername(rs.getString("username"));
         comment.setPostTitle(rs.getString("post_title"));
         return comment;
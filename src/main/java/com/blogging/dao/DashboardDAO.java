@@ -0,0 +1,76 @@
+package com.blogging.dao;
+
+import com.blogging.util.DatabaseConnection;
+
+import java.sql.*;
+
+
+ // Data Access Object for the dashboard totals, read together in one statement.
+
+public class DashboardDAO {
+
+
+     // Every dashboard total in one round trip. Comments are summed from
+     // post_comment_counts (comments other than spam) rather than counted, and today's
+     // comments leave out spam too; today's posts and comments use the created_at indexes.
+
+    public Counts loadCounts() throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM users) AS users, " +
+                    "(SELECT COUNT(*) FROM posts) AS posts, " +
+                    "(SELECT COALESCE(SUM(comment_count), 0) FROM post_comment_counts) AS comments, " +
+                    "(SELECT COUNT(*) FROM reviews) AS reviews, " +
+                    "(SELECT COUNT(*) FROM posts WHERE created_at >= CURRENT_DATE) AS posts_today, " +
+                    "(SELECT COUNT(*) FROM comments WHERE created_at >= CURRENT_DATE AND status <> 'SPAM') AS comments_today";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            rs.next();
+            return new Counts(rs.getInt("users"), rs.getInt("posts"), rs.getInt("comments"), rs.getInt("reviews"),
+                    rs.getInt("posts_today"), rs.getInt("comments_today"));
+        }
+    }
+
+    public static final class Counts {
+        private final int users;
+        private final int posts;
+        private final int comments;
+        private final int reviews;
+        private final int postsToday;
+        private final int commentsToday;
+
+        public Counts(int users, int posts, int comments, int reviews, int postsToday, int commentsToday) {
+            this.users = users;
+            this.posts = posts;
+            this.comments = comments;
+            this.reviews = reviews;
+            this.postsToday = postsToday;
+            this.commentsToday = commentsToday;
+        }
+
+        public int getUsers() {
+            return users;
+        }
+
+        public int getPosts() {
+            return posts;
+        }
+
+        public int getComments() {
+            return comments;
+        }
+
+        public int getReviews() {
+            return reviews;
+        }
+
+        public int getPostsToday() {
+            return postsToday;
+        }
+
+        public int getCommentsToday() {
+            return commentsToday;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.blogging.dao;
+
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+
+
+ // Data Access Object for feed_entries, the stored per-user feed timelines. Entries are
+ // (user, post) pairs; post ids grow with creation time, so ordering by post_id newest
+ // first is chronological.
+
+public class FeedDAO {
+    private static final Logger logger = LoggerFactory.getLogger(FeedDAO.class);
+
+
+     // Add a new post to the feed of every follower of its author in one statement.
+     // @return the ids of the followers whose feed received it
+
+    public int[] fanOut(int authorId, int postId) throws SQLException {
+        String sql = "INSERT INTO feed_entries (user_id, post_id) " +
+                    "SELECT follower_id, ? FROM follows WHERE followee_id = ? " +
+                    "ON CONFLICT DO NOTHING RETURNING user_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, postId);
+            stmt.setInt(2, authorId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                int[] followers = FollowDAO.readIds(rs);
+                logger.debug("Fanned out post {} to {} feeds", postId, followers.length);
+                return followers;
+            }
+        }
+    }
+
+
+     // The newest post ids in a user's feed, newest first.
+
+    public int[] findPostIds(int userId, int limit) throws SQLException {
+        String sql = "SELECT post_id FROM feed_entries WHERE user_id = ? ORDER BY post_id DESC LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return FollowDAO.readIds(rs);
+            }
+        }
+    }
+
+
+     // Drop the entries of a user's feed older than the given post id.
+
+    public int trim(int userId, int oldestKeptPostId) throws SQLException {
+        String sql = "DELETE FROM feed_entries WHERE user_id = ? AND post_id < ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, oldestKeptPostId);
+            return stmt.executeUpdate();
+        }
+    }
+
+
+     // Copy an author's newest posts into a user's feed, after the user starts following them.
+
+    public int addAuthorPosts(int userId, int authorId, int limit) throws SQLException {
+        String sql = "INSERT INTO feed_entries (user_id, post_id) " +
+                    "SELECT ?, post_id FROM posts WHERE user_id = ? ORDER BY post_id DESC LIMIT ? " +
+                    "ON CONFLICT DO NOTHING";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, authorId);
+            stmt.setInt(3, limit);
+            return stmt.executeUpdate();
+        }
+    }
+
+
+     // Remove an author's posts from a user's feed, after the user stops following them.
+
+    public int removeAuthorPosts(int userId, int authorId) throws SQLException {
+        String sql = "DELETE FROM feed_entries WHERE user_id = ? " +
+                    "AND post_id IN (SELECT post_id FROM posts WHERE user_id = ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, authorId);
+            return stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.blogging.dao;
+
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.Arrays;
+
+
+ // Data Access Object for the follows relation between users and the authors they follow.
+
+public class FollowDAO {
+    private static final Logger logger = LoggerFactory.getLogger(FollowDAO.class);
+
+
+     // Follow an author. Returns false if the user already follows them.
+
+    public boolean follow(int followerId, int followeeId) throws SQLException {
+        String sql = "INSERT INTO follows (follower_id, followee_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, followerId);
+            stmt.setInt(2, followeeId);
+
+            int rowsAffected = stmt.executeUpdate();
+            logger.info("User {} follows user {}", followerId, followeeId);
+            return rowsAffected > 0;
+        }
+    }
+
+    public boolean unfollow(int followerId, int followeeId) throws SQLException {
+        String sql = "DELETE FROM follows WHERE follower_id = ? AND followee_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, followerId);
+            stmt.setInt(2, followeeId);
+
+            int rowsAffected = stmt.executeUpdate();
+            logger.info("User {} unfollowed user {}", followerId, followeeId);
+            return rowsAffected > 0;
+        }
+    }
+
+    public boolean isFollowing(int followerId, int followeeId) throws SQLException {
+        String sql = "SELECT 1 FROM follows WHERE follower_id = ? AND followee_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, followerId);
+            stmt.setInt(2, followeeId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    public int countFollowers(int followeeId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM follows WHERE followee_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, followeeId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+
+     // Ids of the authors a user follows, ascending.
+
+    public int[] findFolloweeIds(int followerId) throws SQLException {
+        String sql = "SELECT followee_id FROM follows WHERE follower_id = ? ORDER BY followee_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, followerId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return readIds(rs);
+            }
+        }
+    }
+
+
+     // Ids of the authors with at least minFollowers followers, ascending.
+
+    public int[] findAuthorsWithFollowers(int minFollowers) throws SQLException {
+        String sql = "SELECT followee_id FROM follows GROUP BY followee_id HAVING COUNT(*) >= ? ORDER BY followee_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, minFollowers);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return readIds(rs);
+            }
+        }
+    }
+
+    static int[] readIds(ResultSet rs) throws SQLException {
+        int[] ids = new int[16];
+        int count = 0;
+        while (rs.next()) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = rs.getInt(1);
+        }
+        return Arrays.copyOf(ids, count);
+    }
+}
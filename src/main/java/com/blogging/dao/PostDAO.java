@@ -2,15 +2,22 @@ package com.blogging.dao;
 
 import com.blogging.model.Post;
 import com.blogging.util.DatabaseConnection;
+import com.blogging.util.QueryCanceller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PostDAO {
     private static final Logger logger = LoggerFactory.getLogger(PostDAO.class);
+    // The columns of a post for lists, with an empty content in place of the text
+    private static final String LIST_COLUMNS =
+            "p.post_id, p.user_id, p.title, '' AS content, p.created_at, p.updated_at, p.view_count";
 
     public Post create(Post post) throws SQLException {
         String sql = "INSERT INTO posts (user_id, title, content, created_at, updated_at) VALUES (?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) RETURNING post_id, created_at, updated_at, view_count";
@@ -59,6 +66,63 @@ public class PostDAO {
     }
 
 
+     // The post with only the first previewChars characters of its content, so that a
+     // multi-megabyte post opens as fast as a short one. One more character is read to tell
+     // whether the content goes on; the rest is read with findContentChunk.
+
+    public Post findPreviewById(int postId, int previewChars) throws SQLException {
+        String sql = "SELECT p.post_id, p.user_id, p.title, SUBSTRING(p.content FROM 1 FOR ?) AS content, " +
+                    "p.created_at, p.updated_at, p.view_count, u.username as author_name " +
+                    "FROM posts p " +
+                    "JOIN users u ON p.user_id = u.user_id " +
+                    "WHERE p.post_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, previewChars + 1);
+            stmt.setInt(2, postId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Post post = mapResultSetToPost(rs);
+                    String content = post.getContent();
+                    // PostgreSQL counts characters in code points, Java in UTF-16 units
+                    if (content.codePointCount(0, content.length()) > previewChars) {
+                        post.setContent(content.substring(0, content.offsetByCodePoints(0, previewChars)));
+                        post.setContentPartial(true);
+                    }
+                    return post;
+                }
+            }
+        }
+        return null;
+    }
+
+
+     // Characters offset..offset+length of a post's content, counted in code points from 0.
+     // Shorter than length at the end of the content; null if the post does not exist.
+
+    public String findContentChunk(int postId, int offset, int length) throws SQLException {
+        String sql = "SELECT SUBSTRING(content FROM ? FOR ?) FROM posts WHERE post_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, offset + 1);
+            stmt.setInt(2, length);
+            stmt.setInt(3, postId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
+                }
+            }
+        }
+        return null;
+    }
+
+
      // Get posts by user (author).
 
     public List<Post> findByUser(int userId) throws SQLException {
@@ -113,6 +177,40 @@ public class PostDAO {
     }
 
 
+     // Search as above, newest first, at most limit posts. The query can be cancelled from
+     // another thread through the canceller while it runs.
+
+    public List<Post> search(String keyword, int limit, QueryCanceller canceller) throws SQLException {
+        String sql = "SELECT p.*, u.username as author_name " +
+                    "FROM posts p " +
+                    "JOIN users u ON p.user_id = u.user_id " +
+                    "WHERE LOWER(p.title) LIKE ? OR LOWER(p.content) LIKE ? " +
+                    "ORDER BY p.created_at DESC, p.post_id DESC " +
+                    "LIMIT ?";
+
+        List<Post> posts = new ArrayList<>();
+        String searchPattern = "%" + keyword.toLowerCase().trim() + "%";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, searchPattern);
+            stmt.setString(2, searchPattern);
+            stmt.setInt(3, limit);
+
+            canceller.attach(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    posts.add(mapResultSetToPost(rs));
+                }
+            } finally {
+                canceller.detach();
+            }
+        }
+        return posts;
+    }
+
+
      // Get posts by tag.
 
     public List<Post> findByTag(int tagId) throws SQLException {
@@ -140,13 +238,15 @@ public class PostDAO {
     }
 
 
-     // Get all posts with pagination.
+     // Get all posts with pagination. The rows are for lists: they hold no content and are
+     // marked partial (Post.isContentPartial), so a page of multi-megabyte posts costs no
+     // more than a page of short ones.
 
     public List<Post> findAll(int limit, int offset) throws SQLException {
-        String sql = "SELECT p.*, u.username as author_name " +
+        String sql = "SELECT " + LIST_COLUMNS + ", u.username as author_name " +
                     "FROM posts p " +
                     "JOIN users u ON p.user_id = u.user_id " +
-                    "ORDER BY p.created_at DESC " +
+                    "ORDER BY p.created_at DESC, p.post_id DESC " +
                     "LIMIT ? OFFSET ?";
         
         List<Post> posts = new ArrayList<>();
@@ -159,7 +259,7 @@ public class PostDAO {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    posts.add(mapResultSetToPost(rs));
+                    posts.add(mapListRow(rs));
                 }
             }
         }
@@ -167,6 +267,101 @@ public class PostDAO {
     }
 
 
+     // The page of posts that follows the given post in findAll order (keyset pagination),
+     // so that reading deep into the list does not scan the skipped rows. Without content,
+     // as findAll.
+
+    public List<Post> findAllAfter(Post after, int limit) throws SQLException {
+        String sql = "SELECT " + LIST_COLUMNS + ", u.username as author_name " +
+                    "FROM posts p " +
+                    "JOIN users u ON p.user_id = u.user_id " +
+                    "WHERE (p.created_at, p.post_id) < (?, ?) " +
+                    "ORDER BY p.created_at DESC, p.post_id DESC " +
+                    "LIMIT ?";
+
+        List<Post> posts = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(after.getCreatedAt()));
+            stmt.setInt(2, after.getPostId());
+            stmt.setInt(3, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    posts.add(mapListRow(rs));
+                }
+            }
+        }
+        return posts;
+    }
+
+
+     // Load posts by id in one query, in the order of the given ids. Ids of posts that no
+     // longer exist are skipped.
+
+    public List<Post> findByIds(int[] postIds) throws SQLException {
+        String sql = "SELECT p.*, u.username as author_name " +
+                    "FROM posts p " +
+                    "JOIN users u ON p.user_id = u.user_id " +
+                    "WHERE p.post_id = ANY(?)";
+
+        List<Post> posts = new ArrayList<>();
+        if (postIds.length == 0) {
+            return posts;
+        }
+        Map<Integer, Post> byId = new HashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            Integer[] ids = new Integer[postIds.length];
+            for (int i = 0; i < postIds.length; i++) {
+                ids[i] = postIds[i];
+            }
+            stmt.setArray(1, conn.createArrayOf("integer", ids));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Post post = mapResultSetToPost(rs);
+                    byId.put(post.getPostId(), post);
+                }
+            }
+        }
+        for (int postId : postIds) {
+            Post post = byId.get(postId);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+
+     // Ids of an author's newest posts, newest first.
+
+    public int[] findRecentIdsByUser(int userId, int limit) throws SQLException {
+        String sql = "SELECT post_id FROM posts WHERE user_id = ? ORDER BY post_id DESC LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                int[] ids = new int[limit];
+                int count = 0;
+                while (rs.next()) {
+                    ids[count++] = rs.getInt(1);
+                }
+                return Arrays.copyOf(ids, count);
+            }
+        }
+    }
+
+
      // Update an existing post.
 
     public boolean update(Post post) throws SQLException {
@@ -208,6 +403,16 @@ public class PostDAO {
                 stmt.executeUpdate();
             }
 
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM post_signatures WHERE post_id = ?")) {
+                stmt.setInt(1, postId);
+                stmt.executeUpdate();
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM feed_entries WHERE post_id = ?")) {
+                stmt.setInt(1, postId);
+                stmt.executeUpdate();
+            }
+
             // 3. Delete the post
             int rowsAffected;
             try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM posts WHERE post_id = ?")) {
@@ -242,15 +447,18 @@ public class PostDAO {
 
 
      // Increment view count for a post.
+     // @return the new view count, or -1 if the post does not exist
 
-    public void incrementViewCount(int postId) throws SQLException {
-        String sql = "UPDATE posts SET view_count = view_count + 1 WHERE post_id = ?";
+    public int incrementViewCount(int postId) throws SQLException {
+        String sql = "UPDATE posts SET view_count = view_count + 1 WHERE post_id = ? RETURNING view_count";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, postId);
-            stmt.executeUpdate();
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
         }
     }
 
@@ -298,9 +506,46 @@ public class PostDAO {
     }
 
 
+     // Stream id, title and content of every post, in post_id order, without holding
+     // the corpus in memory. Used to build the related-posts index.
+
+    public void forEachText(PostTextConsumer consumer) throws SQLException {
+        String sql = "SELECT post_id, title, content FROM posts ORDER BY post_id";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // The PostgreSQL driver only honours the fetch size inside a transaction
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(500);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        consumer.accept(rs.getInt("post_id"), rs.getString("title"), rs.getString("content"));
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public interface PostTextConsumer {
+        void accept(int postId, String title, String content);
+    }
+
+
+     // A row of findAll or findAllAfter: a post without its content.
+
+    private Post mapListRow(ResultSet rs) throws SQLException {
+        Post post = mapResultSetToPost(rs);
+        post.setContentPartial(true);
+        return post;
+    }
+
+
      // Map ResultSet to Post object.
 
-    private Post mapResultSetToPost(ResultSet rs) throws SQLException {
+    Post mapResultSetToPost(ResultSet rs) throws SQLException {
         Post post = new Post();
         post.setPostId(rs.getInt("post_id"));
         post.setUserId(rs.getInt("user_id"));
@@ -0,0 +1,121 @@
+package com.blogging.dao;
+
+import com.blogging.model.Post;
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+
+ // Data Access Object for stored MinHash signatures of posts.
+
+public class PostSignatureDAO {
+    private static final Logger logger = LoggerFactory.getLogger(PostSignatureDAO.class);
+
+
+     // Insert or replace the signatures of a batch of posts in one round trip.
+
+    public void upsert(Map<Integer, byte[]> signatures) throws SQLException {
+        String sql = "INSERT INTO post_signatures (post_id, signature, computed_at) VALUES (?, ?, CURRENT_TIMESTAMP) " +
+                    "ON CONFLICT (post_id) DO UPDATE SET signature = EXCLUDED.signature, computed_at = EXCLUDED.computed_at";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (Map.Entry<Integer, byte[]> entry : signatures.entrySet()) {
+                stmt.setInt(1, entry.getKey());
+                stmt.setBytes(2, entry.getValue());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            logger.debug("Stored {} post signatures", signatures.size());
+        }
+    }
+
+
+     // Stream every stored signature to the consumer without holding them all in memory.
+
+    public void forEach(SignatureConsumer consumer) throws SQLException {
+        String sql = "SELECT post_id, signature FROM post_signatures";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // The PostgreSQL driver only honours the fetch size inside a transaction
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(1000);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        consumer.accept(rs.getInt("post_id"), rs.getBytes("signature"));
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+
+     // Posts without a signature, or edited since it was computed, in post_id order after
+     // the given id. Only id and content are loaded.
+
+    public List<Post> findUnsigned(int afterPostId, int limit) throws SQLException {
+        String sql = "SELECT p.post_id, p.content FROM posts p " +
+                    "LEFT JOIN post_signatures s ON s.post_id = p.post_id " +
+                    "WHERE p.post_id > ? AND (s.post_id IS NULL OR p.updated_at > s.computed_at) " +
+                    "ORDER BY p.post_id LIMIT ?";
+        List<Post> posts = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, afterPostId);
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Post post = new Post();
+                    post.setPostId(rs.getInt("post_id"));
+                    post.setContent(rs.getString("content"));
+                    posts.add(post);
+                }
+            }
+        }
+        return posts;
+    }
+
+
+     // Delete the signature of a post whose content is now too short to have one.
+
+    public boolean delete(int postId) throws SQLException {
+        String sql = "DELETE FROM post_signatures WHERE post_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, postId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+
+     // Delete every stored signature, so that all of them are recomputed.
+
+    public int deleteAll() throws SQLException {
+        String sql = "DELETE FROM post_signatures";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            return stmt.executeUpdate(sql);
+        }
+    }
+
+    public interface SignatureConsumer {
+        void accept(int postId, byte[] signature);
+    }
+}
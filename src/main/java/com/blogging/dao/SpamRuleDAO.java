@@ -0,0 +1,113 @@
+package com.blogging.dao;
+
+import com.blogging.model.SpamRule;
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+
+ // Data Access Object for spam rules.
+
+public class SpamRuleDAO {
+    private static final Logger logger = LoggerFactory.getLogger(SpamRuleDAO.class);
+
+
+     // Create a new rule.
+
+    public SpamRule create(SpamRule rule) throws SQLException {
+        String sql = "INSERT INTO spam_rules (pattern, whole_word, enabled, updated_at) " +
+                    "VALUES (?, ?, ?, CURRENT_TIMESTAMP) RETURNING rule_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, rule.getPattern());
+            stmt.setBoolean(2, rule.isWholeWord());
+            stmt.setBoolean(3, rule.isEnabled());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    rule.setRuleId(rs.getInt("rule_id"));
+                }
+            }
+
+            logger.info("Created spam rule with ID: {}", rule.getRuleId());
+            return rule;
+        }
+    }
+
+
+     // Find all enabled rules.
+
+    public List<SpamRule> findEnabled() throws SQLException {
+        String sql = "SELECT * FROM spam_rules WHERE enabled ORDER BY rule_id";
+        List<SpamRule> rules = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                SpamRule rule = new SpamRule(rs.getString("pattern"), rs.getBoolean("whole_word"));
+                rule.setRuleId(rs.getInt("rule_id"));
+                rule.setEnabled(rs.getBoolean("enabled"));
+                Timestamp updatedAt = rs.getTimestamp("updated_at");
+                if (updatedAt != null) {
+                    rule.setUpdatedAt(updatedAt.toLocalDateTime());
+                }
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+
+     // Enable or disable a rule.
+
+    public boolean setEnabled(int ruleId, boolean enabled) throws SQLException {
+        String sql = "UPDATE spam_rules SET enabled = ?, updated_at = CURRENT_TIMESTAMP WHERE rule_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setBoolean(1, enabled);
+            stmt.setInt(2, ruleId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+
+     // Delete a rule.
+
+    public boolean delete(int ruleId) throws SQLException {
+        String sql = "DELETE FROM spam_rules WHERE rule_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, ruleId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+
+     // Cheap change marker for the rule table (row count and latest update time).
+     // Deleting a row changes the count, every insert bumps updated_at and so does every
+     // update, through trg_spam_rules_updated_at.
+
+    public String getVersion() throws SQLException {
+        String sql = "SELECT COUNT(*), MAX(updated_at) FROM spam_rules";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            rs.next();
+            return rs.getLong(1) + "@" + rs.getTimestamp(2);
+        }
+    }
+}
@@ -210,4 +210,31 @@ public class TagDAO {
         tag.setName(rs.getString("tag_name"));
         return tag;
     }
+
+
+     // Stream every (post_id, tag_id) pair, grouped by post.
+
+    public void forEachPostTag(PostTagConsumer consumer) throws SQLException {
+        String sql = "SELECT post_id, tag_id FROM post_tags ORDER BY post_id, tag_id";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // The PostgreSQL driver only honours the fetch size inside a transaction
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(5000);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        consumer.accept(rs.getInt("post_id"), rs.getInt("tag_id"));
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public interface PostTagConsumer {
+        void accept(int postId, int tagId);
+    }
 }
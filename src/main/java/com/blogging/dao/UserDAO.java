@@ -1,6 +1,7 @@
 package com.blogging.dao;
 
 import com.blogging.model.User;
+import com.blogging.model.UserSummary;
 import com.blogging.util.DatabaseConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class UserDAO {
     private static final Logger logger = LoggerFactory.getLogger(UserDAO.class);
@@ -55,10 +57,11 @@ public class UserDAO {
     }
 
 
-     // Find a user by username.
+     // Find a user by username, to log in: users queued for deletion are not found.
 
     public User findByUsername(String username) throws SQLException {
-        String sql = "SELECT * FROM users WHERE LOWER(username) = LOWER(?)";
+        String sql = "SELECT * FROM users WHERE LOWER(username) = LOWER(?) " +
+                    "AND NOT EXISTS (SELECT 1 FROM user_purges p WHERE p.user_id = users.user_id)";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -113,6 +116,108 @@ public class UserDAO {
     }
 
 
+     // A page of users for user management, without credentials, filtered and sorted in the
+     // database. prefix matches the start of the username or the email, ignoring case (null
+     // or empty for all users); role is null for every role. after is the last row of the
+     // previous page, null for the first; a page continues from it on the sort columns
+     // (keyset paging), so deep pages cost the same as the first one.
+
+    public List<UserSummary> findSummaries(String prefix, String role, UserSummary.SortOrder order,
+                                           UserSummary after, int limit) throws SQLException {
+        // Users queued for deletion are already gone as far as the list is concerned
+        StringBuilder sql = new StringBuilder("SELECT user_id, username, email, role, created_at FROM users " +
+                "WHERE NOT EXISTS (SELECT 1 FROM user_purges p WHERE p.user_id = users.user_id)");
+        List<Object> params = new ArrayList<>();
+        if (prefix != null && !prefix.isEmpty()) {
+            // Same expressions as idx_users_username_lower and idx_users_email_lower
+            sql.append(" AND (LOWER(username) COLLATE \"C\" LIKE ? OR LOWER(email) COLLATE \"C\" LIKE ?)");
+            String pattern = escapeLike(prefix.toLowerCase(Locale.ROOT)) + "%";
+            params.add(pattern);
+            params.add(pattern);
+        }
+        if (role != null) {
+            sql.append(" AND role = ?");
+            params.add(role);
+        }
+        switch (order) {
+            case USERNAME:
+                if (after != null) {
+                    sql.append(" AND (LOWER(username) COLLATE \"C\", user_id) > (LOWER(?) COLLATE \"C\", ?)");
+                    params.add(after.getUsername());
+                    params.add(after.getUserId());
+                }
+                sql.append(" ORDER BY LOWER(username) COLLATE \"C\", user_id");
+                break;
+            case EMAIL:
+                if (after != null) {
+                    sql.append(" AND (LOWER(email) COLLATE \"C\", user_id) > (LOWER(?) COLLATE \"C\", ?)");
+                    params.add(after.getEmail());
+                    params.add(after.getUserId());
+                }
+                sql.append(" ORDER BY LOWER(email) COLLATE \"C\", user_id");
+                break;
+            default:
+                if (after != null) {
+                    sql.append(" AND (created_at, user_id) < (?, ?)");
+                    params.add(Timestamp.valueOf(after.getCreatedAt()));
+                    params.add(after.getUserId());
+                }
+                sql.append(" ORDER BY created_at DESC, user_id DESC");
+        }
+        sql.append(" LIMIT ?");
+        params.add(limit);
+
+        List<UserSummary> users = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String userRole = rs.getString("role");
+                    users.add(new UserSummary(rs.getInt("user_id"), rs.getString("username"), rs.getString("email"),
+                            userRole != null ? userRole : "USER", rs.getTimestamp("created_at").toLocalDateTime()));
+                }
+            }
+        }
+        return users;
+    }
+
+    // LIKE treats % and _ as wildcards and \ as the escape character
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+
+     // Give several users the same role in one statement, without touching the rest of
+     // their accounts. Returns the number of users changed.
+
+    public int updateRoles(int[] userIds, String role) throws SQLException {
+        String sql = "UPDATE users SET role = ? WHERE user_id = ANY(?)";
+        if (userIds.length == 0) {
+            return 0;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            Integer[] ids = new Integer[userIds.length];
+            for (int i = 0; i < userIds.length; i++) {
+                ids[i] = userIds[i];
+            }
+            stmt.setString(1, role);
+            stmt.setArray(2, conn.createArrayOf("integer", ids));
+
+            int rowsAffected = stmt.executeUpdate();
+            logger.info("Set role of {} users to {}", rowsAffected, role);
+            return rowsAffected;
+        }
+    }
+
+
      // Update an existing user.
 
     public boolean update(User user) throws SQLException {
@@ -134,6 +239,23 @@ public class UserDAO {
     }
 
 
+     // Replace a user's password hash, but only if it is still expectedHash. Returns false
+     // if the password was changed in the meantime.
+
+    public boolean updatePasswordHash(int userId, String expectedHash, String newHash) throws SQLException {
+        String sql = "UPDATE users SET password_hash = ? WHERE user_id = ? AND password_hash = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, newHash);
+            stmt.setInt(2, userId);
+            stmt.setString(3, expectedHash);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+
      //  Delete a user by ID.
 
     public boolean delete(int userId) throws SQLException {
@@ -151,6 +273,51 @@ public class UserDAO {
     }
 
 
+     // Number of users.
+
+    public int getTotalCount() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM users";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        }
+        return 0;
+    }
+
+
+     // Stream the username and email of every user without holding them in memory. Used
+     // to fill the availability filters of UserAvailability.
+
+    public void forEachIdentity(IdentityConsumer consumer) throws SQLException {
+        String sql = "SELECT username, email FROM users";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // The PostgreSQL driver only honours the fetch size inside a transaction
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(1000);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        consumer.accept(rs.getString("username"), rs.getString("email"));
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public interface IdentityConsumer {
+        void accept(String username, String email);
+    }
+
+
      //  Check if username exists.
 
     public boolean usernameExists(String username) throws SQLException {
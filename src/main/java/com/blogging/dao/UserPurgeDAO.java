@@ -0,0 +1,174 @@
+package com.blogging.dao;
+
+import com.blogging.model.UserSummary;
+import com.blogging.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+
+ // Data Access Object for deleting accounts piece by piece (see UserPurgeJob).
+ //
+ // Deleting a user row cascades to everything the user wrote and everything written on it,
+ // in one transaction. Users are instead queued in user_purges and their rows are deleted a
+ // chunk at a time, one transaction per statement, so that no statement holds locks on
+ // many rows of the busy tables; the user row itself goes last, when little is left.
+
+public class UserPurgeDAO {
+    private static final Logger logger = LoggerFactory.getLogger(UserPurgeDAO.class);
+
+
+     // The rows of a user deleted before their posts, in this order. Each statement takes
+     // the user id (once per ?) and the chunk size.
+
+    public enum Step {
+        COMMENT_LIKES("DELETE FROM comment_likes WHERE (user_id, comment_id) IN (" +
+                "SELECT user_id, comment_id FROM comment_likes WHERE user_id = ? LIMIT ?)", 1),
+        REVIEWS("DELETE FROM reviews WHERE review_id IN (" +
+                "SELECT review_id FROM reviews WHERE user_id = ? LIMIT ?)", 1),
+        POST_REVIEWS("DELETE FROM reviews WHERE review_id IN (" +
+                "SELECT r.review_id FROM posts p JOIN reviews r ON r.post_id = p.post_id WHERE p.user_id = ? LIMIT ?)", 1),
+        // The user's comments with the replies under them. Deepest first (a reply's path
+        // sorts after its parent's), so that no delete cascades to a thread. A reply under
+        // several of the user's comments joins once per comment: DISTINCT keeps the chunk
+        // at limit different comments, so a short chunk still means the step is done
+        COMMENTS("DELETE FROM comments WHERE comment_id IN (" +
+                "SELECT comment_id FROM (SELECT DISTINCT c.comment_id, c.path " +
+                "FROM comments r JOIN comments c ON c.post_id = r.post_id " +
+                "AND c.path >= r.path AND c.path < LEFT(r.path, -1) || '0' " +
+                "WHERE r.user_id = ? ORDER BY c.path DESC LIMIT ?) subtree)", 1),
+        POST_COMMENTS("DELETE FROM comments WHERE comment_id IN (" +
+                "SELECT c.comment_id FROM posts p JOIN comments c ON c.post_id = p.post_id " +
+                "WHERE p.user_id = ? ORDER BY c.path DESC LIMIT ?)", 1),
+        POST_FEED_ENTRIES("DELETE FROM feed_entries WHERE (user_id, post_id) IN (" +
+                "SELECT f.user_id, f.post_id FROM posts p JOIN feed_entries f ON f.post_id = p.post_id " +
+                "WHERE p.user_id = ? LIMIT ?)", 1),
+        FEED_ENTRIES("DELETE FROM feed_entries WHERE (user_id, post_id) IN (" +
+                "SELECT user_id, post_id FROM feed_entries WHERE user_id = ? LIMIT ?)", 1),
+        FOLLOWS("DELETE FROM follows WHERE (follower_id, followee_id) IN (" +
+                "SELECT follower_id, followee_id FROM follows WHERE follower_id = ? " +
+                "UNION ALL SELECT follower_id, followee_id FROM follows WHERE followee_id = ? LIMIT ?)", 2);
+
+        private final String sql;
+        private final int userParams;
+
+        Step(String sql, int userParams) {
+            this.sql = sql;
+            this.userParams = userParams;
+        }
+    }
+
+
+     // Queue users for deletion in one statement. Ids of users that do not exist or are
+     // already queued are skipped; returns the number queued.
+
+    public int markForPurge(int[] userIds) throws SQLException {
+        String sql = "INSERT INTO user_purges (user_id) " +
+                    "SELECT user_id FROM users WHERE user_id = ANY(?) " +
+                    "ON CONFLICT (user_id) DO NOTHING";
+        if (userIds.length == 0) {
+            return 0;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setArray(1, conn.createArrayOf("integer", boxed(userIds)));
+            int queued = stmt.executeUpdate();
+            logger.info("Queued {} users for deletion", queued);
+            return queued;
+        }
+    }
+
+
+     // Ids of the users waiting to be deleted, oldest request first.
+
+    public List<Integer> findPending() throws SQLException {
+        String sql = "SELECT user_id FROM user_purges ORDER BY requested_at, user_id";
+        List<Integer> userIds = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                userIds.add(rs.getInt("user_id"));
+            }
+        }
+        return userIds;
+    }
+
+
+     // Delete up to limit rows of one step for a user. Returns the number deleted; fewer
+     // than limit means the step is done.
+
+    public int deleteChunk(Step step, int userId, int limit) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(step.sql)) {
+
+            for (int i = 1; i <= step.userParams; i++) {
+                stmt.setInt(i, userId);
+            }
+            stmt.setInt(step.userParams + 1, limit);
+            return stmt.executeUpdate();
+        }
+    }
+
+
+     // Delete up to limit posts of a user, once the steps have cleared what is written on
+     // them. Returns the ids of the deleted posts.
+
+    public List<Integer> deletePosts(int userId, int limit) throws SQLException {
+        String sql = "DELETE FROM posts WHERE post_id IN (" +
+                    "SELECT post_id FROM posts WHERE user_id = ? LIMIT ?) RETURNING post_id";
+        List<Integer> postIds = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    postIds.add(rs.getInt("post_id"));
+                }
+            }
+        }
+        return postIds;
+    }
+
+
+     // Delete the user row, once their rows are cleared. Returns the deleted user, so that
+     // their username and email can be released, or null if it was already gone.
+
+    public UserSummary deleteUser(int userId) throws SQLException {
+        String sql = "DELETE FROM users WHERE user_id = ? RETURNING user_id, username, email, role, created_at";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    logger.info("Deleted user ID: {}", userId);
+                    return new UserSummary(rs.getInt("user_id"), rs.getString("username"), rs.getString("email"),
+                            rs.getString("role"), rs.getTimestamp("created_at").toLocalDateTime());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Integer[] boxed(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+}
@@ -0,0 +1,289 @@
+package com.blogging.feed;
+
+import com.blogging.dao.FeedDAO;
+import com.blogging.dao.FollowDAO;
+import com.blogging.dao.PostDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+
+
+ // Followed-authors feed timelines, written on post creation (fan-out on write).
+ //
+ // When a post is created, its id is inserted into the feed_entries of every follower of the
+ // author with one INSERT ... SELECT, and pushed onto the in-memory timelines of the followers
+ // that are resident. A timeline is an IntRing of the newest CAPACITY post ids; it is loaded
+ // from feed_entries on first read (trimming the stored feed to CAPACITY) and resident
+ // timelines are kept in LRU order up to -Dfeed.resident-timelines (default 5000).
+ //
+ // Authors with at least -Dfeed.fanout.max-followers followers (default 5000) are not fanned
+ // out: their followers' reads merge the author's own recent posts instead (fan-out on read).
+ // A read walks the user's ring and those authors' rings from the cursor, so it costs
+ // O(page size * (1 + popular authors followed)) whatever the number of followers. Authors
+ // stay on fan-out on read until restart.
+ //
+ // Deleted posts are not removed from the rings; FeedService skips them when loading posts.
+
+public class FeedTimelines {
+    private static final Logger logger = LoggerFactory.getLogger(FeedTimelines.class);
+    public static final int CAPACITY = 500;
+    private static final int LOAD_ATTEMPTS = 3;
+    private static final int[] NONE = new int[0];
+    private static volatile FeedTimelines instance;
+
+    private final FeedDAO feedDAO;
+    private final FollowDAO followDAO;
+    private final PostDAO postDAO;
+    private final int fanOutLimit;
+    private final Map<Integer, Timeline> timelines;
+    private final Map<Integer, IntRing> popularAuthorPosts = new HashMap<>();
+    private final Set<Integer> popularAuthors = new HashSet<>();
+    private volatile boolean popularAuthorsLoaded;
+    // Incremented after every write that a concurrent timeline load could have missed
+    private long writes;
+
+    public FeedTimelines(FeedDAO feedDAO, FollowDAO followDAO, PostDAO postDAO, int fanOutLimit, int maxResident) {
+        this.feedDAO = feedDAO;
+        this.followDAO = followDAO;
+        this.postDAO = postDAO;
+        this.fanOutLimit = fanOutLimit;
+        this.timelines = new LinkedHashMap<Integer, Timeline>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Timeline> eldest) {
+                return size() > maxResident;
+            }
+        };
+    }
+
+
+     // Shared timelines used by PostService and FeedService.
+
+    public static FeedTimelines getInstance() {
+        FeedTimelines timelines = instance;
+        if (timelines == null) {
+            synchronized (FeedTimelines.class) {
+                timelines = instance;
+                if (timelines == null) {
+                    timelines = new FeedTimelines(new FeedDAO(), new FollowDAO(), new PostDAO(),
+                            Integer.getInteger("feed.fanout.max-followers", 5000),
+                            Integer.getInteger("feed.resident-timelines", 5000));
+                    instance = timelines;
+                }
+            }
+        }
+        return timelines;
+    }
+
+
+     // Deliver a newly created post to its author's followers.
+
+    public void postCreated(int authorId, int postId) throws SQLException {
+        loadPopularAuthors();
+        synchronized (this) {
+            if (popularAuthors.contains(authorId)) {
+                IntRing posts = popularAuthorPosts.get(authorId);
+                if (posts != null) {
+                    posts.push(postId);
+                }
+                writes++;
+                return;
+            }
+        }
+        int[] followers = feedDAO.fanOut(authorId, postId);
+        pushToFollowers(authorId, postId, followers);
+    }
+
+    public synchronized void postDeleted(int postId) {
+        for (IntRing posts : popularAuthorPosts.values()) {
+            posts.remove(postId);
+        }
+    }
+
+
+     // Update the stored feed after a user starts following an author.
+
+    public void followed(int followerId, int authorId) throws SQLException {
+        loadPopularAuthors();
+        boolean popular;
+        synchronized (this) {
+            popular = popularAuthors.contains(authorId);
+        }
+        if (!popular) {
+            feedDAO.addAuthorPosts(followerId, authorId, CAPACITY);
+        }
+        evict(followerId);
+    }
+
+    public void unfollowed(int followerId, int authorId) throws SQLException {
+        feedDAO.removeAuthorPosts(followerId, authorId);
+        evict(followerId);
+    }
+
+
+     // Up to limit post ids from a user's feed older than beforePostId, newest first.
+     // Pass Integer.MAX_VALUE for the first page and the last id of a page for the next one.
+
+    public int[] page(int userId, int beforePostId, int limit) throws SQLException {
+        Timeline timeline = timeline(userId);
+        int[] authors;
+        synchronized (this) {
+            authors = timeline.popularFollowees;
+        }
+        for (int authorId : authors) {
+            loadPopularAuthorPosts(authorId);
+        }
+        synchronized (this) {
+            return merge(timeline, beforePostId, limit);
+        }
+    }
+
+    synchronized void pushToFollowers(int authorId, int postId, int[] followers) {
+        for (int followerId : followers) {
+            Timeline timeline = timelines.get(followerId);
+            if (timeline != null) {
+                timeline.posts.push(postId);
+            }
+        }
+        writes++;
+        if (followers.length >= fanOutLimit && popularAuthors.add(authorId)) {
+            logger.info("Author {} has {} followers, switching to fan-out on read", authorId, followers.length);
+            for (Timeline timeline : timelines.values()) {
+                if (Arrays.binarySearch(timeline.followees, authorId) >= 0) {
+                    timeline.addPopularFollowee(authorId);
+                }
+            }
+        }
+    }
+
+    synchronized void install(int userId, int[] newestFirst, int[] followees) {
+        timelines.put(userId, new Timeline(newestFirst, followees, popularAuthors));
+    }
+
+    synchronized void installPopularAuthor(int authorId, int[] newestFirst) {
+        popularAuthors.add(authorId);
+        popularAuthorPosts.put(authorId, new IntRing(CAPACITY, newestFirst));
+        popularAuthorsLoaded = true;
+    }
+
+    private synchronized void evict(int userId) {
+        timelines.remove(userId);
+    }
+
+    private Timeline timeline(int userId) throws SQLException {
+        synchronized (this) {
+            Timeline timeline = timelines.get(userId);
+            if (timeline != null) return timeline;
+        }
+        loadPopularAuthors();
+        for (int attempt = 1; ; attempt++) {
+            long seen;
+            synchronized (this) {
+                seen = writes;
+            }
+            int[] postIds = feedDAO.findPostIds(userId, CAPACITY + 1);
+            if (postIds.length > CAPACITY) {
+                postIds = Arrays.copyOf(postIds, CAPACITY);
+                feedDAO.trim(userId, postIds[CAPACITY - 1]);
+            }
+            int[] followees = followDAO.findFolloweeIds(userId);
+            synchronized (this) {
+                Timeline timeline = timelines.get(userId);
+                if (timeline != null) return timeline;
+                // A post fanned out while loading may be missing from what was read
+                if (writes != seen && attempt < LOAD_ATTEMPTS) continue;
+                timeline = new Timeline(postIds, followees, popularAuthors);
+                timelines.put(userId, timeline);
+                return timeline;
+            }
+        }
+    }
+
+    private void loadPopularAuthors() throws SQLException {
+        if (popularAuthorsLoaded) return;
+        int[] authors = followDAO.findAuthorsWithFollowers(fanOutLimit);
+        synchronized (this) {
+            for (int authorId : authors) {
+                popularAuthors.add(authorId);
+            }
+            popularAuthorsLoaded = true;
+        }
+        logger.info("{} authors use fan-out on read", authors.length);
+    }
+
+    private void loadPopularAuthorPosts(int authorId) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            long seen;
+            synchronized (this) {
+                if (popularAuthorPosts.containsKey(authorId)) return;
+                seen = writes;
+            }
+            int[] postIds = postDAO.findRecentIdsByUser(authorId, CAPACITY);
+            synchronized (this) {
+                if (writes != seen && attempt < LOAD_ATTEMPTS) continue;
+                popularAuthorPosts.putIfAbsent(authorId, new IntRing(CAPACITY, postIds));
+                return;
+            }
+        }
+    }
+
+    // k-way merge of the user's ring and the popular authors' rings, newest first
+    private int[] merge(Timeline timeline, int beforePostId, int limit) {
+        int sources = timeline.popularFollowees.length + 1;
+        IntRing[] rings = new IntRing[sources];
+        int[] positions = new int[sources];
+        rings[0] = timeline.posts;
+        for (int i = 1; i < sources; i++) {
+            rings[i] = popularAuthorPosts.get(timeline.popularFollowees[i - 1]);
+        }
+        for (int i = 0; i < sources; i++) {
+            positions[i] = rings[i] == null ? 0 : rings[i].indexBefore(beforePostId);
+        }
+
+        int[] page = new int[limit];
+        int count = 0;
+        int last = beforePostId;
+        while (count < limit) {
+            int best = -1;
+            int bestId = Integer.MIN_VALUE;
+            for (int i = 0; i < sources; i++) {
+                IntRing ring = rings[i];
+                if (ring != null && positions[i] < ring.size() && ring.get(positions[i]) > bestId) {
+                    best = i;
+                    bestId = ring.get(positions[i]);
+                }
+            }
+            if (best < 0) break;
+            positions[best]++;
+            // Posts fanned out before their author became popular are in both rings
+            if (bestId != last) {
+                page[count++] = bestId;
+                last = bestId;
+            }
+        }
+        return count == limit ? page : Arrays.copyOf(page, count);
+    }
+
+    private static final class Timeline {
+        final IntRing posts;
+        final int[] followees;
+        int[] popularFollowees;
+
+        Timeline(int[] newestFirst, int[] followees, Set<Integer> popularAuthors) {
+            this.posts = new IntRing(CAPACITY, newestFirst);
+            this.followees = followees;
+            this.popularFollowees = NONE;
+            for (int authorId : followees) {
+                if (popularAuthors.contains(authorId)) {
+                    addPopularFollowee(authorId);
+                }
+            }
+        }
+
+        void addPopularFollowee(int authorId) {
+            popularFollowees = Arrays.copyOf(popularFollowees, popularFollowees.length + 1);
+            popularFollowees[popularFollowees.length - 1] = authorId;
+        }
+    }
+}
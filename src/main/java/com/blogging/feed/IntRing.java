@@ -0,0 +1,102 @@
+package com.blogging.feed;
+
+import java.util.Arrays;
+
+
+ // Bounded timeline of post ids, newest (largest) first, in a circular int array. Pushing a
+ // new post is O(1) and drops the oldest one once the ring is full. The array starts small
+ // and grows up to the capacity, so short timelines stay small. Not thread-safe.
+
+final class IntRing {
+    private final int capacity;
+    private int[] values;
+    private int head;
+    private int size;
+
+    IntRing(int capacity, int[] newestFirst) {
+        this.capacity = capacity;
+        this.size = Math.min(newestFirst.length, capacity);
+        this.values = Arrays.copyOf(newestFirst, Math.min(capacity, Math.max(size + 16, 16)));
+    }
+
+    void push(int postId) {
+        if (size > 0 && postId <= get(0)) {
+            // Posts created concurrently can be announced out of order
+            insertSorted(postId);
+            return;
+        }
+        if (size == values.length && size < capacity) {
+            grow();
+        }
+        head = (head - 1 + values.length) % values.length;
+        values[head] = postId;
+        if (size < values.length) {
+            size++;
+        }
+    }
+
+    boolean remove(int postId) {
+        int index = indexBefore(postId + 1);
+        if (index == size || get(index) != postId) return false;
+        for (int i = index; i < size - 1; i++) {
+            values[slot(i)] = get(i + 1);
+        }
+        size--;
+        return true;
+    }
+
+    int get(int index) {
+        return values[slot(index)];
+    }
+
+    int size() {
+        return size;
+    }
+
+
+     // Index of the newest post id below the given one (size if there is none), by binary search.
+
+    int indexBefore(int postId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(mid) < postId) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private void insertSorted(int postId) {
+        int index = indexBefore(postId + 1);
+        if (index < size && get(index) == postId) return;
+        if (index == size && size == capacity) return;
+        if (size == values.length && size < capacity) {
+            grow();
+        }
+        int last = Math.min(size, values.length - 1);
+        for (int i = last; i > index; i--) {
+            values[slot(i)] = get(i - 1);
+        }
+        values[slot(index)] = postId;
+        if (size < values.length) {
+            size++;
+        }
+    }
+
+    private void grow() {
+        int[] grown = new int[Math.min(capacity, values.length * 2)];
+        for (int i = 0; i < size; i++) {
+            grown[i] = get(i);
+        }
+        values = grown;
+        head = 0;
+    }
+
+    private int slot(int index) {
+        return (head + index) % values.length;
+    }
+}
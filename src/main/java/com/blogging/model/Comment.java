@@ -8,6 +8,14 @@ import java.util.Objects;
 @Entity
 @Table(name = "comments")
 public class Comment {
+    // Moderation states: new comments are PENDING until the spam classifier or a moderator decides
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_APPROVED = "APPROVED";
+    public static final String STATUS_SPAM = "SPAM";
+    // A thread path is the ids of the comment's ancestors and its own, each zero-padded to
+    // ten digits and followed by '/', so sorting by path lists each thread depth-first
+    public static final int PATH_SEGMENT_LENGTH = 11;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "comment_id")
@@ -25,6 +33,25 @@ public class Comment {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    @Column(name = "status", columnDefinition = "VARCHAR(20) DEFAULT 'APPROVED'")
+    private String status = STATUS_APPROVED;
+
+    // Classifier spam probability, null until scored
+    @Column(name = "spam_score")
+    private Double spamScore;
+
+    // Comment this one replies to, null for a top-level comment
+    @Column(name = "parent_id")
+    private Integer parentId;
+
+    // Set by the database on insert (see PATH_SEGMENT_LENGTH)
+    @Column(name = "path", columnDefinition = "TEXT COLLATE \"C\"", insertable = false, updatable = false)
+    private String path;
+
+    // Direct replies that are not spam, maintained by the database
+    @Column(name = "reply_count", insertable = false, updatable = false)
+    private int replyCount;
+
     // Additional fields for joined queries
     @Transient
     private String username;
@@ -97,6 +124,61 @@ public class Comment {
         this.createdAt = createdAt;
     }
 
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Double getSpamScore() {
+        return spamScore;
+    }
+
+    public void setSpamScore(Double spamScore) {
+        this.spamScore = spamScore;
+    }
+
+    public Integer getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(Integer parentId) {
+        this.parentId = parentId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getReplyCount() {
+        return replyCount;
+    }
+
+    public void setReplyCount(int replyCount) {
+        this.replyCount = replyCount;
+    }
+
+    // 0 for a top-level comment
+    public int getDepth() {
+        return path == null ? 0 : path.length() / PATH_SEGMENT_LENGTH - 1;
+    }
+
+    // Path of the comment this one replies to, null for a top-level comment
+    public String getParentPath() {
+        return path == null || path.length() <= PATH_SEGMENT_LENGTH
+                ? null : path.substring(0, path.length() - PATH_SEGMENT_LENGTH);
+    }
+
+    public boolean isPending() {
+        return STATUS_PENDING.equals(status);
+    }
+
     public String getUsername() {
         return username;
     }
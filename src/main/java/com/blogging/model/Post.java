@@ -36,6 +36,10 @@ public class Post {
     @Transient
     private String authorName; // Not stored in posts table, joined from users
 
+    // Only the start of the content was read (see PostDAO.findPreviewById)
+    @Transient
+    private boolean contentPartial;
+
     @ManyToMany
     @JoinTable(
         name = "post_tags",
@@ -108,6 +112,14 @@ public class Post {
         this.content = content;
     }
 
+    public boolean isContentPartial() {
+        return contentPartial;
+    }
+
+    public void setContentPartial(boolean contentPartial) {
+        this.contentPartial = contentPartial;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,57 @@
+package com.blogging.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "post_signatures")
+public class PostSignature {
+    @Id
+    @Column(name = "post_id")
+    private int postId;
+
+    // MinHash signature of the post content, MinHash.NUM_HASHES big-endian ints
+    @Column(nullable = false, columnDefinition = "BYTEA")
+    private byte[] signature;
+
+    @Column(name = "computed_at")
+    private LocalDateTime computedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        computedAt = LocalDateTime.now();
+    }
+
+    public PostSignature() {
+    }
+
+    public PostSignature(int postId, byte[] signature) {
+        this.postId = postId;
+        this.signature = signature;
+    }
+
+    public int getPostId() {
+        return postId;
+    }
+
+    public void setPostId(int postId) {
+        this.postId = postId;
+    }
+
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    public void setSignature(byte[] signature) {
+        this.signature = signature;
+    }
+
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+
+    public void setComputedAt(LocalDateTime computedAt) {
+        this.computedAt = computedAt;
+    }
+}
@@ -0,0 +1,100 @@
+package com.blogging.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Table(name = "spam_rules")
+public class SpamRule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "rule_id")
+    private int ruleId;
+
+    // Word or phrase, matched case-insensitively with runs of whitespace treated as one space
+    @Column(nullable = false, length = 200)
+    private String pattern;
+
+    // true: only at word boundaries ("buy now" does not match "buy nowhere"); false: anywhere
+    @Column(name = "whole_word", nullable = false)
+    private boolean wholeWord = true;
+
+    @Column(nullable = false)
+    private boolean enabled = true;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public SpamRule() {
+    }
+
+    public SpamRule(String pattern, boolean wholeWord) {
+        this.pattern = pattern;
+        this.wholeWord = wholeWord;
+    }
+
+    public int getRuleId() {
+        return ruleId;
+    }
+
+    public void setRuleId(int ruleId) {
+        this.ruleId = ruleId;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public boolean isWholeWord() {
+        return wholeWord;
+    }
+
+    public void setWholeWord(boolean wholeWord) {
+        this.wholeWord = wholeWord;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SpamRule that = (SpamRule) o;
+        return wholeWord == that.wholeWord && Objects.equals(pattern, that.pattern);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pattern, wholeWord);
+    }
+
+    @Override
+    public String toString() {
+        return (wholeWord ? "word:" : "substring:") + pattern;
+    }
+}
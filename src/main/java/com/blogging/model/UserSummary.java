@@ -0,0 +1,76 @@
+package com.blogging.model;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+
+ // A user as listed in user management: the account columns without the password hash.
+
+public class UserSummary {
+
+    // Orders of the user list; each has an index that also serves its keyset paging
+    public enum SortOrder {
+        NEWEST,
+        USERNAME,
+        EMAIL
+    }
+
+    private final int userId;
+    private final String username;
+    private final String email;
+    private final String role;
+    private final LocalDateTime createdAt;
+
+    public UserSummary(int userId, String username, String email, String role, LocalDateTime createdAt) {
+        this.userId = userId;
+        this.username = username;
+        this.email = email;
+        this.role = role;
+        this.createdAt = createdAt;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean isAdmin() {
+        return "ADMIN".equalsIgnoreCase(role);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return userId == ((UserSummary) o).userId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId);
+    }
+
+    @Override
+    public String toString() {
+        return "UserSummary{" +
+                "userId=" + userId +
+                ", username='" + username + '\'' +
+                ", role='" + role + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+package com.blogging.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+
+ // The original scheme: "$2a$10$" followed by the hex String.hashCode of the password. It
+ // looks like bcrypt but is not, and protects nothing. Kept only to verify the passwords of
+ // users who have not logged in since; every verified hash needs a rehash.
+
+public class LegacyPasswordHasher implements PasswordHasher {
+    private static final String PREFIX = "$2a$10$";
+
+    @Override
+    public boolean canVerify(String storedHash) {
+        // Real bcrypt hashes share the prefix but are 60 characters long
+        return storedHash != null && storedHash.startsWith(PREFIX) && storedHash.length() <= PREFIX.length() + 8;
+    }
+
+    @Override
+    public String hash(String password) {
+        return PREFIX + Integer.toHexString(password.hashCode());
+    }
+
+    @Override
+    public boolean verify(String password, String storedHash) {
+        return MessageDigest.isEqual(hash(password).getBytes(StandardCharsets.UTF_8),
+                storedHash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean needsRehash(String storedHash) {
+        return true;
+    }
+}
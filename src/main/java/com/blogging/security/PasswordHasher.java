@@ -0,0 +1,21 @@
+package com.blogging.security;
+
+
+ // One password hashing scheme. Stored hashes carry their scheme and cost, so that hashes
+ // of several schemes (and costs) can live side by side while users are migrated.
+
+public interface PasswordHasher {
+
+     // Whether the stored hash is in this hasher's format.
+
+    boolean canVerify(String storedHash);
+
+    String hash(String password);
+
+    boolean verify(String password, String storedHash);
+
+     // Whether the stored hash is weaker than what this hasher produces now, and should be
+     // replaced the next time the password is known (at login).
+
+    boolean needsRehash(String storedHash);
+}
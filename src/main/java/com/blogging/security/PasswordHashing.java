@@ -0,0 +1,218 @@
+package com.blogging.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+ // Hashes and verifies passwords on a dedicated, bounded pool of threads, as a deliberately
+ // slow hash costs tens to hundreds of milliseconds of CPU per call.
+ //
+ // New passwords are hashed with the current hasher (PBKDF2); stored hashes are verified by
+ // whichever registered hasher recognises their format, and a verified hash that is weaker
+ // than the current one comes back with its replacement, so that users move to the current
+ // scheme and cost as they log in.
+ //
+ // THREADS threads (-Dpassword.hash-threads, default half the cores) hash at a time and up
+ // to QUEUE_CAPACITY calls (-Dpassword.hash-queue, default 32) wait for them. Beyond that a
+ // call is refused with IllegalStateException rather than queued without bound: a burst of
+ // logins slows down to what the CPU can do and then sheds load instead of starving the rest
+ // of the application. getStats reports queueing and refusals.
+ //
+ // The calls block until their hash is done: call them off the FX thread.
+
+public class PasswordHashing {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashing.class);
+    static final int THREADS = Integer.getInteger("password.hash-threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    static final int QUEUE_CAPACITY = Integer.getInteger("password.hash-queue", 32);
+    private static volatile PasswordHashing instance;
+
+    private final PasswordHasher current;
+    private final List<PasswordHasher> hashers;
+    private final ThreadPoolExecutor pool;
+    // Permits for the calls hashing or waiting: threads + queueCapacity
+    private final Semaphore admitted;
+    private final int threads;
+    private final int queueCapacity;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalHashNanos = new AtomicLong();
+
+    public PasswordHashing(PasswordHasher current, List<PasswordHasher> older, int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Need at least one thread and a non-negative queue");
+        }
+        this.current = current;
+        List<PasswordHasher> all = new ArrayList<>();
+        all.add(current);
+        all.addAll(older);
+        this.hashers = Collections.unmodifiableList(all);
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.admitted = new Semaphore(threads + queueCapacity);
+        AtomicInteger count = new AtomicInteger();
+        // The semaphore bounds the queue: a bounded work queue would also refuse calls in
+        // the moment between a thread finishing a hash and taking the next one
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public static PasswordHashing getInstance() {
+        PasswordHashing hashing = instance;
+        if (hashing == null) {
+            synchronized (PasswordHashing.class) {
+                hashing = instance;
+                if (hashing == null) {
+                    hashing = new PasswordHashing(new Pbkdf2PasswordHasher(),
+                            Collections.singletonList(new LegacyPasswordHasher()), THREADS, QUEUE_CAPACITY);
+                    instance = hashing;
+                }
+            }
+        }
+        return hashing;
+    }
+
+
+     // Stop the shared pool, if it was created.
+
+    public static void shutdown() {
+        PasswordHashing hashing = instance;
+        if (hashing != null) {
+            hashing.pool.shutdownNow();
+        }
+    }
+
+
+     // Hash a new password with the current hasher.
+
+    public String hash(String password) {
+        return run(() -> current.hash(password));
+    }
+
+
+     // Check a password against its stored hash. A hash in no known format never matches.
+
+    public Verification verify(String password, String storedHash) {
+        return run(() -> {
+            for (PasswordHasher hasher : hashers) {
+                if (hasher.canVerify(storedHash)) {
+                    if (!hasher.verify(password, storedHash)) {
+                        return Verification.FAILED;
+                    }
+                    boolean upgrade = hasher != current || current.needsRehash(storedHash);
+                    return new Verification(true, upgrade ? current.hash(password) : null);
+                }
+            }
+            logger.warn("Stored password hash in an unknown format");
+            return Verification.FAILED;
+        });
+    }
+
+
+     // Pool statistics: threads, queue capacity and current length, calls completed and
+     // refused, and the average and longest wait in the queue and average hashing time.
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long done = completed.get();
+        stats.put("threads", threads);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", pool.getQueue().size());
+        stats.put("active", pool.getActiveCount());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.get());
+        stats.put("avgWaitMillis", done == 0 ? 0.0 : totalWaitNanos.get() / 1e6 / done);
+        stats.put("maxWaitMillis", maxWaitNanos.get() / 1e6);
+        stats.put("avgHashMillis", done == 0 ? 0.0 : totalHashNanos.get() / 1e6 / done);
+        return stats;
+    }
+
+    private <T> T run(Callable<T> task) {
+        if (!admitted.tryAcquire()) {
+            rejected.incrementAndGet();
+            logger.warn("Password hashing queue is full ({} waiting)", queueCapacity);
+            throw new IllegalStateException("Too many sign-ins at once, please try again in a moment");
+        }
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                long started = System.nanoTime();
+                long wait = started - submitted;
+                totalWaitNanos.addAndGet(wait);
+                maxWaitNanos.accumulateAndGet(wait, Math::max);
+                try {
+                    return task.call();
+                } finally {
+                    totalHashNanos.addAndGet(System.nanoTime() - started);
+                    completed.incrementAndGet();
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The pool was shut down
+            admitted.release();
+            throw new IllegalStateException("Password hashing has stopped", e);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // Not cancelled: the hash runs out and releases its permit, and is discarded
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+
+     // The outcome of verify: whether the password matched and, if its hash should be
+     // upgraded, the new hash to store.
+
+    public static final class Verification {
+        static final Verification FAILED = new Verification(false, null);
+
+        private final boolean matches;
+        private final String rehashed;
+
+        Verification(boolean matches, String rehashed) {
+            this.matches = matches;
+            this.rehashed = rehashed;
+        }
+
+        public boolean matches() {
+            return matches;
+        }
+
+        // null when the stored hash is current
+        public String getRehashed() {
+            return rehashed;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.blogging.security;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+
+ // PBKDF2 with HMAC-SHA256 from the JDK, with a random 16-byte salt per password. Stored as
+ // $pbkdf2-sha256$<iterations>$<salt>$<hash>, salt and hash in unpadded Base64.
+ //
+ // The cost is the iteration count, ITERATIONS by default (-Dpassword.pbkdf2.iterations,
+ // 600000 as recommended for this scheme); PasswordHashingBenchmark measures what a count
+ // costs per login on the machine at hand. Hashes made with fewer iterations than the
+ // current count are rehashed at the next login.
+
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+    public static final int ITERATIONS = Integer.getInteger("password.pbkdf2.iterations", 600000);
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+
+    public Pbkdf2PasswordHasher() {
+        this(ITERATIONS);
+    }
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    @Override
+    public boolean canVerify(String storedHash) {
+        return storedHash != null && storedHash.startsWith(PREFIX);
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String storedHash) {
+        Parsed parsed = parse(storedHash);
+        if (parsed == null) {
+            return false;
+        }
+        // Constant time, so the comparison does not tell how much of the hash matched
+        return MessageDigest.isEqual(parsed.hash, derive(password, parsed.salt, parsed.iterations));
+    }
+
+    @Override
+    public boolean needsRehash(String storedHash) {
+        Parsed parsed = parse(storedHash);
+        return parsed == null || parsed.iterations < iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Every Java 8+ runtime provides PBKDF2WithHmacSHA256
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // null if the hash is not in this format or is damaged
+    private static Parsed parse(String storedHash) {
+        if (storedHash == null || !storedHash.startsWith(PREFIX)) {
+            return null;
+        }
+        String[] parts = storedHash.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            return new Parsed(Integer.parseInt(parts[0]), base64.decode(parts[1]), base64.decode(parts[2]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Parsed {
+        private final int iterations;
+        private final byte[] salt;
+        private final byte[] hash;
+
+        Parsed(int iterations, byte[] salt, byte[] hash) {
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+    }
+}
@@ -2,6 +2,11 @@ package com.blogging.service;
 
 import com.blogging.dao.CommentDAO;
 import com.blogging.model.Comment;
+import com.blogging.model.SpamRule;
+import com.blogging.spam.ModerationQueue;
+import com.blogging.spam.NearDuplicateIndex;
+import com.blogging.spam.SimHash;
+import com.blogging.spam.SpamFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,18 +15,32 @@ import java.util.List;
 
 
  // Service layer for Comment management.
- // Implements validation and spam detection.
+ // Implements validation and spam detection: rule matches and spam waves (the same text
+ // posted again and again within a few hours) are rejected up front, everything else is
+ // stored as PENDING and classified by the ModerationQueue.
 
 public class CommentService {
     private static final Logger logger = LoggerFactory.getLogger(CommentService.class);
     private final CommentDAO commentDAO;
+    private final SpamFilter spamFilter;
+    private final ModerationQueue moderationQueue;
+    private final NearDuplicateIndex duplicateIndex;
     
     private static final int MIN_COMMENT_LENGTH = 1;
     private static final int MAX_COMMENT_LENGTH = 1000;
-    private static final String[] SPAM_KEYWORDS = {"spam", "click here", "buy now", "free money"};
+    private static final int DUPLICATE_THRESHOLD = Integer.getInteger("spam.duplicate.threshold", 3);
 
     public CommentService() {
-        this.commentDAO = new CommentDAO();
+        this(new CommentDAO(), SpamFilter.getInstance(), ModerationQueue.getInstance(),
+                NearDuplicateIndex.getInstance());
+    }
+
+    CommentService(CommentDAO commentDAO, SpamFilter spamFilter, ModerationQueue moderationQueue,
+                   NearDuplicateIndex duplicateIndex) {
+        this.commentDAO = commentDAO;
+        this.spamFilter = spamFilter;
+        this.moderationQueue = moderationQueue;
+        this.duplicateIndex = duplicateIndex;
     }
 
 
@@ -29,18 +48,83 @@ public class CommentService {
 
     public Comment createComment(Comment comment) throws SQLException {
         validateComment(comment.getContent());
+        long fingerprint = checkSpam(comment.getContent());
         
-        if (isSpam(comment.getContent())) {
-            logger.warn("Spam comment detected and blocked");
-            throw new IllegalArgumentException("Comment appears to be spam");
+        if (comment.getParentId() != null) {
+            Comment parent = commentDAO.findById(comment.getParentId());
+            if (parent == null || !parent.getPostId().equals(comment.getPostId())
+                    || Comment.STATUS_SPAM.equals(parent.getStatus())) {
+                throw new IllegalArgumentException("The comment you are replying to is no longer available");
+            }
         }
         
+        comment.setStatus(Comment.STATUS_PENDING);
         Comment createdComment = commentDAO.create(comment);
+        moderate(createdComment, fingerprint);
         logger.info("Created comment with ID: {}", createdComment.getCommentId());
         return createdComment;
     }
 
 
+     // Reject content that matches a spam rule or is part of a spam wave. Returns the
+     // content's SimHash fingerprint.
+
+    private long checkSpam(String content) {
+        SpamRule rule = spamFilter.firstMatch(content);
+        if (rule != null) {
+            logger.warn("Spam comment detected and blocked (rule: {})", rule);
+            throw new IllegalArgumentException("Comment appears to be spam");
+        }
+        
+        long fingerprint = SimHash.fingerprint(content);
+        if (isSpamWave(fingerprint)) {
+            logger.warn("Near-duplicate comment blocked (similar to comment {})",
+                    duplicateIndex.findNear(fingerprint, System.currentTimeMillis()));
+            throw new IllegalArgumentException("Comment appears to be spam");
+        }
+        return fingerprint;
+    }
+
+    // Count a stored PENDING comment towards spam waves and queue it for the classifier
+    private void moderate(Comment comment, long fingerprint) {
+        if (duplicateIndex != null) {
+            duplicateIndex.add(fingerprint, comment.getCommentId(), System.currentTimeMillis());
+        }
+        if (moderationQueue != null) {
+            moderationQueue.submit(comment);
+        }
+    }
+
+
+     // True when DUPLICATE_THRESHOLD near-identical comments were already posted within the window.
+
+    boolean isSpamWave(long fingerprint) {
+        return duplicateIndex != null
+                && duplicateIndex.countNear(fingerprint, System.currentTimeMillis(), DUPLICATE_THRESHOLD) >= DUPLICATE_THRESHOLD;
+    }
+
+
+     // Record a moderator decision on a comment and train the spam classifier with it. The
+     // classifier learns each comment once: repeating a decision does not train again, and
+     // reversing one takes the comment out of its old class first.
+
+    public boolean moderateComment(Comment comment, boolean spam) throws SQLException {
+        String status = spam ? Comment.STATUS_SPAM : Comment.STATUS_APPROVED;
+        String previous = commentDAO.updateStatus(comment.getCommentId(), status);
+        if (previous == null) {
+            return false;
+        }
+        comment.setStatus(status);
+        if (moderationQueue != null && !previous.equals(status)) {
+            if (!Comment.STATUS_PENDING.equals(previous)) {
+                moderationQueue.untrain(comment.getContent(), Comment.STATUS_SPAM.equals(previous));
+            }
+            moderationQueue.train(comment.getContent(), spam);
+        }
+        return true;
+    }
+
+
      // Get comment by ID.
 
     public Comment getCommentById(int commentId) throws SQLException {
@@ -66,6 +150,26 @@ public class CommentService {
     }
 
 
+     // A page of the discussion on a post: `threads` top-level comments after the given one
+     // (null for the first page), each with up to rowsPerThread comments of its thread, in
+     // thread order (see Comment.getPath). Pass 0 as currentUserId when nobody is logged in.
+
+    public List<Comment> getThreads(int postId, int currentUserId, Comment afterRoot, int threads,
+                                    int rowsPerThread) throws SQLException {
+        String afterRootPath = afterRoot == null ? "" : afterRoot.getPath();
+        return commentDAO.findThreads(postId, afterRootPath, threads, rowsPerThread, currentUserId);
+    }
+
+
+     // Replies below a comment at every depth, in thread order, after the reply at afterPath
+     // (null to start from the first reply).
+
+    public List<Comment> getReplies(Comment parent, int currentUserId, String afterPath, int limit) throws SQLException {
+        return commentDAO.findSubtree(parent.getPostId(), parent.getPath(),
+                afterPath == null ? parent.getPath() : afterPath, limit, currentUserId);
+    }
+
+
      // Get all comments by a user.
 
     public List<Comment> getCommentsByUser(int userId) throws SQLException {
@@ -73,11 +177,19 @@ public class CommentService {
     }
 
 
-     // Update comment.
+     // Update comment. The new text goes through the same spam checks as a new comment and
+     // back to the moderation queue: the comment is PENDING again until it is classified.
 
     public boolean updateComment(Comment comment) throws SQLException {
         validateComment(comment.getContent());
-        return commentDAO.update(comment);
+        long fingerprint = checkSpam(comment.getContent());
+        if (!commentDAO.update(comment)) {
+            return false;
+        }
+        comment.setStatus(Comment.STATUS_PENDING);
+        comment.setSpamScore(null);
+        moderate(comment, fingerprint);
+        return true;
     }
 
 
@@ -124,15 +236,9 @@ public class CommentService {
     }
 
 
-     // Simple spam detection.
+     // Spam detection against the current rule set (see SpamFilter).
 
-    private boolean isSpam(String content) {
-        String lowerContent = content.toLowerCase();
-        for (String keyword : SPAM_KEYWORDS) {
-            if (lowerContent.contains(keyword)) {
-                return true;
-            }
-        }
-        return false;
+    boolean isSpam(String content) {
+        return spamFilter.isSpam(content);
     }
 }
@@ -0,0 +1,87 @@
+package com.blogging.service;
+
+import com.blogging.dao.DashboardDAO;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+
+ // The dashboard metrics at one point in time, published by DashboardSnapshotService.
+ // Immutable: changes produce a new snapshot.
+
+public final class DashboardSnapshot {
+    private final DashboardDAO.Counts counts;
+    private final int cacheHits;
+    private final int cacheMisses;
+    private final String hitRate;
+    private final LocalDateTime takenAt;
+
+    private DashboardSnapshot(DashboardDAO.Counts counts, int cacheHits, int cacheMisses, String hitRate,
+                              LocalDateTime takenAt) {
+        this.counts = counts;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.hitRate = hitRate;
+        this.takenAt = takenAt;
+    }
+
+    // cacheStats as returned by PostService.getCacheStats, or null
+    static DashboardSnapshot of(DashboardDAO.Counts counts, Map<String, Object> cacheStats) {
+        if (cacheStats == null) {
+            return new DashboardSnapshot(counts, 0, 0, "0.00%", LocalDateTime.now());
+        }
+        return new DashboardSnapshot(counts, (Integer) cacheStats.get("cacheHits"),
+                (Integer) cacheStats.get("cacheMisses"), (String) cacheStats.get("hitRate"), LocalDateTime.now());
+    }
+
+
+     // This snapshot with a post created (delta 1) or deleted (delta -1) since it was taken.
+     // A deleted post is not taken off today's count, as its creation time is not known.
+
+    DashboardSnapshot withPosts(int delta) {
+        DashboardDAO.Counts changed = new DashboardDAO.Counts(counts.getUsers(), counts.getPosts() + delta,
+                counts.getComments(), counts.getReviews(), counts.getPostsToday() + Math.max(delta, 0),
+                counts.getCommentsToday());
+        return new DashboardSnapshot(changed, cacheHits, cacheMisses, hitRate, takenAt);
+    }
+
+    public int getUsers() {
+        return counts.getUsers();
+    }
+
+    public int getPosts() {
+        return counts.getPosts();
+    }
+
+    public int getComments() {
+        return counts.getComments();
+    }
+
+    public int getReviews() {
+        return counts.getReviews();
+    }
+
+    public int getPostsToday() {
+        return counts.getPostsToday();
+    }
+
+    public int getCommentsToday() {
+        return counts.getCommentsToday();
+    }
+
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public String getHitRate() {
+        return hitRate;
+    }
+
+    public LocalDateTime getTakenAt() {
+        return takenAt;
+    }
+}
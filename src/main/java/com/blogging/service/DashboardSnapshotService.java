@@ -0,0 +1,165 @@
+package com.blogging.service;
+
+import com.blogging.dao.DashboardDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+
+ // Keeps the dashboard metrics ready to show, so that opening the dashboard reads a
+ // snapshot instead of querying.
+ //
+ // Once started, a daemon thread reads every total in one statement (DashboardDAO) every
+ // REFRESH_SECONDS (-Ddashboard.refresh-seconds, default 30) and on refreshNow, together
+ // with the cache statistics of the PostService given to watchCache. Between refreshes,
+ // created and deleted posts from the PostChangeBus are applied to the snapshot. Every new
+ // snapshot is pushed to the listeners on the thread that made it; listeners are held
+ // weakly, as on the PostChangeBus.
+
+public class DashboardSnapshotService {
+    private static final Logger logger = LoggerFactory.getLogger(DashboardSnapshotService.class);
+    static final long REFRESH_SECONDS = Long.getLong("dashboard.refresh-seconds", 30);
+    private static volatile DashboardSnapshotService instance;
+
+    private final DashboardDAO dashboardDAO;
+    private final long refreshSeconds;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dashboard-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CopyOnWriteArrayList<WeakReference<Listener>> listeners = new CopyOnWriteArrayList<>();
+    // Held here because the bus only keeps a weak reference
+    private final PostChangeBus.Listener postChangeListener = this::onPostChanged;
+    private volatile DashboardSnapshot snapshot;
+    private volatile PostService cacheSource;
+    private boolean started;
+
+    DashboardSnapshotService(DashboardDAO dashboardDAO, long refreshSeconds) {
+        this.dashboardDAO = dashboardDAO;
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    public static DashboardSnapshotService getInstance() {
+        DashboardSnapshotService service = instance;
+        if (service == null) {
+            synchronized (DashboardSnapshotService.class) {
+                service = instance;
+                if (service == null) {
+                    service = new DashboardSnapshotService(new DashboardDAO(), REFRESH_SECONDS);
+                    instance = service;
+                }
+            }
+        }
+        return service;
+    }
+
+
+     // Start the background refresh, with a first snapshot right away. Calling it again
+     // does nothing.
+
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        PostChangeBus.getInstance().subscribe(postChangeListener);
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+
+     // Stop the shared service, if it was created.
+
+    public static void shutdown() {
+        DashboardSnapshotService service = instance;
+        if (service != null) {
+            service.scheduler.shutdownNow();
+        }
+    }
+
+
+     // The latest snapshot, or null until the first one is read.
+
+    public DashboardSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+
+     // Report the cache statistics of this PostService from the next refresh on.
+
+    public void watchCache(PostService postService) {
+        cacheSource = postService;
+    }
+
+    public void refreshNow() {
+        scheduler.execute(this::refresh);
+    }
+
+
+     // Subscribe a listener. The caller must keep a strong reference to it for as long as
+     // it wants snapshots.
+
+    public void subscribe(Listener listener) {
+        listeners.add(new WeakReference<>(listener));
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.removeIf(ref -> {
+            Listener current = ref.get();
+            return current == null || current == listener;
+        });
+    }
+
+    void refresh() {
+        try {
+            DashboardDAO.Counts counts = dashboardDAO.loadCounts();
+            PostService postService = cacheSource;
+            DashboardSnapshot fresh = DashboardSnapshot.of(counts, postService == null ? null : postService.getCacheStats());
+            update(current -> fresh);
+        } catch (SQLException | RuntimeException e) {
+            // Keep the last snapshot; the next refresh tries again
+            logger.error("Failed to refresh dashboard snapshot", e);
+        }
+    }
+
+    private void onPostChanged(PostChange change) {
+        int delta = change.getType() == PostChange.Type.CREATED ? 1
+                : change.getType() == PostChange.Type.DELETED ? -1 : 0;
+        if (delta != 0) {
+            update(current -> current == null ? null : current.withPosts(delta));
+        }
+    }
+
+    // Listeners are called under the lock, so they see snapshots in order
+    private synchronized void update(UnaryOperator<DashboardSnapshot> change) {
+        DashboardSnapshot next = change.apply(snapshot);
+        if (next == null || next == snapshot) return;
+        snapshot = next;
+        boolean collected = false;
+        for (WeakReference<Listener> ref : listeners) {
+            Listener listener = ref.get();
+            if (listener == null) {
+                collected = true;
+                continue;
+            }
+            try {
+                listener.snapshotChanged(next);
+            } catch (RuntimeException e) {
+                logger.error("Dashboard snapshot listener failed", e);
+            }
+        }
+        if (collected) {
+            listeners.removeIf(ref -> ref.get() == null);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void snapshotChanged(DashboardSnapshot snapshot);
+    }
+}
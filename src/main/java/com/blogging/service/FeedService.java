@@ -0,0 +1,74 @@
+package com.blogging.service;
+
+import com.blogging.dao.FollowDAO;
+import com.blogging.dao.PostDAO;
+import com.blogging.feed.FeedTimelines;
+import com.blogging.model.Post;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+ // Service layer for following authors and reading the followed-authors feed.
+ // Timelines are maintained by FeedTimelines; this service loads the posts of a page.
+
+public class FeedService {
+    private static final Logger logger = LoggerFactory.getLogger(FeedService.class);
+    private final FollowDAO followDAO;
+    private final PostDAO postDAO;
+    private final FeedTimelines timelines;
+
+    public FeedService() {
+        this(new FollowDAO(), new PostDAO(), FeedTimelines.getInstance());
+    }
+
+    FeedService(FollowDAO followDAO, PostDAO postDAO, FeedTimelines timelines) {
+        this.followDAO = followDAO;
+        this.postDAO = postDAO;
+        this.timelines = timelines;
+    }
+
+    public void follow(int followerId, int authorId) throws SQLException {
+        if (followerId == authorId) {
+            throw new IllegalArgumentException("You cannot follow yourself");
+        }
+        if (followDAO.follow(followerId, authorId)) {
+            timelines.followed(followerId, authorId);
+        }
+    }
+
+    public void unfollow(int followerId, int authorId) throws SQLException {
+        if (followDAO.unfollow(followerId, authorId)) {
+            timelines.unfollowed(followerId, authorId);
+        }
+    }
+
+    public boolean isFollowing(int followerId, int authorId) throws SQLException {
+        return followDAO.isFollowing(followerId, authorId);
+    }
+
+    public int getFollowerCount(int authorId) throws SQLException {
+        return followDAO.countFollowers(authorId);
+    }
+
+
+     // A page of the user's feed, newest first. Pass Integer.MAX_VALUE as beforePostId for
+     // the first page and the id of the last post shown for the next one.
+
+    public List<Post> getFeed(int userId, int beforePostId, int limit) throws SQLException {
+        List<Post> posts = new ArrayList<>();
+        int before = beforePostId;
+        while (posts.size() < limit) {
+            int[] postIds = timelines.page(userId, before, limit - posts.size());
+            if (postIds.length == 0) break;
+            // Deleted posts stay in the timelines and are skipped here
+            posts.addAll(postDAO.findByIds(postIds));
+            before = postIds[postIds.length - 1];
+        }
+        logger.debug("Loaded {} feed posts for user {}", posts.size(), userId);
+        return posts;
+    }
+}
@@ -0,0 +1,71 @@
+package com.blogging.service;
+
+import com.blogging.model.Post;
+
+
+ // A change to a post, published by PostService on the PostChangeBus.
+
+public final class PostChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        VIEWED,
+        DELETED
+    }
+
+    private final Type type;
+    private final int postId;
+    private final Post post;
+    private final int viewCount;
+
+    private PostChange(Type type, int postId, Post post, int viewCount) {
+        this.type = type;
+        this.postId = postId;
+        this.post = post;
+        this.viewCount = viewCount;
+    }
+
+    static PostChange created(Post post) {
+        return new PostChange(Type.CREATED, post.getPostId(), post, post.getViewCount());
+    }
+
+    static PostChange updated(Post post) {
+        return new PostChange(Type.UPDATED, post.getPostId(), post, post.getViewCount());
+    }
+
+    static PostChange viewed(int postId, int viewCount) {
+        return new PostChange(Type.VIEWED, postId, null, viewCount);
+    }
+
+    static PostChange deleted(int postId) {
+        return new PostChange(Type.DELETED, postId, null, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getPostId() {
+        return postId;
+    }
+
+
+     // The new state of the post for CREATED and UPDATED, null otherwise.
+
+    public Post getPost() {
+        return post;
+    }
+
+
+     // The post's view count after a VIEWED change.
+
+    public int getViewCount() {
+        return viewCount;
+    }
+
+    @Override
+    public String toString() {
+        return type + " post " + postId;
+    }
+}
@@ -0,0 +1,66 @@
+package com.blogging.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+ // Publish/subscribe channel for post changes, so that views showing posts can patch the
+ // affected rows instead of reloading their lists.
+ //
+ // Listeners are held weakly, like JavaFX weak listeners: a view keeps its listener in a
+ // field and is unsubscribed when it is garbage collected, so views that are replaced
+ // without being closed do not leak. Changes are delivered on the publishing thread, in
+ // subscription order; a failing listener does not stop delivery to the others.
+
+public class PostChangeBus {
+    private static final Logger logger = LoggerFactory.getLogger(PostChangeBus.class);
+    private static final PostChangeBus INSTANCE = new PostChangeBus();
+
+    private final CopyOnWriteArrayList<WeakReference<Listener>> listeners = new CopyOnWriteArrayList<>();
+
+    public static PostChangeBus getInstance() {
+        return INSTANCE;
+    }
+
+
+     // Subscribe a listener. The caller must keep a strong reference to it for as long as
+     // it wants changes.
+
+    public void subscribe(Listener listener) {
+        listeners.add(new WeakReference<>(listener));
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.removeIf(ref -> {
+            Listener current = ref.get();
+            return current == null || current == listener;
+        });
+    }
+
+    public void publish(PostChange change) {
+        boolean collected = false;
+        for (WeakReference<Listener> ref : listeners) {
+            Listener listener = ref.get();
+            if (listener == null) {
+                collected = true;
+                continue;
+            }
+            try {
+                listener.postChanged(change);
+            } catch (RuntimeException e) {
+                logger.error("Post change listener failed on {}", change, e);
+            }
+        }
+        if (collected) {
+            listeners.removeIf(ref -> ref.get() == null);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void postChanged(PostChange change);
+    }
+}
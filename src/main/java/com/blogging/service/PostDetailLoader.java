@@ -0,0 +1,214 @@
+package com.blogging.service;
+
+import com.blogging.model.Comment;
+import com.blogging.model.Post;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+
+ // Loads everything the post view shows with the queries running side by side, so that
+ // opening a post takes as long as its slowest query rather than the sum of them all.
+ //
+ // A load fans out on a shared pool of DB_THREADS daemon threads (-Dpost.detail.threads,
+ // default 4): the post with the start of its content, its view count increment, the
+ // comment count, the first page of comment threads, and, once the post's author is known,
+ // whether the user follows them.
+ // Each piece is handed to the listener, through the delivery executor, as soon as it
+ // arrives, so the view fills in progressively.
+ //
+ // The pieces share one deadline (-Dpost.detail.timeout-ms, default 5000). When any piece
+ // fails or the deadline passes, the rest are cancelled and the listener gets one
+ // onFailed. Cancelling drops pieces that have not started and every result not yet
+ // delivered; a JDBC call already running is left to finish.
+
+public class PostDetailLoader {
+    private static final Logger logger = LoggerFactory.getLogger(PostDetailLoader.class);
+    static final int DB_THREADS = Integer.getInteger("post.detail.threads", 4);
+    static final long TIMEOUT_MILLIS = Long.getLong("post.detail.timeout-ms", 5000);
+    private static final ExecutorService DB_EXECUTOR = Executors.newFixedThreadPool(DB_THREADS, new ThreadFactory() {
+        private int count;
+
+        @Override
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "post-detail-" + ++count);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final PostService postService;
+    private final CommentService commentService;
+    private final FeedService feedService;
+    private final Executor background;
+    private final Executor delivery;
+
+    public PostDetailLoader(PostService postService, CommentService commentService, FeedService feedService,
+                            Executor delivery) {
+        this(postService, commentService, feedService, DB_EXECUTOR, delivery);
+    }
+
+    PostDetailLoader(PostService postService, CommentService commentService, FeedService feedService,
+                     Executor background, Executor delivery) {
+        this.postService = postService;
+        this.commentService = commentService;
+        this.feedService = feedService;
+        this.background = background;
+        this.delivery = delivery;
+    }
+
+
+     // Start loading a post. countView also records a view of it. Only the first contentChars
+     // characters of the content are loaded (see PostService.getPostPreview). currentUserId
+     // is 0 when nobody is logged in; the follow state is only loaded for other users' posts.
+
+    public Load load(int postId, int currentUserId, boolean countView, int contentChars, int threads,
+                     int rowsPerThread, Listener listener) {
+        Load load = new Load(listener);
+
+        CompletableFuture<Post> post = load.fork(() -> postService.getPostPreview(postId, contentChars));
+        CompletableFuture<Integer> views = countView
+                ? load.fork(() -> postService.incrementViewCount(postId))
+                : CompletableFuture.completedFuture(-1);
+        CompletableFuture<Post> counted = post.thenCombine(views, (loaded, viewCount) -> {
+            if (loaded == null) {
+                throw new CompletionException(new IllegalArgumentException("Post " + postId + " no longer exists"));
+            }
+            if (viewCount >= 0) {
+                loaded.setViewCount(viewCount);
+            }
+            return loaded;
+        });
+        load.track(counted);
+        load.deliver(counted, listener::onPost);
+
+        CompletableFuture<Integer> count = load.fork(() -> commentService.getCommentCount(postId));
+        CompletableFuture<List<Comment>> rows = load.fork(
+                () -> commentService.getThreads(postId, currentUserId, null, threads, rowsPerThread));
+        load.deliver(count.thenCombine(rows, CommentPage::new),
+                page -> listener.onComments(page.count, page.rows));
+
+        CompletableFuture<Boolean> following = post.thenComposeAsync(loaded -> {
+            if (loaded == null || currentUserId == 0 || loaded.getUserId() == currentUserId) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return load.fork(() -> feedService.isFollowing(currentUserId, loaded.getUserId()));
+        }, background);
+        load.track(following);
+        load.deliver(following, state -> {
+            if (state != null) listener.onFollowing(state);
+        });
+
+        load.start();
+        return load;
+    }
+
+
+     // One post being loaded.
+
+    public final class Load {
+        private final Listener listener;
+        private final List<CompletableFuture<?>> pieces = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        // Set once nothing more may be delivered: on failure, timeout or cancel()
+        private volatile boolean stopped;
+        private volatile boolean cancelled;
+
+        private Load(Listener listener) {
+            this.listener = listener;
+        }
+
+
+         // Stop the load: nothing more is delivered to the listener.
+
+        public void cancel() {
+            cancelled = true;
+            stopped = true;
+            finished.set(true);
+            cancelPieces();
+        }
+
+        private <T> CompletableFuture<T> fork(Callable<T> query) {
+            CompletableFuture<T> piece = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return query.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, background);
+            track(piece);
+            return piece;
+        }
+
+        private void track(CompletableFuture<?> piece) {
+            pieces.add(piece);
+            piece.whenComplete((value, error) -> {
+                if (error != null) fail(error);
+            });
+            if (stopped) piece.cancel(false);
+        }
+
+        private <T> void deliver(CompletableFuture<T> piece, Consumer<T> handler) {
+            piece.thenAcceptAsync(value -> {
+                if (!stopped) handler.accept(value);
+            }, delivery);
+        }
+
+        private void start() {
+            CompletableFuture.allOf(pieces.toArray(new CompletableFuture<?>[0]))
+                    .orTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    .whenComplete((value, error) -> {
+                        if (error != null) {
+                            fail(error);
+                        } else {
+                            finished.set(true);
+                        }
+                    });
+        }
+
+        private void fail(Throwable error) {
+            if (!finished.compareAndSet(false, true)) return;
+            stopped = true;
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            cancelPieces();
+            logger.error("Failed to load post details", cause);
+            delivery.execute(() -> {
+                if (!cancelled) listener.onFailed(cause);
+            });
+        }
+
+        private void cancelPieces() {
+            for (CompletableFuture<?> piece : pieces) {
+                piece.cancel(false);
+            }
+        }
+    }
+
+    private static final class CommentPage {
+        final int count;
+        final List<Comment> rows;
+
+        CommentPage(int count, List<Comment> rows) {
+            this.count = count;
+            this.rows = rows;
+        }
+    }
+
+
+     // Receives the pieces of a post as they arrive, on the delivery executor. After
+     // onFailed nothing more is delivered.
+
+    public interface Listener {
+        void onPost(Post post);
+
+        void onComments(int commentCount, List<Comment> threads);
+
+        void onFollowing(boolean following);
+
+        void onFailed(Throwable error);
+    }
+}
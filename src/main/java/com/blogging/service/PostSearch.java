@@ -0,0 +1,234 @@
+package com.blogging.service;
+
+import com.blogging.dao.PostDAO;
+import com.blogging.model.Post;
+import com.blogging.util.QueryCanceller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+ // Search-as-you-type over posts.
+ //
+ // Keystrokes are debounced: each submit replaces the pending search, which runs once the
+ // text has been still for -Dsearch.debounce-ms (default 250). A newer submit also cancels
+ // the query still running in the database (Statement.cancel through a QueryCanceller), and
+ // results of superseded searches are never delivered, so results cannot arrive out of order.
+ //
+ // Queries are normalized (trimmed, lower-cased, whitespace collapsed) and their results
+ // kept in an LRU cache. A query that extends a cached one whose result was complete (fewer
+ // than RESULT_LIMIT posts) is answered by filtering that result in memory, so typing on
+ // after a search usually does not reach the database again. The cache is cleared whenever
+ // a post is created, edited or deleted.
+ //
+ // Results and errors are delivered on the search thread.
+
+public class PostSearch {
+    private static final Logger logger = LoggerFactory.getLogger(PostSearch.class);
+    public static final int MIN_QUERY_LENGTH = 2;
+    static final int RESULT_LIMIT = 100;
+    static final int CACHE_SIZE = 64;
+    private static volatile PostSearch instance;
+
+    private final PostDAO postDAO;
+    private final long debounceMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "post-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, List<Post>> cache = new LinkedHashMap<String, List<Post>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Post>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    // Held here because the bus only keeps a weak reference
+    private final PostChangeBus.Listener changeListener = this::onPostChanged;
+    private final AtomicLong databaseSearches = new AtomicLong();
+
+    // Guarded by this
+    private ScheduledFuture<?> pending;
+    private QueryCanceller running;
+    private long generation;
+    // Incremented when the cache is cleared, so that a search that overlapped a write is not cached
+    private long cacheVersion;
+
+    PostSearch(PostDAO postDAO, long debounceMillis) {
+        this.postDAO = postDAO;
+        this.debounceMillis = debounceMillis;
+        PostChangeBus.getInstance().subscribe(changeListener);
+    }
+
+    public static PostSearch getInstance() {
+        PostSearch search = instance;
+        if (search == null) {
+            synchronized (PostSearch.class) {
+                search = instance;
+                if (search == null) {
+                    search = new PostSearch(new PostDAO(), Long.getLong("search.debounce-ms", 250));
+                    instance = search;
+                }
+            }
+        }
+        return search;
+    }
+
+
+     // Search for the text once typing pauses, replacing any earlier search. Text shorter
+     // than MIN_QUERY_LENGTH after normalizing only cancels the earlier search.
+
+    public void submit(String text, Listener listener) {
+        schedule(text, debounceMillis, listener);
+    }
+
+
+     // Search for the text right away (the user pressed Enter), replacing any earlier search.
+
+    public void searchNow(String text, Listener listener) {
+        schedule(text, 0, listener);
+    }
+
+
+     // Drop the pending search and cancel the running one.
+
+    public synchronized void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (running != null) {
+            running.cancel();
+            running = null;
+        }
+    }
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+
+     // Number of searches that reached the database.
+
+    public long getDatabaseSearches() {
+        return databaseSearches.get();
+    }
+
+    private void schedule(String text, long delayMillis, Listener listener) {
+        String query = normalize(text);
+        synchronized (this) {
+            cancel();
+            if (query.length() < MIN_QUERY_LENGTH) return;
+            long requested = generation;
+            List<Post> cached = cached(query);
+            if (cached != null) {
+                pending = scheduler.schedule(() -> deliver(requested, query, cached, listener), 0, TimeUnit.MILLISECONDS);
+            } else {
+                pending = scheduler.schedule(() -> run(requested, query, listener), delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void run(long requested, String query, Listener listener) {
+        QueryCanceller canceller = new QueryCanceller();
+        long version;
+        synchronized (this) {
+            if (requested != generation) return;
+            running = canceller;
+            version = cacheVersion;
+        }
+        List<Post> results;
+        try {
+            long startTime = System.currentTimeMillis();
+            databaseSearches.incrementAndGet();
+            results = Collections.unmodifiableList(postDAO.search(query, RESULT_LIMIT, canceller));
+            logger.debug("Search for '{}' returned {} results in {}ms",
+                    query, results.size(), System.currentTimeMillis() - startTime);
+        } catch (SQLException e) {
+            if (canceller.isCancelled()) {
+                logger.debug("Search for '{}' cancelled", query);
+                return;
+            }
+            logger.error("Search for '{}' failed", query, e);
+            synchronized (this) {
+                if (running == canceller) running = null;
+                if (requested != generation) return;
+            }
+            listener.onError(query, e);
+            return;
+        }
+        synchronized (this) {
+            if (running == canceller) running = null;
+            if (version == cacheVersion) {
+                cache.put(query, results);
+            }
+        }
+        deliver(requested, query, results, listener);
+    }
+
+    private void deliver(long requested, String query, List<Post> results, Listener listener) {
+        synchronized (this) {
+            if (requested != generation) return;
+            pending = null;
+        }
+        listener.onResults(query, results);
+    }
+
+    // The cached result for the query, or the complete result of a cached query it contains,
+    // filtered. Guarded by this.
+    private List<Post> cached(String query) {
+        List<Post> results = cache.get(query);
+        if (results != null) return results;
+        // LIKE wildcards in the query match differently from String.contains
+        if (query.indexOf('%') >= 0 || query.indexOf('_') >= 0) return null;
+
+        List<Post> narrowest = null;
+        for (Map.Entry<String, List<Post>> entry : cache.entrySet()) {
+            List<Post> candidate = entry.getValue();
+            if (candidate.size() < RESULT_LIMIT && query.contains(entry.getKey())
+                    && (narrowest == null || candidate.size() < narrowest.size())) {
+                narrowest = candidate;
+            }
+        }
+        if (narrowest == null) return null;
+
+        List<Post> refined = new ArrayList<>();
+        for (Post post : narrowest) {
+            if (contains(post.getTitle(), query) || contains(post.getContent(), query)) {
+                refined.add(post);
+            }
+        }
+        results = Collections.unmodifiableList(refined);
+        cache.put(query, results);
+        return results;
+    }
+
+    private static boolean contains(String text, String query) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(query);
+    }
+
+    private void onPostChanged(PostChange change) {
+        if (change.getType() == PostChange.Type.VIEWED) return;
+        synchronized (this) {
+            cache.clear();
+            cacheVersion++;
+        }
+    }
+
+
+     // Receives the results of a search, on the search thread.
+
+    public interface Listener {
+        void onResults(String query, List<Post> results);
+
+        void onError(String query, SQLException e);
+    }
+}
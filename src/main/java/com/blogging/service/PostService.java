@@ -2,34 +2,62 @@ package com.blogging.service;
 
 import com.blogging.dao.PostDAO;
 import com.blogging.dao.TagDAO;
+import com.blogging.feed.FeedTimelines;
 import com.blogging.model.Post;
 import com.blogging.model.Tag;
+import com.blogging.similarity.PostDuplicateIndex;
+import com.blogging.similarity.RelatedPostsIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PostService {
     private static final Logger logger = LoggerFactory.getLogger(PostService.class);
     private final PostDAO postDAO;
     private final TagDAO tagDAO;
+    private final PostDuplicateIndex duplicateIndex;
+    private final RelatedPostsIndex relatedIndex;
+    private final FeedTimelines feedTimelines;
+    private final PostChangeBus changes = PostChangeBus.getInstance();
     
-    // In-memory cache for frequently accessed posts
+    // Minimum estimated shingle overlap for a post to count as a duplicate
+    private static final double DUPLICATE_THRESHOLD =
+            Double.parseDouble(System.getProperty("post.duplicate.threshold", "0.5"));
+    
+    // In-memory cache for frequently accessed posts. Concurrent maps: PostDetailLoader reads
+    // posts on its own threads
     private final Map<Integer, Post> postCache;
     private final Map<Integer, Long> cacheTimestamps;
     private static final long CACHE_TTL = 300000; // 5 minutes
     
     // Cache statistics
-    private int cacheHits = 0;
-    private int cacheMisses = 0;
+    private final AtomicInteger cacheHits = new AtomicInteger();
+    private final AtomicInteger cacheMisses = new AtomicInteger();
 
     public PostService() {
-        this.postDAO = new PostDAO();
-        this.tagDAO = new TagDAO();
-        this.postCache = new HashMap<>();
-        this.cacheTimestamps = new HashMap<>();
+        this(new PostDAO(), new TagDAO(), PostDuplicateIndex.getInstance(), RelatedPostsIndex.getInstance(),
+                FeedTimelines.getInstance());
+    }
+
+    // Package-private so benchmarks can supply in-memory DAOs.
+    PostService(PostDAO postDAO, TagDAO tagDAO) {
+        this(postDAO, tagDAO, null, null, null);
+    }
+
+    PostService(PostDAO postDAO, TagDAO tagDAO, PostDuplicateIndex duplicateIndex, RelatedPostsIndex relatedIndex,
+                FeedTimelines feedTimelines) {
+        this.postDAO = postDAO;
+        this.tagDAO = tagDAO;
+        this.duplicateIndex = duplicateIndex;
+        this.relatedIndex = relatedIndex;
+        this.feedTimelines = feedTimelines;
+        this.postCache = new ConcurrentHashMap<>();
+        this.cacheTimestamps = new ConcurrentHashMap<>();
     }
 
     public Post createPost(Post post, List<String> tagNames) throws SQLException {
@@ -37,6 +65,7 @@ public class PostService {
         Post createdPost = postDAO.create(post);
         
         // Add tags
+        List<Integer> tagIds = new ArrayList<>();
         if (tagNames != null && !tagNames.isEmpty()) {
             for (String tagName : tagNames) {
                 Tag tag = tagDAO.findByName(tagName);
@@ -44,23 +73,72 @@ public class PostService {
                     tag = tagDAO.create(new Tag(tagName));
                 }
                 tagDAO.addTagToPost(createdPost.getPostId(), tag.getTagId());
+                tagIds.add(tag.getTagId());
             }
         }
         
+        indexContent(createdPost);
+        if (relatedIndex != null) {
+            relatedIndex.postSaved(createdPost.getPostId(), createdPost.getTitle(), createdPost.getContent(),
+                    tagIds.stream().mapToInt(Integer::intValue).toArray());
+        }
+        deliverToFollowers(createdPost);
+        changes.publish(PostChange.created(createdPost));
         logger.info("Created post with ID: {} and {} tags", createdPost.getPostId(), tagNames.size());
         return createdPost;
     }
 
+
+     // Existing posts whose content heavily overlaps the given text, most similar first.
+     // Pass the post's own id when checking an edit, 0 for a new post.
+
+    public List<PostDuplicateIndex.Match> findDuplicates(String content, int excludePostId) {
+        if (duplicateIndex == null) {
+            return new ArrayList<>();
+        }
+        return duplicateIndex.findSimilar(content, DUPLICATE_THRESHOLD, excludePostId);
+    }
+
+     // Recommended posts for the post view, from the precomputed related-posts index.
+
+    public List<RelatedPostsIndex.Related> getRelatedPosts(int postId, int limit) {
+        if (relatedIndex == null) {
+            return new ArrayList<>();
+        }
+        return relatedIndex.getRelated(postId, limit);
+    }
+
+    // The post is already saved; a failed fan-out only means followers do not see it in their feed
+    private void deliverToFollowers(Post post) {
+        if (feedTimelines == null) return;
+        try {
+            feedTimelines.postCreated(post.getUserId(), post.getPostId());
+        } catch (SQLException e) {
+            logger.warn("Could not add post {} to follower feeds: {}", post.getPostId(), e.getMessage());
+        }
+    }
+
+    // A failed signature update must not fail the save; the startup backfill catches it up
+    private void indexContent(Post post) {
+        if (duplicateIndex == null) return;
+        try {
+            duplicateIndex.index(post.getPostId(), post.getContent());
+        } catch (SQLException e) {
+            logger.warn("Could not store duplicate signature for post {}: {}", post.getPostId(), e.getMessage());
+        }
+    }
+
     public Post getPost(int postId) throws SQLException {
         // Check cache first
-        if (isCacheValid(postId)) {
-            cacheHits++;
+        Post cached = postCache.get(postId);
+        if (cached != null && isCacheValid(postId)) {
+            cacheHits.incrementAndGet();
             logger.debug("Cache hit for post ID: {}", postId);
-            return postCache.get(postId);
+            return cached;
         }
         
         // Cache miss - fetch from database
-        cacheMisses++;
+        cacheMisses.incrementAndGet();
         logger.debug("Cache miss for post ID: {}", postId);
         Post post = postDAO.findById(postId);
         
@@ -74,6 +152,37 @@ public class PostService {
     }
 
 
+     // The post for reading: a cached post that fits in the preview as is, otherwise the
+     // post with only the first previewChars characters of its content (see
+     // Post.isContentPartial). Posts that fit in the preview are complete and cached like
+     // getPost.
+
+    public Post getPostPreview(int postId, int previewChars) throws SQLException {
+        Post cached = postCache.get(postId);
+        // A long post cached whole by getPost is read as a preview like any other
+        if (cached != null && isCacheValid(postId)
+                && (cached.getContent() == null || cached.getContent().length() <= previewChars)) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+
+        cacheMisses.incrementAndGet();
+        Post post = postDAO.findPreviewById(postId, previewChars);
+        if (post != null && !post.isContentPartial()) {
+            postCache.put(postId, post);
+            cacheTimestamps.put(postId, System.currentTimeMillis());
+        }
+        return post;
+    }
+
+
+     // Characters offset..offset+length of a post's content (see PostDAO.findContentChunk).
+
+    public String getContentChunk(int postId, int offset, int length) throws SQLException {
+        return postDAO.findContentChunk(postId, offset, length);
+    }
+
+
      //  Search posts by keyword.
 
     public List<Post> searchPosts(String keyword) throws SQLException {
@@ -106,6 +215,17 @@ public class PostService {
     }
 
 
+     // Rows offset..offset+limit of the post list, newest first. When the post just before
+     // offset is known, the page is read from it with a keyset query instead of OFFSET.
+
+    public List<Post> getPostsWindow(int offset, int limit, Post after) throws SQLException {
+        if (after != null && after.getCreatedAt() != null) {
+            return postDAO.findAllAfter(after, limit);
+        }
+        return postDAO.findAll(limit, offset);
+    }
+
+
      // Get sorted posts using QuickSort algorithm.
 
     public List<Post> getSortedPosts(int limit, String sortBy) throws SQLException {
@@ -122,7 +242,7 @@ public class PostService {
 
      // QuickSort implementation for posts.
 
-    private void quickSort(List<Post> posts, int low, int high, String sortBy) {
+    void quickSort(List<Post> posts, int low, int high, String sortBy) {
         if (low < high) {
             int pi = partition(posts, low, high, sortBy);
             quickSort(posts, low, pi - 1, sortBy);
@@ -144,7 +264,7 @@ public class PostService {
         return i + 1;
     }
 
-    private int compare(Post p1, Post p2, String sortBy) {
+    int compare(Post p1, Post p2, String sortBy) {
         switch (sortBy.toLowerCase()) {
             case "views":
                 return Integer.compare(p2.getViewCount(), p1.getViewCount()); // Descending
@@ -177,6 +297,11 @@ public class PostService {
             // Invalidate cache
             postCache.remove(post.getPostId());
             cacheTimestamps.remove(post.getPostId());
+            indexContent(post);
+            if (relatedIndex != null) {
+                relatedIndex.postSaved(post.getPostId(), post.getTitle(), post.getContent(), null);
+            }
+            changes.publish(PostChange.updated(post));
         }
     }
 
@@ -186,27 +311,48 @@ public class PostService {
     public boolean deletePost(int postId) throws SQLException {
         boolean deleted = postDAO.delete(postId);
         if (deleted) {
-            // Invalidate cache
-            postCache.remove(postId);
-            cacheTimestamps.remove(postId);
+            postRemoved(postId);
         }
         return deleted;
     }
 
 
-     // Increment view count.
+     // Forget a post deleted from the database, by this service or otherwise (UserPurgeJob).
 
-    public void incrementViewCount(int postId) throws SQLException {
-        postDAO.incrementViewCount(postId);
+    void postRemoved(int postId) {
+        // Invalidate cache
+        postCache.remove(postId);
+        cacheTimestamps.remove(postId);
+        if (duplicateIndex != null) {
+            duplicateIndex.remove(postId);
+        }
+        if (relatedIndex != null) {
+            relatedIndex.postDeleted(postId);
+        }
+        if (feedTimelines != null) {
+            feedTimelines.postDeleted(postId);
+        }
+        changes.publish(PostChange.deleted(postId));
+    }
+
+
+     // Increment view count. Returns the new count, or -1 if the post does not exist.
+
+    public int incrementViewCount(int postId) throws SQLException {
+        int viewCount = postDAO.incrementViewCount(postId);
         
         // Update cache instead of removing to allow hits
-        if (postCache.containsKey(postId)) {
-            Post cachedPost = postCache.get(postId);
-            cachedPost.setViewCount(cachedPost.getViewCount() + 1);
+        Post cachedPost = postCache.get(postId);
+        if (cachedPost != null) {
+            cachedPost.setViewCount(viewCount >= 0 ? viewCount : cachedPost.getViewCount() + 1);
             // Optionally update timestamp to keep it fresh
             cacheTimestamps.put(postId, System.currentTimeMillis());
             logger.debug("Updated cache for post ID: {} (new views: {})", postId, cachedPost.getViewCount());
         }
+        if (viewCount >= 0) {
+            changes.publish(PostChange.viewed(postId, viewCount));
+        }
+        return viewCount;
     }
 
 
@@ -231,11 +377,13 @@ public class PostService {
     public Map<String, Object> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("cacheSize", postCache.size());
-        stats.put("cacheHits", cacheHits);
-        stats.put("cacheMisses", cacheMisses);
+        int hits = cacheHits.get();
+        int misses = cacheMisses.get();
+        stats.put("cacheHits", hits);
+        stats.put("cacheMisses", misses);
         
-        int totalRequests = cacheHits + cacheMisses;
-        double hitRate = totalRequests > 0 ? (double) cacheHits / totalRequests * 100 : 0;
+        int totalRequests = hits + misses;
+        double hitRate = totalRequests > 0 ? (double) hits / totalRequests * 100 : 0;
         stats.put("hitRate", String.format("%.2f%%", hitRate));
         
         return stats;
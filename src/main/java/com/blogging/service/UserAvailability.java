@@ -0,0 +1,187 @@
+package com.blogging.service;
+
+import com.blogging.dao.UserDAO;
+import com.blogging.util.CountingBloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+ // Which usernames and emails are taken, as counting Bloom filters over their lower-case
+ // forms, so that signup can tell a name is free without asking the database.
+ //
+ // mightBeTaken answers false only for names no user has: those need no query. true means
+ // "ask the database" (about 1% of free names, and every name until the filters are
+ // loaded). start streams every user once on a daemon thread, into filters sized for
+ // twice the current users (at least MIN_CAPACITY, -Duser.availability.min-capacity);
+ // registrations and purges then keep them current, and the filters are rebuilt in the
+ // background once the users outgrow them.
+ //
+ // Names are compared ignoring case, which covers the case-sensitive email check as well:
+ // equal emails have equal lower-case forms. A name taken while the filters load is added
+ // to the new ones too; a name released while they load is not removed, as the stream may
+ // not have added it, and stays a harmless false positive.
+
+public class UserAvailability {
+    private static final Logger logger = LoggerFactory.getLogger(UserAvailability.class);
+    static final int MIN_CAPACITY = Integer.getInteger("user.availability.min-capacity", 10000);
+    private static volatile UserAvailability instance;
+
+    private final UserDAO userDAO;
+    private final int minCapacity;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-availability");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile CountingBloomFilter usernames;
+    private volatile CountingBloomFilter emails;
+    // Guarded by this
+    private int capacity;
+    private int entries;
+    private boolean reloading;
+    private List<String[]> takenWhileLoading;
+
+    UserAvailability(UserDAO userDAO, int minCapacity) {
+        this.userDAO = userDAO;
+        this.minCapacity = minCapacity;
+    }
+
+    public static UserAvailability getInstance() {
+        UserAvailability availability = instance;
+        if (availability == null) {
+            synchronized (UserAvailability.class) {
+                availability = instance;
+                if (availability == null) {
+                    availability = new UserAvailability(new UserDAO(), MIN_CAPACITY);
+                    instance = availability;
+                }
+            }
+        }
+        return availability;
+    }
+
+
+     // Load the filters in the background. Calling it again while they load does nothing.
+
+    public void start() {
+        synchronized (this) {
+            if (reloading) return;
+            reloading = true;
+        }
+        loader.execute(this::load);
+    }
+
+
+     // Stop the shared loader, if it was created.
+
+    public static void shutdown() {
+        UserAvailability availability = instance;
+        if (availability != null) {
+            availability.loader.shutdownNow();
+        }
+    }
+
+    public boolean isLoaded() {
+        return usernames != null;
+    }
+
+
+     // False if no user has this username (ignoring case); true if one may.
+
+    public boolean mightBeTakenUsername(String username) {
+        CountingBloomFilter filter = usernames;
+        return filter == null || filter.mightContain(normalize(username));
+    }
+
+
+     // False if no user has this email (ignoring case); true if one may.
+
+    public boolean mightBeTakenEmail(String email) {
+        CountingBloomFilter filter = emails;
+        return filter == null || filter.mightContain(normalize(email));
+    }
+
+
+     // A user now has this username and email.
+
+    public void taken(String username, String email) {
+        String name = normalize(username);
+        String mail = normalize(email);
+        boolean outgrown;
+        synchronized (this) {
+            if (takenWhileLoading != null) {
+                takenWhileLoading.add(new String[]{name, mail});
+            }
+            if (usernames == null) return;
+            usernames.add(name);
+            emails.add(mail);
+            entries++;
+            outgrown = entries > capacity && !reloading;
+        }
+        if (outgrown) {
+            logger.info("User availability filters hold {} users, over their capacity; rebuilding", entries);
+            start();
+        }
+    }
+
+
+     // The user with this username and email was deleted.
+
+    public synchronized void released(String username, String email) {
+        if (usernames == null || takenWhileLoading != null) return;
+        usernames.remove(normalize(username));
+        emails.remove(normalize(email));
+        entries--;
+    }
+
+    void load() {
+        try {
+            int users = userDAO.getTotalCount();
+            int size = Math.max(minCapacity, users * 2);
+            CountingBloomFilter names = new CountingBloomFilter(size);
+            CountingBloomFilter mails = new CountingBloomFilter(size);
+            synchronized (this) {
+                takenWhileLoading = new ArrayList<>();
+            }
+            int[] streamed = new int[1];
+            userDAO.forEachIdentity((username, email) -> {
+                names.add(normalize(username));
+                mails.add(normalize(email));
+                streamed[0]++;
+            });
+            synchronized (this) {
+                for (String[] identity : takenWhileLoading) {
+                    names.add(identity[0]);
+                    mails.add(identity[1]);
+                }
+                entries = streamed[0] + takenWhileLoading.size();
+                takenWhileLoading = null;
+                capacity = size;
+                usernames = names;
+                emails = mails;
+            }
+            logger.info("Loaded availability filters for {} users ({} slots each)", streamed[0], names.slots());
+        } catch (SQLException | RuntimeException e) {
+            // Without filters every check asks the database
+            logger.error("Failed to load user availability filters", e);
+            synchronized (this) {
+                takenWhileLoading = null;
+            }
+        } finally {
+            synchronized (this) {
+                reloading = false;
+            }
+        }
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,278 @@
+package com.blogging.service;
+
+import com.blogging.dao.UserPurgeDAO;
+import com.blogging.model.UserSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+ // Deletes user accounts in the background, a bounded number of rows per transaction, so
+ // that removing users with many posts and comments does not lock the busy tables.
+ //
+ // purge queues the users in one statement (they can no longer log in and drop out of user
+ // management) and wakes the job. A daemon thread then clears each queued user with the
+ // steps of UserPurgeDAO, CHUNK_ROWS rows per statement (-Duser-purge.chunk-rows, default
+ // 500), pausing PAUSE_MILLIS between statements (-Duser-purge.pause-ms, default 50) to
+ // leave the database to the application, then deletes their posts and finally the user,
+ // whose username and email are released in UserAvailability.
+ // Deleted posts are dropped from the PostService given to watchPosts. Users still queued
+ // after a failure or a restart are purged on the next start or purge.
+ //
+ // Progress is pushed to the listeners on the job thread; listeners are held weakly, as
+ // on the PostChangeBus.
+
+public class UserPurgeJob {
+    private static final Logger logger = LoggerFactory.getLogger(UserPurgeJob.class);
+    static final int CHUNK_ROWS = Integer.getInteger("user-purge.chunk-rows", 500);
+    static final long PAUSE_MILLIS = Long.getLong("user-purge.pause-ms", 50);
+    private static volatile UserPurgeJob instance;
+
+    private final UserPurgeDAO purgeDAO;
+    private final UserAvailability availability;
+    private final int chunkRows;
+    private final long pauseMillis;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CopyOnWriteArrayList<WeakReference<Listener>> listeners = new CopyOnWriteArrayList<>();
+    private volatile PostService postSource;
+    private volatile Progress progress;
+
+    UserPurgeJob(UserPurgeDAO purgeDAO, UserAvailability availability, int chunkRows, long pauseMillis) {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("Chunk rows must be positive");
+        }
+        this.purgeDAO = purgeDAO;
+        this.availability = availability;
+        this.chunkRows = chunkRows;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public static UserPurgeJob getInstance() {
+        UserPurgeJob job = instance;
+        if (job == null) {
+            synchronized (UserPurgeJob.class) {
+                job = instance;
+                if (job == null) {
+                    job = new UserPurgeJob(new UserPurgeDAO(), UserAvailability.getInstance(), CHUNK_ROWS, PAUSE_MILLIS);
+                    instance = job;
+                }
+            }
+        }
+        return job;
+    }
+
+
+     // Resume purging the users left queued by an earlier run.
+
+    public void start() {
+        worker.execute(this::run);
+    }
+
+
+     // Stop the shared job, if it was created. Users not yet purged stay queued.
+
+    public static void shutdown() {
+        UserPurgeJob job = instance;
+        if (job != null) {
+            job.worker.shutdownNow();
+        }
+    }
+
+
+     // Queue users for deletion and purge them in the background. Returns the number of
+     // users queued; unknown and already queued ids are skipped.
+
+    public int purge(int[] userIds) throws SQLException {
+        int queued = purgeDAO.markForPurge(userIds);
+        if (queued > 0) {
+            worker.execute(this::run);
+        }
+        return queued;
+    }
+
+
+     // Drop posts deleted by the job from this PostService's caches and indexes.
+
+    public void watchPosts(PostService postService) {
+        postSource = postService;
+    }
+
+
+     // The progress of the current or last run, or null before the first one.
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+
+     // Subscribe a listener. The caller must keep a strong reference to it for as long as
+     // it wants progress.
+
+    public void subscribe(Listener listener) {
+        listeners.add(new WeakReference<>(listener));
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.removeIf(ref -> {
+            Listener current = ref.get();
+            return current == null || current == listener;
+        });
+    }
+
+    void run() {
+        List<Integer> pending;
+        try {
+            pending = purgeDAO.findPending();
+        } catch (SQLException e) {
+            logger.error("Failed to read the users queued for deletion", e);
+            return;
+        }
+        if (pending.isEmpty()) return;
+
+        Progress current = new Progress(pending.size(), 0, 0, "Starting", false, false);
+        report(current);
+        try {
+            for (int userId : pending) {
+                current = purgeUser(userId, current);
+                report(current);
+            }
+            report(current.finish(false));
+        } catch (SQLException e) {
+            // The user stays queued and is picked up by the next run
+            logger.error("Failed to purge users", e);
+            report(current.finish(true));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Progress purgeUser(int userId, Progress current) throws SQLException, InterruptedException {
+        for (UserPurgeDAO.Step step : UserPurgeDAO.Step.values()) {
+            String activity = "User " + userId + ": " + step.name().toLowerCase().replace('_', ' ');
+            int deleted;
+            do {
+                deleted = purgeDAO.deleteChunk(step, userId, chunkRows);
+                current = current.next(deleted, activity, false);
+                report(current);
+                pause();
+            } while (deleted == chunkRows);
+        }
+
+        String activity = "User " + userId + ": posts";
+        List<Integer> postIds;
+        do {
+            postIds = purgeDAO.deletePosts(userId, chunkRows);
+            PostService postService = postSource;
+            if (postService != null) {
+                for (int postId : postIds) {
+                    postService.postRemoved(postId);
+                }
+            }
+            current = current.next(postIds.size(), activity, false);
+            report(current);
+            pause();
+        } while (postIds.size() == chunkRows);
+
+        // Only what was written while the job ran is left to cascade
+        UserSummary deleted = purgeDAO.deleteUser(userId);
+        if (deleted != null) {
+            availability.released(deleted.getUsername(), deleted.getEmail());
+        }
+        return current.next(1, "User " + userId + " deleted", true);
+    }
+
+    private void pause() throws InterruptedException {
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    private void report(Progress next) {
+        progress = next;
+        boolean collected = false;
+        for (WeakReference<Listener> ref : listeners) {
+            Listener listener = ref.get();
+            if (listener == null) {
+                collected = true;
+                continue;
+            }
+            try {
+                listener.progressChanged(next);
+            } catch (RuntimeException e) {
+                logger.error("User purge listener failed", e);
+            }
+        }
+        if (collected) {
+            listeners.removeIf(ref -> ref.get() == null);
+        }
+    }
+
+
+     // How far a run has got. Immutable.
+
+    public static final class Progress {
+        private final int usersTotal;
+        private final int usersDone;
+        private final long rowsDeleted;
+        private final String activity;
+        private final boolean finished;
+        private final boolean failed;
+
+        Progress(int usersTotal, int usersDone, long rowsDeleted, String activity, boolean finished, boolean failed) {
+            this.usersTotal = usersTotal;
+            this.usersDone = usersDone;
+            this.rowsDeleted = rowsDeleted;
+            this.activity = activity;
+            this.finished = finished;
+            this.failed = failed;
+        }
+
+        Progress next(int rows, String nextActivity, boolean userDone) {
+            return new Progress(usersTotal, usersDone + (userDone ? 1 : 0), rowsDeleted + rows, nextActivity, false, false);
+        }
+
+        Progress finish(boolean withFailure) {
+            return new Progress(usersTotal, usersDone, rowsDeleted, withFailure ? "Stopped by an error" : "Done",
+                    true, withFailure);
+        }
+
+        public int getUsersTotal() {
+            return usersTotal;
+        }
+
+        public int getUsersDone() {
+            return usersDone;
+        }
+
+        public long getRowsDeleted() {
+            return rowsDeleted;
+        }
+
+        public String getActivity() {
+            return activity;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void progressChanged(Progress progress);
+    }
+}
@@ -2,79 +2,181 @@ package com.blogging.service;
 
 import com.blogging.dao.UserDAO;
 import com.blogging.model.User;
+import com.blogging.model.UserSummary;
+import com.blogging.security.PasswordHashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private final UserDAO userDAO;
+    private final UserAvailability availability;
+    private final PasswordHashing hashing;
+    
+    private static final int MAX_USER_PAGE_SIZE = 500;
+    
+    // SQLSTATE of an insert rejected by a unique constraint
+    private static final String UNIQUE_VIOLATION = "23505";
     
     private static final Pattern EMAIL_PATTERN = 
         Pattern.compile("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
     
     private User currentUser; // Simple session management
+    
+    // Identity cache: users by id, and their ids by lower-case username, so that repeated
+    // lookups of the same users do not query. Entries expire after USER_CACHE_TTL and are
+    // dropped when the user is changed or deleted through this service
+    private final Map<Integer, CachedUser> userCache = new ConcurrentHashMap<>();
+    private final Map<String, Integer> userIdsByName = new ConcurrentHashMap<>();
+    private static final long USER_CACHE_TTL = Long.getLong("user.cache-ttl-ms", 300000); // 5 minutes
 
     public UserService() {
-        this.userDAO = new UserDAO();
+        this(new UserDAO());
+    }
+
+    // Package-private so benchmarks can supply an in-memory DAO.
+    UserService(UserDAO userDAO) {
+        this(userDAO, UserAvailability.getInstance());
     }
 
+    UserService(UserDAO userDAO, UserAvailability availability) {
+        this(userDAO, availability, PasswordHashing.getInstance());
+    }
+
+    UserService(UserDAO userDAO, UserAvailability availability, PasswordHashing hashing) {
+        this.userDAO = userDAO;
+        this.availability = availability;
+        this.hashing = hashing;
+    }
+
+     // Register a user with one insert: the unique constraints on username and email do
+     // the checking, and only a rejected insert asks which of the two was taken.
+
     public User registerUser(String username, String email, String password) throws SQLException {
         // Validate input
         validateUsername(username);
         validateEmail(email);
         validatePassword(password);
         
-        // Check if username already exists
-        if (userDAO.usernameExists(username)) {
+        // A cached user is known to exist without asking
+        if (cachedUser(username) != null) {
             throw new IllegalArgumentException("Username already exists");
         }
         
-        // Check if email already exists
-        if (userDAO.emailExists(email)) {
-            throw new IllegalArgumentException("Email already exists");
-        }
-        
-        // Hash password (simplified - in production use BCrypt)
-        String passwordHash = hashPassword(password);
+        // Hash password on the hashing pool (blocks until done)
+        String passwordHash = hashing.hash(password);
         
         // Create user
         User user = new User(username, email, passwordHash);
-        User createdUser = userDAO.create(user);
+        User createdUser;
+        try {
+            createdUser = userDAO.create(user);
+        } catch (SQLException e) {
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                throw e;
+            }
+            throw new IllegalArgumentException(userDAO.usernameExists(username)
+                    ? "Username already exists" : "Email already exists");
+        }
+        cacheUser(createdUser);
+        availability.taken(username, email);
         
         logger.info("Registered new user: {}", username);
         return createdUser;
     }
 
     public void login(String username, String password) throws SQLException, IllegalArgumentException {
+        // Always read: the password may have changed since the user was cached
         User user = userDAO.findByUsername(username);
         
         if (user == null) {
             throw new IllegalArgumentException("User not found");
         }
         
-        // Hash password before comparison
-        String hashedInput = hashPassword(password);
-        if (!hashedInput.equals(user.getPasswordHash())) {
+        PasswordHashing.Verification verification = hashing.verify(password, user.getPasswordHash());
+        if (!verification.matches()) {
             throw new IllegalArgumentException("Invalid password");
         }
+        if (verification.getRehashed() != null) {
+            upgradePasswordHash(user, verification.getRehashed());
+        }
         
         this.currentUser = user;
+        cacheUser(user);
         logger.info("User logged in: {}", username);
     }
     
     public List<User> getAllUsers() throws SQLException {
         return userDAO.findAll();
     }
+
+
+     // A page of the user list (see UserDAO.findSummaries). search is trimmed; role is
+     // "USER", "ADMIN" or null for both.
+
+    public List<UserSummary> getUserPage(String search, String role, UserSummary.SortOrder order,
+                                         UserSummary after, int pageSize) throws SQLException {
+        if (pageSize < 1 || pageSize > MAX_USER_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_USER_PAGE_SIZE);
+        }
+        if (role != null) {
+            validateRole(role);
+        }
+        String prefix = search == null ? null : search.trim();
+        return userDAO.findSummaries(prefix, role, order, after, pageSize);
+    }
+
+
+     // Give users the USER or ADMIN role, in one statement.
+
+    public void setRoles(int[] userIds, String role) throws SQLException {
+        validateRole(role);
+        userDAO.updateRoles(userIds, role);
+        for (int userId : userIds) {
+            forgetUser(userId);
+        }
+        if (currentUser != null && contains(userIds, currentUser.getUserId())) {
+            currentUser.setRole(role);
+        }
+    }
+
+    private void validateRole(String role) {
+        if (!"USER".equals(role) && !"ADMIN".equals(role)) {
+            throw new IllegalArgumentException("Role must be USER or ADMIN");
+        }
+    }
     
     public void deleteUser(int userId) throws SQLException {
-        userDAO.delete(userId);
-        if (currentUser != null && currentUser.getUserId() == userId) {
+        deleteUsers(new int[]{userId});
+    }
+
+
+     // Delete users in the background (see UserPurgeJob). They cannot log in from now on;
+     // returns the number of users queued.
+
+    public int deleteUsers(int[] userIds) throws SQLException {
+        int queued = UserPurgeJob.getInstance().purge(userIds);
+        for (int userId : userIds) {
+            forgetUser(userId);
+        }
+        if (currentUser != null && contains(userIds, currentUser.getUserId())) {
             currentUser = null; // Log out if current user is deleted
         }
+        return queued;
+    }
+
+    private static boolean contains(int[] userIds, int userId) {
+        for (int id : userIds) {
+            if (id == userId) return true;
+        }
+        return false;
     }
     
     public void updateUser(User user) throws SQLException {
@@ -82,6 +184,9 @@ public class UserService {
         validateEmail(user.getEmail());
         
         userDAO.update(user);
+        forgetUser(user.getUserId());
+        // The old names stay in the filters: a false positive costs one query
+        availability.taken(user.getUsername(), user.getEmail());
         if (currentUser != null && currentUser.getUserId() == user.getUserId()) {
             currentUser = user; // Update current session info
         }
@@ -112,16 +217,109 @@ public class UserService {
     }
 
 
-     // Get user by ID.
+     // Whether no user has this username (ignoring case). Most free names are answered by
+     // UserAvailability without a query.
+
+    public boolean isUsernameAvailable(String username) throws SQLException {
+        if (!availability.mightBeTakenUsername(username)) {
+            return true;
+        }
+        return cachedUser(username) == null && !userDAO.usernameExists(username);
+    }
+
+
+     // Whether no user has this email. Most free emails are answered without a query.
+
+    public boolean isEmailAvailable(String email) throws SQLException {
+        return !availability.mightBeTakenEmail(email) || !userDAO.emailExists(email);
+    }
+
+
+     // Whether the logged-in user is an admin.
+
+    public boolean isAdmin() {
+        return currentUser != null && "ADMIN".equalsIgnoreCase(currentUser.getRole());
+    }
+
+
+     // Whether the logged-in user may edit or delete content by this author: the author
+     // themselves or an admin. Uses the session user; nothing is read.
+
+    public boolean canModify(int authorId) {
+        return currentUser != null && (currentUser.getUserId() == authorId || isAdmin());
+    }
+
+
+     // Get user by ID, from the identity cache when it holds them.
 
     public User getUserById(int userId) throws SQLException {
-        return userDAO.findById(userId);
+        User user = cachedUser(userId);
+        if (user == null) {
+            user = userDAO.findById(userId);
+            if (user != null) {
+                cacheUser(user);
+            }
+        }
+        return user;
+    }
+
+
+     // Get user by username, ignoring case, from the identity cache when it holds them.
+
+    public User getUserByUsername(String username) throws SQLException {
+        User user = cachedUser(username);
+        if (user == null) {
+            user = userDAO.findByUsername(username);
+            if (user != null) {
+                cacheUser(user);
+            }
+        }
+        return user;
+    }
+
+    private User cachedUser(int userId) {
+        CachedUser entry = userCache.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.cachedAt >= USER_CACHE_TTL) {
+            forgetUser(userId);
+            return null;
+        }
+        return entry.user;
+    }
+
+    private User cachedUser(String username) {
+        String name = normalize(username);
+        Integer userId = userIdsByName.get(name);
+        User user = userId == null ? null : cachedUser(userId);
+        // A user renamed elsewhere may still be listed under the old name
+        return user != null && normalize(user.getUsername()).equals(name) ? user : null;
+    }
+
+    private void cacheUser(User user) {
+        if (user.getUserId() == null) return;
+        forgetUser(user.getUserId());
+        userCache.put(user.getUserId(), new CachedUser(user, System.currentTimeMillis()));
+        userIdsByName.put(normalize(user.getUsername()), user.getUserId());
+    }
+
+    private void forgetUser(int userId) {
+        CachedUser entry = userCache.remove(userId);
+        if (entry != null) {
+            userIdsByName.remove(normalize(entry.user.getUsername()), userId);
+        }
+    }
+
+    // Usernames are unique ignoring case (uq_users_username_lower)
+    private static String normalize(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
     }
 
 
      //  Validate username.
 
-    private void validateUsername(String username) {
+    public void validateUsername(String username) {
         if (username == null || username.trim().isEmpty()) {
             throw new IllegalArgumentException("Username cannot be empty");
         }
@@ -136,7 +334,7 @@ public class UserService {
 
      //  Validate email.
 
-    private void validateEmail(String email) {
+    public void validateEmail(String email) {
         if (email == null || email.trim().isEmpty()) {
             throw new IllegalArgumentException("Email cannot be empty");
         }
@@ -148,7 +346,7 @@ public class UserService {
 
      // Validate password.
 
-    private void validatePassword(String password) {
+    void validatePassword(String password) {
         if (password == null || password.isEmpty()) {
             throw new IllegalArgumentException("Password cannot be empty");
         }
@@ -158,10 +356,28 @@ public class UserService {
     }
 
 
-     // Hash password (simplified - use BCrypt in production).
+     // Store a stronger hash of a password that just verified. Only replaces the hash that
+     // was verified, so a password changed meanwhile is kept; a failure leaves the old hash
+     // for the next login and does not fail this one.
 
-    private String hashPassword(String password) {
-        // This is a simplified hash - in production, use BCrypt or similar
-        return "$2a$10$" + Integer.toHexString(password.hashCode());
+    private void upgradePasswordHash(User user, String newHash) {
+        try {
+            if (userDAO.updatePasswordHash(user.getUserId(), user.getPasswordHash(), newHash)) {
+                user.setPasswordHash(newHash);
+                logger.info("Upgraded password hash of user ID: {}", user.getUserId());
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to upgrade password hash of user ID: {}", user.getUserId(), e);
+        }
+    }
+
+    private static final class CachedUser {
+        private final User user;
+        private final long cachedAt;
+
+        CachedUser(User user, long cachedAt) {
+            this.user = user;
+            this.cachedAt = cachedAt;
+        }
     }
 }
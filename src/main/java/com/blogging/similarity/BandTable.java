@@ -0,0 +1,101 @@
+package com.blogging.similarity;
+
+
+ // Open-addressing multimap from 64-bit LSH band keys to post ids.
+ //
+ // Every (key, post id) pair takes its own slot, found by linear probing from the key's home
+ // slot; a lookup walks the probe run and reports the ids stored under the key. Removed pairs
+ // become tombstones (key kept, id REMOVED) so probe runs stay intact, and are dropped on the
+ // next rehash. Keys and ids are two parallel primitive arrays. Not thread-safe.
+
+final class BandTable {
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private int[] ids;
+    private int mask;
+    private int size;
+    private int used;
+
+    BandTable(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Post ids are positive, so 0 can mark an empty slot
+    void put(long key, int postId) {
+        if (used + 1 > keys.length * MAX_LOAD) {
+            rehash(size + 1 > keys.length * MAX_LOAD / 2 ? keys.length << 1 : keys.length);
+        }
+        int i = slot(key);
+        while (ids[i] != EMPTY) {
+            if (keys[i] == key && ids[i] == postId) return;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        ids[i] = postId;
+        size++;
+        used++;
+    }
+
+    void remove(long key, int postId) {
+        for (int i = slot(key); ids[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key && ids[i] == postId) {
+                ids[i] = REMOVED;
+                size--;
+                return;
+            }
+        }
+    }
+
+
+     // Call the visitor with every post id stored under the key.
+
+    void forEach(long key, IdVisitor visitor) {
+        for (int i = slot(key); ids[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key && ids[i] != REMOVED) {
+                visitor.visit(ids[i]);
+            }
+        }
+    }
+
+    interface IdVisitor {
+        void visit(int postId);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldIds = ids;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            int id = oldIds[j];
+            if (id == EMPTY || id == REMOVED) continue;
+            int i = slot(oldKeys[j]);
+            while (ids[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            ids[i] = id;
+            size++;
+            used++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+        used = 0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.blogging.similarity;
+
+import com.blogging.dao.PostDAO;
+import com.blogging.dao.PostSignatureDAO;
+import com.blogging.model.Post;
+import com.blogging.util.DatabaseConnection;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+
+ // Batch job that reports clusters of duplicate posts across the whole corpus.
+ //
+ // Loads the stored signatures, signs posts that are new or edited since the last run, and
+ // prints every group of posts linked by pairs at least --threshold alike (default 0.5).
+ // --rebuild drops the stored signatures first, e.g. after MinHash parameters changed.
+ //
+ //   java -cp target/smart-blogging-platform-1.0.0-shaded.jar com.blogging.similarity.DuplicateScan --threshold 0.6
+
+public final class DuplicateScan {
+
+    private DuplicateScan() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        double threshold = 0.5;
+        boolean rebuild = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threshold":
+                    threshold = Double.parseDouble(args[++i]);
+                    break;
+                case "--rebuild":
+                    rebuild = true;
+                    break;
+                default:
+                    System.err.println("Usage: DuplicateScan [--threshold 0.5] [--rebuild]");
+                    System.exit(2);
+            }
+        }
+
+        try {
+            PostSignatureDAO signatureDAO = new PostSignatureDAO();
+            if (rebuild) {
+                System.out.printf("Dropped %d stored signatures%n", signatureDAO.deleteAll());
+            }
+            PostDuplicateIndex index = new PostDuplicateIndex(signatureDAO);
+            long start = System.currentTimeMillis();
+            index.load();
+            List<List<Integer>> clusters = index.findClusters(threshold);
+            System.out.printf(Locale.ROOT, "%d posts indexed, %d duplicate clusters at >= %.0f%% overlap (%d ms)%n",
+                    index.size(), clusters.size(), threshold * 100, System.currentTimeMillis() - start);
+
+            PostDAO postDAO = new PostDAO();
+            int number = 1;
+            for (List<Integer> cluster : clusters) {
+                System.out.printf("%nCluster %d (%d posts)%n", number++, cluster.size());
+                for (int postId : cluster) {
+                    Post post = postDAO.findById(postId);
+                    System.out.printf("  #%-8d %s%n", postId, post != null ? post.getTitle() : "(deleted)");
+                }
+            }
+        } finally {
+            DatabaseConnection.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.blogging.similarity;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+
+ // MinHash signatures of post content.
+ //
+ // A post is reduced to its set of shingles: every run of SHINGLE_WORDS consecutive words,
+ // case-folded and hashed to 64 bits while scanning. Each of the NUM_HASHES signature
+ // positions keeps the minimum of one multiply-shift hash over all shingles, so the fraction
+ // of positions on which two signatures agree estimates the Jaccard similarity of the two
+ // shingle sets. The hash parameters come from a fixed seed: stored signatures stay
+ // comparable across restarts and must be recomputed if NUM_HASHES or the seed change.
+
+public final class MinHash {
+    public static final int NUM_HASHES = 100;
+    public static final int SHINGLE_WORDS = 4;
+    private static final long SEED = 0x5EED_0F_D0C5L;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long[] MULTIPLIERS = new long[NUM_HASHES];
+    private static final long[] INCREMENTS = new long[NUM_HASHES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            MULTIPLIERS[i] = random.nextLong() | 1L;
+            INCREMENTS[i] = random.nextLong();
+        }
+    }
+
+    private MinHash() {
+    }
+
+
+     // Signature of the text, or null when it has fewer than SHINGLE_WORDS words.
+
+    public static int[] signature(CharSequence text) {
+        long[] mins = new long[NUM_HASHES];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        long[] window = new long[SHINGLE_WORDS];
+        int words = 0;
+        int length = text == null ? 0 : text.length();
+        long hash = FNV_OFFSET;
+        boolean inWord = false;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                window[words % SHINGLE_WORDS] = hash;
+                words++;
+                if (words >= SHINGLE_WORDS) {
+                    addShingle(mins, shingle(window, words));
+                }
+                hash = FNV_OFFSET;
+                inWord = false;
+            }
+        }
+        if (words < SHINGLE_WORDS) return null;
+        int[] signature = new int[NUM_HASHES];
+        for (int i = 0; i < NUM_HASHES; i++) {
+            signature[i] = (int) mins[i];
+        }
+        return signature;
+    }
+
+
+     // Estimated Jaccard similarity of the shingle sets behind two signatures.
+
+    public static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return same / (double) NUM_HASHES;
+    }
+
+    public static byte[] toBytes(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(NUM_HASHES * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+
+     // Decode a stored signature, or null if it was written with a different NUM_HASHES.
+
+    public static int[] fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != NUM_HASHES * Integer.BYTES) return null;
+        int[] signature = new int[NUM_HASHES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    // Order-sensitive combination of the last SHINGLE_WORDS word hashes
+    private static long shingle(long[] window, int words) {
+        long h = FNV_OFFSET;
+        for (int i = words - SHINGLE_WORDS; i < words; i++) {
+            h = (h ^ window[i % SHINGLE_WORDS]) * FNV_PRIME;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+
+    // Multiply-shift hashing: the high 32 bits of a*x+b, kept non-negative in a long
+    private static void addShingle(long[] mins, long shingle) {
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long h = (MULTIPLIERS[i] * shingle + INCREMENTS[i]) >>> 32;
+            if (h < mins[i]) {
+                mins[i] = h;
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.blogging.similarity;
+
+import com.blogging.dao.PostSignatureDAO;
+import com.blogging.model.Post;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+ // Locality-sensitive hashing index over post MinHash signatures, for duplicate and
+ // plagiarism checks.
+ //
+ // A signature is cut into BANDS bands of ROWS values and each band is hashed into one shared
+ // BandTable. Posts that agree on a whole band become candidates, and the candidates are then
+ // scored with the full signatures. With 25 bands of 4 rows, a pair with Jaccard similarity s
+ // becomes a candidate with probability 1 - (1 - s^4)^25: about 80% at 0.5, 99.9% at 0.7 and
+ // under 20% at 0.3. A lookup touches BANDS buckets, not the corpus, so it stays fast as the
+ // number of posts grows.
+ //
+ // Signatures are persisted in post_signatures. On startup they are loaded as stored, and
+ // only posts that are new or were edited since their signature was computed get re-shingled.
+ // The index serves writes while it loads; a post indexed or removed meanwhile is skipped by
+ // the load, whose rows for it may predate the change.
+
+public class PostDuplicateIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PostDuplicateIndex.class);
+    public static final int BANDS = 25;
+    public static final int ROWS = MinHash.NUM_HASHES / BANDS;
+    private static final int BACKFILL_PAGE = 500;
+    private static volatile PostDuplicateIndex instance;
+
+    private final PostSignatureDAO signatureDAO;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final BandTable bands = new BandTable(1 << 14);
+    private volatile boolean loaded;
+    // Posts indexed or removed while load runs, null otherwise. Guarded by lock
+    private Set<Integer> changedWhileLoading;
+
+    public PostDuplicateIndex(PostSignatureDAO signatureDAO) {
+        this.signatureDAO = signatureDAO;
+    }
+
+
+     // Shared index used by PostService. Signatures are loaded on a background thread, so
+     // lookups made during startup only see the posts loaded so far.
+
+    public static PostDuplicateIndex getInstance() {
+        PostDuplicateIndex index = instance;
+        if (index == null) {
+            synchronized (PostDuplicateIndex.class) {
+                index = instance;
+                if (index == null) {
+                    index = new PostDuplicateIndex(new PostSignatureDAO());
+                    PostDuplicateIndex loading = index;
+                    Thread loader = new Thread(() -> {
+                        try {
+                            loading.load();
+                        } catch (Exception | LinkageError e) {
+                            logger.warn("Could not load post signatures: {}", e.getMessage());
+                        }
+                    }, "post-signature-loader");
+                    loader.setDaemon(true);
+                    loader.start();
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+
+     // Load the stored signatures, then compute the missing and outdated ones.
+
+    public void load() throws SQLException {
+        long start = System.currentTimeMillis();
+        int[] stored = {0};
+        int computed;
+        lock.writeLock().lock();
+        try {
+            changedWhileLoading = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            signatureDAO.forEach((postId, bytes) -> {
+                int[] signature = MinHash.fromBytes(bytes);
+                if (signature != null && loadedPut(postId, signature)) {
+                    stored[0]++;
+                }
+            });
+            computed = backfill();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedWhileLoading = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        loaded = true;
+        logger.info("Loaded {} post signatures and computed {} in {}ms",
+                stored[0], computed, System.currentTimeMillis() - start);
+    }
+
+
+     // Compute and store signatures for posts that have none or were edited since.
+     // @return the number of posts signed
+
+    public int backfill() throws SQLException {
+        int signed = 0;
+        int after = 0;
+        List<Post> page;
+        do {
+            page = signatureDAO.findUnsigned(after, BACKFILL_PAGE);
+            Map<Integer, byte[]> batch = new LinkedHashMap<>();
+            for (Post post : page) {
+                after = post.getPostId();
+                // Indexed or removed since this page was read: its row is out of date
+                if (changedDuringLoad(post.getPostId())) continue;
+                int[] signature = MinHash.signature(post.getContent());
+                if (signature != null) {
+                    if (loadedPut(post.getPostId(), signature)) {
+                        batch.put(post.getPostId(), MinHash.toBytes(signature));
+                    }
+                } else if (loadedRemove(post.getPostId())) {
+                    signatureDAO.delete(post.getPostId());
+                }
+            }
+            if (!batch.isEmpty()) {
+                signatureDAO.upsert(batch);
+                signed += batch.size();
+            }
+        } while (page.size() == BACKFILL_PAGE);
+        return signed;
+    }
+
+
+     // Compute, store and index the signature of a created or edited post.
+
+    public void index(int postId, String content) throws SQLException {
+        int[] signature = MinHash.signature(content);
+        if (signature == null) {
+            // A stored signature would be loaded again on the next start
+            if (signatureDAO != null) {
+                signatureDAO.delete(postId);
+            }
+            remove(postId);
+            return;
+        }
+        if (signatureDAO != null) {
+            signatureDAO.upsert(Collections.singletonMap(postId, MinHash.toBytes(signature)));
+        }
+        put(postId, signature);
+    }
+
+    public void put(int postId, int[] signature) {
+        lock.writeLock().lock();
+        try {
+            if (changedWhileLoading != null) {
+                changedWhileLoading.add(postId);
+            }
+            putLocked(postId, signature);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int postId) {
+        lock.writeLock().lock();
+        try {
+            if (changedWhileLoading != null) {
+                changedWhileLoading.add(postId);
+            }
+            removeLocked(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A signature read by load: skipped if the post changed since. Returns whether it was put
+    private boolean loadedPut(int postId, int[] signature) {
+        lock.writeLock().lock();
+        try {
+            if (changedWhileLoading != null && changedWhileLoading.contains(postId)) return false;
+            putLocked(postId, signature);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean loadedRemove(int postId) {
+        lock.writeLock().lock();
+        try {
+            if (changedWhileLoading != null && changedWhileLoading.contains(postId)) return false;
+            removeLocked(postId);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean changedDuringLoad(int postId) {
+        lock.readLock().lock();
+        try {
+            return changedWhileLoading != null && changedWhileLoading.contains(postId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putLocked(int postId, int[] signature) {
+        int[] previous = signatures.put(postId, signature);
+        if (previous != null) {
+            for (int band = 0; band < BANDS; band++) {
+                bands.remove(bandKey(previous, band), postId);
+            }
+        }
+        for (int band = 0; band < BANDS; band++) {
+            bands.put(bandKey(signature, band), postId);
+        }
+    }
+
+    private void removeLocked(int postId) {
+        int[] previous = signatures.remove(postId);
+        if (previous != null) {
+            for (int band = 0; band < BANDS; band++) {
+                bands.remove(bandKey(previous, band), postId);
+            }
+        }
+    }
+
+
+     // Indexed posts whose content overlaps the text by at least minSimilarity (estimated
+     // Jaccard similarity of 4-word shingles), most similar first.
+
+    public List<Match> findSimilar(CharSequence content, double minSimilarity, int excludePostId) {
+        int[] signature = MinHash.signature(content);
+        return signature == null ? new ArrayList<>() : findSimilar(signature, minSimilarity, excludePostId);
+    }
+
+    public List<Match> findSimilar(int[] signature, double minSimilarity, int excludePostId) {
+        List<Match> matches = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int band = 0; band < BANDS; band++) {
+                bands.forEach(bandKey(signature, band), postId -> {
+                    if (postId != excludePostId && seen.add(postId)) {
+                        double similarity = MinHash.similarity(signature, signatures.get(postId));
+                        if (similarity >= minSimilarity) {
+                            matches.add(new Match(postId, similarity));
+                        }
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingDouble(Match::getSimilarity).reversed()
+                .thenComparingInt(Match::getPostId));
+        return matches;
+    }
+
+
+     // Groups of two or more posts connected by pairs at least minSimilarity alike, largest
+     // group first. Every post only looks at its own LSH candidates, so the scan is close to
+     // linear in the number of posts rather than quadratic.
+
+    public List<List<Integer>> findClusters(double minSimilarity) {
+        Map<Integer, Integer> parent = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, int[]> entry : signatures.entrySet()) {
+                int postId = entry.getKey();
+                int[] signature = entry.getValue();
+                for (int band = 0; band < BANDS; band++) {
+                    bands.forEach(bandKey(signature, band), other -> {
+                        if (other > postId && find(parent, other) != find(parent, postId)
+                                && MinHash.similarity(signature, signatures.get(other)) >= minSimilarity) {
+                            parent.put(find(parent, other), find(parent, postId));
+                        }
+                    });
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        for (Integer postId : parent.keySet()) {
+            groups.computeIfAbsent(find(parent, postId), root -> new ArrayList<>()).add(postId);
+        }
+        List<List<Integer>> clusters = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            if (group.size() > 1) {
+                Collections.sort(group);
+                clusters.add(group);
+            }
+        }
+        clusters.sort(Comparator.<List<Integer>>comparingInt(List::size).reversed()
+                .thenComparing(group -> group.get(0)));
+        return clusters;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return signatures.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Union-find root with path halving; posts not seen yet are their own root
+    private static int find(Map<Integer, Integer> parent, int postId) {
+        int node = postId;
+        Integer up = parent.putIfAbsent(node, node);
+        while (up != null && up != node) {
+            Integer grandparent = parent.get(up);
+            parent.put(node, grandparent);
+            node = grandparent;
+            up = parent.get(node);
+        }
+        return node;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long h = 0xcbf29ce484222325L ^ band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            h = (h ^ (signature[row] & 0xffffffffL)) * 0x100000001b3L;
+        }
+        return h ^ (h >>> 31);
+    }
+
+
+     // A post similar to the query, with its estimated Jaccard similarity.
+
+    public static final class Match {
+        private final int postId;
+        private final double similarity;
+
+        public Match(int postId, double similarity) {
+            this.postId = postId;
+            this.similarity = similarity;
+        }
+
+        public int getPostId() {
+            return postId;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "post %d (%.0f%%)", postId, similarity * 100);
+        }
+    }
+}
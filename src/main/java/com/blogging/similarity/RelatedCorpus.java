@@ -0,0 +1,572 @@
+package com.blogging.similarity;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+ // Vectors, posting lists and precomputed neighbours behind RelatedPostsIndex.
+ //
+ // Every post gets a dense slot. Its text becomes an L2-normalised TF-IDF vector (title words
+ // count twice), truncated to its MAX_TEXT_TERMS strongest terms; its tags become a vector
+ // over tags, expanded with the tags they co-occur with in post_tags, weighted by
+ // co-occurrences / sqrt(df(a) * df(b)). Two posts score
+ // TEXT_WEIGHT * text cosine + TAG_WEIGHT * tag cosine.
+ //
+ // Candidates come from posting lists: each post is posted under its POSTED_TERMS strongest
+ // terms and under its tags, and lists longer than MAX_POSTING are skipped as too common to
+ // matter. Only candidates are scored, so computing a post's neighbours costs its posting
+ // lists, not the corpus.
+ //
+ // Each slot also keeps the slots whose neighbour lists contain it (listedBy), so that
+ // replacing or removing a post patches only those lists instead of scanning every list.
+ //
+ // Not thread-safe except computeAllNeighbours, which only reads shared state; callers lock.
+
+final class RelatedCorpus {
+    static final int TOP_N = 10;
+    private static final float TEXT_WEIGHT = 0.7f;
+    private static final float TAG_WEIGHT = 0.3f;
+    private static final float MIN_SCORE = 0.05f;
+    private static final int MAX_TEXT_TERMS = 64;
+    private static final int MAX_TAG_TERMS = 32;
+    private static final int POSTED_TERMS = 16;
+    private static final int MAX_POSTING = 5000;
+    private static final int MIN_TERM_LENGTH = 3;
+    private static final int FORK_THRESHOLD = 64;
+    private static final int[] NO_INTS = new int[0];
+    private static final float[] NO_FLOATS = new float[0];
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "for", "that", "with", "this", "are", "was", "you", "your", "have", "has",
+            "not", "but", "from", "they", "their", "will", "can", "all", "its", "our", "out", "about",
+            "into", "more", "when", "which", "what", "how", "there", "been", "also", "than", "then",
+            "them", "these", "those", "would", "could", "should", "just", "like", "some", "very"));
+
+    // Vocabulary, indexed by term id
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private int[] termDocs = new int[1024];
+    private IntList[] termPostings = new IntList[1024];
+
+    // Tags, by tag id
+    private final Map<Integer, Integer> tagDocs = new HashMap<>();
+    private final Map<Integer, Map<Integer, Integer>> tagPairs = new HashMap<>();
+    private final Map<Integer, IntList> tagPostings = new HashMap<>();
+
+    // Posts, indexed by slot; a deleted post leaves its slot empty (post id 0)
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    private int slotCount;
+    private int liveCount;
+    private int[] postIds = new int[256];
+    private String[] titles = new String[256];
+    private int[][] docTerms = new int[256][];
+    private int[][] docCounts = new int[256][];
+    private int[][] tagSets = new int[256][];
+    private int[][] postedTerms = new int[256][];
+    private SparseVector[] textVectors = new SparseVector[256];
+    private SparseVector[] tagVectors = new SparseVector[256];
+    private int[][] neighbours = new int[256][];
+    private float[][] neighbourScores = new float[256][];
+    // The reverse of neighbours: for each slot, the slots whose lists contain it
+    private IntList[] listedBy = new IntList[256];
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+
+     // Bulk loading: add a post's text. Vectors are built by finishLoading once every post
+     // and tag is in, so that they all use the same document frequencies.
+
+    void loadPost(int postId, String title, String content) {
+        int slot = allocate(postId, title);
+        countTerms(slot, title, content);
+    }
+
+    void loadTag(int postId, int tagId) {
+        Integer slot = slots.get(postId);
+        if (slot == null) return;
+        int[] tags = tagSets[slot];
+        tagSets[slot] = tags == null ? new int[] {tagId} : appendDistinct(tags, tagId);
+    }
+
+    void finishLoading() {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (postIds[slot] == 0) continue;
+            if (tagSets[slot] == null) tagSets[slot] = NO_INTS;
+            Arrays.sort(tagSets[slot]);
+            addTagStatistics(slot);
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (postIds[slot] == 0) continue;
+            buildVectors(slot);
+        }
+    }
+
+
+     // Precompute the neighbours of every post in parallel on the pool.
+
+    void computeAllNeighbours(ForkJoinPool pool) {
+        pool.invoke(new NeighbourTask(0, slotCount));
+        // The tasks write only their own slots' lists; the reverse lists are built after
+        for (int slot = 0; slot < slotCount; slot++) {
+            listedBy[slot] = null;
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            int[] list = neighbours[slot];
+            if (list == null) continue;
+            for (int other : list) {
+                link(other, slot);
+            }
+        }
+    }
+
+
+     // Add or replace a post and patch the neighbour lists it affects. tagIds null keeps the
+     // current tags. IDF weights of other posts are not recomputed; a rebuild does that.
+
+    void upsert(int postId, String title, String content, int[] tagIds) {
+        Integer existing = slots.get(postId);
+        int slot;
+        int[] tags;
+        if (existing != null) {
+            slot = existing;
+            tags = tagIds != null ? tagIds.clone() : tagSets[slot];
+            detach(slot);
+            titles[slot] = title;
+        } else {
+            slot = allocate(postId, title);
+            tags = tagIds != null ? tagIds.clone() : NO_INTS;
+        }
+        Arrays.sort(tags);
+        tagSets[slot] = tags;
+        countTerms(slot, title, content);
+        addTagStatistics(slot);
+        buildVectors(slot);
+
+        List<Integer> affected = dropFromNeighbourLists(slot);
+        int[][] own = {NO_INTS};
+        float[][] ownScores = {NO_FLOATS};
+        Scratch s = scratch.get();
+        collectCandidates(slot, s);
+        for (int i = 0; i < s.candidates.size(); i++) {
+            int other = s.candidates.get(i);
+            float score = score(slot, other);
+            if (score < MIN_SCORE) continue;
+            // Scores are symmetric: the post may also enter the candidate's list
+            offer(other, slot, score);
+            if (own[0].length < TOP_N || score > ownScores[0][own[0].length - 1]) {
+                insert(own, ownScores, other, score);
+            }
+        }
+        setNeighbours(slot, own[0], ownScores[0]);
+        refill(affected);
+    }
+
+
+     // Remove a post and refill the neighbour lists it was in.
+
+    void remove(int postId) {
+        Integer slot = slots.remove(postId);
+        if (slot == null) return;
+        detach(slot);
+        List<Integer> affected = dropFromNeighbourLists(slot);
+        postIds[slot] = 0;
+        titles[slot] = null;
+        textVectors[slot] = null;
+        tagVectors[slot] = null;
+        tagSets[slot] = null;
+        setNeighbours(slot, null, null);
+        liveCount--;
+        refill(affected);
+    }
+
+
+     // The precomputed neighbours of a post, best first, at most limit of them.
+
+    List<RelatedPostsIndex.Related> related(int postId, int limit) {
+        Integer slot = slots.get(postId);
+        List<RelatedPostsIndex.Related> related = new ArrayList<>();
+        if (slot == null || neighbours[slot] == null) return related;
+        int[] list = neighbours[slot];
+        for (int i = 0; i < list.length && related.size() < limit; i++) {
+            related.add(new RelatedPostsIndex.Related(postIds[list[i]], titles[list[i]], neighbourScores[slot][i]));
+        }
+        return related;
+    }
+
+    int size() {
+        return liveCount;
+    }
+
+    int vocabularySize() {
+        return termIds.size();
+    }
+
+    private int allocate(int postId, String title) {
+        if (slotCount == postIds.length) {
+            grow(slotCount * 2);
+        }
+        int slot = slotCount++;
+        slots.put(postId, slot);
+        postIds[slot] = postId;
+        titles[slot] = title;
+        liveCount++;
+        return slot;
+    }
+
+    private void grow(int capacity) {
+        postIds = Arrays.copyOf(postIds, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        docTerms = Arrays.copyOf(docTerms, capacity);
+        docCounts = Arrays.copyOf(docCounts, capacity);
+        tagSets = Arrays.copyOf(tagSets, capacity);
+        postedTerms = Arrays.copyOf(postedTerms, capacity);
+        textVectors = Arrays.copyOf(textVectors, capacity);
+        tagVectors = Arrays.copyOf(tagVectors, capacity);
+        neighbours = Arrays.copyOf(neighbours, capacity);
+        neighbourScores = Arrays.copyOf(neighbourScores, capacity);
+        listedBy = Arrays.copyOf(listedBy, capacity);
+    }
+
+    // Distinct terms of the post with their counts; updates document frequencies
+    private void countTerms(int slot, String title, String content) {
+        Map<Integer, int[]> counts = new HashMap<>();
+        addTerms(counts, title, 2);
+        addTerms(counts, content, 1);
+        int[] terms = new int[counts.size()];
+        int[] termCounts = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+            terms[i] = entry.getKey();
+            termCounts[i] = entry.getValue()[0];
+            termDocs[terms[i]]++;
+            i++;
+        }
+        docTerms[slot] = terms;
+        docCounts[slot] = termCounts;
+    }
+
+    private void addTerms(Map<Integer, int[]> counts, String text, int weight) {
+        if (text == null) return;
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean letter = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH) {
+                    String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+                    if (!STOP_WORDS.contains(term)) {
+                        counts.computeIfAbsent(termId(term), id -> new int[1])[0] += weight;
+                    }
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) return id;
+        int next = termIds.size();
+        if (next == termDocs.length) {
+            termDocs = Arrays.copyOf(termDocs, next * 2);
+            termPostings = Arrays.copyOf(termPostings, next * 2);
+        }
+        termIds.put(term, next);
+        return next;
+    }
+
+    private void addTagStatistics(int slot) {
+        int[] tags = tagSets[slot];
+        for (int i = 0; i < tags.length; i++) {
+            tagDocs.merge(tags[i], 1, Integer::sum);
+            tagPostings.computeIfAbsent(tags[i], t -> new IntList()).add(slot);
+            for (int j = 0; j < tags.length; j++) {
+                if (i != j) {
+                    tagPairs.computeIfAbsent(tags[i], t -> new HashMap<>()).merge(tags[j], 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    // Undo the statistics and postings of a post, before it is replaced or removed
+    private void detach(int slot) {
+        for (int term : docTerms[slot]) {
+            termDocs[term]--;
+        }
+        for (int term : postedTerms[slot]) {
+            termPostings[term].removeValue(slot);
+        }
+        int[] tags = tagSets[slot];
+        for (int i = 0; i < tags.length; i++) {
+            tagDocs.merge(tags[i], -1, Integer::sum);
+            tagPostings.get(tags[i]).removeValue(slot);
+            for (int j = 0; j < tags.length; j++) {
+                if (i != j) {
+                    tagPairs.get(tags[i]).merge(tags[j], -1, Integer::sum);
+                }
+            }
+        }
+        docTerms[slot] = NO_INTS;
+        docCounts[slot] = NO_INTS;
+        postedTerms[slot] = NO_INTS;
+    }
+
+    private void buildVectors(int slot) {
+        int[] terms = docTerms[slot];
+        float[] weights = new float[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            double idf = Math.log((1.0 + liveCount) / (1.0 + termDocs[terms[i]]));
+            weights[i] = (float) ((1 + Math.log(docCounts[slot][i])) * idf);
+        }
+        SparseVector text = SparseVector.of(terms, weights, terms.length, MAX_TEXT_TERMS);
+        textVectors[slot] = text;
+
+        // Post under the strongest terms; vectors are short, so a partial selection sort will do
+        int posted = Math.min(POSTED_TERMS, text.size());
+        int[] order = new int[text.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        int[] postedIds = new int[posted];
+        for (int k = 0; k < posted; k++) {
+            int best = k;
+            for (int i = k + 1; i < order.length; i++) {
+                if (text.weightAt(order[i]) > text.weightAt(order[best])) best = i;
+            }
+            int tmp = order[k];
+            order[k] = order[best];
+            order[best] = tmp;
+            postedIds[k] = text.dimensionAt(order[k]);
+            IntList list = termPostings[postedIds[k]];
+            if (list == null) {
+                list = termPostings[postedIds[k]] = new IntList();
+            }
+            list.add(slot);
+        }
+        postedTerms[slot] = postedIds;
+
+        tagVectors[slot] = tagVector(tagSets[slot]);
+    }
+
+    private SparseVector tagVector(int[] tags) {
+        if (tags.length == 0) return SparseVector.EMPTY;
+        Map<Integer, Float> expanded = new HashMap<>();
+        for (int tag : tags) {
+            expanded.merge(tag, 1f, Float::sum);
+            Map<Integer, Integer> pairs = tagPairs.get(tag);
+            if (pairs == null) continue;
+            double tagCount = tagDocs.getOrDefault(tag, 1);
+            for (Map.Entry<Integer, Integer> pair : pairs.entrySet()) {
+                int together = pair.getValue();
+                if (together <= 0) continue;
+                double otherCount = tagDocs.getOrDefault(pair.getKey(), 1);
+                expanded.merge(pair.getKey(), (float) (together / Math.sqrt(tagCount * otherCount)), Float::sum);
+            }
+        }
+        int[] dimensions = new int[expanded.size()];
+        float[] weights = new float[expanded.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Float> entry : expanded.entrySet()) {
+            dimensions[i] = entry.getKey();
+            weights[i++] = entry.getValue();
+        }
+        return SparseVector.of(dimensions, weights, i, MAX_TAG_TERMS);
+    }
+
+    private float score(int a, int b) {
+        return TEXT_WEIGHT * textVectors[a].dot(textVectors[b]) + TAG_WEIGHT * tagVectors[a].dot(tagVectors[b]);
+    }
+
+    // Distinct live slots sharing a posted term or a tag with the slot, into scratch.candidates
+    private void collectCandidates(int slot, Scratch s) {
+        s.reset(slotCount);
+        s.stamp[slot] = s.epoch;
+        for (int term : postedTerms[slot]) {
+            addCandidates(termPostings[term], s);
+        }
+        for (int tag : tagSets[slot]) {
+            addCandidates(tagPostings.get(tag), s);
+        }
+    }
+
+    private void addCandidates(IntList posting, Scratch s) {
+        if (posting == null || posting.size() > MAX_POSTING) return;
+        for (int i = 0; i < posting.size(); i++) {
+            int other = posting.get(i);
+            if (s.stamp[other] != s.epoch) {
+                s.stamp[other] = s.epoch;
+                s.candidates.add(other);
+            }
+        }
+    }
+
+    // linked keeps the reverse lists current; the parallel build leaves them to its caller
+    private void computeNeighbours(int slot, boolean linked) {
+        Scratch s = scratch.get();
+        collectCandidates(slot, s);
+        int[][] list = {NO_INTS};
+        float[][] scores = {NO_FLOATS};
+        for (int i = 0; i < s.candidates.size(); i++) {
+            int other = s.candidates.get(i);
+            float score = score(slot, other);
+            if (score >= MIN_SCORE && (list[0].length < TOP_N || score > scores[0][list[0].length - 1])) {
+                insert(list, scores, other, score);
+            }
+        }
+        if (linked) {
+            setNeighbours(slot, list[0], scores[0]);
+        } else {
+            neighbours[slot] = list[0];
+            neighbourScores[slot] = scores[0];
+        }
+    }
+
+    private void offer(int slot, int other, float score) {
+        int[] list = neighbours[slot];
+        if (list == null) return;
+        if (list.length == TOP_N && score <= neighbourScores[slot][TOP_N - 1]) return;
+        int[][] l = {list};
+        float[][] s = {neighbourScores[slot]};
+        insert(l, s, other, score);
+        setNeighbours(slot, l[0], s[0]);
+    }
+
+    // Replace a slot's neighbour list (null for none) and update the reverse lists of the
+    // slots that entered or left it. Lists are at most TOP_N long, so the diff is cheap
+    private void setNeighbours(int slot, int[] list, float[] scores) {
+        int[] old = neighbours[slot] == null ? NO_INTS : neighbours[slot];
+        int[] now = list == null ? NO_INTS : list;
+        for (int other : old) {
+            if (!contains(now, other)) listedBy[other].removeValue(slot);
+        }
+        for (int other : now) {
+            if (!contains(old, other)) link(other, slot);
+        }
+        neighbours[slot] = list;
+        neighbourScores[slot] = scores;
+    }
+
+    private void link(int listed, int slot) {
+        IntList reverse = listedBy[listed];
+        if (reverse == null) {
+            reverse = listedBy[listed] = new IntList();
+        }
+        reverse.add(slot);
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) return true;
+        }
+        return false;
+    }
+
+    // Insert into a list sorted by descending score, keeping at most TOP_N entries
+    private static void insert(int[][] list, float[][] scores, int other, float score) {
+        int[] oldList = list[0];
+        float[] oldScores = scores[0];
+        int size = Math.min(oldList.length + 1, TOP_N);
+        int[] newList = new int[size];
+        float[] newScores = new float[size];
+        int position = 0;
+        while (position < oldList.length && oldScores[position] >= score) position++;
+        System.arraycopy(oldList, 0, newList, 0, position);
+        System.arraycopy(oldScores, 0, newScores, 0, position);
+        if (position < size) {
+            newList[position] = other;
+            newScores[position] = score;
+            int tail = size - position - 1;
+            System.arraycopy(oldList, position, newList, position + 1, tail);
+            System.arraycopy(oldScores, position, newScores, position + 1, tail);
+        }
+        list[0] = newList;
+        scores[0] = newScores;
+    }
+
+    // Remove the slot from the neighbour lists that contain it; returns the slots that
+    // listed it, whose lists are refilled if nothing better comes along
+    private List<Integer> dropFromNeighbourLists(int slot) {
+        List<Integer> affected = new ArrayList<>();
+        IntList reverse = listedBy[slot];
+        if (reverse == null) return affected;
+        for (int r = 0; r < reverse.size(); r++) {
+            int other = reverse.get(r);
+            int[] list = neighbours[other];
+            if (list == null) continue;
+            for (int i = 0; i < list.length; i++) {
+                if (list[i] == slot) {
+                    int[] newList = new int[list.length - 1];
+                    float[] newScores = new float[list.length - 1];
+                    System.arraycopy(list, 0, newList, 0, i);
+                    System.arraycopy(list, i + 1, newList, i, list.length - i - 1);
+                    System.arraycopy(neighbourScores[other], 0, newScores, 0, i);
+                    System.arraycopy(neighbourScores[other], i + 1, newScores, i, list.length - i - 1);
+                    neighbours[other] = newList;
+                    neighbourScores[other] = newScores;
+                    affected.add(other);
+                    break;
+                }
+            }
+        }
+        reverse.clear();
+        return affected;
+    }
+
+    private void refill(List<Integer> affected) {
+        for (int slot : affected) {
+            if (postIds[slot] != 0 && neighbours[slot] != null && neighbours[slot].length < TOP_N) {
+                computeNeighbours(slot, true);
+            }
+        }
+    }
+
+    private static int[] appendDistinct(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) return values;
+        }
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    // Per-thread candidate set: a slot is a candidate when its stamp equals the current epoch
+    private static final class Scratch {
+        int[] stamp = NO_INTS;
+        int epoch;
+        IntList candidates = new IntList(256);
+
+        void reset(int slotCount) {
+            if (stamp.length < slotCount) {
+                stamp = new int[Math.max(slotCount, stamp.length * 2)];
+                epoch = 0;
+            }
+            epoch++;
+            candidates.clear();
+        }
+    }
+
+    private final class NeighbourTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        NeighbourTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= FORK_THRESHOLD) {
+                for (int slot = from; slot < to; slot++) {
+                    if (postIds[slot] != 0) {
+                        computeNeighbours(slot, false);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new NeighbourTask(from, middle), new NeighbourTask(middle, to));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.blogging.similarity;
+
+import com.blogging.dao.PostDAO;
+import com.blogging.dao.TagDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+ // Related-posts recommendations: the top neighbours of every post by TF-IDF text similarity
+ // and tag co-occurrence (see RelatedCorpus for the scoring), precomputed so that the post
+ // view gets its recommendations with one in-memory lookup.
+ //
+ // A full build streams every post and post_tags row once and computes all neighbour lists
+ // in parallel on the common fork-join pool, on a background thread. Creating, editing or
+ // deleting a post patches only the lists it affects. Those patches use the document
+ // frequencies of the last build, so after enough changes (10% of the posts, at least 200)
+ // a fresh build is started in the background. Changes made while a build runs are replayed
+ // on the new corpus before it replaces the old one.
+
+public class RelatedPostsIndex {
+    private static final Logger logger = LoggerFactory.getLogger(RelatedPostsIndex.class);
+    private static final int MIN_CHANGES_BEFORE_REBUILD = 200;
+    private static volatile RelatedPostsIndex instance;
+
+    private final PostDAO postDAO;
+    private final TagDAO tagDAO;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private RelatedCorpus corpus = new RelatedCorpus();
+    private List<Change> changesDuringBuild;
+    private int changesSinceBuild;
+    private boolean building;
+
+    public RelatedPostsIndex(PostDAO postDAO, TagDAO tagDAO) {
+        this.postDAO = postDAO;
+        this.tagDAO = tagDAO;
+    }
+
+
+     // Shared index used by PostService, built in the background on first use.
+
+    public static RelatedPostsIndex getInstance() {
+        RelatedPostsIndex index = instance;
+        if (index == null) {
+            synchronized (RelatedPostsIndex.class) {
+                index = instance;
+                if (index == null) {
+                    index = new RelatedPostsIndex(new PostDAO(), new TagDAO());
+                    index.rebuildInBackground();
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+
+     // Build a new corpus from the database and swap it in.
+
+    public void rebuild() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (building) return;
+            building = true;
+            changesDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        RelatedCorpus fresh = null;
+        try {
+            long start = System.currentTimeMillis();
+            RelatedCorpus loading = new RelatedCorpus();
+            postDAO.forEachText(loading::loadPost);
+            tagDAO.forEachPostTag(loading::loadTag);
+            loading.finishLoading();
+            long loaded = System.currentTimeMillis();
+            loading.computeAllNeighbours(ForkJoinPool.commonPool());
+            fresh = loading;
+            logger.info("Related posts built for {} posts ({} terms): loaded in {}ms, neighbours in {}ms",
+                    fresh.size(), fresh.vocabularySize(), loaded - start, System.currentTimeMillis() - loaded);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (fresh != null) {
+                    for (Change change : changesDuringBuild) {
+                        change.applyTo(fresh);
+                    }
+                    corpus = fresh;
+                    changesSinceBuild = 0;
+                }
+                changesDuringBuild = null;
+                building = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+
+     // The recommended posts for a post, best first.
+
+    public List<Related> getRelated(int postId, int limit) {
+        lock.readLock().lock();
+        try {
+            return corpus.related(postId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+     // A post was created or edited. tagIds null means its tags did not change.
+
+    public void postSaved(int postId, String title, String content, int[] tagIds) {
+        apply(target -> target.upsert(postId, title, content, tagIds));
+    }
+
+    public void postDeleted(int postId) {
+        apply(target -> target.remove(postId));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return corpus.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Change change) {
+        boolean rebuildNow;
+        lock.writeLock().lock();
+        try {
+            change.applyTo(corpus);
+            if (changesDuringBuild != null) {
+                changesDuringBuild.add(change);
+            }
+            changesSinceBuild++;
+            rebuildNow = !building
+                    && changesSinceBuild >= Math.max(MIN_CHANGES_BEFORE_REBUILD, corpus.size() / 10);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (rebuildNow) {
+            rebuildInBackground();
+        }
+    }
+
+    private void rebuildInBackground() {
+        Thread builder = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception | LinkageError e) {
+                logger.warn("Could not build related posts: {}", e.getMessage());
+            }
+        }, "related-posts-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private interface Change {
+        void applyTo(RelatedCorpus corpus);
+    }
+
+
+     // A recommended post: id and title for display, and its similarity score.
+
+    public static final class Related {
+        private final int postId;
+        private final String title;
+        private final float score;
+
+        public Related(int postId, String title, float score) {
+            this.postId = postId;
+            this.title = title;
+            this.score = score;
+        }
+
+        public int getPostId() {
+            return postId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public float getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s (%.2f)", title, score);
+        }
+    }
+}
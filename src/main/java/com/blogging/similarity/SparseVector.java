@@ -0,0 +1,88 @@
+package com.blogging.similarity;
+
+import java.util.Arrays;
+
+
+ // Immutable L2-normalised sparse vector: ascending dimension ids and their weights in two
+ // parallel primitive arrays, so a dot product is a merge of two sorted int arrays.
+
+final class SparseVector {
+    static final SparseVector EMPTY = new SparseVector(new int[0], new float[0]);
+
+    private final int[] dimensions;
+    private final float[] weights;
+
+    private SparseVector(int[] dimensions, float[] weights) {
+        this.dimensions = dimensions;
+        this.weights = weights;
+    }
+
+
+     // Vector of the first length (dimension, weight) pairs, keeping only the maxSize largest
+     // positive weights, normalised to unit length. Dimensions must be distinct.
+
+    static SparseVector of(int[] dimensions, float[] weights, int length, int maxSize) {
+        // Positive floats order like their bit patterns, so (weight, position) packs into a sortable long
+        long[] byWeight = new long[length];
+        int positive = 0;
+        for (int i = 0; i < length; i++) {
+            if (weights[i] > 0) {
+                byWeight[positive++] = (long) Float.floatToIntBits(weights[i]) << 32 | i;
+            }
+        }
+        Arrays.sort(byWeight, 0, positive);
+        int size = Math.min(positive, maxSize);
+        long[] byDimension = new long[size];
+        for (int k = 0; k < size; k++) {
+            int i = (int) byWeight[positive - 1 - k];
+            byDimension[k] = (long) dimensions[i] << 32 | i;
+        }
+        Arrays.sort(byDimension);
+
+        int[] keptDimensions = new int[size];
+        float[] keptWeights = new float[size];
+        double norm = 0;
+        for (int k = 0; k < size; k++) {
+            int i = (int) byDimension[k];
+            keptDimensions[k] = dimensions[i];
+            keptWeights[k] = weights[i];
+            norm += (double) weights[i] * weights[i];
+        }
+        if (size == 0) return EMPTY;
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int k = 0; k < size; k++) {
+            keptWeights[k] *= scale;
+        }
+        return new SparseVector(keptDimensions, keptWeights);
+    }
+
+    float dot(SparseVector other) {
+        int[] a = dimensions;
+        int[] b = other.dimensions;
+        float sum = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                sum += weights[i++] * other.weights[j++];
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    int size() {
+        return dimensions.length;
+    }
+
+    int dimensionAt(int k) {
+        return dimensions[k];
+    }
+
+    float weightAt(int k) {
+        return weights[k];
+    }
+}
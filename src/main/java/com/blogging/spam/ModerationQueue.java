@@ -0,0 +1,233 @@
+package com.blogging.spam;
+
+import com.blogging.dao.CommentDAO;
+import com.blogging.model.Comment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+ // Asynchronous moderation stage for new comments.
+ //
+ // CommentService stores new comments as PENDING and hands them to this queue; a single worker
+ // thread drains it in batches, scores each comment with the SpamClassifier and writes all
+ // decisions of a batch with one JDBC batch update. Comments that do not fit in the queue, or
+ // whose update failed, stay PENDING in the database and are picked up again by the worker
+ // when it is idle, so nothing is lost if the application stops mid-way.
+ //
+ // Moderator decisions train the classifier; the model is saved to -Dspam.model.file
+ // (default data/spam-model.bin) at most every 30 seconds and on shutdown.
+
+public class ModerationQueue {
+    private static final Logger logger = LoggerFactory.getLogger(ModerationQueue.class);
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 256;
+    private static final double SPAM_THRESHOLD = 0.95;
+    private static final int MIN_TRAINING_DOCUMENTS = 20;
+    private static final long SAVE_INTERVAL_MILLIS = 30_000;
+    private static volatile ModerationQueue instance;
+
+    private final CommentDAO commentDAO;
+    private final SpamClassifier classifier;
+    private final Path modelFile;
+    private final BlockingQueue<Comment> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong approved = new AtomicLong();
+    private final AtomicLong flagged = new AtomicLong();
+    private final AtomicLong trainedSinceSave = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean backlog = true;
+    private volatile boolean running = true;
+    private volatile long lastSave = System.currentTimeMillis();
+
+    public ModerationQueue(CommentDAO commentDAO, SpamClassifier classifier, Path modelFile) {
+        this.commentDAO = commentDAO;
+        this.classifier = classifier;
+        this.modelFile = modelFile;
+        this.worker = new Thread(this::run, "comment-moderation");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+
+     // Shared queue used by CommentService, created on first use with the saved model.
+
+    public static ModerationQueue getInstance() {
+        ModerationQueue queue = instance;
+        if (queue == null) {
+            synchronized (ModerationQueue.class) {
+                queue = instance;
+                if (queue == null) {
+                    Path modelFile = Paths.get(System.getProperty("spam.model.file", "data/spam-model.bin"));
+                    queue = new ModerationQueue(new CommentDAO(), loadModel(modelFile), modelFile);
+                    instance = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+
+     // Stop the shared queue, if it was started, and save the model.
+
+    public static void shutdown() {
+        ModerationQueue queue = instance;
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+
+     // Queue a freshly stored PENDING comment for classification. Never blocks.
+
+    public void submit(Comment comment) {
+        if (!queue.offer(comment)) {
+            // Still PENDING in the database; the worker sweeps it up once the queue drains
+            backlog = true;
+        }
+    }
+
+
+     // Learn from a moderator decision.
+
+    public void train(String content, boolean spam) {
+        classifier.train(content, spam);
+        trainedSinceSave.incrementAndGet();
+    }
+
+
+     // Forget a moderator decision that was reversed.
+
+    public void untrain(String content, boolean spam) {
+        classifier.untrain(content, spam);
+        trainedSinceSave.incrementAndGet();
+    }
+
+    public SpamClassifier getClassifier() {
+        return classifier;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getApprovedCount() {
+        return approved.get();
+    }
+
+    public long getFlaggedCount() {
+        return flagged.get();
+    }
+
+    public void close() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveModel();
+    }
+
+    private void run() {
+        List<Comment> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                Comment first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                } else if (backlog) {
+                    loadBacklog(batch);
+                }
+                if (!batch.isEmpty()) {
+                    moderate(batch);
+                    batch.clear();
+                }
+                if (trainedSinceSave.get() > 0 && System.currentTimeMillis() - lastSave >= SAVE_INTERVAL_MILLIS) {
+                    saveModel();
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Comment moderation failed", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void loadBacklog(List<Comment> batch) {
+        try {
+            batch.addAll(commentDAO.findPending(BATCH_SIZE));
+            backlog = batch.size() == BATCH_SIZE;
+        } catch (SQLException e) {
+            logger.warn("Could not load pending comments: {}", e.getMessage());
+        }
+    }
+
+    private void moderate(List<Comment> batch) {
+        boolean trained = classifier.isTrained(MIN_TRAINING_DOCUMENTS);
+        for (Comment comment : batch) {
+            if (trained) {
+                double score = classifier.spamProbability(comment.getContent());
+                comment.setSpamScore(score);
+                comment.setStatus(score >= SPAM_THRESHOLD ? Comment.STATUS_SPAM : Comment.STATUS_APPROVED);
+            } else {
+                // Not enough moderator decisions yet to trust the model
+                comment.setSpamScore(null);
+                comment.setStatus(Comment.STATUS_APPROVED);
+            }
+        }
+        try {
+            commentDAO.updateModeration(batch);
+            for (Comment comment : batch) {
+                if (Comment.STATUS_SPAM.equals(comment.getStatus())) {
+                    flagged.incrementAndGet();
+                    logger.info("Comment {} held as spam (score {})", comment.getCommentId(), comment.getSpamScore());
+                } else {
+                    approved.incrementAndGet();
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to store moderation results for {} comments, will retry", batch.size(), e);
+            backlog = true;
+        }
+    }
+
+    private synchronized void saveModel() {
+        if (modelFile == null || trainedSinceSave.get() == 0) return;
+        long trained = trainedSinceSave.getAndSet(0);
+        try {
+            classifier.save(modelFile);
+            lastSave = System.currentTimeMillis();
+        } catch (IOException e) {
+            trainedSinceSave.addAndGet(trained);
+            logger.error("Failed to save spam model to {}", modelFile, e);
+        }
+    }
+
+    private static SpamClassifier loadModel(Path modelFile) {
+        if (Files.exists(modelFile)) {
+            try {
+                SpamClassifier classifier = SpamClassifier.load(modelFile);
+                logger.info("Loaded spam model from {} ({} spam / {} ham documents, {} tokens)", modelFile,
+                        classifier.getSpamDocs(), classifier.getHamDocs(), classifier.getVocabularySize());
+                return classifier;
+            } catch (IOException e) {
+                logger.error("Failed to load spam model from {}, starting untrained", modelFile, e);
+            }
+        }
+        return new SpamClassifier();
+    }
+}
@@ -0,0 +1,249 @@
+package com.blogging.spam;
+
+import com.blogging.dao.CommentDAO;
+import com.blogging.model.Comment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+ // In-memory index of recent comment SimHash fingerprints for near-duplicate lookups.
+ //
+ // Multi-index hashing: each fingerprint is split into BANDS 8-bit bands and every band has
+ // its own table. Two fingerprints within MAX_DISTANCE bits of each other agree exactly on at
+ // least one band (pigeonhole), so a lookup only compares against the entries that share a
+ // band value with the query instead of scanning the whole window.
+ //
+ // Every comment gets a sequence number; a ring buffer of fixed capacity holds the time and
+ // comment id per sequence. Each band bucket keeps (fingerprint, sequence) pairs in two
+ // contiguous arrays in insertion order, so a lookup is a linear scan from the newest entry
+ // back to the oldest sequence still inside both the window and the ring buffer. Entries
+ // behind that point are dead and are dropped when their bucket fills up, and all buckets are
+ // compacted once per capacity insertions, which keeps memory bounded.
+
+public final class NearDuplicateIndex {
+    private static final Logger logger = LoggerFactory.getLogger(NearDuplicateIndex.class);
+    public static final int MAX_DISTANCE = 7;
+    private static final int BANDS = MAX_DISTANCE + 1;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final int BUCKETS = 1 << BAND_BITS;
+    private static final int INITIAL_BUCKET_SIZE = 8;
+    private static volatile NearDuplicateIndex instance;
+
+    private final long windowMillis;
+    private final int capacity;
+    private final long[] times;
+    private final int[] commentIds;
+    private final long[][] bucketFingerprints = new long[BANDS * BUCKETS][];
+    private final long[][] bucketSequences = new long[BANDS * BUCKETS][];
+    private final int[] bucketSizes = new int[BANDS * BUCKETS];
+    private long nextSequence;
+    private long lastTime = Long.MIN_VALUE;
+
+    public NearDuplicateIndex(int capacity, long window, TimeUnit unit) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.windowMillis = unit.toMillis(window);
+        this.times = new long[capacity];
+        this.commentIds = new int[capacity];
+        for (int i = 0; i < bucketFingerprints.length; i++) {
+            bucketFingerprints[i] = new long[INITIAL_BUCKET_SIZE];
+            bucketSequences[i] = new long[INITIAL_BUCKET_SIZE];
+        }
+    }
+
+
+     // Shared index used by CommentService, warmed with the comments of the last window.
+     // Sized by spam.duplicate.capacity (default 100000) and spam.duplicate.window.hours (default 6).
+
+    public static NearDuplicateIndex getInstance() {
+        NearDuplicateIndex index = instance;
+        if (index == null) {
+            synchronized (NearDuplicateIndex.class) {
+                index = instance;
+                if (index == null) {
+                    index = new NearDuplicateIndex(Integer.getInteger("spam.duplicate.capacity", 100_000),
+                            Long.getLong("spam.duplicate.window.hours", 6), TimeUnit.HOURS);
+                    index.warmUp(new CommentDAO());
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+
+     // Add a stored comment's fingerprint. Times must not go backwards; an earlier time is
+     // recorded as the latest time seen so sequence order stays time order.
+
+    public synchronized void add(long fingerprint, int commentId, long timeMillis) {
+        if (fingerprint == SimHash.NONE) return;
+        long sequence = nextSequence++;
+        int slot = (int) (sequence % capacity);
+        lastTime = Math.max(lastTime, timeMillis);
+        times[slot] = lastTime;
+        commentIds[slot] = commentId;
+        long oldest = -1;
+        for (int band = 0; band < BANDS; band++) {
+            int bucket = bucket(fingerprint, band);
+            int size = bucketSizes[bucket];
+            if (size == bucketSequences[bucket].length) {
+                if (oldest < 0) {
+                    oldest = oldestLive(lastTime);
+                }
+                size = compact(bucket, oldest, true);
+            }
+            bucketFingerprints[bucket][size] = fingerprint;
+            bucketSequences[bucket][size] = sequence;
+            bucketSizes[bucket] = size + 1;
+        }
+        if (nextSequence % capacity == 0) {
+            long live = oldestLive(lastTime);
+            for (int bucket = 0; bucket < bucketSizes.length; bucket++) {
+                compact(bucket, live, false);
+            }
+        }
+    }
+
+
+     // Number of indexed comments within MAX_DISTANCE bits of the fingerprint and inside the
+     // window ending at nowMillis, counting at most limit of them.
+
+    public synchronized int countNear(long fingerprint, long nowMillis, int limit) {
+        if (fingerprint == SimHash.NONE) return 0;
+        long oldest = oldestLive(nowMillis);
+        int count = 0;
+        for (int band = 0; band < BANDS && count < limit; band++) {
+            int bucket = bucket(fingerprint, band);
+            long[] fingerprints = bucketFingerprints[bucket];
+            long[] sequences = bucketSequences[bucket];
+            for (int i = bucketSizes[bucket] - 1; i >= 0 && count < limit && sequences[i] >= oldest; i--) {
+                long candidate = fingerprints[i];
+                // Entries sharing an earlier band were already counted there
+                if (SimHash.distance(candidate, fingerprint) <= MAX_DISTANCE
+                        && !sharesBandBefore(candidate, fingerprint, band)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+
+     // Most recent indexed comment within MAX_DISTANCE bits inside the window, or -1.
+
+    public synchronized int findNear(long fingerprint, long nowMillis) {
+        if (fingerprint == SimHash.NONE) return -1;
+        long best = Math.max(oldestLive(nowMillis) - 1, -1);
+        boolean found = false;
+        for (int band = 0; band < BANDS; band++) {
+            int bucket = bucket(fingerprint, band);
+            long[] fingerprints = bucketFingerprints[bucket];
+            long[] sequences = bucketSequences[bucket];
+            for (int i = bucketSizes[bucket] - 1; i >= 0 && sequences[i] > best; i--) {
+                if (SimHash.distance(fingerprints[i], fingerprint) <= MAX_DISTANCE) {
+                    best = sequences[i];
+                    found = true;
+                    break;
+                }
+            }
+        }
+        return found ? commentIds[(int) (best % capacity)] : -1;
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(nextSequence, capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    // First sequence still in the ring buffer and inside the window ending at nowMillis.
+    // Times are non-decreasing in sequence order, so this is a binary search over the ring.
+    private long oldestLive(long nowMillis) {
+        long cutoff = nowMillis - windowMillis;
+        long low = Math.max(0, nextSequence - capacity);
+        long high = nextSequence;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (times[(int) (mid % capacity)] < cutoff) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Drop dead entries from the front of a bucket. When making room for an insert, grow the
+    // bucket if it is still more than half full; otherwise shrink buckets left mostly empty.
+    private int compact(int bucket, long oldest, boolean forInsert) {
+        long[] fingerprints = bucketFingerprints[bucket];
+        long[] sequences = bucketSequences[bucket];
+        int size = bucketSizes[bucket];
+        int dead = 0;
+        while (dead < size && sequences[dead] < oldest) {
+            dead++;
+        }
+        int live = size - dead;
+        int length = sequences.length;
+        if (forInsert && live * 2 > length) {
+            length *= 2;
+        } else if (!forInsert && length > INITIAL_BUCKET_SIZE && live * 4 < length) {
+            length = Math.max(INITIAL_BUCKET_SIZE, Integer.highestOneBit(Math.max(1, live)) * 2);
+        }
+        if (length != sequences.length) {
+            bucketFingerprints[bucket] = Arrays.copyOfRange(fingerprints, dead, dead + length);
+            bucketSequences[bucket] = Arrays.copyOfRange(sequences, dead, dead + length);
+        } else if (dead > 0) {
+            System.arraycopy(fingerprints, dead, fingerprints, 0, live);
+            System.arraycopy(sequences, dead, sequences, 0, live);
+        }
+        bucketSizes[bucket] = live;
+        return live;
+    }
+
+    private void warmUp(CommentDAO commentDAO) {
+        LocalDateTime since = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(windowMillis));
+        try {
+            List<Comment> recent = commentDAO.findCreatedSince(since, capacity);
+            ZoneId zone = ZoneId.systemDefault();
+            for (int i = recent.size() - 1; i >= 0; i--) {
+                Comment comment = recent.get(i);
+                add(SimHash.fingerprint(comment.getContent()), comment.getCommentId(),
+                        comment.getCreatedAt().atZone(zone).toInstant().toEpochMilli());
+            }
+            logger.info("Near-duplicate index warmed with {} recent comments", recent.size());
+        } catch (SQLException e) {
+            logger.warn("Could not load recent comments for the near-duplicate index: {}", e.getMessage());
+        }
+    }
+
+    private static boolean sharesBandBefore(long a, long b, int band) {
+        for (int i = 0; i < band; i++) {
+            if (bandValue(a, i) == bandValue(b, i)) return true;
+        }
+        return false;
+    }
+
+    private static int bucket(long fingerprint, int band) {
+        return band * BUCKETS + bandValue(fingerprint, band);
+    }
+
+    private static int bandValue(long fingerprint, int band) {
+        return (int) (fingerprint >>> (band * BAND_BITS)) & (BUCKETS - 1);
+    }
+}
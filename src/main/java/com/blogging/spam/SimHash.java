@@ -0,0 +1,51 @@
+package com.blogging.spam;
+
+
+ // 64-bit SimHash fingerprints of comment text.
+ //
+ // Features are the SpamClassifier word hashes, so swapping, adding or dropping a word or two
+ // moves only a few bits of the fingerprint. Word pairs are left out on purpose: every changed
+ // word would disturb two more features, which on comment-sized texts pushes small edits past
+ // the index's distance limit. Texts with fewer than MIN_FEATURES words are too short for the
+ // fingerprint to mean anything and get NONE.
+
+public final class SimHash {
+    public static final long NONE = 0L;
+    static final int MIN_FEATURES = 6;
+
+    private SimHash() {
+    }
+
+    public static long fingerprint(CharSequence text) {
+        long[] features = SpamClassifier.tokenize(text, false);
+        if (features.length < MIN_FEATURES) return NONE;
+        int[] weights = new int[64];
+        for (long feature : features) {
+            long h = mix(feature);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += (int) ((h >>> bit) & 1L) * 2 - 1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint == NONE ? 1L : fingerprint;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // FNV hashes have weak high bits; a 64-bit finalizer spreads every input bit over all outputs
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
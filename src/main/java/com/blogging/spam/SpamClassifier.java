@@ -0,0 +1,249 @@
+package com.blogging.spam;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+ // Incremental multinomial Naive Bayes spam classifier over word and word-pair tokens.
+ //
+ // Tokens are case-folded runs of letters and digits, hashed to 64 bits while scanning (no
+ // substrings are created), plus a hash of each adjacent pair. Counts live in a TokenCounts
+ // open-addressing table, so scoring a comment is one hash probe per token. Training is
+ // incremental: every moderator decision adds the comment's tokens to one class, and a
+ // reversed decision takes them out again (untrain).
+ //
+ // Model file: MAGIC, document and token totals per class, entry count, then
+ // (token hash, spam count, ham count) per token, 16 bytes each.
+
+public final class SpamClassifier {
+    private static final byte[] MAGIC = {'B', 'L', 'G', 'N', 'B', '0', '0', '1'};
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 32;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TokenCounts counts;
+    private long spamDocs;
+    private long hamDocs;
+    private long spamTokens;
+    private long hamTokens;
+
+    public SpamClassifier() {
+        this(new TokenCounts(1 << 12));
+    }
+
+    private SpamClassifier(TokenCounts counts) {
+        this.counts = counts;
+    }
+
+
+     // Add a labelled comment to the model.
+
+    public void train(CharSequence text, boolean spam) {
+        long[] tokens = tokenize(text);
+        lock.writeLock().lock();
+        try {
+            for (long token : tokens) {
+                counts.add(token, spam ? 1 : 0, spam ? 0 : 1);
+            }
+            if (spam) {
+                spamDocs++;
+                spamTokens += tokens.length;
+            } else {
+                hamDocs++;
+                hamTokens += tokens.length;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+     // Take a labelled comment out of the model again, when its label is reversed. Counts
+     // stop at zero, so untraining text that was never trained cannot make them negative.
+
+    public void untrain(CharSequence text, boolean spam) {
+        long[] tokens = tokenize(text);
+        lock.writeLock().lock();
+        try {
+            for (long token : tokens) {
+                counts.add(token, spam ? -1 : 0, spam ? 0 : -1);
+            }
+            if (spam) {
+                spamDocs = Math.max(0, spamDocs - 1);
+                spamTokens = Math.max(0, spamTokens - tokens.length);
+            } else {
+                hamDocs = Math.max(0, hamDocs - 1);
+                hamTokens = Math.max(0, hamTokens - tokens.length);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+     // Probability that the text is spam, 0.5 when the model knows nothing about it.
+     // Tokens never seen in training are ignored.
+
+    public double spamProbability(CharSequence text) {
+        long[] tokens = tokenize(text);
+        lock.readLock().lock();
+        try {
+            if (spamDocs == 0 || hamDocs == 0) return 0.5;
+            double vocabulary = counts.size();
+            double spamDenominator = Math.log(spamTokens + vocabulary);
+            double hamDenominator = Math.log(hamTokens + vocabulary);
+            double logOdds = Math.log(spamDocs + 1.0) - Math.log(hamDocs + 1.0);
+            for (long token : tokens) {
+                int index = counts.indexOf(token);
+                if (index < 0) continue;
+                logOdds += Math.log(counts.spamAt(index) + 1.0) - spamDenominator
+                        - Math.log(counts.hamAt(index) + 1.0) + hamDenominator;
+            }
+            return 1.0 / (1.0 + Math.exp(-logOdds));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+     // True once both classes have at least the given number of training documents.
+
+    public boolean isTrained(int minDocumentsPerClass) {
+        lock.readLock().lock();
+        try {
+            return spamDocs >= minDocumentsPerClass && hamDocs >= minDocumentsPerClass;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getSpamDocs() {
+        lock.readLock().lock();
+        try {
+            return spamDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHamDocs() {
+        lock.readLock().lock();
+        try {
+            return hamDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getVocabularySize() {
+        lock.readLock().lock();
+        try {
+            return counts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+     // Write the model to a temporary file and move it into place, so a crash
+     // mid-write never leaves a truncated model behind.
+
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeLong(spamDocs);
+            out.writeLong(hamDocs);
+            out.writeLong(spamTokens);
+            out.writeLong(hamTokens);
+            out.writeInt(counts.size());
+            for (int i = 0; i < counts.capacity(); i++) {
+                long key = counts.keyAt(i);
+                if (key == 0 || (counts.spamAt(i) == 0 && counts.hamAt(i) == 0)) continue;
+                out.writeLong(key);
+                out.writeInt(counts.spamAt(i));
+                out.writeInt(counts.hamAt(i));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static SpamClassifier load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not a spam model file");
+            }
+            long spamDocs = in.readLong();
+            long hamDocs = in.readLong();
+            long spamTokens = in.readLong();
+            long hamTokens = in.readLong();
+            int size = in.readInt();
+            SpamClassifier classifier = new SpamClassifier(new TokenCounts(size));
+            for (int i = 0; i < size; i++) {
+                classifier.counts.add(in.readLong(), in.readInt(), in.readInt());
+            }
+            classifier.spamDocs = spamDocs;
+            classifier.hamDocs = hamDocs;
+            classifier.spamTokens = spamTokens;
+            classifier.hamTokens = hamTokens;
+            return classifier;
+        }
+    }
+
+
+     // Word hashes in text order, each word after the first preceded by the hash of the pair
+     // it ends (with pairs off, only the word hashes).
+
+    static long[] tokenize(CharSequence text) {
+        return tokenize(text, true);
+    }
+
+    static long[] tokenize(CharSequence text, boolean pairs) {
+        int length = text == null ? 0 : text.length();
+        long[] tokens = new long[length + 1];
+        int count = 0;
+        long hash = FNV_OFFSET;
+        int tokenLength = 0;
+        long previous = 0;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                tokenLength++;
+            } else if (tokenLength > 0) {
+                if (tokenLength >= MIN_TOKEN_LENGTH && tokenLength <= MAX_TOKEN_LENGTH) {
+                    if (pairs && previous != 0 && count + 1 < tokens.length) {
+                        tokens[count++] = (previous * 31 + hash) * FNV_PRIME;
+                    }
+                    if (count < tokens.length) {
+                        tokens[count++] = hash;
+                    }
+                    previous = hash;
+                }
+                hash = FNV_OFFSET;
+                tokenLength = 0;
+            }
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+}
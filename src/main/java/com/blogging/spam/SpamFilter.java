@@ -0,0 +1,180 @@
+package com.blogging.spam;
+
+import com.blogging.dao.SpamRuleDAO;
+import com.blogging.model.SpamRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+ // Spam rule matching with hot-reloadable rules.
+ //
+ // Rules come from the file named by -Dspam.rules.file if set, otherwise from the spam_rules
+ // table; when the source is unavailable or empty, the bundled spam-rules.txt is used. The source
+ // is polled every spam.rules.refresh.seconds (default 30) and recompiled when it changes. The
+ // new automaton is swapped in atomically, so matching never blocks on a reload and a broken
+ // rule set leaves the previous one in place.
+
+public class SpamFilter {
+    private static final Logger logger = LoggerFactory.getLogger(SpamFilter.class);
+    private static final long REFRESH_SECONDS = Long.getLong("spam.rules.refresh.seconds", 30);
+    private static volatile SpamFilter instance;
+
+    private final RuleSource source;
+    private volatile SpamMatcher matcher;
+    private String loadedVersion;
+
+    public SpamFilter(SpamMatcher matcher) {
+        this(null, matcher);
+    }
+
+    private SpamFilter(RuleSource source, SpamMatcher matcher) {
+        this.source = source;
+        this.matcher = matcher;
+    }
+
+
+     // Shared filter used by CommentService, created and loaded on first use.
+
+    public static SpamFilter getInstance() {
+        SpamFilter filter = instance;
+        if (filter == null) {
+            synchronized (SpamFilter.class) {
+                filter = instance;
+                if (filter == null) {
+                    String file = System.getProperty("spam.rules.file");
+                    RuleSource source = file == null || file.isBlank()
+                            ? new TableRuleSource(new SpamRuleDAO()) : new FileRuleSource(Paths.get(file));
+                    filter = new SpamFilter(source, SpamMatcher.compile(SpamRules.defaults()));
+                    filter.reload();
+                    filter.startRefresh();
+                    instance = filter;
+                }
+            }
+        }
+        return filter;
+    }
+
+    public boolean isSpam(CharSequence text) {
+        return matcher.matches(text);
+    }
+
+
+     // The rule that flagged the text, or null if it is clean.
+
+    public SpamRule firstMatch(CharSequence text) {
+        return matcher.firstMatch(text);
+    }
+
+    public int getRuleCount() {
+        return matcher.getRuleCount();
+    }
+
+
+     // Load and compile the rules from the source now.
+     // @return true if a new rule set was swapped in
+
+    public synchronized boolean reload() {
+        if (source == null) return false;
+        try {
+            String version = source.version();
+            List<SpamRule> rules = source.load();
+            if (rules.isEmpty()) {
+                logger.warn("No spam rules in {}, using the bundled rules", source);
+                rules = SpamRules.defaults();
+            }
+            SpamMatcher compiled = SpamMatcher.compile(rules);
+            matcher = compiled;
+            loadedVersion = version;
+            logger.info("Loaded {} spam rules from {} ({} automaton states)",
+                    compiled.getRuleCount(), source, compiled.getStateCount());
+            return true;
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            logger.error("Failed to load spam rules from {}, keeping the current {} rules: {}",
+                    source, matcher.getRuleCount(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void startRefresh() {
+        if (REFRESH_SECONDS <= 0) return;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "spam-rules-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshIfChanged, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private synchronized void refreshIfChanged() {
+        try {
+            if (!source.version().equals(loadedVersion)) {
+                reload();
+            }
+        } catch (IOException | SQLException e) {
+            logger.debug("Spam rule source {} not available: {}", source, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Spam rule refresh failed", e);
+        }
+    }
+
+    private interface RuleSource {
+        String version() throws IOException, SQLException;
+        List<SpamRule> load() throws IOException, SQLException;
+    }
+
+    private static final class FileRuleSource implements RuleSource {
+        private final Path file;
+
+        FileRuleSource(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public String version() throws IOException {
+            return Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+        }
+
+        @Override
+        public List<SpamRule> load() throws IOException {
+            return SpamRules.load(file);
+        }
+
+        @Override
+        public String toString() {
+            return file.toString();
+        }
+    }
+
+    private static final class TableRuleSource implements RuleSource {
+        private final SpamRuleDAO spamRuleDAO;
+
+        TableRuleSource(SpamRuleDAO spamRuleDAO) {
+            this.spamRuleDAO = spamRuleDAO;
+        }
+
+        @Override
+        public String version() throws SQLException {
+            return spamRuleDAO.getVersion();
+        }
+
+        @Override
+        public List<SpamRule> load() throws SQLException {
+            return spamRuleDAO.findEnabled();
+        }
+
+        @Override
+        public String toString() {
+            return "table spam_rules";
+        }
+    }
+}
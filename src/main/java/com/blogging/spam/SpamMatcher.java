@@ -0,0 +1,239 @@
+package com.blogging.spam;
+
+import com.blogging.model.SpamRule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+ // Immutable Aho-Corasick automaton over a set of spam rules.
+ //
+ // The automaton is compiled into a dense DFA over character classes: every character that occurs
+ // in a rule gets its own class, all whitespace shares one class and everything else falls into
+ // OTHER. Case folding is done by the char -> class table, so matching never allocates a
+ // lower-case copy, and each input character costs one table lookup and one transition no
+ // matter how many rules there are.
+ //
+ // Word boundaries are part of the input: the scanner feeds a BOUNDARY symbol wherever the text
+ // switches between word characters (letters, digits) and anything else. Whole-word rules are
+ // compiled with a BOUNDARY at each end, so "buy now" matches "Buy   NOW!" but not "buy nowhere".
+ // Runs of whitespace are collapsed to one space on both sides.
+
+public final class SpamMatcher {
+    private static final int BOUNDARY = 0;
+    private static final int SPACE = 1;
+    private static final int OTHER = 2;
+    private static final int FIRST_CHAR_CLASS = 3;
+
+    private static final byte KIND_OTHER = 0;
+    private static final byte KIND_WORD = 1;
+    private static final byte KIND_SPACE = 2;
+    private static final byte[] KINDS = new byte[Character.MAX_VALUE + 1];
+
+    // Refuse rule sets whose transition table would exceed ~64 MB
+    private static final long MAX_TABLE_SIZE = 16L << 20;
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (Character.isLetterOrDigit(c)) {
+                KINDS[c] = KIND_WORD;
+            } else if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                KINDS[c] = KIND_SPACE;
+            }
+        }
+    }
+
+    private final char[] classOf;
+    private final int alphabet;
+    private final int[] next;
+    private final int[] matchOf;
+    private final SpamRule[] rules;
+
+    private SpamMatcher(char[] classOf, int alphabet, int[] next, int[] matchOf, SpamRule[] rules) {
+        this.classOf = classOf;
+        this.alphabet = alphabet;
+        this.next = next;
+        this.matchOf = matchOf;
+        this.rules = rules;
+    }
+
+
+     // Compile a rule set. Blank rules are ignored.
+
+    public static SpamMatcher compile(List<SpamRule> ruleList) {
+        List<SpamRule> rules = new ArrayList<>();
+        List<int[]> encoded = new ArrayList<>();
+        Map<Character, Integer> charClasses = new HashMap<>();
+
+        for (SpamRule rule : ruleList) {
+            int[] symbols = encode(rule, charClasses);
+            if (symbols.length > 0) {
+                rules.add(rule);
+                encoded.add(symbols);
+            }
+        }
+
+        int alphabet = FIRST_CHAR_CLASS + charClasses.size();
+        if (alphabet > Character.MAX_VALUE) {
+            throw new IllegalArgumentException("Spam rules use too many distinct characters");
+        }
+        char[] classOf = new char[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (KINDS[c] == KIND_SPACE) {
+                classOf[c] = SPACE;
+            } else {
+                classOf[c] = (char) (int) charClasses.getOrDefault(Character.toLowerCase((char) c), OTHER);
+            }
+        }
+
+        long maxStates = 1;
+        for (int[] symbols : encoded) {
+            maxStates += symbols.length;
+        }
+        if (maxStates * alphabet > MAX_TABLE_SIZE) {
+            throw new IllegalArgumentException("Spam rule set is too large: " + maxStates + " states x "
+                    + alphabet + " character classes");
+        }
+
+        // Trie
+        int[] next = new int[(int) maxStates * alphabet];
+        Arrays.fill(next, -1);
+        int[] matchOf = new int[(int) maxStates];
+        Arrays.fill(matchOf, -1);
+        int states = 1;
+        for (int r = 0; r < encoded.size(); r++) {
+            int state = 0;
+            for (int symbol : encoded.get(r)) {
+                int index = state * alphabet + symbol;
+                if (next[index] < 0) {
+                    next[index] = states++;
+                }
+                state = next[index];
+            }
+            if (matchOf[state] < 0) {
+                matchOf[state] = r;
+            }
+        }
+
+        // Failure links, folded into the transition table breadth first
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int a = 0; a < alphabet; a++) {
+            int target = next[a];
+            if (target < 0) {
+                next[a] = 0;
+            } else {
+                fail[target] = 0;
+                queue.add(target);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            if (matchOf[state] < 0) {
+                matchOf[state] = matchOf[fail[state]];
+            }
+            int base = state * alphabet;
+            int failBase = fail[state] * alphabet;
+            for (int a = 0; a < alphabet; a++) {
+                int target = next[base + a];
+                if (target < 0) {
+                    next[base + a] = next[failBase + a];
+                } else {
+                    fail[target] = next[failBase + a];
+                    queue.add(target);
+                }
+            }
+        }
+
+        return new SpamMatcher(classOf, alphabet, Arrays.copyOf(next, states * alphabet),
+                Arrays.copyOf(matchOf, states), rules.toArray(new SpamRule[0]));
+    }
+
+
+     // True if any rule occurs in the text.
+
+    public boolean matches(CharSequence text) {
+        return firstMatch(text) != null;
+    }
+
+
+     // The first rule found in the text (by end position), or null.
+
+    public SpamRule firstMatch(CharSequence text) {
+        if (rules.length == 0 || text == null) return null;
+        int state = 0;
+        boolean prevWord = false;
+        boolean prevSpace = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            byte kind = KINDS[c];
+            boolean word = kind == KIND_WORD;
+            if (word != prevWord) {
+                state = next[state * alphabet + BOUNDARY];
+                if (matchOf[state] >= 0) return rules[matchOf[state]];
+                prevWord = word;
+            }
+            boolean space = kind == KIND_SPACE;
+            if (space && prevSpace) continue;
+            prevSpace = space;
+            state = next[state * alphabet + classOf[c]];
+            if (matchOf[state] >= 0) return rules[matchOf[state]];
+        }
+        if (prevWord) {
+            state = next[state * alphabet + BOUNDARY];
+            if (matchOf[state] >= 0) return rules[matchOf[state]];
+        }
+        return null;
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    public int getStateCount() {
+        return matchOf.length;
+    }
+
+
+     // Rule text as a symbol sequence, using the same boundary and whitespace handling
+     // as the scanner. Substring rules get no boundary at their ends.
+
+    private static int[] encode(SpamRule rule, Map<Character, Integer> charClasses) {
+        String pattern = rule.getPattern() == null ? "" : rule.getPattern().strip();
+        int[] symbols = new int[pattern.length() * 2 + 2];
+        int length = 0;
+        boolean prevWord = !rule.isWholeWord() && !pattern.isEmpty() && KINDS[pattern.charAt(0)] == KIND_WORD;
+        boolean prevSpace = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            byte kind = KINDS[c];
+            boolean word = kind == KIND_WORD;
+            if (word != prevWord) {
+                symbols[length++] = BOUNDARY;
+                prevWord = word;
+            }
+            boolean space = kind == KIND_SPACE;
+            if (space && prevSpace) continue;
+            prevSpace = space;
+            if (space) {
+                symbols[length++] = SPACE;
+            } else {
+                char lower = Character.toLowerCase(c);
+                Integer charClass = charClasses.get(lower);
+                if (charClass == null) {
+                    charClass = FIRST_CHAR_CLASS + charClasses.size();
+                    charClasses.put(lower, charClass);
+                }
+                symbols[length++] = charClass;
+            }
+        }
+        if (rule.isWholeWord() && prevWord) {
+            symbols[length++] = BOUNDARY;
+        }
+        return Arrays.copyOf(symbols, length);
+    }
+}
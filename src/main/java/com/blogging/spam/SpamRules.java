@@ -0,0 +1,72 @@
+package com.blogging.spam;
+
+import com.blogging.model.SpamRule;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+ // Text format for spam rule files, one rule per line:
+ //
+ //   # comment
+ //   buy now               whole words / phrase (default)
+ //   word:free money       same, explicit
+ //   substring:viagra      anywhere, also inside longer words
+ //
+ // Matching is case-insensitive and whitespace runs count as one space.
+
+public final class SpamRules {
+    static final String DEFAULT_RESOURCE = "/spam-rules.txt";
+
+    private static final String WORD_PREFIX = "word:";
+    private static final String SUBSTRING_PREFIX = "substring:";
+
+    private SpamRules() {
+    }
+
+    public static List<SpamRule> load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+
+     // Rules bundled with the application, used when no other source is available.
+
+    public static List<SpamRule> defaults() {
+        try (InputStream in = SpamRules.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + DEFAULT_RESOURCE);
+            }
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + DEFAULT_RESOURCE, e);
+        }
+    }
+
+    public static List<SpamRule> parse(Reader source) throws IOException {
+        List<SpamRule> rules = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (line.startsWith(SUBSTRING_PREFIX)) {
+                rules.add(new SpamRule(line.substring(SUBSTRING_PREFIX.length()).strip(), false));
+            } else if (line.startsWith(WORD_PREFIX)) {
+                rules.add(new SpamRule(line.substring(WORD_PREFIX.length()).strip(), true));
+            } else {
+                rules.add(new SpamRule(line, true));
+            }
+        }
+        return rules;
+    }
+}
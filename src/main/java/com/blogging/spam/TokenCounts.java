@@ -0,0 +1,117 @@
+package com.blogging.spam;
+
+
+ // Open-addressing hash map from 64-bit token hashes to a pair of int counters
+ // (spam and ham occurrences). Keys, spam and ham counts live in three parallel primitive
+ // arrays with linear probing, so a lookup touches no objects and the table never boxes.
+ // Key 0 marks an empty slot; a real hash of 0 is stored as 1. A token whose counts drop
+ // back to zero keeps its slot but no longer counts in size. Not thread-safe.
+
+final class TokenCounts {
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private int[] spam;
+    private int[] ham;
+    // Slots in use, and tokens with a non-zero count
+    private int used;
+    private int size;
+    private int mask;
+
+    TokenCounts(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+
+     // Slot of the key, or -1 if absent.
+
+    int indexOf(long key) {
+        key = normalize(key);
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return i;
+            if (k == 0) return -1;
+        }
+    }
+
+    int spamAt(int index) {
+        return spam[index];
+    }
+
+    int hamAt(int index) {
+        return ham[index];
+    }
+
+    long keyAt(int index) {
+        return keys[index];
+    }
+
+    void add(long key, int spamDelta, int hamDelta) {
+        key = normalize(key);
+        int i = mix(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            keys[i] = key;
+            used++;
+        }
+        boolean wasCounted = spam[i] > 0 || ham[i] > 0;
+        spam[i] = Math.max(0, spam[i] + spamDelta);
+        ham[i] = Math.max(0, ham[i] + hamDelta);
+        boolean counted = spam[i] > 0 || ham[i] > 0;
+        if (counted != wasCounted) {
+            size += counted ? 1 : -1;
+        }
+        if (used > keys.length * MAX_LOAD) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldSpam = spam;
+        int[] oldHam = ham;
+        allocate(capacity);
+        used = 0;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            // Tokens counted no more are dropped
+            if (key == 0 || (oldSpam[j] == 0 && oldHam[j] == 0)) continue;
+            used++;
+            int i = mix(key) & mask;
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            spam[i] = oldSpam[j];
+            ham[i] = oldHam[j];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        spam = new int[capacity];
+        ham = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static long normalize(long key) {
+        return key == 0 ? 1 : key;
+    }
+
+    // Token hashes are already FNV-mixed; fold the high bits in for the table index
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,77 @@
+package com.blogging.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
+ // Binary layout of DAO trace files.
+ //
+ // header     : MAGIC (8 bytes), start wall-clock time (epoch millis, 8 bytes)
+ // STATEMENT  : tag, statement id, DAO method, SQL                   (first use of each statement)
+ // EXECUTION  : tag, statement id, start offset us, latency us, parameter count, parameters...
+ //
+ // Integers are unsigned LEB128 varints (zig-zag for signed values), start offsets are
+ // relative to the previous execution and strings are length-prefixed UTF-8, so a typical
+ // execution takes 6-20 bytes.
+
+public final class TraceFormat {
+    static final byte[] MAGIC = {'B', 'L', 'G', 'T', 'R', 'C', '0', '1'};
+
+    static final int STATEMENT = 1;
+    static final int EXECUTION = 2;
+
+    static final int NULL = 0;
+    static final int INT = 1;
+    static final int LONG = 2;
+    static final int STRING = 3;
+    static final int TIMESTAMP = 4;
+    static final int BOOLEAN = 5;
+    static final int DOUBLE = 6;
+    static final int INT_ARRAY = 7;
+
+    private TraceFormat() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in trace file");
+    }
+
+    static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(DataInput in) throws IOException {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
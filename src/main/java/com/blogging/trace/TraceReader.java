@@ -0,0 +1,173 @@
+package com.blogging.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+ // Sequential reader for trace files written by TraceRecorder.
+ // Executions come back in recording order with absolute start offsets and decoded parameters
+ // (Integer, Long, String, Timestamp, Boolean, Double, int[] or null).
+
+public class TraceReader implements AutoCloseable {
+    private final DataInputStream in;
+    private final long startEpochMillis;
+    private final List<String> methods = new ArrayList<>();
+    private final List<String> sqls = new ArrayList<>();
+    private long lastStartMicros;
+
+    public TraceReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        byte[] magic = new byte[TraceFormat.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, TraceFormat.MAGIC)) {
+            in.close();
+            throw new IOException(file + " is not a DAO trace file");
+        }
+        this.startEpochMillis = in.readLong();
+    }
+
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+
+     // Next recorded execution, or null at the end of the trace.
+     // A trace cut short by a crash ends at the last complete record.
+
+    public Execution next() throws IOException {
+        while (true) {
+            int tag;
+            try {
+                tag = (int) TraceFormat.readVarLong(in);
+            } catch (EOFException e) {
+                return null;
+            }
+            try {
+                if (tag == TraceFormat.STATEMENT) {
+                    int id = (int) TraceFormat.readVarLong(in);
+                    String method = TraceFormat.readString(in);
+                    String sql = TraceFormat.readString(in);
+                    while (methods.size() <= id) {
+                        methods.add(null);
+                        sqls.add(null);
+                    }
+                    methods.set(id, method);
+                    sqls.set(id, sql);
+                } else if (tag == TraceFormat.EXECUTION) {
+                    int id = (int) TraceFormat.readVarLong(in);
+                    lastStartMicros += TraceFormat.readSignedVarLong(in);
+                    long latencyMicros = TraceFormat.readVarLong(in);
+                    Object[] params = readParams();
+                    if (id >= methods.size() || methods.get(id) == null) {
+                        throw new IOException("Execution refers to unknown statement " + id);
+                    }
+                    return new Execution(id, methods.get(id), sqls.get(id), lastStartMicros, latencyMicros, params);
+                } else {
+                    throw new IOException("Unknown trace record type " + tag);
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+    }
+
+    private Object[] readParams() throws IOException {
+        Object[] params = new Object[(int) TraceFormat.readVarLong(in)];
+        for (int i = 0; i < params.length; i++) {
+            int type = in.readUnsignedByte();
+            switch (type) {
+                case TraceFormat.NULL:
+                    break;
+                case TraceFormat.INT:
+                    params[i] = (int) TraceFormat.readSignedVarLong(in);
+                    break;
+                case TraceFormat.LONG:
+                    params[i] = TraceFormat.readSignedVarLong(in);
+                    break;
+                case TraceFormat.STRING:
+                    params[i] = TraceFormat.readString(in);
+                    break;
+                case TraceFormat.TIMESTAMP:
+                    long micros = TraceFormat.readSignedVarLong(in);
+                    Timestamp ts = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1_000);
+                    ts.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1_000);
+                    params[i] = ts;
+                    break;
+                case TraceFormat.BOOLEAN:
+                    params[i] = in.readBoolean();
+                    break;
+                case TraceFormat.DOUBLE:
+                    params[i] = in.readDouble();
+                    break;
+                case TraceFormat.INT_ARRAY:
+                    int[] values = new int[(int) TraceFormat.readVarLong(in)];
+                    for (int j = 0; j < values.length; j++) {
+                        values[j] = (int) TraceFormat.readSignedVarLong(in);
+                    }
+                    params[i] = values;
+                    break;
+                default:
+                    throw new IOException("Unknown parameter type " + type);
+            }
+        }
+        return params;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+     // One recorded statement execution.
+
+    public static final class Execution {
+        private final int statementId;
+        private final String method;
+        private final String sql;
+        private final long startMicros;
+        private final long latencyMicros;
+        private final Object[] params;
+
+        Execution(int statementId, String method, String sql, long startMicros, long latencyMicros, Object[] params) {
+            this.statementId = statementId;
+            this.method = method;
+            this.sql = sql;
+            this.startMicros = startMicros;
+            this.latencyMicros = latencyMicros;
+            this.params = params;
+        }
+
+        public int getStatementId() {
+            return statementId;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getStartMicros() {
+            return startMicros;
+        }
+
+        public long getLatencyMicros() {
+            return latencyMicros;
+        }
+
+        public Object[] getParams() {
+            return params;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.blogging.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+ // Records DAO traffic (DAO method, SQL, parameters, start time, latency) to a binary trace file.
+ // Connections handed out by DatabaseConnection are wrapped in proxies that capture every
+ // statement execution; a background thread encodes and writes the events, so a DAO call only
+ // pays for a stack walk at prepare time and a queue offer per execution. If the writer falls
+ // behind, executions are dropped (and counted) rather than slowing the application down.
+ //
+ // Enable with db.trace.file=<path> in database.properties or -Ddb.trace.file=<path>.
+
+public class TraceRecorder implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TraceRecorder.class);
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final String DAO_PACKAGE = "com.blogging.dao.";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final Event POISON = new Event(-1, 0, 0, null, null, null);
+
+    private final Path file;
+    private final DataOutputStream out;
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Statement definitions, one per distinct statement: never dropped, and written before
+    // the execution the writer takes next, so they always precede executions referring to them
+    private final Queue<Event> definitions = new ConcurrentLinkedQueue<>();
+    private final Map<String, Integer> statementIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextStatementId = new AtomicInteger();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final long baseNanos = System.nanoTime();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public TraceRecorder(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        out.write(TraceFormat.MAGIC);
+        out.writeLong(System.currentTimeMillis());
+
+        this.writer = new Thread(this::writeLoop, "trace-writer");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Recording DAO trace to {}", file.toAbsolutePath());
+    }
+
+
+     // Wrap a pooled connection so its statements are recorded.
+
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(POISON);
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("DAO trace {} closed: {} executions recorded, {} dropped", file, recorded.get(), dropped.get());
+    }
+
+    private int statementId(String method, String sql) {
+        return statementIds.computeIfAbsent(method + '\u0000' + sql, key -> {
+            int id = nextStatementId.getAndIncrement();
+            // Queued before the id is published; the unbounded queue never blocks a DAO thread
+            definitions.add(new Event(id, 0, 0, null, method, sql));
+            return id;
+        });
+    }
+
+    private void record(int statementId, long startNanos, long latencyNanos, Object[] params) {
+        if (closed) return;
+        if (!queue.offer(new Event(statementId, startNanos, latencyNanos, params, null, null))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void writeLoop() {
+        long lastStartMicros = 0;
+        try {
+            while (true) {
+                Event event = queue.take();
+                writeDefinitions();
+                if (event == POISON) break;
+                long startMicros = (event.startNanos - baseNanos) / 1_000;
+                TraceFormat.writeVarLong(out, TraceFormat.EXECUTION);
+                TraceFormat.writeVarLong(out, event.statementId);
+                TraceFormat.writeSignedVarLong(out, startMicros - lastStartMicros);
+                TraceFormat.writeVarLong(out, Math.max(0, event.latencyNanos / 1_000));
+                writeParams(event.params);
+                lastStartMicros = startMicros;
+                recorded.incrementAndGet();
+                if (queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write DAO trace, recording stopped", e);
+            closed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.error("Failed to close DAO trace", e);
+            }
+        }
+    }
+
+    private void writeDefinitions() throws IOException {
+        Event definition;
+        while ((definition = definitions.poll()) != null) {
+            TraceFormat.writeVarLong(out, TraceFormat.STATEMENT);
+            TraceFormat.writeVarLong(out, definition.statementId);
+            TraceFormat.writeString(out, definition.method);
+            TraceFormat.writeString(out, definition.sql);
+        }
+    }
+
+    private void writeParams(Object[] params) throws IOException {
+        int count = params == null ? 0 : params.length;
+        TraceFormat.writeVarLong(out, count);
+        for (int i = 0; i < count; i++) {
+            Object value = params[i];
+            if (value == null) {
+                out.writeByte(TraceFormat.NULL);
+            } else if (value instanceof Integer) {
+                out.writeByte(TraceFormat.INT);
+                TraceFormat.writeSignedVarLong(out, (Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(TraceFormat.LONG);
+                TraceFormat.writeSignedVarLong(out, (Long) value);
+            } else if (value instanceof Timestamp) {
+                Timestamp ts = (Timestamp) value;
+                out.writeByte(TraceFormat.TIMESTAMP);
+                TraceFormat.writeSignedVarLong(out, ts.getTime() * 1_000 + (ts.getNanos() / 1_000) % 1_000);
+            } else if (value instanceof Boolean) {
+                out.writeByte(TraceFormat.BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Double) {
+                out.writeByte(TraceFormat.DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof int[]) {
+                int[] values = (int[]) value;
+                out.writeByte(TraceFormat.INT_ARRAY);
+                TraceFormat.writeVarLong(out, values.length);
+                for (int v : values) {
+                    TraceFormat.writeSignedVarLong(out, v);
+                }
+            } else {
+                out.writeByte(TraceFormat.STRING);
+                TraceFormat.writeString(out, value.toString());
+            }
+        }
+    }
+
+
+     // DAO method that issued the statement, e.g. "PostDAO.findById".
+
+    private static String callerDaoMethod() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(DAO_PACKAGE))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(DAO_PACKAGE.length()) + "." + frame.getMethodName())
+                .orElse("unknown"));
+    }
+
+    private static Object normalize(Object value) throws SQLException {
+        if (value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value);
+        }
+        if (value instanceof Array) {
+            Object elements = ((Array) value).getArray();
+            if (elements instanceof Integer[]) {
+                return Arrays.stream((Integer[]) elements).mapToInt(Integer::intValue).toArray();
+            }
+            return Arrays.toString((Object[]) elements);
+        }
+        return value;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class Event {
+        final int statementId;
+        final long startNanos;
+        final long latencyNanos;
+        final Object[] params;
+        final String method;
+        final String sql;
+
+        Event(int statementId, long startNanos, long latencyNanos, Object[] params, String method, String sql) {
+            this.statementId = statementId;
+            this.startNanos = startNanos;
+            this.latencyNanos = latencyNanos;
+            this.params = params;
+            this.method = method;
+            this.sql = sql;
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TraceRecorder.invoke(target, method, args);
+            String name = method.getName();
+            if (name.equals("prepareStatement") && args[0] instanceof String) {
+                int id = statementId(callerDaoMethod(), (String) args[0]);
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class}, new PreparedStatementHandler((PreparedStatement) result, id));
+            }
+            if (name.equals("createStatement")) {
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                        new Class<?>[]{Statement.class}, new StatementHandler((Statement) result));
+            }
+            return result;
+        }
+    }
+
+    private final class PreparedStatementHandler implements InvocationHandler {
+        private final PreparedStatement target;
+        private final int statementId;
+        private Object[] params = new Object[8];
+        private int paramCount;
+        private List<Object[]> batch;
+
+        PreparedStatementHandler(PreparedStatement target, int statementId) {
+            this.target = target;
+            this.statementId = statementId;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                capture((Integer) args[0], name.equals("setNull") ? null : normalize(args[1]));
+                return TraceRecorder.invoke(target, method, args);
+            }
+            if (args == null || args.length == 0) {
+                switch (name) {
+                    case "clearParameters":
+                        paramCount = 0;
+                        Arrays.fill(params, null);
+                        break;
+                    case "addBatch":
+                        if (batch == null) batch = new ArrayList<>();
+                        batch.add(Arrays.copyOf(params, paramCount));
+                        break;
+                    case "executeQuery":
+                    case "executeUpdate":
+                    case "executeLargeUpdate":
+                    case "execute":
+                        return timed(method, args, Arrays.copyOf(params, paramCount));
+                    case "executeBatch":
+                    case "executeLargeBatch":
+                        return timedBatch(method);
+                    default:
+                        break;
+                }
+            }
+            return TraceRecorder.invoke(target, method, args);
+        }
+
+        private void capture(int index, Object value) {
+            if (index > params.length) {
+                params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            }
+            params[index - 1] = value;
+            paramCount = Math.max(paramCount, index);
+        }
+
+        private Object timed(Method method, Object[] args, Object[] snapshot) throws Throwable {
+            long start = System.nanoTime();
+            try {
+                return TraceRecorder.invoke(target, method, args);
+            } finally {
+                record(statementId, start, System.nanoTime() - start, snapshot);
+            }
+        }
+
+        private Object timedBatch(Method method) throws Throwable {
+            List<Object[]> entries = batch;
+            batch = null;
+            long start = System.nanoTime();
+            try {
+                return TraceRecorder.invoke(target, method, null);
+            } finally {
+                if (entries != null && !entries.isEmpty()) {
+                    long share = (System.nanoTime() - start) / entries.size();
+                    for (Object[] entry : entries) {
+                        record(statementId, start, share, entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+
+        StatementHandler(Statement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute") && args != null && args.length == 1 && args[0] instanceof String) {
+                int id = statementId(callerDaoMethod(), (String) args[0]);
+                long start = System.nanoTime();
+                try {
+                    return TraceRecorder.invoke(target, method, args);
+                } finally {
+                    record(id, start, System.nanoTime() - start, null);
+                }
+            }
+            return TraceRecorder.invoke(target, method, args);
+        }
+    }
+}
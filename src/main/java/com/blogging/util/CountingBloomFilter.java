@@ -0,0 +1,106 @@
+package com.blogging.util;
+
+
+ // Counting Bloom filter over strings: answers "definitely absent" or "maybe present", and
+ // unlike a plain Bloom filter supports removal.
+ //
+ // Every slot is a 4-bit counter, sixteen to a long. An item increments the counters of its
+ // HASHES slots; removing it decrements them. A counter that reaches 15 saturates and is
+ // never decremented again, which can only turn later answers into false positives. Slots
+ // are chosen by double hashing (h1 + i * h2) of one 64-bit hash of the string. Sized for
+ // the given capacity at a false positive rate of FALSE_POSITIVE_RATE; past the capacity the
+ // rate grows.
+ //
+ // Removing an item that was never added corrupts the counters and can cause false
+ // negatives; callers must only remove what they added. Thread-safe.
+
+public final class CountingBloomFilter {
+    public static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int HASHES = 7;
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = 64 / COUNTER_BITS;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private final long[] counters;
+    private final int slots;
+
+    public CountingBloomFilter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        // m = -n ln(p) / ln(2)^2 slots; HASHES = 7 is optimal for p = 1%
+        long wanted = (long) Math.ceil(-capacity * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE / COUNTERS_PER_WORD, (wanted + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+        this.counters = new long[words];
+        this.slots = words * COUNTERS_PER_WORD;
+    }
+
+    public synchronized void add(String item) {
+        long hash = hash(item);
+        for (int i = 0; i < HASHES; i++) {
+            int slot = slot(hash, i);
+            long count = counter(slot);
+            if (count < COUNTER_MASK) {
+                setCounter(slot, count + 1);
+            }
+        }
+    }
+
+    public synchronized void remove(String item) {
+        long hash = hash(item);
+        for (int i = 0; i < HASHES; i++) {
+            int slot = slot(hash, i);
+            long count = counter(slot);
+            // Saturated counters no longer know how many items they hold
+            if (count > 0 && count < COUNTER_MASK) {
+                setCounter(slot, count - 1);
+            }
+        }
+    }
+
+    public synchronized boolean mightContain(String item) {
+        long hash = hash(item);
+        for (int i = 0; i < HASHES; i++) {
+            if (counter(slot(hash, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    private int slot(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return ((h1 + i * h2) & Integer.MAX_VALUE) % slots;
+    }
+
+    private long counter(int slot) {
+        int shift = (slot % COUNTERS_PER_WORD) * COUNTER_BITS;
+        return (counters[slot / COUNTERS_PER_WORD] >>> shift) & COUNTER_MASK;
+    }
+
+    private void setCounter(int slot, long count) {
+        int word = slot / COUNTERS_PER_WORD;
+        int shift = (slot % COUNTERS_PER_WORD) * COUNTER_BITS;
+        counters[word] = (counters[word] & ~(COUNTER_MASK << shift)) | (count << shift);
+    }
+
+    // FNV-1a over the chars, finished with the MurmurHash3 mix so both halves are usable
+    private static long hash(String item) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < item.length(); i++) {
+            h ^= item.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
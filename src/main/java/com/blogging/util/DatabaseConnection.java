@@ -1,13 +1,20 @@
 package com.blogging.util;
 
 import com.blogging.config.DatabaseConfig;
+import com.blogging.trace.TraceRecorder;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
 
  // Database connection manager using HikariCP connection pooling.
@@ -16,6 +23,8 @@ import java.sql.SQLException;
 public class DatabaseConnection {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConnection.class);
     private static final HikariDataSource dataSource;
+    private static volatile TraceRecorder traceRecorder;
+    private static volatile UnaryOperator<Connection> connectionDecorator;
 
     static {
         try {
@@ -38,6 +47,11 @@ public class DatabaseConnection {
             
             dataSource = new HikariDataSource(config);
             logger.info("Database connection pool initialized successfully");
+
+            String traceFile = DatabaseConfig.getTraceFile();
+            if (traceFile != null) {
+                startTrace(traceFile);
+            }
         } catch (Exception e) {
             logger.error("Failed to initialize database connection pool", e);
             throw new RuntimeException("Database initialization failed", e);
@@ -50,13 +64,43 @@ public class DatabaseConnection {
      // @throws SQLException if connection cannot be obtained
 
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        Connection connection = dataSource.getConnection();
+        UnaryOperator<Connection> decorator = connectionDecorator;
+        if (decorator != null) {
+            connection = decorator.apply(connection);
+        }
+        TraceRecorder recorder = traceRecorder;
+        return recorder != null ? recorder.wrap(connection) : connection;
+    }
+
+
+     // Wrap every connection handed out from now on (null removes the decorator).
+     // Used by tools that need to observe the statements the DAOs issue.
+
+    public static void setConnectionDecorator(UnaryOperator<Connection> decorator) {
+        connectionDecorator = decorator;
+    }
+
+
+     // Start recording DAO statements to the given trace file.
+
+    private static void startTrace(String file) {
+        try {
+            traceRecorder = new TraceRecorder(Paths.get(file));
+        } catch (IOException e) {
+            logger.error("Failed to open DAO trace file {}, tracing disabled", file, e);
+        }
     }
 
 
      // Close the data source and release all connections.
 
     public static void close() {
+        TraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            traceRecorder = null;
+            recorder.close();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             logger.info("Database connection pool closed");
@@ -64,6 +108,22 @@ public class DatabaseConnection {
     }
 
 
+     // Get connection pool statistics (active, idle, total, waiting threads).
+
+    public static Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new HashMap<>();
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            stats.put("activeConnections", pool.getActiveConnections());
+            stats.put("idleConnections", pool.getIdleConnections());
+            stats.put("totalConnections", pool.getTotalConnections());
+            stats.put("threadsAwaitingConnection", pool.getThreadsAwaitingConnection());
+        }
+        stats.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+        return stats;
+    }
+
+
      // Test the database connection.
      // @return true if connection is successful, false otherwise
 
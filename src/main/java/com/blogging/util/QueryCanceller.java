@@ -0,0 +1,54 @@
+package com.blogging.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+
+ // Lets another thread cancel a query while it runs. The DAO attaches its statement before
+ // executing it and detaches it afterwards; cancel() then calls Statement.cancel on the
+ // running statement, or makes the next attach fail if the query has not started yet.
+
+public final class QueryCanceller {
+    private static final Logger logger = LoggerFactory.getLogger(QueryCanceller.class);
+    // PostgreSQL's SQLSTATE for a query cancelled on user request
+    public static final String QUERY_CANCELED = "57014";
+
+    private Statement statement;
+    private boolean cancelled;
+
+    public synchronized void attach(Statement statement) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query cancelled", QUERY_CANCELED);
+        }
+        this.statement = statement;
+    }
+
+    public synchronized void detach() {
+        statement = null;
+    }
+
+    public synchronized void cancel() {
+        cancelled = true;
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.debug("Could not cancel query: {}", e.getMessage());
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+
+     // Whether an exception is the result of a cancelled query.
+
+    public static boolean isCancellation(SQLException e) {
+        return QUERY_CANCELED.equals(e.getSQLState());
+    }
+}